@@ -0,0 +1,60 @@
+/*
+ * Copyright 2021 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jmix.search.benchmarks;
+
+import io.jmix.core.security.SystemAuthenticator;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+/**
+ * Base class of benchmarks. Starts application context defined by {@link BenchmarkConfiguration}
+ * once per trial and authenticates benchmark thread as system.
+ */
+public abstract class AbstractSearchBenchmark {
+
+    protected AnnotationConfigApplicationContext context;
+    protected SystemAuthenticator authenticator;
+
+    @Setup(Level.Trial)
+    public void setUpContext() {
+        context = new AnnotationConfigApplicationContext(BenchmarkConfiguration.class);
+        authenticator = context.getBean(SystemAuthenticator.class);
+        authenticator.begin();
+        setUp();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownContext() {
+        try {
+            tearDown();
+        } finally {
+            authenticator.end();
+            context.close();
+        }
+    }
+
+    protected abstract void setUp();
+
+    protected void tearDown() {
+    }
+
+    protected <T> T getBean(Class<T> beanClass) {
+        return context.getBean(beanClass);
+    }
+}
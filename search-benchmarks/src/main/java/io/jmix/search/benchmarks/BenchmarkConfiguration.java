@@ -0,0 +1,57 @@
+/*
+ * Copyright 2021 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jmix.search.benchmarks;
+
+import io.jmix.search.index.EntityIndexer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.context.annotation.*;
+import test_support.IndexingTestConfiguration;
+import test_support.TestAutoDetectableIndexDefinitionScope;
+
+/**
+ * Context of the benchmarks. Reuses test configuration of the search module:
+ * test entities, index definitions and in-memory database.
+ * <p>
+ * Beans with the same names as in {@link IndexingTestConfiguration} override the test ones.
+ */
+@Configuration
+@Import({IndexingTestConfiguration.class})
+@PropertySource("classpath:/io/jmix/search/benchmarks/benchmark-app.properties")
+public class BenchmarkConfiguration {
+
+    @Autowired
+    protected AutowireCapableBeanFactory beanFactory;
+
+    @Bean
+    public TestAutoDetectableIndexDefinitionScope testAutoDetectableIndexDefinitionScope() {
+        return TestAutoDetectableIndexDefinitionScope.builder()
+                .packages("test_support.indexing", "test_support.change_tracking")
+                .build();
+    }
+
+    @Bean
+    public BulkPayloadCapture bulkPayloadCapture() {
+        return new BulkPayloadCapture();
+    }
+
+    @Bean
+    @Primary
+    public EntityIndexer testEntityIndexer() {
+        return beanFactory.createBean(BenchmarkEntityIndexer.class);
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2021 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jmix.search.benchmarks;
+
+import io.jmix.core.Metadata;
+import test_support.entity.TestReferenceEntity;
+import test_support.entity.TestRootEntity;
+import test_support.entity.TestSubReferenceEntity;
+import test_support.entity.indexing.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Creates detached graphs of test entities. Instances are not stored: all references are set in memory,
+ * so document building does not touch the database.
+ */
+public class BenchmarkEntities {
+
+    protected static final String TEXT = "Lorem ipsum dolor sit amet, consectetur adipiscing elit, " +
+            "sed do eiusmod tempor incididunt ut labore et dolore magna aliqua. " +
+            "Ut enim ad minim veniam, quis nostrud exercitation ullamco laboris nisi ut aliquip ex ea commodo consequat.";
+
+    protected final Metadata metadata;
+
+    public BenchmarkEntities(Metadata metadata) {
+        this.metadata = metadata;
+    }
+
+    /**
+     * Creates {@link TestTextRootEntity} with one-to-one and two one-to-many references,
+     * every reference has its own sub references.
+     *
+     * @param index number of the instance used in names
+     * @return root instance
+     */
+    public TestTextRootEntity createTextRootEntity(int index) {
+        TestTextRootEntity root = metadata.create(TestTextRootEntity.class);
+        root.setName("root " + index);
+
+        TestTextRefEntity oneToOneRef = createTextRefEntity(index + "-0");
+        oneToOneRef.setInverseOneToOneRef(root);
+        root.setOneToOneRef(oneToOneRef);
+
+        List<TestTextRefEntity> oneToManyRef = new ArrayList<>();
+        for (int i = 1; i <= 2; i++) {
+            TestTextRefEntity ref = createTextRefEntity(index + "-" + i);
+            ref.setManyToOneRef(root);
+            oneToManyRef.add(ref);
+        }
+        root.setOneToManyRef(oneToManyRef);
+        return root;
+    }
+
+    protected TestTextRefEntity createTextRefEntity(String suffix) {
+        TestTextRefEntity ref = metadata.create(TestTextRefEntity.class);
+        ref.setName("ref " + suffix);
+
+        TestTextSubRefEntity oneToOneSubRef = createTextSubRefEntity(suffix + "-0");
+        oneToOneSubRef.setInverseOneToOneRef(ref);
+        ref.setOneToOneRef(oneToOneSubRef);
+
+        TestTextSubRefEntity oneToManySubRef1 = createTextSubRefEntity(suffix + "-1");
+        TestTextSubRefEntity oneToManySubRef2 = createTextSubRefEntity(suffix + "-2");
+        oneToManySubRef1.setManyToOneRef(ref);
+        oneToManySubRef2.setManyToOneRef(ref);
+        ref.setOneToManyRef(Arrays.asList(oneToManySubRef1, oneToManySubRef2));
+        return ref;
+    }
+
+    protected TestTextSubRefEntity createTextSubRefEntity(String suffix) {
+        TestTextSubRefEntity subRef = metadata.create(TestTextSubRefEntity.class);
+        subRef.setName("sub ref " + suffix);
+        return subRef;
+    }
+
+    /**
+     * Creates {@link TestRootEntity} with text values on all levels of references.
+     *
+     * @param index number of the instance used in names
+     * @return root instance
+     */
+    public TestRootEntity createRootEntity(int index) {
+        TestRootEntity root = metadata.create(TestRootEntity.class);
+        root.setName("root " + index);
+        root.setTextValue(TEXT);
+
+        TestReferenceEntity oneToOneAssociation = createReferenceEntity(index + "-0");
+        oneToOneAssociation.setTestRootEntityOneToOne(root);
+        root.setOneToOneAssociation(oneToOneAssociation);
+
+        List<TestReferenceEntity> oneToManyAssociation = new ArrayList<>();
+        for (int i = 1; i <= 2; i++) {
+            TestReferenceEntity reference = createReferenceEntity(index + "-" + i);
+            reference.setTestRootEntityManyToOne(root);
+            oneToManyAssociation.add(reference);
+        }
+        root.setOneToManyAssociation(oneToManyAssociation);
+        return root;
+    }
+
+    protected TestReferenceEntity createReferenceEntity(String suffix) {
+        TestReferenceEntity reference = metadata.create(TestReferenceEntity.class);
+        reference.setName("reference " + suffix);
+        reference.setTextValue(TEXT);
+
+        TestSubReferenceEntity oneToOneAssociation = createSubReferenceEntity(suffix + "-0");
+        oneToOneAssociation.setTestReferenceEntity(reference);
+        reference.setOneToOneAssociation(oneToOneAssociation);
+
+        List<TestSubReferenceEntity> oneToManyAssociation = new ArrayList<>();
+        for (int i = 1; i <= 2; i++) {
+            TestSubReferenceEntity subReference = createSubReferenceEntity(suffix + "-" + i);
+            subReference.setTestReferenceEntityManyToOne(reference);
+            oneToManyAssociation.add(subReference);
+        }
+        reference.setOneToManyAssociation(oneToManyAssociation);
+        return reference;
+    }
+
+    protected TestSubReferenceEntity createSubReferenceEntity(String suffix) {
+        TestSubReferenceEntity subReference = metadata.create(TestSubReferenceEntity.class);
+        subReference.setName("sub reference " + suffix);
+        subReference.setTextValue(TEXT);
+        return subReference;
+    }
+
+    public TestUuidPkEntity createUuidPkEntity(int index) {
+        TestUuidPkEntity entity = metadata.create(TestUuidPkEntity.class);
+        entity.setName("UUID PK entity " + index);
+        return entity;
+    }
+
+    public TestLongPkEntity createLongPkEntity(int index) {
+        TestLongPkEntity entity = metadata.create(TestLongPkEntity.class);
+        entity.setId((long) index);
+        entity.setName("Long PK entity " + index);
+        return entity;
+    }
+
+    public TestStringPkEntity createStringPkEntity(int index) {
+        TestStringPkEntity entity = metadata.create(TestStringPkEntity.class);
+        entity.setId("string_pk_" + UUID.randomUUID());
+        entity.setName("String PK entity " + index);
+        return entity;
+    }
+}
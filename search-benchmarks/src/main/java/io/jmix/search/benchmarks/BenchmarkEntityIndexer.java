@@ -0,0 +1,68 @@
+/*
+ * Copyright 2021 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jmix.search.benchmarks;
+
+import io.jmix.search.index.IndexConfiguration;
+import io.jmix.search.index.IndexResult;
+import io.jmix.search.index.impl.EntityIndexerImpl;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import javax.annotation.Nonnull;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Entity indexer with fake Elasticsearch client: bulk requests are passed to {@link BulkPayloadCapture}
+ * and successful empty responses are returned immediately.
+ * <p>
+ * Also exposes internal stages of indexing to be measured separately.
+ */
+public class BenchmarkEntityIndexer extends EntityIndexerImpl {
+
+    @Autowired
+    protected BulkPayloadCapture bulkPayloadCapture;
+
+    public List<BulkRequest> buildIndexBulkRequests(Map<IndexConfiguration, Collection<Object>> groupedInstances) {
+        return createIndexBulkRequests(groupedInstances);
+    }
+
+    public void addIndexAction(BulkRequest request, IndexConfiguration indexConfiguration, Object instance) {
+        addIndexActionToBulkRequest(request, indexConfiguration, instance);
+    }
+
+    public IndexResult indexGrouped(Map<IndexConfiguration, Collection<Object>> groupedInstances) {
+        return indexGroupedInstances(groupedInstances);
+    }
+
+    @Override
+    @Nonnull
+    protected BulkResponse executeBulkRequest(@Nonnull BulkRequest request) {
+        bulkPayloadCapture.accept(request);
+        return new BulkResponse(new BulkItemResponse[]{}, 0);
+    }
+
+    @Override
+    @Nonnull
+    protected CompletableFuture<BulkResponse> executeBulkRequestAsync(@Nonnull BulkRequest request) {
+        return CompletableFuture.completedFuture(executeBulkRequest(request));
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2021 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jmix.search.benchmarks;
+
+import io.jmix.core.metamodel.model.MetaClass;
+import io.jmix.search.searching.impl.EntitySearcherImpl;
+import io.jmix.search.searching.impl.SearchResultImpl;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHits;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Exposes processing of search hits without sending requests to Elasticsearch.
+ */
+public class BenchmarkEntitySearcher extends EntitySearcherImpl {
+
+    public Map<MetaClass, List<SearchHit>> groupHits(SearchHits searchHits) {
+        return groupSearchHitsByEntity(searchHits);
+    }
+
+    public void fillResult(SearchResultImpl searchResult, Map<MetaClass, List<SearchHit>> hitsByEntity) {
+        fillSearchResult(searchResult, hitsByEntity);
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2021 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.jmix.search.benchmarks;
+
+import io.jmix.core.Stores;
+import io.jmix.search.index.queue.entity.IndexingQueueItem;
+import io.jmix.search.index.queue.impl.IndexingOperation;
+import io.jmix.search.index.queue.impl.JpaIndexingQueueManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Exposes both ways of inserting queue items: persisting via EntityManager and batched JDBC statements.
+ */
+public class BenchmarkIndexingQueueManager extends JpaIndexingQueueManager {
+
+    public List<IndexingQueueItem> createQueueItems(String entityName, int count) {
+        List<IndexingQueueItem> queueItems = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            queueItems.add(createQueueItem(entityName, UUID.randomUUID().toString(), IndexingOperation.INDEX));
+        }
+        return queueItems;
+    }
+
+    public void persistByEntityManager(List<IndexingQueueItem> queueItems) {
+        createTransactionTemplate().executeWithoutResult(status -> {
+            EntityManager entityManager = storeAwareLocator.getEntityManager(Stores.MAIN);
+            queueItems.forEach(entityManager::persist);
+        });
+    }
+
+    public void insertByJdbc(List<IndexingQueueItem> queueItems) {
+        createTransactionTemplate().executeWithoutResult(status -> insertQueueItems(queueItems));
+    }
+
+    public void clearQueue() {
+        storeAwareLocator.getJdbcTemplate(Stores.MAIN).update("delete from SEARCH_INDEXING_QUEUE");
+    }
+
+    protected TransactionTemplate createTransactionTemplate() {
+        TransactionTemplate transactionTemplate = storeAwareLocator.getTransactionTemplate(Stores.MAIN);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRED);
+        return transactionTemplate;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2021 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jmix.search.benchmarks;
+
+import io.jmix.core.Metadata;
+import io.jmix.search.index.EntityIndexer;
+import io.jmix.search.index.IndexConfiguration;
+import io.jmix.search.index.IndexResult;
+import io.jmix.search.index.mapping.IndexConfigurationManager;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.openjdk.jmh.annotations.*;
+import test_support.entity.indexing.TestTextRootEntity;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures preparing of bulk requests for batch of entity instances and the whole indexing of the batch
+ * with fake Elasticsearch client. Captured payload is printed at the end of the trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BulkIndexingBenchmark extends AbstractSearchBenchmark {
+
+    @Param({"100", "1000"})
+    public int batchSize;
+
+    protected BenchmarkEntityIndexer entityIndexer;
+    protected BulkPayloadCapture bulkPayloadCapture;
+    protected Map<IndexConfiguration, Collection<Object>> groupedInstances;
+
+    @Override
+    protected void setUp() {
+        BenchmarkEntities entities = new BenchmarkEntities(getBean(Metadata.class));
+        List<Object> instances = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            instances.add(entities.createTextRootEntity(i));
+        }
+        String entityName = getBean(Metadata.class).getClass(TestTextRootEntity.class).getName();
+        IndexConfiguration indexConfiguration = getBean(IndexConfigurationManager.class).getIndexConfigurationByEntityName(entityName);
+        groupedInstances = Collections.singletonMap(indexConfiguration, instances);
+
+        entityIndexer = (BenchmarkEntityIndexer) getBean(EntityIndexer.class);
+        bulkPayloadCapture = getBean(BulkPayloadCapture.class);
+        bulkPayloadCapture.clear();
+    }
+
+    @Override
+    protected void tearDown() {
+        long actions = bulkPayloadCapture.getActionsCount();
+        if (actions > 0) {
+            System.out.printf("%nCaptured bulk payload: %d requests, %d actions, %d source bytes per action, %d estimated bytes per request%n",
+                    bulkPayloadCapture.getRequestsCount(),
+                    actions,
+                    bulkPayloadCapture.getSourceBytes() / actions,
+                    bulkPayloadCapture.getEstimatedBytes() / bulkPayloadCapture.getRequestsCount());
+        }
+    }
+
+    @Benchmark
+    public List<BulkRequest> buildBulkRequests() {
+        return entityIndexer.buildIndexBulkRequests(groupedInstances);
+    }
+
+    @Benchmark
+    public IndexResult indexBatch() {
+        return entityIndexer.indexGrouped(groupedInstances);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2021 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jmix.search.benchmarks;
+
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.index.IndexRequest;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Captures bulk requests that would be sent to Elasticsearch.
+ * Requests are not retained: only counters of requests, actions and payload bytes are collected
+ * to keep memory usage of long benchmark runs stable.
+ */
+public class BulkPayloadCapture implements Consumer<BulkRequest> {
+
+    protected final AtomicLong requestsCount = new AtomicLong();
+    protected final AtomicLong actionsCount = new AtomicLong();
+    protected final AtomicLong sourceBytes = new AtomicLong();
+    protected final AtomicLong estimatedBytes = new AtomicLong();
+
+    @Override
+    public void accept(BulkRequest request) {
+        requestsCount.incrementAndGet();
+        actionsCount.addAndGet(request.numberOfActions());
+        estimatedBytes.addAndGet(request.estimatedSizeInBytes());
+        long bytes = 0;
+        for (DocWriteRequest<?> action : request.requests()) {
+            if (action instanceof IndexRequest) {
+                bytes += ((IndexRequest) action).source().length();
+            }
+        }
+        sourceBytes.addAndGet(bytes);
+    }
+
+    public long getRequestsCount() {
+        return requestsCount.get();
+    }
+
+    public long getActionsCount() {
+        return actionsCount.get();
+    }
+
+    /**
+     * @return total length of captured document sources
+     */
+    public long getSourceBytes() {
+        return sourceBytes.get();
+    }
+
+    /**
+     * @return total size of captured requests estimated by {@link BulkRequest#estimatedSizeInBytes()}
+     */
+    public long getEstimatedBytes() {
+        return estimatedBytes.get();
+    }
+
+    public void clear() {
+        requestsCount.set(0);
+        actionsCount.set(0);
+        sourceBytes.set(0);
+        estimatedBytes.set(0);
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2021 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jmix.search.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.jmix.core.Metadata;
+import io.jmix.search.index.EntityIndexer;
+import io.jmix.search.index.IndexConfiguration;
+import io.jmix.search.index.impl.IndexDocumentWriter;
+import io.jmix.search.index.mapping.IndexConfigurationManager;
+import io.jmix.search.index.mapping.IndexDocumentPlan;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building of the index document for single entity instance:
+ * extraction of field values, writing of the JSON document and adding of the index action to the bulk request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DocumentBuildingBenchmark extends AbstractSearchBenchmark {
+
+    /**
+     * Entity graph of the document: 'text' - {@link test_support.entity.indexing.TestTextRootEntity} with short names,
+     * 'root' - {@link test_support.entity.TestRootEntity} with long text values.
+     */
+    @Param({"text", "root"})
+    public String entity;
+
+    protected IndexDocumentWriter indexDocumentWriter;
+    protected BenchmarkEntityIndexer entityIndexer;
+    protected IndexConfiguration indexConfiguration;
+    protected IndexDocumentPlan documentPlan;
+    protected Object instance;
+
+    @Override
+    protected void setUp() {
+        BenchmarkEntities entities = new BenchmarkEntities(getBean(Metadata.class));
+        instance = "root".equals(entity) ? entities.createRootEntity(0) : entities.createTextRootEntity(0);
+
+        String entityName = getBean(Metadata.class).getClass(instance).getName();
+        indexConfiguration = getBean(IndexConfigurationManager.class).getIndexConfigurationByEntityName(entityName);
+        documentPlan = indexConfiguration.getDocumentPlan();
+        indexDocumentWriter = getBean(IndexDocumentWriter.class);
+        entityIndexer = (BenchmarkEntityIndexer) getBean(EntityIndexer.class);
+    }
+
+    @Benchmark
+    public JsonNode[] extractValues() {
+        return documentPlan.extractValues(instance);
+    }
+
+    @Benchmark
+    public byte[] writeDocument() {
+        return indexDocumentWriter.writeDocument(indexConfiguration, instance);
+    }
+
+    @Benchmark
+    public BulkRequest addIndexAction() {
+        BulkRequest request = new BulkRequest();
+        entityIndexer.addIndexAction(request, indexConfiguration, instance);
+        return request;
+    }
+}
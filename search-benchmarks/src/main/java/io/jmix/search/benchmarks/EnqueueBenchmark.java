@@ -0,0 +1,102 @@
+/*
+ * Copyright 2021 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.jmix.search.benchmarks;
+
+import io.jmix.core.Metadata;
+import io.jmix.search.index.queue.entity.IndexingQueueItem;
+import io.jmix.search.index.queue.impl.IndexingQueueJournal;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import test_support.entity.indexing.TestTextRootEntity;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares inserting of indexing queue items via EntityManager and via batched JDBC statements
+ * into the in-memory database with appending them to the memory-mapped journal (forced after every batch).
+ * Queue table is cleared and journal is checkpointed after every iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EnqueueBenchmark extends AbstractSearchBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int batchSize;
+
+    protected BenchmarkIndexingQueueManager queueManager;
+    protected String entityName;
+    protected IndexingQueueJournal journal;
+
+    @Override
+    protected void setUp() {
+        queueManager = getBean(AutowireCapableBeanFactory.class).createBean(BenchmarkIndexingQueueManager.class);
+        entityName = getBean(Metadata.class).getClass(TestTextRootEntity.class).getName();
+        queueManager.clearQueue();
+        try {
+            Path journalDirectory = Files.createTempDirectory("search-benchmark-journal");
+            journal = new IndexingQueueJournal(journalDirectory, 64 * 1024 * 1024);
+            journal.open();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void clearQueue() throws IOException {
+        queueManager.clearQueue();
+        journal.checkpoint(journal.getWritePosition());
+    }
+
+    @TearDown(Level.Trial)
+    public void closeJournal() throws IOException {
+        journal.close();
+    }
+
+    @Benchmark
+    public List<IndexingQueueItem> persistByEntityManager() {
+        List<IndexingQueueItem> queueItems = queueManager.createQueueItems(entityName, batchSize);
+        queueManager.persistByEntityManager(queueItems);
+        return queueItems;
+    }
+
+    @Benchmark
+    public List<IndexingQueueItem> insertByJdbc() {
+        List<IndexingQueueItem> queueItems = queueManager.createQueueItems(entityName, batchSize);
+        queueManager.insertByJdbc(queueItems);
+        return queueItems;
+    }
+
+    @Benchmark
+    public List<IndexingQueueItem> appendToJournal() throws IOException {
+        List<IndexingQueueItem> queueItems = queueManager.createQueueItems(entityName, batchSize);
+        for (IndexingQueueItem queueItem : queueItems) {
+            journal.append(queueItem.getOperation(), queueItem.getEntityName(), queueItem.getEntityId());
+        }
+        journal.sync();
+        return queueItems;
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2021 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jmix.search.benchmarks;
+
+import io.jmix.core.Id;
+import io.jmix.core.IdSerialization;
+import io.jmix.core.Metadata;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures conversion between entity ids and ids of index documents.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IdSerializationBenchmark extends AbstractSearchBenchmark {
+
+    @Param({"uuid", "long", "string"})
+    public String primaryKey;
+
+    protected IdSerialization idSerialization;
+    protected Object instance;
+    protected Id<?> id;
+    protected String serializedId;
+
+    @Override
+    protected void setUp() {
+        BenchmarkEntities entities = new BenchmarkEntities(getBean(Metadata.class));
+        switch (primaryKey) {
+            case "long":
+                instance = entities.createLongPkEntity(1);
+                break;
+            case "string":
+                instance = entities.createStringPkEntity(1);
+                break;
+            default:
+                instance = entities.createUuidPkEntity(1);
+        }
+        idSerialization = getBean(IdSerialization.class);
+        id = Id.of(instance);
+        serializedId = idSerialization.idToString(id);
+    }
+
+    @Benchmark
+    public String idToString() {
+        return idSerialization.idToString(Id.of(instance));
+    }
+
+    @Benchmark
+    public Id<?> stringToId() {
+        return idSerialization.stringToId(serializedId);
+    }
+
+    @Benchmark
+    public Id<?> roundTrip() {
+        return idSerialization.stringToId(idSerialization.idToString(id));
+    }
+}
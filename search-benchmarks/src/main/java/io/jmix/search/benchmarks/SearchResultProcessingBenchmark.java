@@ -0,0 +1,108 @@
+/*
+ * Copyright 2021 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jmix.search.benchmarks;
+
+import io.jmix.core.Id;
+import io.jmix.core.IdSerialization;
+import io.jmix.core.Metadata;
+import io.jmix.core.metamodel.model.MetaClass;
+import io.jmix.search.searching.SearchContext;
+import io.jmix.search.searching.SearchStrategy;
+import io.jmix.search.searching.SearchStrategyManager;
+import io.jmix.search.searching.impl.SearchResultImpl;
+import io.jmix.search.utils.Constants;
+import org.apache.lucene.search.TotalHits;
+import org.elasticsearch.common.xcontent.DeprecationHandler;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.common.xcontent.json.JsonXContent;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHits;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures processing of search hits received from Elasticsearch: grouping by entities
+ * and filling of the search result with highlighted fields.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchResultProcessingBenchmark extends AbstractSearchBenchmark {
+
+    @Param({"10", "100"})
+    public int hitsCount;
+
+    protected BenchmarkEntitySearcher entitySearcher;
+    protected SearchStrategy searchStrategy;
+    protected SearchHits searchHits;
+    protected Map<MetaClass, List<SearchHit>> hitsByEntity;
+
+    @Override
+    protected void setUp() {
+        BenchmarkEntities entities = new BenchmarkEntities(getBean(Metadata.class));
+        IdSerialization idSerialization = getBean(IdSerialization.class);
+
+        SearchHit[] hits = new SearchHit[hitsCount];
+        for (int i = 0; i < hitsCount; i++) {
+            String documentId = idSerialization.idToString(Id.of(entities.createTextRootEntity(i)));
+            hits[i] = parseSearchHit(documentId, "root " + i);
+        }
+        searchHits = new SearchHits(hits, new TotalHits(hitsCount, TotalHits.Relation.EQUAL_TO), 1.0f);
+
+        entitySearcher = context.getAutowireCapableBeanFactory().createBean(BenchmarkEntitySearcher.class);
+        searchStrategy = getBean(SearchStrategyManager.class).getDefaultSearchStrategy();
+        hitsByEntity = entitySearcher.groupHits(searchHits);
+    }
+
+    @Benchmark
+    public Map<MetaClass, List<SearchHit>> groupHits() {
+        return entitySearcher.groupHits(searchHits);
+    }
+
+    @Benchmark
+    public SearchResultImpl fillResult() {
+        SearchResultImpl searchResult = new SearchResultImpl(new SearchContext("root").setSize(hitsCount), searchStrategy);
+        entitySearcher.fillResult(searchResult, hitsByEntity);
+        return searchResult;
+    }
+
+    protected SearchHit parseSearchHit(String documentId, String instanceName) {
+        String json = "{" +
+                "\"_index\":\"search_index_test_textrootentity\"," +
+                "\"_id\":\"" + documentId + "\"," +
+                "\"_score\":1.0," +
+                "\"_source\":{\"" + Constants.INSTANCE_NAME_FIELD + "\":\"" + instanceName + "\"}," +
+                "\"highlight\":{" +
+                "\"name\":[\"<em>root</em> name\"]," +
+                "\"oneToManyRef.name\":[\"<em>root</em> ref one\",\"<em>root</em> ref two\"]" +
+                "}}";
+        try (XContentParser parser = JsonXContent.jsonXContent.createParser(
+                NamedXContentRegistry.EMPTY, DeprecationHandler.THROW_UNSUPPORTED_OPERATION, json)) {
+            return SearchHit.fromXContent(parser);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to create search hit", e);
+        }
+    }
+}
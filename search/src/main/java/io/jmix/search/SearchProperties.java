@@ -17,6 +17,9 @@
 package io.jmix.search;
 
 import io.jmix.search.index.IndexSchemaManagementStrategy;
+import io.jmix.search.index.queue.IndexingQueueDequeueStrategy;
+import io.jmix.search.index.queue.IndexingQueueJournalSyncPolicy;
+import io.jmix.search.index.queue.IndexingQueueType;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.ConstructorBinding;
@@ -36,18 +39,40 @@ public class SearchProperties {
     protected final int processQueueBatchSize;
     protected final int maxProcessedQueueItemsPerExecution;
     protected final int reindexEntityEnqueueBatchSize;
+    protected final int reindexEntityBatchSize;
+    protected final int processQueueThreadsCount;
+    protected final int maxInFlightBulkRequests;
+    protected final int maxBulkRequestActions;
+    protected final long maxBulkRequestSizeInBytes;
+    protected final int maxBulkRequestRetries;
+    protected final long bulkRequestRetryInitialDelay;
+    protected final int indexingQueueMaxAttempts;
+    protected final long indexingQueueLeaseTimeout;
+    protected final long bulkIndexingSessionLeaseTimeout;
+    protected final int inMemoryIndexingQueueCapacity;
+    protected final int indexingQueueJournalSegmentSize;
+    protected final long indexingQueueJournalSyncInterval;
 
     protected final boolean changedEntitiesIndexingEnabled;
     protected final boolean useDefaultIndexingQueueProcessingQuartzConfiguration;
     protected final boolean enqueueIndexAllOnStartupIndexRecreationEnabled;
+    protected final boolean bulkIndexingSessionEnabled;
+    protected final boolean indexingQueueCoalescingEnabled;
+    protected final boolean indexingQueueJdbcInsertEnabled;
+    protected final boolean indexingQueueCascadeEnabled;
+    protected final boolean indexingQueuePartialUpdateEnabled;
 
     protected final Elasticsearch elasticsearch;
 
     protected final String defaultSearchStrategy;
     protected final String indexingQueueProcessingCron;
     protected final String searchIndexNamePrefix;
+    protected final String indexingQueueJournalDirectory;
 
     protected final IndexSchemaManagementStrategy indexSchemaManagementStrategy;
+    protected final IndexingQueueDequeueStrategy indexingQueueDequeueStrategy;
+    protected final IndexingQueueType indexingQueueType;
+    protected final IndexingQueueJournalSyncPolicy indexingQueueJournalSyncPolicy;
 
     protected final List<String> enqueueIndexAllOnStartupIndexRecreationEntities;
 
@@ -58,13 +83,35 @@ public class SearchProperties {
             @DefaultValue("100") int processQueueBatchSize,
             @DefaultValue("1000") int maxProcessedQueueItemsPerExecution,
             @DefaultValue("100") int reindexEntityEnqueueBatchSize,
+            @DefaultValue("500") int reindexEntityBatchSize,
+            @DefaultValue("1") int processQueueThreadsCount,
+            @DefaultValue("4") int maxInFlightBulkRequests,
+            @DefaultValue("1000") int maxBulkRequestActions,
+            @DefaultValue("10485760") long maxBulkRequestSizeInBytes,
+            @DefaultValue("3") int maxBulkRequestRetries,
+            @DefaultValue("50") long bulkRequestRetryInitialDelay,
+            @DefaultValue("5") int indexingQueueMaxAttempts,
+            @DefaultValue("120000") long indexingQueueLeaseTimeout,
+            @DefaultValue("600000") long bulkIndexingSessionLeaseTimeout,
+            @DefaultValue("65536") int inMemoryIndexingQueueCapacity,
+            @DefaultValue("67108864") int indexingQueueJournalSegmentSize,
+            @DefaultValue("1000") long indexingQueueJournalSyncInterval,
             @DefaultValue("true") boolean changedEntitiesIndexingEnabled,
             @DefaultValue("true") boolean useDefaultIndexingQueueProcessingQuartzConfiguration,
             @DefaultValue("true") boolean enqueueIndexAllOnStartupIndexRecreationEnabled,
+            @DefaultValue("false") boolean bulkIndexingSessionEnabled,
+            @DefaultValue("false") boolean indexingQueueCoalescingEnabled,
+            @DefaultValue("false") boolean indexingQueueJdbcInsertEnabled,
+            @DefaultValue("false") boolean indexingQueueCascadeEnabled,
+            @DefaultValue("false") boolean indexingQueuePartialUpdateEnabled,
             @DefaultValue("") String enqueueIndexAllOnStartupIndexRecreationEntities,
             @DefaultValue("search_index_") String searchIndexNamePrefix,
+            @DefaultValue("") String indexingQueueJournalDirectory,
             @DefaultValue("anyTermAnyField") String defaultSearchStrategy,
             @DefaultValue("create-or-recreate") String indexSchemaManagementStrategy,
+            @DefaultValue("local") String indexingQueueDequeueStrategy,
+            @DefaultValue("jpa") String indexingQueueType,
+            @DefaultValue("interval") String indexingQueueJournalSyncPolicy,
             @DefaultValue("0/5 * * * * ?") String indexingQueueProcessingCron,
             @DefaultValue Elasticsearch elasticsearch) {
         this.searchResultPageSize = searchResultPageSize;
@@ -73,15 +120,37 @@ public class SearchProperties {
         this.processQueueBatchSize = processQueueBatchSize;
         this.maxProcessedQueueItemsPerExecution = maxProcessedQueueItemsPerExecution;
         this.reindexEntityEnqueueBatchSize = reindexEntityEnqueueBatchSize;
+        this.reindexEntityBatchSize = reindexEntityBatchSize;
+        this.processQueueThreadsCount = processQueueThreadsCount;
+        this.maxInFlightBulkRequests = maxInFlightBulkRequests;
+        this.maxBulkRequestActions = maxBulkRequestActions;
+        this.maxBulkRequestSizeInBytes = maxBulkRequestSizeInBytes;
+        this.maxBulkRequestRetries = maxBulkRequestRetries;
+        this.bulkRequestRetryInitialDelay = bulkRequestRetryInitialDelay;
+        this.indexingQueueMaxAttempts = indexingQueueMaxAttempts;
+        this.indexingQueueLeaseTimeout = indexingQueueLeaseTimeout;
+        this.bulkIndexingSessionLeaseTimeout = bulkIndexingSessionLeaseTimeout;
+        this.inMemoryIndexingQueueCapacity = inMemoryIndexingQueueCapacity;
+        this.indexingQueueJournalSegmentSize = indexingQueueJournalSegmentSize;
+        this.indexingQueueJournalSyncInterval = indexingQueueJournalSyncInterval;
         this.changedEntitiesIndexingEnabled = changedEntitiesIndexingEnabled;
         this.useDefaultIndexingQueueProcessingQuartzConfiguration = useDefaultIndexingQueueProcessingQuartzConfiguration;
         this.indexingQueueProcessingCron = indexingQueueProcessingCron;
         this.defaultSearchStrategy = defaultSearchStrategy;
         this.indexSchemaManagementStrategy = IndexSchemaManagementStrategy.getByKey(indexSchemaManagementStrategy);
+        this.indexingQueueDequeueStrategy = IndexingQueueDequeueStrategy.getByKey(indexingQueueDequeueStrategy);
+        this.indexingQueueType = IndexingQueueType.getByKey(indexingQueueType);
+        this.indexingQueueJournalSyncPolicy = IndexingQueueJournalSyncPolicy.getByKey(indexingQueueJournalSyncPolicy);
         this.elasticsearch = elasticsearch;
         this.enqueueIndexAllOnStartupIndexRecreationEnabled = enqueueIndexAllOnStartupIndexRecreationEnabled;
+        this.bulkIndexingSessionEnabled = bulkIndexingSessionEnabled;
+        this.indexingQueueCoalescingEnabled = indexingQueueCoalescingEnabled;
+        this.indexingQueueJdbcInsertEnabled = indexingQueueJdbcInsertEnabled;
+        this.indexingQueueCascadeEnabled = indexingQueueCascadeEnabled;
+        this.indexingQueuePartialUpdateEnabled = indexingQueuePartialUpdateEnabled;
         this.enqueueIndexAllOnStartupIndexRecreationEntities = prepareStartupEnqueueingEntities(enqueueIndexAllOnStartupIndexRecreationEntities);
         this.searchIndexNamePrefix = searchIndexNamePrefix;
+        this.indexingQueueJournalDirectory = indexingQueueJournalDirectory;
     }
 
     /**
@@ -126,6 +195,102 @@ public class SearchProperties {
         return reindexEntityEnqueueBatchSize;
     }
 
+    /**
+     * @return amount of entity instances loaded and sent to Elasticsearch in single page during direct reindex of entity
+     */
+    public int getReindexEntityBatchSize() {
+        return reindexEntityBatchSize;
+    }
+
+    /**
+     * @return amount of worker threads used to process dequeued queue items concurrently.
+     * Value 1 means sequential processing within the calling thread
+     */
+    public int getProcessQueueThreadsCount() {
+        return processQueueThreadsCount;
+    }
+
+    /**
+     * @return max amount of asynchronous bulk requests that can be sent to Elasticsearch simultaneously
+     */
+    public int getMaxInFlightBulkRequests() {
+        return maxInFlightBulkRequests;
+    }
+
+    /**
+     * @return max amount of actions within single bulk request. Larger batches are split into several requests
+     */
+    public int getMaxBulkRequestActions() {
+        return maxBulkRequestActions;
+    }
+
+    /**
+     * @return max estimated size of single bulk request in bytes. Larger batches are split into several requests
+     */
+    public long getMaxBulkRequestSizeInBytes() {
+        return maxBulkRequestSizeInBytes;
+    }
+
+    /**
+     * @return max amount of attempts to resend bulk items rejected by overloaded Elasticsearch cluster.
+     * Items that are still rejected after all attempts are left in the indexing queue
+     */
+    public int getMaxBulkRequestRetries() {
+        return maxBulkRequestRetries;
+    }
+
+    /**
+     * @return initial delay (in milliseconds) of the exponential backoff between attempts to resend rejected bulk items
+     */
+    public long getBulkRequestRetryInitialDelay() {
+        return bulkRequestRetryInitialDelay;
+    }
+
+    /**
+     * @return Max amount of attempts to process queue item in 'lease' dequeue mode.
+     * Items exceeding it are moved to the dead letter queue
+     */
+    public int getIndexingQueueMaxAttempts() {
+        return indexingQueueMaxAttempts;
+    }
+
+    /**
+     * @return Timeout in milliseconds after which queue item claimed in 'lease' or 'skip-locked' dequeue mode
+     * by the application instance that hasn't processed it can be claimed again
+     */
+    public long getIndexingQueueLeaseTimeout() {
+        return indexingQueueLeaseTimeout;
+    }
+
+    /**
+     * @return Timeout in milliseconds after which bulk indexing session of another application instance
+     * that hasn't renewed it is considered interrupted, so settings of its index can be restored on startup
+     */
+    public long getBulkIndexingSessionLeaseTimeout() {
+        return bulkIndexingSessionLeaseTimeout;
+    }
+
+    /**
+     * @return Max amount of items in the in-memory indexing queue. Rounded up to the power of two
+     */
+    public int getInMemoryIndexingQueueCapacity() {
+        return inMemoryIndexingQueueCapacity;
+    }
+
+    /**
+     * @return Size of segment file of indexing queue journal in bytes
+     */
+    public int getIndexingQueueJournalSegmentSize() {
+        return indexingQueueJournalSegmentSize;
+    }
+
+    /**
+     * @return Min interval between forcing of indexing queue journal in milliseconds (for 'interval' sync policy)
+     */
+    public long getIndexingQueueJournalSyncInterval() {
+        return indexingQueueJournalSyncInterval;
+    }
+
     /**
      * @return true if automatic indexing of changed entities is enabled. False otherwise
      */
@@ -162,6 +327,55 @@ public class SearchProperties {
         return enqueueIndexAllOnStartupIndexRecreationEnabled;
     }
 
+    /**
+     * @return Whether settings optimized for mass ingestion should be applied to index
+     * during enqueueing and processing of all instances of entity. Direct reindex fills the new generation
+     * of the index with such settings and switches the alias to it instead of changing settings of the live index
+     */
+    public boolean isBulkIndexingSessionEnabled() {
+        return bulkIndexingSessionEnabled;
+    }
+
+    /**
+     * @return Whether pending queue items of entity instance should be replaced by the latest enqueued one,
+     * so the queue contains at most one item per entity instance. The latest operation defines the state of document:
+     * e.g. index item supersedes pending delete item, the instance is reloaded during processing anyway.
+     * <p>Trade-off: every enqueueing (i.e. every transaction changing indexed entities) executes an additional
+     * DELETE statement against the queue table. The statement can also remove items that are being processed
+     * at the moment by another node: such items are just not deleted by that node afterwards,
+     * and the new item is processed in the next batch, but concurrent enqueueing and claiming of the same rows
+     * can lead to lock waits on databases with row-level locking. Disabled by default
+     */
+    public boolean isIndexingQueueCoalescingEnabled() {
+        return indexingQueueCoalescingEnabled;
+    }
+
+    /**
+     * @return Whether queue items should be inserted by batched JDBC statements instead of persisting them
+     * one by one via EntityManager. Statements fill columns ID, OPERATION, ENTITY_ID, ENTITY_NAME, PROPERTY_PATH,
+     * CREATED_BY and CREATED_DATE only: entity listeners, entity events and columns added to the queue entity
+     * by extensions are bypassed. Disabled by default
+     */
+    public boolean isIndexingQueueJdbcInsertEnabled() {
+        return indexingQueueJdbcInsertEnabled;
+    }
+
+    /**
+     * @return true if entities dependent on the updated entity are resolved during queue processing ('cascade' queue items)
+     * instead of the transaction of update. False otherwise
+     */
+    public boolean isIndexingQueueCascadeEnabled() {
+        return indexingQueueCascadeEnabled;
+    }
+
+    /**
+     * @return true if dependent documents are updated partially during processing of 'cascade' queue items:
+     * only fields taken from the changed referenced entity are loaded and sent. False otherwise
+     */
+    public boolean isIndexingQueuePartialUpdateEnabled() {
+        return indexingQueuePartialUpdateEnabled;
+    }
+
     /**
      * @return list of entities that should be automatically enqueued on startup in case of index recreation.
      * Empty list means all indexed entities
@@ -205,6 +419,34 @@ public class SearchProperties {
         return indexSchemaManagementStrategy;
     }
 
+    /**
+     * @return The way queue items are claimed for processing
+     */
+    public IndexingQueueDequeueStrategy getIndexingQueueDequeueStrategy() {
+        return indexingQueueDequeueStrategy;
+    }
+
+    /**
+     * @return The storage of indexing queue
+     */
+    public IndexingQueueType getIndexingQueueType() {
+        return indexingQueueType;
+    }
+
+    /**
+     * @return Directory of indexing queue journal. Subdirectory of application work directory is used by default
+     */
+    public String getIndexingQueueJournalDirectory() {
+        return indexingQueueJournalDirectory;
+    }
+
+    /**
+     * @return When records of indexing queue journal are forced to the storage device
+     */
+    public IndexingQueueJournalSyncPolicy getIndexingQueueJournalSyncPolicy() {
+        return indexingQueueJournalSyncPolicy;
+    }
+
     protected List<String> prepareStartupEnqueueingEntities(String enqueueIndexAllOnStartupIndexRecreationEntities) {
         List<String> result;
         if (StringUtils.isBlank(enqueueIndexAllOnStartupIndexRecreationEntities)) {
@@ -18,6 +18,7 @@ package io.jmix.search.index;
 
 import org.elasticsearch.client.indices.GetIndexResponse;
 
+import javax.annotation.Nullable;
 import java.util.Collection;
 import java.util.Map;
 
@@ -65,6 +66,86 @@ public interface ESIndexManager {
      */
     boolean recreateIndex(IndexConfiguration indexConfiguration);
 
+    /**
+     * Rebuilds search index without downtime of searching.
+     * <p>
+     * Index of configuration is an alias pointing to the concrete index of some generation
+     * ({@code <index name>_v<N>}). Rebuild creates the next generation with the actual mapping,
+     * fills it directly from the database while the current generation continues serving searches,
+     * atomically moves the alias to the new generation and deletes the old ones.
+     * Documents modified during rebuild are written to both generations and reindexed once more after
+     * switching of the alias, because pages of the rebuild loaded earlier could overwrite them in the new generation.
+     * If some documents haven't been indexed into the new generation, it's deleted and the alias stays unchanged,
+     * so the current generation isn't replaced by the incomplete one.
+     *
+     * @param indexConfiguration index configuration
+     * @return true if index was successfully rebuilt, false otherwise
+     */
+    boolean rebuildIndex(IndexConfiguration indexConfiguration);
+
+    /**
+     * Indexes all instances of entity into the next generation of the index and switches the alias to it,
+     * see {@link #rebuildIndex(IndexConfiguration)}.
+     * <p>
+     * Settings optimized for mass ingestion are applied to the new generation only:
+     * the current generation keeps serving searches and modifications with its own settings.
+     *
+     * @param indexConfiguration index configuration
+     * @return result of indexing or null if index hasn't been rebuilt
+     */
+    @Nullable
+    IndexResult indexAllIntoNewGeneration(IndexConfiguration indexConfiguration);
+
+    /**
+     * Starts bulk indexing session for the index related to provided {@link IndexConfiguration}.
+     * <p>
+     * Settings optimized for mass ingestion are applied to the index until the session is finished:
+     * refresh is disabled, replicas are not allocated and translog is synchronized asynchronously.
+     * Documents indexed during the session are not visible for search until it's finished.
+     * Session may be started by several participants, settings are restored when the last of them finishes it.
+     * Previous settings are also stored in the metadata of index mapping to be restored after interruption
+     * (see {@link #restoreInterruptedBulkIndexingSessions()}).
+     *
+     * @param indexConfiguration index configuration
+     * @return true if session is active, false if settings can't be applied
+     */
+    boolean startBulkIndexingSession(IndexConfiguration indexConfiguration);
+
+    /**
+     * Finishes bulk indexing session started by {@link #startBulkIndexingSession(IndexConfiguration)}.
+     * If there are no other participants of session, settings of index are restored and index is refreshed.
+     *
+     * @param indexConfiguration index configuration
+     * @return true if settings of index have been restored, false otherwise
+     */
+    boolean finishBulkIndexingSession(IndexConfiguration indexConfiguration);
+
+    /**
+     * Checks if bulk indexing session is active for the index related to provided {@link IndexConfiguration}.
+     *
+     * @param indexConfiguration index configuration
+     * @return true if session is active, false otherwise
+     */
+    boolean isBulkIndexingSessionActive(IndexConfiguration indexConfiguration);
+
+    /**
+     * Renews bulk indexing sessions started by the current application instance, so other instances
+     * don't consider them interrupted (see {@link #restoreInterruptedBulkIndexingSessions()}).
+     * Should be invoked periodically while sessions are active.
+     */
+    void renewBulkIndexingSessions();
+
+    /**
+     * Restores settings of indexes left with bulk indexing settings by sessions
+     * that have not been finished, e.g. due to application crash.
+     * Settings stored on start of the session are restored, default settings are used if there are no such settings.
+     * Sessions of other application instances renewed within
+     * {@link io.jmix.search.SearchProperties#getBulkIndexingSessionLeaseTimeout()} are considered active and skipped.
+     *
+     * @return configurations of indexes with restored settings
+     */
+    Collection<IndexConfiguration> restoreInterruptedBulkIndexingSessions();
+
     /**
      * Checks if index exists.
      *
@@ -17,8 +17,10 @@
 package io.jmix.search.index;
 
 import io.jmix.core.Id;
+import io.jmix.core.metamodel.model.MetaPropertyPath;
 
 import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Provides functionality for direct documents indexing.
@@ -57,6 +59,37 @@ public interface EntityIndexer {
      */
     IndexResult indexCollectionByEntityIds(Collection<Id<?>> entityIds);
 
+    /**
+     * Stores provided entity instances to index asynchronously.
+     * Instances are reloaded and documents are built within the calling thread,
+     * the bulk request is sent without waiting for the response.
+     *
+     * @param entityInstances instances
+     * @return {@link CompletableFuture} that is completed with {@link IndexResult} when response is received
+     */
+    CompletableFuture<IndexResult> indexCollectionAsync(Collection<Object> entityInstances);
+
+    /**
+     * Stores entity instances to index by provided IDs asynchronously.
+     *
+     * @param entityIds IDs of entity instances
+     * @return {@link CompletableFuture} that is completed with {@link IndexResult} when response is received
+     * @see #indexCollectionAsync(Collection)
+     */
+    CompletableFuture<IndexResult> indexCollectionByEntityIdsAsync(Collection<Id<?>> entityIds);
+
+    /**
+     * Updates fields of documents taken from the entity referenced by provided property path
+     * (e.g. instance name of the reference). Only these fields are loaded and sent as partial documents.
+     * Documents are indexed entirely if the mapping doesn't allow to separate such fields
+     * or if the document doesn't exist in index yet.
+     *
+     * @param entityIds             IDs of indexed entity instances
+     * @param referencePropertyPath property path from indexed entity to the referenced one
+     * @return {@link IndexResult}
+     */
+    IndexResult indexReferenceFieldsByEntityIds(Collection<Id<?>> entityIds, MetaPropertyPath referencePropertyPath);
+
     /**
      * Deletes provided entity instance from index.
      *
@@ -88,4 +121,39 @@ public interface EntityIndexer {
      * @return {@link IndexResult}
      */
     IndexResult deleteCollectionByEntityIds(Collection<Id<?>> entityIds);
+
+    /**
+     * Deletes provided entity instances from index asynchronously.
+     *
+     * @param entityInstances instances
+     * @return {@link CompletableFuture} that is completed with {@link IndexResult} when response is received
+     */
+    CompletableFuture<IndexResult> deleteCollectionAsync(Collection<Object> entityInstances);
+
+    /**
+     * Deletes entity instances from index by provided IDs asynchronously.
+     *
+     * @param entityIds IDs of entity instances
+     * @return {@link CompletableFuture} that is completed with {@link IndexResult} when response is received
+     */
+    CompletableFuture<IndexResult> deleteCollectionByEntityIdsAsync(Collection<Id<?>> entityIds);
+
+    /**
+     * Indexes all instances of provided entity directly, bypassing the indexing queue.
+     * Instances are loaded by pages ordered by primary key and sent to Elasticsearch in parallel bulk requests.
+     * Progress is stored in {@link io.jmix.search.index.entity.ReindexSession}, so the interrupted process
+     * can be continued by {@link #resumeIndexAll(String)}.
+     *
+     * @param entityName entity name
+     * @return {@link IndexResult}
+     */
+    IndexResult indexAll(String entityName);
+
+    /**
+     * Continues interrupted direct reindex of provided entity starting after the last indexed instance.
+     *
+     * @param entityName entity name
+     * @return {@link IndexResult}
+     */
+    IndexResult resumeIndexAll(String entityName);
 }
@@ -16,8 +16,10 @@
 
 package io.jmix.search.index;
 
+import io.jmix.core.UnconstrainedDataManager;
 import io.jmix.core.security.Authenticated;
 import io.jmix.search.SearchProperties;
+import io.jmix.search.index.entity.ReindexSession;
 import io.jmix.search.index.mapping.IndexConfigurationManager;
 import io.jmix.search.index.queue.IndexingQueueManager;
 import org.apache.commons.lang3.StringUtils;
@@ -39,6 +41,10 @@ public class EntityIndexingManagementFacade {
     protected IndexConfigurationManager indexConfigurationManager;
     @Autowired
     protected SearchProperties searchProperties;
+    @Autowired
+    protected EntityIndexer entityIndexer;
+    @Autowired
+    protected UnconstrainedDataManager dataManager;
 
     @ManagedAttribute(description = "Defines the way of index synchronization")
     public String getIndexSchemaManagementStrategy() {
@@ -67,6 +73,89 @@ public class EntityIndexingManagementFacade {
         return String.format("%d instances of entity '%s' have been enqueued", amount, entityName);
     }
 
+    @Authenticated
+    @ManagedOperation(description = "Continues interrupted enqueueing of all instances of all indexed entities")
+    public String resumeEnqueueIndexAll() {
+        int amount = indexingQueueManager.resumeEnqueueIndexAll();
+        return String.format("%d instances within all indexed entities have been enqueued", amount);
+    }
+
+    @Authenticated
+    @ManagedOperation(description = "Continues interrupted enqueueing of all instances of provided indexed entity")
+    @ManagedOperationParameters({
+            @ManagedOperationParameter(name = "entityName", description = "Name of entity configured for indexing, e.g. demo_Order")
+    })
+    public String resumeEnqueueIndexAll(String entityName) {
+        InputValidationResult inputValidationResult = validateInputEntity(entityName);
+        if (!inputValidationResult.isValid()) {
+            return inputValidationResult.getMessage();
+        }
+
+        int amount = indexingQueueManager.resumeEnqueueIndexAll(entityName);
+        return String.format("%d instances of entity '%s' have been enqueued", amount, entityName);
+    }
+
+    @Authenticated
+    @ManagedOperation(description = "Indexes all instances of provided entity directly, bypassing the Indexing Queue")
+    @ManagedOperationParameters({
+            @ManagedOperationParameter(name = "entityName", description = "Name of entity configured for indexing, e.g. demo_Order")
+    })
+    public String indexAll(String entityName) {
+        InputValidationResult inputValidationResult = validateInputEntity(entityName);
+        if (!inputValidationResult.isValid()) {
+            return inputValidationResult.getMessage();
+        }
+
+        IndexResult indexResult;
+        if (searchProperties.isBulkIndexingSessionEnabled()) {
+            IndexConfiguration indexConfiguration = indexConfigurationManager.getIndexConfigurationByEntityName(entityName);
+            indexResult = esIndexManager.indexAllIntoNewGeneration(indexConfiguration);
+            if (indexResult == null) {
+                return String.format("Unable to index all instances of entity '%s' into the new generation of index '%s'",
+                        entityName, indexConfiguration.getIndexName());
+            }
+        } else {
+            indexResult = entityIndexer.indexAll(entityName);
+        }
+        return formatIndexAllResult(entityName, indexResult);
+    }
+
+    @Authenticated
+    @ManagedOperation(description = "Continues interrupted direct reindex of provided entity")
+    @ManagedOperationParameters({
+            @ManagedOperationParameter(name = "entityName", description = "Name of entity configured for indexing, e.g. demo_Order")
+    })
+    public String resumeIndexAll(String entityName) {
+        InputValidationResult inputValidationResult = validateInputEntity(entityName);
+        if (!inputValidationResult.isValid()) {
+            return inputValidationResult.getMessage();
+        }
+
+        IndexResult indexResult = entityIndexer.resumeIndexAll(entityName);
+        return formatIndexAllResult(entityName, indexResult);
+    }
+
+    @Authenticated
+    @ManagedOperation(description = "Shows progress of the active or interrupted direct reindex of provided entity")
+    @ManagedOperationParameters({
+            @ManagedOperationParameter(name = "entityName", description = "Name of entity configured for indexing, e.g. demo_Order")
+    })
+    public String getIndexAllProgress(String entityName) {
+        InputValidationResult inputValidationResult = validateInputEntity(entityName);
+        if (!inputValidationResult.isValid()) {
+            return inputValidationResult.getMessage();
+        }
+
+        return dataManager.load(ReindexSession.class)
+                .query("select s from search_ReindexSession s where s.entityName = :entityName")
+                .parameter("entityName", entityName)
+                .optional()
+                .map(session -> String.format("Entity=%s, Indexed=%d/%d, Failed=%d, Last indexed id=%s, Updated=%s",
+                        entityName, session.getIndexedCount(), session.getTotalCount(), session.getFailedCount(),
+                        session.getLastIndexedId(), session.getUpdatedDate()))
+                .orElse(String.format("There is no active or interrupted reindex of entity '%s'", entityName));
+    }
+
     @Authenticated
     @ManagedOperation(description = "Validates schemas of all search indexes defined in application.")
     public String validateIndexes() {
@@ -180,6 +269,27 @@ public class EntityIndexingManagementFacade {
         );
     }
 
+    @Authenticated
+    @ManagedOperation(description = "Builds new index related to provided entity and switches to it without downtime. " +
+            "Current index is available for search until the new one is filled.")
+    @ManagedOperationParameters({
+            @ManagedOperationParameter(name = "entityName", description = "Name of entity configured for indexing, e.g. demo_Order")
+    })
+    public String rebuildIndex(String entityName) {
+        InputValidationResult inputValidationResult = validateInputEntity(entityName);
+        if (!inputValidationResult.isValid()) {
+            return inputValidationResult.getMessage();
+        }
+
+        IndexConfiguration indexConfiguration = indexConfigurationManager.getIndexConfigurationByEntityName(entityName);
+        boolean rebuilt = esIndexManager.rebuildIndex(indexConfiguration);
+        return "Rebuilding result: " + formatSingleStatusString(
+                indexConfiguration.getEntityName(),
+                indexConfiguration.getIndexName(),
+                rebuilt ? "SUCCESS" : "FAILURE"
+        );
+    }
+
     @Authenticated
     @ManagedOperation(description = "Processes all items in Indexing Queue")
     public String processEntireIndexingQueue() {
@@ -194,6 +304,11 @@ public class EntityIndexingManagementFacade {
         return String.format("Processed %d queue items", processed);
     }
 
+    protected String formatIndexAllResult(String entityName, IndexResult indexResult) {
+        return String.format("%d instances of entity '%s' have been processed, %d failed",
+                indexResult.getTotalSize(), entityName, indexResult.getFailuresSize());
+    }
+
     protected String formatSingleStatusString(String entityName, String indexName, String status) {
         return String.format("Entity=%s, Index=%s, Status=%s", entityName, indexName, status);
     }
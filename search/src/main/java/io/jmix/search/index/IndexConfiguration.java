@@ -16,8 +16,10 @@
 
 package io.jmix.search.index;
 
+import io.jmix.search.index.mapping.IndexDocumentPlan;
 import io.jmix.search.index.mapping.IndexMappingConfiguration;
 
+import javax.annotation.Nullable;
 import java.util.Set;
 
 /**
@@ -35,14 +37,26 @@ public class IndexConfiguration {
 
     protected final IndexMappingConfiguration mapping;
 
+    protected final IndexDocumentPlan documentPlan;
+
     //todo settings
 
     public IndexConfiguration(String entityName, Class<?> entityClass, String indexName, IndexMappingConfiguration mapping, Set<Class<?>> affectedEntityClasses) {
+        this(entityName, entityClass, indexName, mapping, affectedEntityClasses, null);
+    }
+
+    public IndexConfiguration(String entityName,
+                              Class<?> entityClass,
+                              String indexName,
+                              IndexMappingConfiguration mapping,
+                              Set<Class<?>> affectedEntityClasses,
+                              @Nullable IndexDocumentPlan documentPlan) {
         this.entityName = entityName;
         this.entityClass = entityClass;
         this.indexName = indexName;
         this.mapping = mapping;
         this.affectedEntityClasses = affectedEntityClasses;
+        this.documentPlan = documentPlan;
     }
 
     /**
@@ -81,6 +95,19 @@ public class IndexConfiguration {
         return mapping;
     }
 
+    /**
+     * Gets compiled plan of building documents of this index.
+     * Plans are compiled for all configurations registered in {@link io.jmix.search.index.mapping.IndexConfigurationManager}.
+     *
+     * @return {@link IndexDocumentPlan}
+     */
+    public IndexDocumentPlan getDocumentPlan() {
+        if (documentPlan == null) {
+            throw new IllegalStateException("Document plan of index '" + indexName + "' is not compiled");
+        }
+        return documentPlan;
+    }
+
     /**
      * Gets java classes of all entities presented in indexed properties. Transitive entities are included too.
      *
@@ -16,9 +16,13 @@
 
 package io.jmix.search.index;
 
+import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.action.bulk.BulkItemResponse;
 import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.rest.RestStatus;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -57,25 +61,57 @@ public class IndexResult {
         return !failures.isEmpty();
     }
 
+    /**
+     * @return failures caused by rejection of the request by overloaded Elasticsearch cluster
+     * (e.g. status 429 'Too Many Requests'). Such requests may succeed if they are sent again later.
+     */
+    public Collection<Failure> getRetryableFailures() {
+        return failures.stream()
+                .filter(Failure::isRetryable)
+                .collect(Collectors.toList());
+    }
+
+    public boolean hasRetryableFailures() {
+        return failures.stream().anyMatch(Failure::isRetryable);
+    }
+
     public static IndexResult create(BulkResponse bulkResponse) {
         List<Failure> failures = Stream.of(bulkResponse.getItems())
                 .filter(BulkItemResponse::isFailed)
-                .map(item -> new Failure(item.getId(), item.getIndex(), item.getFailure().getCause()))
+                .map(item -> new Failure(item.getId(), item.getIndex(), item.getFailure().getCause(), item.getFailure().getStatus()))
                 .collect(Collectors.toList());
 
         return new IndexResult(bulkResponse.getItems().length, failures);
     }
 
+    /**
+     * Combines results of several bulk requests related to the same indexing operation.
+     *
+     * @param indexResults results to combine
+     * @return single {@link IndexResult}
+     */
+    public static IndexResult merge(Collection<IndexResult> indexResults) {
+        int size = 0;
+        List<Failure> failures = new ArrayList<>();
+        for (IndexResult indexResult : indexResults) {
+            size += indexResult.size;
+            failures.addAll(indexResult.failures);
+        }
+        return new IndexResult(size, failures);
+    }
+
     public static class Failure {
 
         private final String id;
         private final String index;
         private final Exception cause;
+        private final RestStatus status;
 
-        private Failure(String id, String index, Exception cause) {
+        private Failure(String id, String index, Exception cause, RestStatus status) {
             this.id = id;
             this.index = index;
             this.cause = cause;
+            this.status = status;
         }
 
         public String getId() {
@@ -89,5 +125,29 @@ public class IndexResult {
         public Exception getCause() {
             return cause;
         }
+
+        public RestStatus getStatus() {
+            return status;
+        }
+
+        /**
+         * @return true if the failed action was rejected by overloaded Elasticsearch cluster and can be retried
+         */
+        public boolean isRetryable() {
+            return isRetryableFailure(status, cause);
+        }
+    }
+
+    /**
+     * Checks whether the failure with provided status and cause was caused by rejection of the request
+     * by overloaded Elasticsearch cluster.
+     *
+     * @param status status of the failed bulk item
+     * @param cause  cause of the failure
+     * @return true if the failed action can be retried
+     */
+    public static boolean isRetryableFailure(RestStatus status, Exception cause) {
+        return status == RestStatus.TOO_MANY_REQUESTS
+                || ExceptionsHelper.unwrapCause(cause) instanceof EsRejectedExecutionException;
     }
 }
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2021 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jmix.search.index.entity;
+
+import io.jmix.core.entity.annotation.JmixGeneratedValue;
+import io.jmix.core.metamodel.annotation.DependsOnProperties;
+import io.jmix.core.metamodel.annotation.InstanceName;
+import io.jmix.core.metamodel.annotation.JmixEntity;
+import org.springframework.data.annotation.CreatedBy;
+import org.springframework.data.annotation.CreatedDate;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Progress of the direct reindex of single entity (see {@link io.jmix.search.index.EntityIndexer#indexAll(String)}).
+ * Stores the last primary key of the instances which have been sent to index in order to resume reindex after interruption.
+ */
+@JmixEntity
+@Table(name = "SEARCH_REINDEX_SESSION", uniqueConstraints = {
+        @UniqueConstraint(name = "IDX_SEARCH_REINDEX_SES_ENTITY", columnNames = "ENTITY_NAME")
+})
+@Entity(name = "search_ReindexSession")
+public class ReindexSession {
+
+    @JmixGeneratedValue
+    @Id
+    @Column(name = "ID", nullable = false)
+    private UUID id;
+
+    @NotNull
+    @Column(name = "ENTITY_NAME", nullable = false)
+    private String entityName;
+
+    @Column(name = "LAST_INDEXED_ID", length = 1000)
+    private String lastIndexedId;
+
+    @Column(name = "TOTAL_COUNT")
+    private Long totalCount;
+
+    @Column(name = "INDEXED_COUNT")
+    private Long indexedCount;
+
+    @Column(name = "FAILED_COUNT")
+    private Long failedCount;
+
+    @Column(name = "UPDATED_DATE")
+    private Date updatedDate;
+
+    @CreatedBy
+    @Column(name = "CREATED_BY")
+    private String createdBy;
+
+    @CreatedDate
+    @Column(name = "CREATED_DATE")
+    private Date createdDate;
+
+    public UUID getId() {
+        return id;
+    }
+
+    public void setId(UUID id) {
+        this.id = id;
+    }
+
+    public String getEntityName() {
+        return entityName;
+    }
+
+    public void setEntityName(String entityName) {
+        this.entityName = entityName;
+    }
+
+    /**
+     * @return serialized primary key of the last instance sent to index or null if nothing has been sent yet
+     */
+    public String getLastIndexedId() {
+        return lastIndexedId;
+    }
+
+    public void setLastIndexedId(String lastIndexedId) {
+        this.lastIndexedId = lastIndexedId;
+    }
+
+    /**
+     * @return amount of entity instances at the start of reindex
+     */
+    public Long getTotalCount() {
+        return totalCount;
+    }
+
+    public void setTotalCount(Long totalCount) {
+        this.totalCount = totalCount;
+    }
+
+    public Long getIndexedCount() {
+        return indexedCount;
+    }
+
+    public void setIndexedCount(Long indexedCount) {
+        this.indexedCount = indexedCount;
+    }
+
+    public Long getFailedCount() {
+        return failedCount;
+    }
+
+    public void setFailedCount(Long failedCount) {
+        this.failedCount = failedCount;
+    }
+
+    public Date getUpdatedDate() {
+        return updatedDate;
+    }
+
+    public void setUpdatedDate(Date updatedDate) {
+        this.updatedDate = updatedDate;
+    }
+
+    public String getCreatedBy() {
+        return createdBy;
+    }
+
+    public void setCreatedBy(String createdBy) {
+        this.createdBy = createdBy;
+    }
+
+    public Date getCreatedDate() {
+        return createdDate;
+    }
+
+    public void setCreatedDate(Date createdDate) {
+        this.createdDate = createdDate;
+    }
+
+    @InstanceName
+    @DependsOnProperties({"entityName", "indexedCount", "totalCount"})
+    public String getInstanceName() {
+        return String.format("Reindex Session[%s : %s/%s]", entityName, indexedCount, totalCount);
+    }
+}
@@ -19,11 +19,19 @@ package io.jmix.search.index.impl;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jmix.core.Id;
+import io.jmix.core.IdSerialization;
 import io.jmix.core.common.util.Preconditions;
 import io.jmix.search.SearchProperties;
 import io.jmix.search.index.*;
 import io.jmix.search.index.mapping.IndexConfigurationManager;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.elasticsearch.action.admin.indices.alias.Alias;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequest;
 import org.elasticsearch.action.admin.indices.delete.DeleteIndexRequest;
+import org.elasticsearch.action.admin.indices.refresh.RefreshRequest;
+import org.elasticsearch.action.admin.indices.settings.put.UpdateSettingsRequest;
+import org.elasticsearch.action.support.IndicesOptions;
 import org.elasticsearch.action.support.master.AcknowledgedResponse;
 import org.elasticsearch.client.RequestOptions;
 import org.elasticsearch.client.RestHighLevelClient;
@@ -31,23 +39,39 @@ import org.elasticsearch.client.indices.CreateIndexRequest;
 import org.elasticsearch.client.indices.CreateIndexResponse;
 import org.elasticsearch.client.indices.GetIndexRequest;
 import org.elasticsearch.client.indices.GetIndexResponse;
+import org.elasticsearch.client.indices.PutMappingRequest;
 import org.elasticsearch.cluster.metadata.MappingMetadata;
+import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.xcontent.XContentType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 @Component("search_ESIndexManager")
 public class ESIndexManagerImpl implements ESIndexManager {
 
     private static final Logger log = LoggerFactory.getLogger(ESIndexManagerImpl.class);
 
+    protected static final String GENERATION_SEPARATOR = "_v";
+    protected static final String REFRESH_INTERVAL_SETTING = "index.refresh_interval";
+    protected static final String NUMBER_OF_REPLICAS_SETTING = "index.number_of_replicas";
+    protected static final String TRANSLOG_DURABILITY_SETTING = "index.translog.durability";
+    protected static final String META_FIELD = "_meta";
+    protected static final String PREVIOUS_SETTINGS_META_KEY = "jmix_bulk_indexing_previous_settings";
+    protected static final String SESSION_OWNER_META_KEY = "jmix_bulk_indexing_session_owner";
+    protected static final String SESSION_RENEWED_META_KEY = "jmix_bulk_indexing_session_renewed";
+    protected static final List<String> BULK_INDEXING_SETTINGS = Arrays.asList(
+            REFRESH_INTERVAL_SETTING, NUMBER_OF_REPLICAS_SETTING, TRANSLOG_DURABILITY_SETTING
+    );
+
     @Autowired
     protected RestHighLevelClient esClient;
     @Autowired
@@ -56,32 +80,64 @@ public class ESIndexManagerImpl implements ESIndexManager {
     protected SearchProperties searchProperties;
     @Autowired
     protected IndexStateRegistry indexStateRegistry;
+    @Autowired
+    protected EntityIndexer entityIndexer;
+    @Autowired
+    protected IndexingLocker locker;
+    @Autowired
+    protected IdSerialization idSerialization;
 
     protected ObjectMapper objectMapper = new ObjectMapper();
 
+    /**
+     * Identifier of the current application instance stored as the owner of bulk indexing sessions.
+     */
+    protected String nodeId = ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID().toString().substring(0, 8);
+
+    protected final Map<String, BulkIndexingSession> bulkIndexingSessions = new ConcurrentHashMap<>();
+
     @Override
     public boolean createIndex(IndexConfiguration indexConfiguration) {
         Preconditions.checkNotNullArgument(indexConfiguration);
 
-        CreateIndexRequest request = new CreateIndexRequest(indexConfiguration.getIndexName());
+        String generationIndexName = getGenerationIndexName(indexConfiguration.getIndexName(), getNextGeneration(indexConfiguration.getIndexName()));
+        boolean created = createIndex(indexConfiguration, generationIndexName, true, Settings.EMPTY);
+        if (created) {
+            indexStateRegistry.markIndexAsAvailable(indexConfiguration.getEntityName());
+        }
+        return created;
+    }
+
+    /**
+     * Creates concrete index with the mapping of provided configuration.
+     *
+     * @param indexConfiguration index configuration
+     * @param indexName          name of the concrete index
+     * @param withAlias          whether to point alias ({@link IndexConfiguration#getIndexName()}) to the created index
+     * @param settings           settings of the created index
+     * @return true if index was successfully created, false otherwise
+     */
+    protected boolean createIndex(IndexConfiguration indexConfiguration, String indexName, boolean withAlias, Settings settings) {
+        CreateIndexRequest request = new CreateIndexRequest(indexName);
         String mappingBody;
         try {
             mappingBody = objectMapper.writeValueAsString(indexConfiguration.getMapping());
         } catch (JsonProcessingException e) {
-            throw new RuntimeException("Unable to create index '" + indexConfiguration.getIndexName() + "': Failed to parse index definition", e);
+            throw new RuntimeException("Unable to create index '" + indexName + "': Failed to parse index definition", e);
         }
         request.mapping(mappingBody, XContentType.JSON);
-        log.info("Create index '{}' with mapping {}", indexConfiguration.getIndexName(), mappingBody);
+        request.settings(settings);
+        if (withAlias) {
+            request.alias(new Alias(indexConfiguration.getIndexName()));
+        }
+        log.info("Create index '{}' with mapping {}", indexName, mappingBody);
         CreateIndexResponse response;
         try {
             response = esClient.indices().create(request, RequestOptions.DEFAULT);
         } catch (IOException e) {
-            throw new RuntimeException("Unable to create index '" + indexConfiguration.getIndexName() + "': Request failed", e);
-        }
-        log.info("Result of index '{}' creation: {}", indexConfiguration.getIndexName(), response.isAcknowledged() ? "Success" : "Failure");
-        if (response.isAcknowledged()) {
-            indexStateRegistry.markIndexAsAvailable(indexConfiguration.getEntityName());
+            throw new RuntimeException("Unable to create index '" + indexName + "': Request failed", e);
         }
+        log.info("Result of index '{}' creation: {}", indexName, response.isAcknowledged() ? "Success" : "Failure");
         return response.isAcknowledged();
     }
 
@@ -90,16 +146,15 @@ public class ESIndexManagerImpl implements ESIndexManager {
         Preconditions.checkNotNullArgument(indexName);
 
         IndexConfiguration indexConfiguration = indexConfigurationManager.getIndexConfigurationByIndexName(indexName);
-        DeleteIndexRequest request = new DeleteIndexRequest(indexName);
-        AcknowledgedResponse response;
-        try {
-            indexStateRegistry.markIndexAsUnavailable(indexConfiguration.getEntityName());
-            response = esClient.indices().delete(request, RequestOptions.DEFAULT);
-        } catch (IOException e) {
-            throw new RuntimeException("Unable to delete index '" + indexName + "': Request failed", e);
+        indexStateRegistry.markIndexAsUnavailable(indexConfiguration.getEntityName());
+        Collection<String> concreteIndexNames = getConcreteIndexNames(indexName);
+        if (concreteIndexNames.isEmpty()) {
+            log.info("Index '{}' doesn't exist", indexName);
+            return false;
         }
-        log.info("Result of index '{}' deletion: {}", indexName, response.isAcknowledged() ? "Success" : "Failure");
-        return response.isAcknowledged();
+        boolean acknowledged = deleteIndexes(concreteIndexNames);
+        log.info("Result of index '{}' deletion: {}", indexName, acknowledged ? "Success" : "Failure");
+        return acknowledged;
     }
 
     @Override
@@ -134,6 +189,500 @@ public class ESIndexManagerImpl implements ESIndexManager {
         return createIndex(indexConfiguration);
     }
 
+    @Override
+    public boolean rebuildIndex(IndexConfiguration indexConfiguration) {
+        return indexAllIntoNewGeneration(indexConfiguration) != null;
+    }
+
+    @Nullable
+    @Override
+    public IndexResult indexAllIntoNewGeneration(IndexConfiguration indexConfiguration) {
+        Preconditions.checkNotNullArgument(indexConfiguration);
+
+        String entityName = indexConfiguration.getEntityName();
+        if (!locker.tryLockEntityForIndexAll(entityName)) {
+            log.info("Unable to rebuild index of entity '{}': reindex of this entity is active", entityName);
+            return null;
+        }
+
+        try {
+            String aliasName = indexConfiguration.getIndexName();
+            if (!isIndexExist(aliasName)) {
+                log.info("Index '{}' doesn't exist. It will be created and filled", aliasName);
+                return createIndex(indexConfiguration) ? entityIndexer.indexAll(entityName) : null;
+            }
+            return rebuildExistingIndex(indexConfiguration);
+        } finally {
+            locker.unlockEntityForIndexAll(entityName);
+        }
+    }
+
+    @Nullable
+    protected IndexResult rebuildExistingIndex(IndexConfiguration indexConfiguration) {
+        String entityName = indexConfiguration.getEntityName();
+        String aliasName = indexConfiguration.getIndexName();
+        Collection<String> currentIndexNames = getConcreteIndexNames(aliasName);
+        String newIndexName = getGenerationIndexName(aliasName, getNextGeneration(aliasName));
+        log.info("Rebuild index '{}': current indexes {}, new index '{}'", aliasName, currentIndexNames, newIndexName);
+
+        if (!createIndex(indexConfiguration, newIndexName, false, createBulkIndexingSettings())) {
+            return null;
+        }
+
+        IndexResult indexResult;
+        Map<String, Boolean> modifiedDocuments;
+        indexStateRegistry.setPendingIndexName(entityName, newIndexName);
+        try {
+            indexResult = entityIndexer.indexAll(entityName);
+            log.info("New index '{}' has been filled: {} documents, {} failures",
+                    newIndexName, indexResult.getTotalSize(), indexResult.getFailuresSize());
+            if (indexResult.hasFailures()) {
+                log.error("Unable to rebuild index '{}': {} documents haven't been indexed into the new index '{}'. " +
+                                "The alias isn't switched, new index will be deleted",
+                        aliasName, indexResult.getFailuresSize(), newIndexName);
+                deleteIndexes(Collections.singletonList(newIndexName));
+                return null;
+            }
+
+            String currentIndexName = currentIndexNames.isEmpty() ? null : currentIndexNames.iterator().next();
+            updateIndexSettings(newIndexName, getOriginalIndexSettings(currentIndexName));
+            refreshIndex(newIndexName);
+            if (!switchAlias(aliasName, currentIndexNames, newIndexName)) {
+                throw new RuntimeException("Alias switching hasn't been acknowledged");
+            }
+            modifiedDocuments = indexStateRegistry.clearPendingIndexName(entityName);
+        } catch (RuntimeException e) {
+            log.error("Unable to rebuild index '{}'. New index '{}' will be deleted", aliasName, newIndexName, e);
+            deleteIndexes(Collections.singletonList(newIndexName));
+            return null;
+        } finally {
+            indexStateRegistry.clearPendingIndexName(entityName);
+        }
+
+        List<String> oldGenerations = getConcreteIndexNames(aliasName + GENERATION_SEPARATOR + "*").stream()
+                .filter(indexName -> !indexName.equals(newIndexName))
+                .collect(Collectors.toList());
+        if (!oldGenerations.isEmpty()) {
+            log.info("Delete old generations of index '{}': {}", aliasName, oldGenerations);
+            deleteIndexes(oldGenerations);
+        }
+        indexStateRegistry.markIndexAsAvailable(entityName);
+        reindexModifiedDocuments(entityName, modifiedDocuments);
+        return indexResult;
+    }
+
+    /**
+     * Reindexes documents modified by regular indexing while the new generation of the index was being filled.
+     * Pages of the rebuild loaded before such modifications could overwrite them in the new generation.
+     * Performed after switching of the alias, so modifications made concurrently are written into the alias only
+     * and can't be overwritten anymore.
+     *
+     * @param entityName        entity name
+     * @param modifiedDocuments ids of modified documents with flag of deletion
+     */
+    protected void reindexModifiedDocuments(String entityName, Map<String, Boolean> modifiedDocuments) {
+        if (modifiedDocuments.isEmpty()) {
+            return;
+        }
+        log.info("Reindex {} documents of entity '{}' modified during rebuild of index", modifiedDocuments.size(), entityName);
+        List<Id<?>> indexedIds = new ArrayList<>();
+        List<Id<?>> deletedIds = new ArrayList<>();
+        modifiedDocuments.forEach((indexId, deleted) -> {
+            Id<?> entityId = idSerialization.stringToId(indexId);
+            if (deleted) {
+                deletedIds.add(entityId);
+            } else {
+                indexedIds.add(entityId);
+            }
+        });
+        try {
+            if (!indexedIds.isEmpty()) {
+                entityIndexer.indexCollectionByEntityIds(indexedIds);
+            }
+            if (!deletedIds.isEmpty()) {
+                entityIndexer.deleteCollectionByEntityIds(deletedIds);
+            }
+        } catch (RuntimeException e) {
+            log.error("Unable to reindex documents of entity '{}' modified during rebuild of index", entityName, e);
+        }
+    }
+
+    @Override
+    public boolean startBulkIndexingSession(IndexConfiguration indexConfiguration) {
+        Preconditions.checkNotNullArgument(indexConfiguration);
+
+        String entityName = indexConfiguration.getEntityName();
+        while (true) {
+            BulkIndexingSession session = bulkIndexingSessions.computeIfAbsent(entityName, name -> new BulkIndexingSession());
+            // requests to Elasticsearch are sent holding the monitor of the session instead of the lock of the map
+            synchronized (session) {
+                if (session.closed) {
+                    continue;
+                }
+                if (session.isActive()) {
+                    session.participants++;
+                    return true;
+                }
+                boolean started = false;
+                try {
+                    started = applyBulkIndexingSettings(indexConfiguration, session);
+                    return started;
+                } finally {
+                    if (!started) {
+                        session.closed = true;
+                        bulkIndexingSessions.remove(entityName, session);
+                    }
+                }
+            }
+        }
+    }
+
+    protected boolean applyBulkIndexingSettings(IndexConfiguration indexConfiguration, BulkIndexingSession session) {
+        String aliasName = indexConfiguration.getIndexName();
+        Map<String, Settings> previousSettings = new HashMap<>();
+        for (String indexName : getConcreteIndexNames(aliasName)) {
+            previousSettings.put(indexName, getOriginalIndexSettings(indexName));
+        }
+        if (previousSettings.isEmpty()) {
+            log.info("Unable to start bulk indexing session: index '{}' doesn't exist", aliasName);
+            return false;
+        }
+        long renewedTime = System.currentTimeMillis();
+        previousSettings.forEach((indexName, settings) -> {
+            storeBulkIndexingSession(indexName, settings, renewedTime);
+            updateIndexSettings(indexName, createBulkIndexingSettings());
+        });
+        session.previousSettings = previousSettings;
+        session.renewedTime = renewedTime;
+        log.info("Bulk indexing session of index '{}' has been started", aliasName);
+        return true;
+    }
+
+    @Override
+    public boolean finishBulkIndexingSession(IndexConfiguration indexConfiguration) {
+        Preconditions.checkNotNullArgument(indexConfiguration);
+
+        String entityName = indexConfiguration.getEntityName();
+        BulkIndexingSession session = bulkIndexingSessions.get(entityName);
+        if (session == null) {
+            return false;
+        }
+        synchronized (session) {
+            if (!session.isActive() || --session.participants > 0) {
+                return false;
+            }
+
+            // session is closed even if some of settings can't be restored, they will be fixed on the next startup
+            session.closed = true;
+            try {
+                session.previousSettings.forEach((indexName, settings) -> {
+                    updateIndexSettings(indexName, settings);
+                    clearStoredBulkIndexingSession(indexName);
+                });
+                refreshIndex(indexConfiguration.getIndexName());
+                log.info("Bulk indexing session of index '{}' has been finished", indexConfiguration.getIndexName());
+                return true;
+            } catch (RuntimeException e) {
+                log.error("Unable to restore settings of index '{}' after bulk indexing session", indexConfiguration.getIndexName(), e);
+                return false;
+            } finally {
+                bulkIndexingSessions.remove(entityName, session);
+            }
+        }
+    }
+
+    @Override
+    public boolean isBulkIndexingSessionActive(IndexConfiguration indexConfiguration) {
+        Preconditions.checkNotNullArgument(indexConfiguration);
+        BulkIndexingSession session = bulkIndexingSessions.get(indexConfiguration.getEntityName());
+        return session != null && session.isActive();
+    }
+
+    @Override
+    public void renewBulkIndexingSessions() {
+        long renewalInterval = searchProperties.getBulkIndexingSessionLeaseTimeout() / 3;
+        bulkIndexingSessions.values().forEach(session -> {
+            synchronized (session) {
+                long renewedTime = System.currentTimeMillis();
+                if (session.isActive() && renewedTime - session.renewedTime >= renewalInterval) {
+                    session.previousSettings.forEach((indexName, settings) ->
+                            storeBulkIndexingSession(indexName, settings, renewedTime));
+                    session.renewedTime = renewedTime;
+                }
+            }
+        });
+    }
+
+    @Override
+    public Collection<IndexConfiguration> restoreInterruptedBulkIndexingSessions() {
+        List<IndexConfiguration> restored = new ArrayList<>();
+        for (IndexConfiguration indexConfiguration : indexConfigurationManager.getAllIndexConfigurations()) {
+            String aliasName = indexConfiguration.getIndexName();
+            if (isBulkIndexingSessionActive(indexConfiguration) || !isIndexExist(aliasName)) {
+                continue;
+            }
+
+            boolean interrupted = false;
+            for (String indexName : getConcreteIndexNames(aliasName)) {
+                StoredBulkIndexingSession storedSession = loadStoredBulkIndexingSession(indexName);
+                if (storedSession != null && isLeasedByAnotherInstance(storedSession)) {
+                    log.info("Index '{}' is used by bulk indexing session of application instance '{}'. Its settings won't be restored",
+                            indexName, storedSession.owner);
+                    continue;
+                }
+                if (isBulkIndexingSettings(getCurrentIndexSettings(indexName))) {
+                    if (storedSession == null) {
+                        log.info("Index '{}' has settings of interrupted bulk indexing session. Default settings will be restored", indexName);
+                        updateIndexSettings(indexName, createDefaultIndexingSettings());
+                    } else {
+                        log.info("Index '{}' has settings of interrupted bulk indexing session. Settings {} will be restored",
+                                indexName, storedSession.previousSettings);
+                        updateIndexSettings(indexName, storedSession.previousSettings);
+                    }
+                    interrupted = true;
+                }
+                if (storedSession != null) {
+                    clearStoredBulkIndexingSession(indexName);
+                }
+            }
+            if (interrupted) {
+                refreshIndex(aliasName);
+                restored.add(indexConfiguration);
+            }
+        }
+        return restored;
+    }
+
+    /**
+     * Checks whether the session has been started by another application instance that keeps renewing it,
+     * i.e. the session is still active and settings of its index must not be restored.
+     */
+    protected boolean isLeasedByAnotherInstance(StoredBulkIndexingSession storedSession) {
+        return storedSession.owner != null
+                && !storedSession.owner.equals(nodeId)
+                && System.currentTimeMillis() - storedSession.renewedTime < searchProperties.getBulkIndexingSessionLeaseTimeout();
+    }
+
+    /**
+     * Creates settings optimized for mass ingestion: refresh is disabled, replicas are not allocated
+     * and translog is synchronized asynchronously.
+     */
+    protected Settings createBulkIndexingSettings() {
+        return Settings.builder()
+                .put(REFRESH_INTERVAL_SETTING, "-1")
+                .put(NUMBER_OF_REPLICAS_SETTING, 0)
+                .put(TRANSLOG_DURABILITY_SETTING, "async")
+                .build();
+    }
+
+    /**
+     * Creates settings that reset all settings changed for bulk indexing to defaults.
+     */
+    protected Settings createDefaultIndexingSettings() {
+        Settings.Builder settingsBuilder = Settings.builder();
+        BULK_INDEXING_SETTINGS.forEach(settingsBuilder::putNull);
+        return settingsBuilder.build();
+    }
+
+    protected boolean isBulkIndexingSettings(@Nullable Settings settings) {
+        return settings != null
+                && "-1".equals(settings.get(REFRESH_INTERVAL_SETTING))
+                && "async".equals(settings.get(TRANSLOG_DURABILITY_SETTING));
+    }
+
+    /**
+     * Loads current values of settings changed for bulk indexing.
+     * Settings that are not defined explicitly are represented as nulls to be reset to defaults.
+     *
+     * @param indexName concrete index name, null if there is no index
+     * @return current settings
+     */
+    protected Settings getCurrentIndexSettings(@Nullable String indexName) {
+        if (indexName == null) {
+            return createDefaultIndexingSettings();
+        }
+
+        Settings.Builder settingsBuilder = Settings.builder();
+        GetIndexResponse index = getIndex(indexName);
+        for (String setting : BULK_INDEXING_SETTINGS) {
+            String value = index.getSetting(indexName, setting);
+            if (value == null) {
+                settingsBuilder.putNull(setting);
+            } else {
+                settingsBuilder.put(setting, value);
+            }
+        }
+        return settingsBuilder.build();
+    }
+
+    /**
+     * Gets settings changed for bulk indexing that index has outside of bulk indexing sessions:
+     * settings stored by the active or interrupted session if any, current settings otherwise.
+     *
+     * @param indexName concrete index name, null if there is no index
+     * @return settings
+     */
+    protected Settings getOriginalIndexSettings(@Nullable String indexName) {
+        if (indexName == null) {
+            return createDefaultIndexingSettings();
+        }
+        StoredBulkIndexingSession storedSession = loadStoredBulkIndexingSession(indexName);
+        return storedSession == null ? getCurrentIndexSettings(indexName) : storedSession.previousSettings;
+    }
+
+    /**
+     * Stores settings changed for bulk indexing into the metadata of index mapping ({@code _meta}),
+     * so they can be restored if the session is interrupted by application crash.
+     * Only explicitly defined settings are stored. The current application instance is stored as the owner
+     * of the session together with the time of the last renewal.
+     *
+     * @param indexName   concrete index name
+     * @param settings    settings to store
+     * @param renewedTime time of the last renewal of the session
+     */
+    protected void storeBulkIndexingSession(String indexName, Settings settings, long renewedTime) {
+        Map<String, String> definedSettings = new HashMap<>();
+        for (String setting : BULK_INDEXING_SETTINGS) {
+            String value = settings.get(setting);
+            if (value != null) {
+                definedSettings.put(setting, value);
+            }
+        }
+        Map<String, Object> meta = new HashMap<>();
+        meta.put(PREVIOUS_SETTINGS_META_KEY, definedSettings);
+        meta.put(SESSION_OWNER_META_KEY, nodeId);
+        meta.put(SESSION_RENEWED_META_KEY, renewedTime);
+        updateMappingMeta(indexName, meta);
+    }
+
+    /**
+     * Loads session stored by {@link #storeBulkIndexingSession(String, Settings, long)}.
+     * Settings that are not stored are represented as nulls to be reset to defaults.
+     *
+     * @param indexName concrete index name
+     * @return stored session or null if there is no such session
+     */
+    @Nullable
+    protected StoredBulkIndexingSession loadStoredBulkIndexingSession(String indexName) {
+        MappingMetadata mappingMetadata = getIndex(indexName).getMappings().get(indexName);
+        Object meta = mappingMetadata == null ? null : mappingMetadata.getSourceAsMap().get(META_FIELD);
+        if (!(meta instanceof Map)) {
+            return null;
+        }
+        Object storedSettings = ((Map<?, ?>) meta).get(PREVIOUS_SETTINGS_META_KEY);
+        if (!(storedSettings instanceof Map)) {
+            return null;
+        }
+
+        Settings.Builder settingsBuilder = Settings.builder();
+        for (String setting : BULK_INDEXING_SETTINGS) {
+            Object value = ((Map<?, ?>) storedSettings).get(setting);
+            if (value == null) {
+                settingsBuilder.putNull(setting);
+            } else {
+                settingsBuilder.put(setting, value.toString());
+            }
+        }
+        Object owner = ((Map<?, ?>) meta).get(SESSION_OWNER_META_KEY);
+        Object renewedTime = ((Map<?, ?>) meta).get(SESSION_RENEWED_META_KEY);
+        return new StoredBulkIndexingSession(settingsBuilder.build(),
+                owner == null ? null : owner.toString(),
+                renewedTime instanceof Number ? ((Number) renewedTime).longValue() : 0);
+    }
+
+    protected void clearStoredBulkIndexingSession(String indexName) {
+        updateMappingMeta(indexName, Collections.emptyMap());
+    }
+
+    protected void updateMappingMeta(String indexName, Map<String, ?> meta) {
+        PutMappingRequest request = new PutMappingRequest(indexName).source(Collections.singletonMap(META_FIELD, meta));
+        try {
+            esClient.indices().putMapping(request, RequestOptions.DEFAULT);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to update mapping metadata of index '" + indexName + "': Request failed", e);
+        }
+    }
+
+    protected void updateIndexSettings(String indexName, Settings settings) {
+        UpdateSettingsRequest request = new UpdateSettingsRequest(indexName).settings(settings);
+        try {
+            esClient.indices().putSettings(request, RequestOptions.DEFAULT);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to update settings of index '" + indexName + "': Request failed", e);
+        }
+    }
+
+    protected void refreshIndex(String indexName) {
+        try {
+            esClient.indices().refresh(new RefreshRequest(indexName), RequestOptions.DEFAULT);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to refresh index '" + indexName + "': Request failed", e);
+        }
+    }
+
+    /**
+     * Atomically points alias to the new index. Concrete index with the same name as alias
+     * (created before introduction of index generations) is deleted within the same request.
+     */
+    protected boolean switchAlias(String aliasName, Collection<String> currentIndexNames, String newIndexName) {
+        IndicesAliasesRequest request = new IndicesAliasesRequest();
+        request.addAliasAction(IndicesAliasesRequest.AliasActions.add().index(newIndexName).alias(aliasName));
+        for (String currentIndexName : currentIndexNames) {
+            if (currentIndexName.equals(aliasName)) {
+                request.addAliasAction(IndicesAliasesRequest.AliasActions.removeIndex().index(currentIndexName));
+            } else {
+                request.addAliasAction(IndicesAliasesRequest.AliasActions.remove().index(currentIndexName).alias(aliasName));
+            }
+        }
+        try {
+            AcknowledgedResponse response = esClient.indices().updateAliases(request, RequestOptions.DEFAULT);
+            log.info("Result of switching alias '{}' to index '{}': {}", aliasName, newIndexName, response.isAcknowledged() ? "Success" : "Failure");
+            return response.isAcknowledged();
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to switch alias '" + aliasName + "': Request failed", e);
+        }
+    }
+
+    /**
+     * Resolves names of concrete indexes by index name, alias or wildcard expression.
+     *
+     * @param indexNameOrPattern index name, alias or wildcard expression
+     * @return names of existing concrete indexes
+     */
+    protected List<String> getConcreteIndexNames(String indexNameOrPattern) {
+        GetIndexRequest request = new GetIndexRequest(indexNameOrPattern).indicesOptions(IndicesOptions.lenientExpandOpen());
+        try {
+            return Arrays.asList(esClient.indices().get(request, RequestOptions.DEFAULT).getIndices());
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to get indexes '" + indexNameOrPattern + "': Request failed", e);
+        }
+    }
+
+    protected int getNextGeneration(String aliasName) {
+        int maxGeneration = 0;
+        String prefix = aliasName + GENERATION_SEPARATOR;
+        for (String indexName : getConcreteIndexNames(prefix + "*")) {
+            String suffix = indexName.substring(prefix.length());
+            if (NumberUtils.isDigits(suffix)) {
+                maxGeneration = Math.max(maxGeneration, Integer.parseInt(suffix));
+            }
+        }
+        return maxGeneration + 1;
+    }
+
+    protected String getGenerationIndexName(String aliasName, int generation) {
+        return aliasName + GENERATION_SEPARATOR + generation;
+    }
+
+    protected boolean deleteIndexes(Collection<String> indexNames) {
+        DeleteIndexRequest request = new DeleteIndexRequest(indexNames.toArray(new String[0]));
+        try {
+            return esClient.indices().delete(request, RequestOptions.DEFAULT).isAcknowledged();
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to delete indexes " + indexNames + ": Request failed", e);
+        }
+    }
+
     @Override
     public boolean isIndexExist(String indexName) {
         Preconditions.checkNotNullArgument(indexName);
@@ -287,8 +836,13 @@ public class ESIndexManagerImpl implements ESIndexManager {
 
         GetIndexResponse index = getIndex(indexConfiguration.getIndexName());
         Map<String, MappingMetadata> mappings = index.getMappings();
-        MappingMetadata mappingMetadata = mappings.get(indexConfiguration.getIndexName());
-        Map<String, Object> currentMapping = mappingMetadata.getSourceAsMap();
+        // index name of configuration is an alias of the concrete index in general
+        MappingMetadata mappingMetadata = mappings.containsKey(indexConfiguration.getIndexName())
+                ? mappings.get(indexConfiguration.getIndexName())
+                : mappings.values().iterator().next();
+        Map<String, Object> currentMapping = new HashMap<>(mappingMetadata.getSourceAsMap());
+        // metadata contains service information, e.g. settings stored by bulk indexing session
+        currentMapping.remove(META_FIELD);
         log.debug("Current mapping of index '{}': {}", indexConfiguration.getIndexName(), currentMapping);
 
         Map<String, Object> actualMapping = objectMapper.convertValue(indexConfiguration.getMapping(), new TypeReference<Map<String, Object>>() {
@@ -297,4 +851,40 @@ public class ESIndexManagerImpl implements ESIndexManager {
 
         return actualMapping.equals(currentMapping);
     }
+
+    protected static class BulkIndexingSession {
+        protected volatile Map<String, Settings> previousSettings;
+        protected volatile long renewedTime;
+        protected volatile boolean closed;
+        protected int participants = 1;
+
+        protected boolean isActive() {
+            return previousSettings != null && !closed;
+        }
+    }
+
+    protected static class StoredBulkIndexingSession {
+        protected final Settings previousSettings;
+        protected final String owner;
+        protected final long renewedTime;
+
+        public StoredBulkIndexingSession(Settings previousSettings, @Nullable String owner, long renewedTime) {
+            this.previousSettings = previousSettings;
+            this.owner = owner;
+            this.renewedTime = renewedTime;
+        }
+
+        public Settings getPreviousSettings() {
+            return previousSettings;
+        }
+
+        @Nullable
+        public String getOwner() {
+            return owner;
+        }
+
+        public long getRenewedTime() {
+            return renewedTime;
+        }
+    }
 }
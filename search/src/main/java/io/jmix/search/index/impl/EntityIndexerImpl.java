@@ -16,34 +16,56 @@
 
 package io.jmix.search.index.impl;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.*;
 import io.jmix.core.*;
+import io.jmix.core.common.util.Preconditions;
 import io.jmix.core.entity.EntityValues;
 import io.jmix.core.metamodel.model.MetaClass;
+import io.jmix.core.metamodel.model.MetaPropertyPath;
+import io.jmix.search.SearchProperties;
 import io.jmix.search.index.EntityIndexer;
 import io.jmix.search.index.IndexConfiguration;
 import io.jmix.search.index.IndexResult;
-import io.jmix.search.index.mapping.DisplayedNameDescriptor;
+import io.jmix.search.index.entity.ReindexSession;
 import io.jmix.search.index.mapping.IndexConfigurationManager;
-import io.jmix.search.index.mapping.IndexMappingConfiguration;
-import io.jmix.search.index.mapping.MappingFieldDescriptor;
+import io.jmix.search.index.mapping.IndexDocumentPlan.PartialDocumentPlan;
+import io.jmix.search.index.queue.IndexingQueueManager;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BackoffPolicy;
+import org.elasticsearch.action.bulk.BulkItemResponse;
 import org.elasticsearch.action.bulk.BulkRequest;
 import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.delete.DeleteRequest;
 import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.update.UpdateRequest;
 import org.elasticsearch.client.RequestOptions;
 import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.rest.RestStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.Nullable;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Component("search_EntityIndexer")
@@ -65,8 +87,37 @@ public class EntityIndexerImpl implements EntityIndexer {
     protected IdSerialization idSerialization;
     @Autowired
     protected IndexStateRegistry indexStateRegistry;
+    @Autowired
+    protected SearchProperties searchProperties;
+    @Autowired
+    protected IndexDocumentWriter indexDocumentWriter;
+    @Autowired
+    protected MetadataTools metadataTools;
+    @Autowired
+    protected IndexingLocker locker;
+    @Autowired
+    protected ObjectProvider<IndexingQueueManager> indexingQueueManagerProvider;
+
+    protected Semaphore inFlightBulkRequestsSemaphore;
+    protected ScheduledExecutorService bulkRequestRetryScheduler;
 
-    protected ObjectMapper objectMapper = new ObjectMapper();
+    protected final Map<String, Optional<PartialDocumentPlan>> partialDocumentPlans = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    protected void postConstruct() {
+        inFlightBulkRequestsSemaphore = new Semaphore(searchProperties.getMaxInFlightBulkRequests());
+        bulkRequestRetryScheduler = Executors.newSingleThreadScheduledExecutor(
+                new BasicThreadFactory.Builder()
+                        .namingPattern("search-bulk-request-retry-%d")
+                        .daemon(true)
+                        .build()
+        );
+    }
+
+    @PreDestroy
+    protected void preDestroy() {
+        bulkRequestRetryScheduler.shutdownNow();
+    }
 
     @Override
     public IndexResult index(Object entityInstance) {
@@ -90,6 +141,64 @@ public class EntityIndexerImpl implements EntityIndexer {
         return indexGroupedInstances(groupedInstances);
     }
 
+    @Override
+    public CompletableFuture<IndexResult> indexCollectionAsync(Collection<Object> entityInstances) {
+        Map<IndexConfiguration, Collection<Object>> groupedInstances = prepareInstancesForIndexing(entityInstances);
+        return indexGroupedInstancesAsync(groupedInstances);
+    }
+
+    @Override
+    public CompletableFuture<IndexResult> indexCollectionByEntityIdsAsync(Collection<Id<?>> entityIds) {
+        Map<IndexConfiguration, Collection<Object>> groupedInstances = prepareInstancesForIndexingByIds(entityIds);
+        return indexGroupedInstancesAsync(groupedInstances);
+    }
+
+    @Override
+    public IndexResult indexReferenceFieldsByEntityIds(Collection<Id<?>> entityIds, MetaPropertyPath referencePropertyPath) {
+        Preconditions.checkNotNullArgument(entityIds);
+        Preconditions.checkNotNullArgument(referencePropertyPath);
+
+        MetaClass metaClass = referencePropertyPath.getMetaClass();
+        Optional<IndexConfiguration> indexConfigurationOpt = indexConfigurationManager.getIndexConfigurationByEntityNameOpt(metaClass.getName());
+        if (entityIds.isEmpty() || !indexConfigurationOpt.isPresent()
+                || !indexStateRegistry.isIndexAvailable(metaClass.getName())) {
+            return IndexResult.merge(Collections.emptyList());
+        }
+        IndexConfiguration indexConfiguration = indexConfigurationOpt.get();
+        PartialDocumentPlan partialPlan = getPartialDocumentPlan(indexConfiguration, referencePropertyPath);
+        if (partialPlan == null) {
+            log.debug("Documents of entity '{}' can't be updated partially by reference '{}'. Index them entirely",
+                    metaClass.getName(), referencePropertyPath);
+            return indexCollectionByEntityIds(entityIds);
+        }
+        if (partialPlan.isEmpty()) {
+            return IndexResult.merge(Collections.emptyList());
+        }
+
+        List<Object> instances = dataManager.load(metaClass.getJavaClass())
+                .ids(entityIds.stream().map(Id::getValue).collect(Collectors.toList()))
+                .fetchPlan(createPartialFetchPlan(indexConfiguration, partialPlan))
+                .list();
+        if (instances.isEmpty()) {
+            return IndexResult.merge(Collections.emptyList());
+        }
+        List<BulkRequest> requests = createPartialUpdateBulkRequests(indexConfiguration, partialPlan, instances);
+
+        List<IndexResult> indexResults = new ArrayList<>(requests.size() + 1);
+        Set<String> missingDocumentIds = new LinkedHashSet<>();
+        for (BulkRequest request : requests) {
+            indexResults.add(IndexResult.create(separateMissingDocuments(executeBulkRequestWithRetries(request), missingDocumentIds)));
+        }
+        if (!missingDocumentIds.isEmpty()) {
+            log.debug("{} documents of entity '{}' don't exist in index. Index them entirely", missingDocumentIds.size(), metaClass.getName());
+            List<Id<?>> missingIds = missingDocumentIds.stream()
+                    .<Id<?>>map(idSerialization::stringToId)
+                    .collect(Collectors.toList());
+            indexResults.add(indexCollectionByEntityIds(missingIds));
+        }
+        return IndexResult.merge(indexResults);
+    }
+
     @Override
     public IndexResult delete(Object entityInstance) {
         return deleteCollection(Collections.singletonList(entityInstance));
@@ -112,7 +221,243 @@ public class EntityIndexerImpl implements EntityIndexer {
         return deleteByGroupedIndexIds(groupedIndexIds);
     }
 
+    @Override
+    public CompletableFuture<IndexResult> deleteCollectionAsync(Collection<Object> entityInstances) {
+        Map<IndexConfiguration, Collection<String>> groupedIndexIds = prepareIndexIdsByEntityInstances(entityInstances);
+        return deleteByGroupedIndexIdsAsync(groupedIndexIds);
+    }
+
+    @Override
+    public IndexResult indexAll(String entityName) {
+        Preconditions.checkNotEmptyString(entityName);
+        return indexAll(entityName, searchProperties.getReindexEntityBatchSize(), false);
+    }
+
+    @Override
+    public IndexResult resumeIndexAll(String entityName) {
+        Preconditions.checkNotEmptyString(entityName);
+        return indexAll(entityName, searchProperties.getReindexEntityBatchSize(), true);
+    }
+
+    @Override
+    public CompletableFuture<IndexResult> deleteCollectionByEntityIdsAsync(Collection<Id<?>> entityIds) {
+        Map<IndexConfiguration, Collection<String>> groupedIndexIds = prepareIndexIdsByEntityIds(entityIds);
+        return deleteByGroupedIndexIdsAsync(groupedIndexIds);
+    }
+
+    protected IndexResult indexAll(String entityName, int batchSize, boolean resume) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Size of reindex batch must be positive");
+        }
+
+        IndexConfiguration indexConfiguration = indexConfigurationManager.getIndexConfigurationByEntityName(entityName);
+        MetaClass metaClass = metadata.getClass(entityName);
+        if (metadataTools.hasCompositePrimaryKey(metaClass)) {
+            throw new IllegalArgumentException(String.format("Unable to reindex entity '%s' directly - " +
+                    "entity has composite primary key. Enqueue all instances instead", entityName));
+        }
+        String primaryKeyName = metadataTools.getPrimaryKeyName(metaClass);
+        if (primaryKeyName == null) {
+            throw new IllegalArgumentException(String.format("Unable to reindex entity '%s' - entity doesn't have primary key", entityName));
+        }
+
+        if (!locker.tryLockEntityForIndexAll(entityName)) {
+            log.info("Unable to reindex entity '{}': reindex of this entity is active", entityName);
+            return IndexResult.merge(Collections.emptyList());
+        }
+
+        try {
+            ReindexSession session = resume ? loadReindexSession(entityName) : startReindexSession(metaClass);
+            if (session == null) {
+                log.info("There is no interrupted reindex of entity '{}'", entityName);
+                return IndexResult.merge(Collections.emptyList());
+            }
+            return indexAllByPages(indexConfiguration, metaClass, primaryKeyName, session, batchSize);
+        } finally {
+            locker.unlockEntityForIndexAll(entityName);
+        }
+    }
+
+    /**
+     * Loads entity instances with the fetch plan of the index by pages ordered by primary key
+     * ({@code where pk > :lastId order by pk}) and sends every page to Elasticsearch asynchronously.
+     * Loading of the next page overlaps with processing of the previous ones; the amount of concurrent
+     * bulk requests is limited by {@link SearchProperties#getMaxInFlightBulkRequests()}.
+     * <p>
+     * Pages are completed in the loading order, so the session always points to the key
+     * before which all instances have been processed.
+     */
+    protected IndexResult indexAllByPages(IndexConfiguration indexConfiguration,
+                                          MetaClass metaClass,
+                                          String primaryKeyName,
+                                          ReindexSession session,
+                                          int batchSize) {
+        String entityName = metaClass.getName();
+        Class<Object> entityClass = metaClass.getJavaClass();
+        FetchPlan fetchPlan = createFetchPlan(indexConfiguration);
+        Object lastRawId = session.getLastIndexedId() == null
+                ? null
+                : idSerialization.stringToId(session.getLastIndexedId()).getValue();
+        if (lastRawId != null) {
+            log.info("Resume reindex of entity '{}' after instance with id '{}'", entityName, lastRawId);
+        }
+
+        Deque<ReindexPage> pendingPages = new ArrayDeque<>();
+        List<IndexResult> pageResults = new ArrayList<>();
+        try {
+            List<Object> instances;
+            do {
+                instances = loadReindexPage(metaClass, primaryKeyName, lastRawId, fetchPlan, batchSize);
+                if (instances.isEmpty()) {
+                    break;
+                }
+                lastRawId = EntityValues.getId(instances.get(instances.size() - 1));
+
+                List<BulkRequest> requests = createIndexBulkRequests(
+                        Collections.singletonMap(indexConfiguration, instances),
+                        this::getIndexAllTargetIndexNames);
+                String lastIndexedId = idSerialization.idToString(Id.of(lastRawId, entityClass));
+                pendingPages.add(new ReindexPage(lastIndexedId, executeBulkRequestsAsync(requests)));
+
+                session = completeReindexPages(session, pendingPages, pageResults, false);
+            } while (instances.size() == batchSize);
+            session = completeReindexPages(session, pendingPages, pageResults, true);
+        } catch (CompletionException e) {
+            throw new RuntimeException(String.format("Reindex of entity '%s' has been interrupted. " +
+                    "It can be resumed after the instance with id '%s'", entityName, session.getLastIndexedId()), e.getCause());
+        }
+
+        log.info("Reindex of entity '{}' has been finished: {} instances have been indexed, {} failed",
+                entityName, session.getIndexedCount(), session.getFailedCount());
+        dataManager.remove(session);
+        return IndexResult.merge(pageResults);
+    }
+
+    protected List<Object> loadReindexPage(MetaClass metaClass,
+                                           String primaryKeyName,
+                                           @Nullable Object lastRawId,
+                                           FetchPlan fetchPlan,
+                                           int batchSize) {
+        String entityName = metaClass.getName();
+        FluentLoader.ByQuery<Object> loader;
+        if (lastRawId == null) {
+            loader = dataManager.load(metaClass.getJavaClass())
+                    .query(String.format("select e from %s e order by e.%s", entityName, primaryKeyName));
+        } else {
+            loader = dataManager.load(metaClass.getJavaClass())
+                    .query(String.format("select e from %s e where e.%s > :lastId order by e.%s", entityName, primaryKeyName, primaryKeyName))
+                    .parameter("lastId", lastRawId);
+        }
+        return loader.fetchPlan(fetchPlan)
+                .maxResults(batchSize)
+                .list();
+    }
+
+    /**
+     * Waits for completion of pending pages in the loading order and stores progress to the session.
+     * Instances failed to be indexed are enqueued to be indexed again by the indexing queue,
+     * so they aren't lost after the session moves past them.
+     *
+     * @param session      current session
+     * @param pendingPages pages sent to Elasticsearch
+     * @param pageResults  collection of results of completed pages
+     * @param waitAll      true to wait for all pending pages, false to process already completed ones only
+     * @return updated session
+     */
+    protected ReindexSession completeReindexPages(ReindexSession session,
+                                                  Deque<ReindexPage> pendingPages,
+                                                  List<IndexResult> pageResults,
+                                                  boolean waitAll) {
+        long indexed = 0;
+        long failed = 0;
+        String lastIndexedId = null;
+        while (!pendingPages.isEmpty() && (waitAll || pendingPages.peek().result.isDone())) {
+            ReindexPage page = pendingPages.poll();
+            IndexResult pageResult = page.result.join();
+            pageResults.add(pageResult);
+            enqueueFailedInstances(session.getEntityName(), pageResult);
+            indexed += pageResult.getTotalSize() - pageResult.getFailuresSize();
+            failed += pageResult.getFailuresSize();
+            lastIndexedId = page.lastIndexedId;
+        }
+        if (lastIndexedId == null) {
+            return session;
+        }
+
+        session.setLastIndexedId(lastIndexedId);
+        session.setIndexedCount(session.getIndexedCount() + indexed);
+        session.setFailedCount(session.getFailedCount() + failed);
+        session.setUpdatedDate(new Date());
+        session = dataManager.save(session);
+        log.debug("Reindex progress of entity '{}': {}/{} instances indexed, {} failed",
+                session.getEntityName(), session.getIndexedCount(), session.getTotalCount(), session.getFailedCount());
+        return session;
+    }
+
+    protected void enqueueFailedInstances(String entityName, IndexResult pageResult) {
+        if (!pageResult.hasFailures()) {
+            return;
+        }
+        List<Id<?>> failedIds = pageResult.getFailedIndexIds().stream()
+                .distinct()
+                .<Id<?>>map(idSerialization::stringToId)
+                .collect(Collectors.toList());
+        log.info("{} instances of entity '{}' haven't been indexed during reindex. Enqueue them",
+                failedIds.size(), entityName);
+        indexingQueueManagerProvider.getObject().enqueueIndexCollectionByEntityIds(failedIds);
+    }
+
+    /**
+     * Starts new reindex session of provided entity. Previous session of the entity is discarded.
+     *
+     * @param metaClass entity
+     * @return created session
+     */
+    protected ReindexSession startReindexSession(MetaClass metaClass) {
+        ReindexSession previousSession = loadReindexSession(metaClass.getName());
+        if (previousSession != null) {
+            dataManager.remove(previousSession);
+        }
+
+        LoadContext<Object> countContext = new LoadContext<>(metaClass)
+                .setQuery(new LoadContext.Query(String.format("select e from %s e", metaClass.getName())));
+
+        ReindexSession session = metadata.create(ReindexSession.class);
+        session.setEntityName(metaClass.getName());
+        session.setTotalCount(dataManager.getCount(countContext));
+        session.setIndexedCount(0L);
+        session.setFailedCount(0L);
+        session.setUpdatedDate(new Date());
+        return dataManager.save(session);
+    }
+
+    @Nullable
+    protected ReindexSession loadReindexSession(String entityName) {
+        return dataManager.load(ReindexSession.class)
+                .query("select s from search_ReindexSession s where s.entityName = :entityName")
+                .parameter("entityName", entityName)
+                .optional()
+                .orElse(null);
+    }
+
     protected IndexResult indexGroupedInstances(Map<IndexConfiguration, Collection<Object>> groupedInstancesForIndexing) {
+        List<BulkRequest> requests = createIndexBulkRequests(groupedInstancesForIndexing);
+        return executeBulkRequests(requests);
+    }
+
+    protected CompletableFuture<IndexResult> indexGroupedInstancesAsync(Map<IndexConfiguration, Collection<Object>> groupedInstancesForIndexing) {
+        List<BulkRequest> requests = createIndexBulkRequests(groupedInstancesForIndexing);
+        return executeBulkRequestsAsync(requests);
+    }
+
+    protected List<BulkRequest> createIndexBulkRequests(Map<IndexConfiguration, Collection<Object>> groupedInstancesForIndexing) {
+        groupedInstancesForIndexing.forEach((indexConfiguration, instances) ->
+                registerPendingIndexModifications(indexConfiguration, instances, false));
+        return createIndexBulkRequests(groupedInstancesForIndexing, this::getWriteIndexNames);
+    }
+
+    protected List<BulkRequest> createIndexBulkRequests(Map<IndexConfiguration, Collection<Object>> groupedInstancesForIndexing,
+                                                        Function<IndexConfiguration, List<String>> targetIndexNamesProvider) {
         if (log.isDebugEnabled()) {
             Integer amountOfInstances = groupedInstancesForIndexing.values().stream()
                     .map(Collection::size)
@@ -121,32 +466,340 @@ public class EntityIndexerImpl implements EntityIndexer {
             log.debug("Prepared {} instances within {} entities", amountOfInstances, groupedInstancesForIndexing.keySet().size());
         }
 
+        List<BulkRequest> requests = new ArrayList<>();
         BulkRequest request = new BulkRequest();
+        requests.add(request);
         for (Map.Entry<IndexConfiguration, Collection<Object>> entry : groupedInstancesForIndexing.entrySet()) {
             IndexConfiguration indexConfiguration = entry.getKey();
             if (indexStateRegistry.isIndexAvailable(indexConfiguration.getEntityName())) {
+                List<String> targetIndexNames = targetIndexNamesProvider.apply(indexConfiguration);
                 for (Object instance : entry.getValue()) {
-                    addIndexActionToBulkRequest(request, indexConfiguration, instance);
+                    request = startNextBulkRequestIfLimitReached(requests, request);
+                    addIndexActionToBulkRequest(request, indexConfiguration, instance, targetIndexNames);
                 }
             }
         }
+        return requests;
+    }
+
+    /**
+     * Gets names of indexes that receive modifications of documents related to provided configuration:
+     * the index (alias) of configuration itself and the new generation of the index if it's being rebuilt
+     * (see {@link io.jmix.search.index.ESIndexManager#rebuildIndex(IndexConfiguration)}).
+     *
+     * @param indexConfiguration index configuration
+     * @return index names
+     */
+    protected List<String> getWriteIndexNames(IndexConfiguration indexConfiguration) {
+        String pendingIndexName = indexStateRegistry.getPendingIndexName(indexConfiguration.getEntityName());
+        if (pendingIndexName == null) {
+            return Collections.singletonList(indexConfiguration.getIndexName());
+        }
+        return Arrays.asList(indexConfiguration.getIndexName(), pendingIndexName);
+    }
+
+    /**
+     * Registers modification of documents if the index of provided configuration is being rebuilt.
+     * Page of the rebuild loaded before the modification can overwrite the document in the new generation,
+     * so such documents are reindexed after the rebuild.
+     * Modifications are registered before sending of requests: requests sent after the end of rebuild can't be
+     * overwritten by its pages.
+     *
+     * @param indexConfiguration index configuration
+     * @param instances          modified entity instances
+     * @param deleted            whether documents are deleted
+     */
+    protected void registerPendingIndexModifications(IndexConfiguration indexConfiguration,
+                                                     Collection<Object> instances,
+                                                     boolean deleted) {
+        String entityName = indexConfiguration.getEntityName();
+        if (indexStateRegistry.getPendingIndexName(entityName) != null) {
+            List<String> indexIds = instances.stream()
+                    .map(instance -> idSerialization.idToString(Id.of(instance)))
+                    .collect(Collectors.toList());
+            indexStateRegistry.registerPendingIndexModifications(entityName, indexIds, deleted);
+        }
+    }
+
+    /**
+     * Gets names of indexes filled by {@link #indexAll(String)}. If the index is being rebuilt
+     * only the new generation is filled, otherwise - the index of configuration.
+     *
+     * @param indexConfiguration index configuration
+     * @return index names
+     */
+    protected List<String> getIndexAllTargetIndexNames(IndexConfiguration indexConfiguration) {
+        String pendingIndexName = indexStateRegistry.getPendingIndexName(indexConfiguration.getEntityName());
+        return Collections.singletonList(pendingIndexName == null ? indexConfiguration.getIndexName() : pendingIndexName);
+    }
+
+    /**
+     * Checks whether the current bulk request reaches the limits defined by
+     * {@link SearchProperties#getMaxBulkRequestActions()} and {@link SearchProperties#getMaxBulkRequestSizeInBytes()}.
+     * If so, creates the next request and adds it to the provided list.
+     *
+     * @param requests       all requests of the batch
+     * @param currentRequest current request
+     * @return request that should receive the next action
+     */
+    protected BulkRequest startNextBulkRequestIfLimitReached(List<BulkRequest> requests, BulkRequest currentRequest) {
+        if (currentRequest.numberOfActions() > 0
+                && (currentRequest.numberOfActions() >= searchProperties.getMaxBulkRequestActions()
+                || currentRequest.estimatedSizeInBytes() >= searchProperties.getMaxBulkRequestSizeInBytes())) {
+            log.debug("Bulk request limit is reached: actions = {}, estimated size = {} bytes. Start next request",
+                    currentRequest.numberOfActions(), currentRequest.estimatedSizeInBytes());
+            BulkRequest nextRequest = new BulkRequest();
+            requests.add(nextRequest);
+            return nextRequest;
+        }
+        return currentRequest;
+    }
+
+    protected IndexResult executeBulkRequests(List<BulkRequest> requests) {
+        if (requests.size() == 1) {
+            return IndexResult.create(executeBulkRequestWithRetries(requests.get(0)));
+        }
+        List<IndexResult> indexResults = new ArrayList<>(requests.size());
+        for (BulkRequest request : requests) {
+            indexResults.add(IndexResult.create(executeBulkRequestWithRetries(request)));
+        }
+        return IndexResult.merge(indexResults);
+    }
 
+    protected CompletableFuture<IndexResult> executeBulkRequestsAsync(List<BulkRequest> requests) {
+        if (requests.size() == 1) {
+            return executeBulkRequestWithRetriesAsync(requests.get(0)).thenApply(IndexResult::create);
+        }
+        List<CompletableFuture<IndexResult>> futures = new ArrayList<>(requests.size());
+        for (BulkRequest request : requests) {
+            futures.add(executeBulkRequestWithRetriesAsync(request).thenApply(IndexResult::create));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                .thenApply(v -> IndexResult.merge(futures.stream()
+                        .map(CompletableFuture::join)
+                        .collect(Collectors.toList())));
+    }
+
+    /**
+     * Executes bulk request and resends items rejected by overloaded Elasticsearch cluster
+     * (see {@link IndexResult#isRetryableFailure}) using jittered exponential backoff.
+     *
+     * @param request bulk request
+     * @return response containing the final result of every item of the initial request
+     */
+    protected BulkResponse executeBulkRequestWithRetries(BulkRequest request) {
         BulkResponse bulkResponse = executeBulkRequest(request);
-        return IndexResult.create(bulkResponse);
+        BulkItemResponse[] items = bulkResponse.getItems().clone();
+        long tookInMillis = bulkResponse.getTook().millis();
+
+        Iterator<TimeValue> backoff = createRetryBackoffPolicy().iterator();
+        List<Integer> retryableItemSlots = getRetryableItemSlots(items);
+        while (!retryableItemSlots.isEmpty() && backoff.hasNext()) {
+            long delay = getJitteredDelay(backoff.next());
+            log.debug("{} bulk items were rejected. Retry in {} ms", retryableItemSlots.size(), delay);
+            sleep(delay);
+
+            BulkResponse retryResponse = executeBulkRequest(createRetryBulkRequest(request, retryableItemSlots));
+            mergeRetryResponse(items, retryableItemSlots, retryResponse);
+            tookInMillis += retryResponse.getTook().millis();
+            retryableItemSlots = getRetryableItemSlots(items);
+        }
+        logExhaustedRetries(retryableItemSlots);
+        return new BulkResponse(items, tookInMillis);
+    }
+
+    /**
+     * Asynchronous version of {@link #executeBulkRequestWithRetries(BulkRequest)}.
+     * Delays between attempts don't block any thread: retries are scheduled by the dedicated scheduler
+     * and sent only if the limit of in-flight requests isn't reached, otherwise they are rescheduled.
+     *
+     * @param request bulk request
+     * @return {@link CompletableFuture} that is completed with the final result of every item of the initial request
+     */
+    protected CompletableFuture<BulkResponse> executeBulkRequestWithRetriesAsync(BulkRequest request) {
+        Iterator<TimeValue> backoff = createRetryBackoffPolicy().iterator();
+        return executeBulkRequestAsync(request).thenCompose(bulkResponse ->
+                retryRejectedItemsAsync(request, bulkResponse.getItems().clone(), bulkResponse.getTook().millis(), backoff)
+        );
+    }
+
+    protected CompletableFuture<BulkResponse> retryRejectedItemsAsync(BulkRequest request,
+                                                                      BulkItemResponse[] items,
+                                                                      long tookInMillis,
+                                                                      Iterator<TimeValue> backoff) {
+        List<Integer> retryableItemSlots = getRetryableItemSlots(items);
+        if (retryableItemSlots.isEmpty() || !backoff.hasNext()) {
+            logExhaustedRetries(retryableItemSlots);
+            return CompletableFuture.completedFuture(new BulkResponse(items, tookInMillis));
+        }
+
+        long delay = getJitteredDelay(backoff.next());
+        log.debug("{} bulk items were rejected. Retry in {} ms", retryableItemSlots.size(), delay);
+        BulkRequest retryRequest = createRetryBulkRequest(request, retryableItemSlots);
+        CompletableFuture<BulkResponse> retryFuture = new CompletableFuture<>();
+        scheduleBulkRequest(retryRequest, delay, retryFuture);
+        return retryFuture
+                .thenCompose(retryResponse -> {
+                    mergeRetryResponse(items, retryableItemSlots, retryResponse);
+                    return retryRejectedItemsAsync(request, items, tookInMillis + retryResponse.getTook().millis(), backoff);
+                });
+    }
+
+    /**
+     * Sends bulk request after the delay without blocking the scheduler thread: if the limit of in-flight requests
+     * is reached at that moment, the request is rescheduled.
+     *
+     * @param request bulk request
+     * @param delay   delay in milliseconds
+     * @param future  future to complete with the response
+     */
+    protected void scheduleBulkRequest(BulkRequest request, long delay, CompletableFuture<BulkResponse> future) {
+        try {
+            bulkRequestRetryScheduler.schedule(() -> {
+                if (inFlightBulkRequestsSemaphore.tryAcquire()) {
+                    sendBulkRequestWithPermitAsync(request).whenComplete((response, e) -> {
+                        if (e != null) {
+                            future.completeExceptionally(e);
+                        } else {
+                            future.complete(response);
+                        }
+                    });
+                } else {
+                    scheduleBulkRequest(request, Math.max(1, searchProperties.getBulkRequestRetryInitialDelay()), future);
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(new RuntimeException("Unable to schedule retry of bulk request", e));
+        }
+    }
+
+    protected BackoffPolicy createRetryBackoffPolicy() {
+        return BackoffPolicy.exponentialBackoff(
+                TimeValue.timeValueMillis(searchProperties.getBulkRequestRetryInitialDelay()),
+                searchProperties.getMaxBulkRequestRetries()
+        );
+    }
+
+    protected List<Integer> getRetryableItemSlots(BulkItemResponse[] items) {
+        List<Integer> slots = new ArrayList<>();
+        for (int i = 0; i < items.length; i++) {
+            BulkItemResponse item = items[i];
+            if (item.isFailed() && IndexResult.isRetryableFailure(item.getFailure().getStatus(), item.getFailure().getCause())) {
+                slots.add(i);
+            }
+        }
+        return slots;
+    }
+
+    protected BulkRequest createRetryBulkRequest(BulkRequest initialRequest, List<Integer> itemSlots) {
+        List<DocWriteRequest<?>> initialActions = initialRequest.requests();
+        BulkRequest retryRequest = new BulkRequest();
+        itemSlots.forEach(slot -> retryRequest.add(initialActions.get(slot)));
+        return retryRequest;
+    }
+
+    protected void mergeRetryResponse(BulkItemResponse[] items, List<Integer> itemSlots, BulkResponse retryResponse) {
+        BulkItemResponse[] retryItems = retryResponse.getItems();
+        for (int i = 0; i < retryItems.length && i < itemSlots.size(); i++) {
+            items[itemSlots.get(i)] = retryItems[i];
+        }
+    }
+
+    protected long getJitteredDelay(TimeValue delay) {
+        long delayMillis = delay.millis();
+        long halfDelay = delayMillis / 2;
+        return halfDelay + ThreadLocalRandom.current().nextLong(halfDelay + 1);
+    }
+
+    protected void sleep(long delayMillis) {
+        try {
+            Thread.sleep(delayMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for retry of rejected bulk items", e);
+        }
+    }
+
+    protected void logExhaustedRetries(List<Integer> retryableItemSlots) {
+        if (!retryableItemSlots.isEmpty()) {
+            log.warn("{} bulk items are still rejected by Elasticsearch after {} retries",
+                    retryableItemSlots.size(), searchProperties.getMaxBulkRequestRetries());
+        }
     }
 
     protected BulkResponse executeBulkRequest(BulkRequest request) {
         try {
             BulkResponse bulkResponse = esClient.bulk(request, RequestOptions.DEFAULT);
-            log.debug("Bulk Response: Took {}, Status = {}, With Failures = {}{}",
-                    bulkResponse.getTook(), bulkResponse.status(), bulkResponse.hasFailures(),
-                    bulkResponse.hasFailures() ? ": " + bulkResponse.buildFailureMessage() : "");
+            logBulkResponse(bulkResponse);
             return bulkResponse;
         } catch (IOException e) {
             throw new RuntimeException("Bulk request failed", e);
         }
     }
 
+    /**
+     * Sends bulk request without waiting for the response.
+     * <p>
+     * Amount of simultaneously sent requests is limited by {@link SearchProperties#getMaxInFlightBulkRequests()}:
+     * if limit is reached the calling thread waits until one of the previous requests is completed.
+     *
+     * @param request bulk request
+     * @return {@link CompletableFuture} that is completed with the {@link BulkResponse}
+     */
+    protected CompletableFuture<BulkResponse> executeBulkRequestAsync(BulkRequest request) {
+        acquireBulkRequestPermit();
+        return sendBulkRequestWithPermitAsync(request);
+    }
+
+    /**
+     * Sends bulk request using the permit of in-flight requests acquired by the caller.
+     * The permit is released when the request is completed.
+     */
+    protected CompletableFuture<BulkResponse> sendBulkRequestWithPermitAsync(BulkRequest request) {
+        CompletableFuture<BulkResponse> future;
+        try {
+            future = sendBulkRequestAsync(request);
+        } catch (RuntimeException e) {
+            inFlightBulkRequestsSemaphore.release();
+            future = new CompletableFuture<>();
+            future.completeExceptionally(new RuntimeException("Bulk request failed", e));
+            return future;
+        }
+        return future.whenComplete((bulkResponse, e) -> inFlightBulkRequestsSemaphore.release());
+    }
+
+    protected CompletableFuture<BulkResponse> sendBulkRequestAsync(BulkRequest request) {
+        CompletableFuture<BulkResponse> future = new CompletableFuture<>();
+        esClient.bulkAsync(request, RequestOptions.DEFAULT, new ActionListener<BulkResponse>() {
+            @Override
+            public void onResponse(BulkResponse bulkResponse) {
+                logBulkResponse(bulkResponse);
+                future.complete(bulkResponse);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                future.completeExceptionally(new RuntimeException("Bulk request failed", e));
+            }
+        });
+        return future;
+    }
+
+    protected void acquireBulkRequestPermit() {
+        try {
+            inFlightBulkRequestsSemaphore.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for in-flight bulk requests", e);
+        }
+    }
+
+    protected void logBulkResponse(BulkResponse bulkResponse) {
+        log.debug("Bulk Response: Took {}, Status = {}, With Failures = {}{}",
+                bulkResponse.getTook(), bulkResponse.status(), bulkResponse.hasFailures(),
+                bulkResponse.hasFailures() ? ": " + bulkResponse.buildFailureMessage() : "");
+    }
+
     protected Map<IndexConfiguration, Collection<Object>> prepareInstancesForIndexing(Collection<Object> instances) {
         Map<MetaClass, List<Object>> idsGroupedByMetaClass = instances.stream().collect(
                 Collectors.groupingBy(
@@ -187,6 +840,70 @@ public class EntityIndexerImpl implements EntityIndexer {
         return result;
     }
 
+    /**
+     * Gets partial document plan of provided index for the reference. Plans are created once per reference.
+     *
+     * @return {@link PartialDocumentPlan} or null if documents can't be updated partially
+     */
+    @Nullable
+    protected PartialDocumentPlan getPartialDocumentPlan(IndexConfiguration indexConfiguration, MetaPropertyPath referencePropertyPath) {
+        String key = indexConfiguration.getEntityName() + ":" + referencePropertyPath.toPathString();
+        return partialDocumentPlans.computeIfAbsent(key, k -> Optional.ofNullable(
+                indexConfiguration.getDocumentPlan().createPartialPlan(referencePropertyPath.toPathString())
+        )).orElse(null);
+    }
+
+    protected FetchPlan createPartialFetchPlan(IndexConfiguration indexConfiguration, PartialDocumentPlan partialPlan) {
+        FetchPlanBuilder fetchPlanBuilder = fetchPlans.builder(indexConfiguration.getEntityClass());
+        partialPlan.getFetchedProperties().forEach(property -> {
+            log.trace("Add property to partial fetch plan: {}", property);
+            fetchPlanBuilder.add(property);
+        });
+        return fetchPlanBuilder.build();
+    }
+
+    protected List<BulkRequest> createPartialUpdateBulkRequests(IndexConfiguration indexConfiguration,
+                                                                PartialDocumentPlan partialPlan,
+                                                                Collection<Object> instances) {
+        List<BulkRequest> requests = new ArrayList<>();
+        BulkRequest request = new BulkRequest();
+        requests.add(request);
+        registerPendingIndexModifications(indexConfiguration, instances, false);
+        List<String> targetIndexNames = getWriteIndexNames(indexConfiguration);
+        for (Object instance : instances) {
+            request = startNextBulkRequestIfLimitReached(requests, request);
+            byte[] document = indexDocumentWriter.writePartialDocument(indexConfiguration, partialPlan, instance);
+            if (log.isTraceEnabled()) {
+                log.trace("Partial source object: {}", new String(document, StandardCharsets.UTF_8));
+            }
+            String serializedEntityId = idSerialization.idToString(Id.of(instance));
+            for (String indexName : targetIndexNames) {
+                request.add(new UpdateRequest(indexName, serializedEntityId)
+                        .doc(document, XContentType.JSON));
+            }
+        }
+        return requests;
+    }
+
+    /**
+     * Removes items failed because of missing documents from the response.
+     *
+     * @param bulkResponse       response of partial update
+     * @param missingDocumentIds collection receiving ids of missing documents
+     * @return response without such items
+     */
+    protected BulkResponse separateMissingDocuments(BulkResponse bulkResponse, Collection<String> missingDocumentIds) {
+        List<BulkItemResponse> items = new ArrayList<>(bulkResponse.getItems().length);
+        for (BulkItemResponse item : bulkResponse.getItems()) {
+            if (item.isFailed() && item.getFailure().getStatus() == RestStatus.NOT_FOUND) {
+                missingDocumentIds.add(item.getId());
+            } else {
+                items.add(item);
+            }
+        }
+        return new BulkResponse(items.toArray(new BulkItemResponse[0]), bulkResponse.getTook().millis());
+    }
+
     protected FetchPlan createFetchPlan(IndexConfiguration indexConfiguration) {
         FetchPlanBuilder fetchPlanBuilder = fetchPlans.builder(indexConfiguration.getEntityClass());
         indexConfiguration.getMapping().getFields().values().forEach(field -> {
@@ -212,27 +929,23 @@ public class EntityIndexerImpl implements EntityIndexer {
     protected void addIndexActionToBulkRequest(BulkRequest request,
                                                IndexConfiguration indexConfiguration,
                                                Object instance) {
-        ObjectNode sourceObject = JsonNodeFactory.instance.objectNode();
-        IndexMappingConfiguration indexMappingConfiguration = indexConfiguration.getMapping();
-        indexMappingConfiguration.getFields()
-                .values()
-                .stream()
-                .filter(field -> !field.isStandalone())
-                .forEach(field -> addFieldValueToEntityIndexContent(sourceObject, field, instance));
-
-        DisplayedNameDescriptor displayedNameDescriptor = indexMappingConfiguration.getDisplayedNameDescriptor();
-        JsonNode displayedName = displayedNameDescriptor.getValue(instance);
-        sourceObject.set(displayedNameDescriptor.getIndexPropertyFullName(), displayedName);
-
-        log.debug("Source object: {}", sourceObject);
-        try {
-            String serializedEntityId = idSerialization.idToString(Id.of(instance));
+        addIndexActionToBulkRequest(request, indexConfiguration, instance, getWriteIndexNames(indexConfiguration));
+    }
+
+    protected void addIndexActionToBulkRequest(BulkRequest request,
+                                               IndexConfiguration indexConfiguration,
+                                               Object instance,
+                                               List<String> targetIndexNames) {
+        byte[] document = indexDocumentWriter.writeDocument(indexConfiguration, instance);
+        if (log.isTraceEnabled()) {
+            log.trace("Source object: {}", new String(document, StandardCharsets.UTF_8));
+        }
+        String serializedEntityId = idSerialization.idToString(Id.of(instance));
+        for (String indexName : targetIndexNames) {
             request.add(new IndexRequest()
-                    .index(indexConfiguration.getIndexName())
+                    .index(indexName)
                     .id(serializedEntityId)
-                    .source(objectMapper.writeValueAsString(sourceObject), XContentType.JSON));
-        } catch (JsonProcessingException e) {
-            throw new RuntimeException("Failed to create index request: unable to parse source object", e);
+                    .source(document, XContentType.JSON));
         }
     }
 
@@ -267,131 +980,56 @@ public class EntityIndexerImpl implements EntityIndexer {
     }
 
     protected IndexResult deleteByGroupedIndexIds(Map<IndexConfiguration, Collection<String>> groupedIndexIds) {
+        List<BulkRequest> requests = createDeleteBulkRequests(groupedIndexIds);
+        return executeBulkRequests(requests);
+    }
+
+    protected CompletableFuture<IndexResult> deleteByGroupedIndexIdsAsync(Map<IndexConfiguration, Collection<String>> groupedIndexIds) {
+        List<BulkRequest> requests = createDeleteBulkRequests(groupedIndexIds);
+        return executeBulkRequestsAsync(requests);
+    }
+
+    protected List<BulkRequest> createDeleteBulkRequests(Map<IndexConfiguration, Collection<String>> groupedIndexIds) {
         if (log.isDebugEnabled()) {
             Integer amountOfInstances = groupedIndexIds.values().stream().map(Collection::size).reduce(Integer::sum).orElse(0);
             log.debug("Prepared {} instances within {} entities", amountOfInstances, groupedIndexIds.keySet().size());
         }
 
+        List<BulkRequest> requests = new ArrayList<>();
         BulkRequest request = new BulkRequest();
+        requests.add(request);
         for (Map.Entry<IndexConfiguration, Collection<String>> entry : groupedIndexIds.entrySet()) {
             IndexConfiguration indexConfiguration = entry.getKey();
+            indexStateRegistry.registerPendingIndexModifications(indexConfiguration.getEntityName(), entry.getValue(), true);
+            List<String> targetIndexNames = getWriteIndexNames(indexConfiguration);
             for (String indexId : entry.getValue()) {
-                addDeleteActionToBulkRequest(request, indexConfiguration, indexId);
+                request = startNextBulkRequestIfLimitReached(requests, request);
+                for (String indexName : targetIndexNames) {
+                    addDeleteActionToBulkRequest(request, indexName, indexId);
+                }
             }
         }
-
-        BulkResponse bulkResponse = executeBulkRequest(request);
-        return IndexResult.create(bulkResponse);
+        return requests;
     }
 
     protected void addDeleteActionToBulkRequest(BulkRequest request,
                                                 IndexConfiguration indexConfiguration,
                                                 String indexId) {
-        request.add(new DeleteRequest(indexConfiguration.getIndexName(), indexId));
-    }
-
-    protected ObjectNode createObjectNodeForField(String key, JsonNode value) {
-        ObjectNode root = JsonNodeFactory.instance.objectNode();
-        String[] fields = key.split("\\.");
-        ObjectNode currentRoot = root;
-        for (int i = 0; i < fields.length; i++) {
-            String field = fields[i];
-            if (i == fields.length - 1) {
-                currentRoot.set(field, value);
-            } else {
-                currentRoot = currentRoot.putObject(field);
-            }
-        }
-        return root;
+        addDeleteActionToBulkRequest(request, indexConfiguration.getIndexName(), indexId);
     }
 
-    protected void addFieldValueToEntityIndexContent(ObjectNode entityIndexContent, MappingFieldDescriptor field, Object entity) {
-        log.trace("Extract value of property '{}' from entity {}", field.getMetaPropertyPath(), entity);
-        JsonNode propertyValue = field.getValue(entity);
-        if (!propertyValue.isNull()) {
-            String indexPropertyFullName = field.getIndexPropertyFullName();
-            ObjectNode objectNodeForField = createObjectNodeForField(indexPropertyFullName, propertyValue);
-            log.trace("Field value tree: {}", objectNodeForField);
-            merge(objectNodeForField, entityIndexContent);
-        }
+    protected void addDeleteActionToBulkRequest(BulkRequest request, String indexName, String indexId) {
+        request.add(new DeleteRequest(indexName, indexId));
     }
 
-    //todo move to tools?
-    private void merge(JsonNode toBeMerged, JsonNode mergedInTo) {
-        log.trace("Merge object {} into {}", toBeMerged, mergedInTo);
-        Iterator<Map.Entry<String, JsonNode>> incomingFieldsIterator = toBeMerged.fields();
-        Iterator<Map.Entry<String, JsonNode>> mergedIterator;
-
-        while (incomingFieldsIterator.hasNext()) {
-            Map.Entry<String, JsonNode> incomingEntry = incomingFieldsIterator.next();
-
-            JsonNode subNode = incomingEntry.getValue();
-
-            if (subNode.getNodeType().equals(JsonNodeType.OBJECT)) {
-                boolean isNewBlock = true;
-                mergedIterator = mergedInTo.fields();
-                while (mergedIterator.hasNext()) {
-                    Map.Entry<String, JsonNode> entry = mergedIterator.next();
-                    if (entry.getKey().equals(incomingEntry.getKey())) {
-                        merge(incomingEntry.getValue(), entry.getValue());
-                        isNewBlock = false;
-                    }
-                }
-                if (isNewBlock) {
-                    ((ObjectNode) mergedInTo).replace(incomingEntry.getKey(), incomingEntry.getValue());
-                }
-            } else if (subNode.getNodeType().equals(JsonNodeType.ARRAY)) {
-                boolean newEntry = true;
-                mergedIterator = mergedInTo.fields();
-                while (mergedIterator.hasNext()) {
-                    Map.Entry<String, JsonNode> entry = mergedIterator.next();
-                    if (entry.getKey().equals(incomingEntry.getKey())) {
-                        updateArray(incomingEntry.getValue(), entry);
-                        newEntry = false;
-                    }
-                }
-                if (newEntry) {
-                    ((ObjectNode) mergedInTo).replace(incomingEntry.getKey(), incomingEntry.getValue());
-                }
-            }
-            ValueNode valueNode = null;
-            JsonNode incomingValueNode = incomingEntry.getValue();
-            switch (subNode.getNodeType()) {
-                case STRING:
-                    valueNode = new TextNode(incomingValueNode.textValue());
-                    break;
-                case NUMBER:
-                    valueNode = new IntNode(incomingValueNode.intValue());
-                    break;
-                case BOOLEAN:
-                    valueNode = BooleanNode.valueOf(incomingValueNode.booleanValue());
-                    break;
-                default:
-                    break;
-            }
-            if (valueNode != null) {
-                updateObject(mergedInTo, valueNode, incomingEntry);
-            }
-        }
-    }
+    protected static class ReindexPage {
 
-    private void updateArray(JsonNode valueToBePlaced, Map.Entry<String, JsonNode> toBeMerged) {
-        toBeMerged.setValue(valueToBePlaced);
-    }
+        protected final String lastIndexedId;
+        protected final CompletableFuture<IndexResult> result;
 
-    private void updateObject(JsonNode mergeInTo, ValueNode valueToBePlaced,
-                              Map.Entry<String, JsonNode> toBeMerged) {
-        boolean newEntry = true;
-        Iterator<Map.Entry<String, JsonNode>> mergedIterator = mergeInTo.fields();
-        while (mergedIterator.hasNext()) {
-            Map.Entry<String, JsonNode> entry = mergedIterator.next();
-            if (entry.getKey().equals(toBeMerged.getKey())) {
-                newEntry = false;
-                entry.setValue(valueToBePlaced);
-            }
-        }
-        if (newEntry) {
-            ((ObjectNode) mergeInTo).replace(toBeMerged.getKey(), toBeMerged.getValue());
+        protected ReindexPage(String lastIndexedId, CompletableFuture<IndexResult> result) {
+            this.lastIndexedId = lastIndexedId;
+            this.result = result;
         }
     }
 }
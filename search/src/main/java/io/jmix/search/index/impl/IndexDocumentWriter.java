@@ -0,0 +1,172 @@
+/*
+ * Copyright 2021 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jmix.search.index.impl;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jmix.search.index.IndexConfiguration;
+import io.jmix.search.index.mapping.DisplayedNameDescriptor;
+import io.jmix.search.index.mapping.IndexDocumentPlan;
+import io.jmix.search.index.mapping.IndexDocumentPlan.DocumentNode;
+import io.jmix.search.index.mapping.IndexDocumentPlan.PartialDocumentPlan;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Writes index documents of entity instances directly to the JSON stream
+ * according to the {@link IndexDocumentPlan} of the index.
+ * <p>
+ * Field values are extracted into the flat array and written by traversing the document tree of the plan,
+ * so intermediate JSON trees are not created.
+ */
+@Component("search_IndexDocumentWriter")
+public class IndexDocumentWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexDocumentWriter.class);
+
+    protected final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * Max size of the buffer segment kept by thread between documents. Buffer that has grown above it
+     * while writing of a large document is dropped, so threads don't retain the largest buffer they have used.
+     */
+    protected static final int MAX_RETAINED_BUFFER_SIZE = 16 * 1024;
+
+    protected final ThreadLocal<ByteArrayBuilder> buffers = ThreadLocal.withInitial(ByteArrayBuilder::new);
+
+    /**
+     * Creates JSON document for provided entity instance.
+     *
+     * @param indexConfiguration configuration of the index
+     * @param instance           entity instance
+     * @return document as UTF-8 JSON bytes
+     */
+    public byte[] writeDocument(IndexConfiguration indexConfiguration, Object instance) {
+        IndexDocumentPlan documentPlan = indexConfiguration.getDocumentPlan();
+        JsonNode[] values = documentPlan.extractValues(instance);
+
+        ByteArrayBuilder buffer = buffers.get();
+        buffer.reset();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(buffer)) {
+            generator.writeStartObject();
+            writeChildren(generator, documentPlan.getRoot(), values);
+
+            DisplayedNameDescriptor displayedNameDescriptor = documentPlan.getDisplayedNameDescriptor();
+            generator.writeFieldName(displayedNameDescriptor.getIndexPropertyFullName());
+            objectMapper.writeTree(generator, displayedNameDescriptor.getValue(instance));
+
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to create index document", e);
+        }
+        return toByteArray(buffer);
+    }
+
+    /**
+     * Creates partial JSON document for provided entity instance. Top-level fields of the partial plan
+     * without values are written as nulls to clear the previous values of the document.
+     *
+     * @param indexConfiguration configuration of the index
+     * @param partialPlan        plan of partial document
+     * @param instance           entity instance
+     * @return partial document as UTF-8 JSON bytes
+     */
+    public byte[] writePartialDocument(IndexConfiguration indexConfiguration, PartialDocumentPlan partialPlan, Object instance) {
+        IndexDocumentPlan documentPlan = indexConfiguration.getDocumentPlan();
+        JsonNode[] values = documentPlan.extractValues(instance, partialPlan.getFieldSlots());
+
+        ByteArrayBuilder buffer = buffers.get();
+        buffer.reset();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(buffer)) {
+            generator.writeStartObject();
+            for (int i = 0; i < partialPlan.getNodesCount(); i++) {
+                DocumentNode node = partialPlan.getNode(i);
+                generator.writeFieldName(node.getName());
+                if (node.hasValues(values)) {
+                    writeNode(generator, node, values);
+                } else {
+                    generator.writeNull();
+                }
+            }
+
+            if (partialPlan.isDisplayedNameIncluded()) {
+                DisplayedNameDescriptor displayedNameDescriptor = documentPlan.getDisplayedNameDescriptor();
+                generator.writeFieldName(displayedNameDescriptor.getIndexPropertyFullName());
+                objectMapper.writeTree(generator, displayedNameDescriptor.getValue(instance));
+            }
+
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to create partial index document", e);
+        }
+        return toByteArray(buffer);
+    }
+
+    /**
+     * Gets content of the thread buffer and resets it. Buffer is released if it exceeds {@link #MAX_RETAINED_BUFFER_SIZE}.
+     */
+    protected byte[] toByteArray(ByteArrayBuilder buffer) {
+        byte[] document = buffer.toByteArray();
+        if (buffer.getCurrentSegment().length > MAX_RETAINED_BUFFER_SIZE) {
+            buffers.remove();
+        }
+        return document;
+    }
+
+    protected void writeChildren(JsonGenerator generator, DocumentNode node, JsonNode[] values) throws IOException {
+        for (int i = 0; i < node.getChildrenCount(); i++) {
+            DocumentNode child = node.getChild(i);
+            if (child.hasValues(values)) {
+                generator.writeFieldName(child.getName());
+                writeNode(generator, child, values);
+            }
+        }
+    }
+
+    protected void writeNode(JsonGenerator generator, DocumentNode node, JsonNode[] values) throws IOException {
+        JsonNode ownValue = node.getOwnValue(values);
+        if (node.getChildrenCount() == 0) {
+            objectMapper.writeTree(generator, ownValue);
+            return;
+        }
+
+        generator.writeStartObject();
+        if (ownValue != null) {
+            if (ownValue.isObject()) {
+                Iterator<Map.Entry<String, JsonNode>> fields = ownValue.fields();
+                while (fields.hasNext()) {
+                    Map.Entry<String, JsonNode> field = fields.next();
+                    if (!node.hasChild(field.getKey())) {
+                        generator.writeFieldName(field.getKey());
+                        objectMapper.writeTree(generator, field.getValue());
+                    }
+                }
+            } else {
+                log.trace("Value {} of field '{}' is skipped: it's overridden by nested fields", ownValue, node.getName());
+            }
+        }
+        writeChildren(generator, node, values);
+        generator.writeEndObject();
+    }
+}
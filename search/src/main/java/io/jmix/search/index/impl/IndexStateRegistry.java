@@ -20,6 +20,8 @@ import io.jmix.search.index.mapping.IndexConfigurationManager;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.Nullable;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -38,6 +40,8 @@ import java.util.stream.Collectors;
 public class IndexStateRegistry {
 
     protected final Map<String, Boolean> registry;
+    protected final Map<String, String> pendingIndexes = new ConcurrentHashMap<>();
+    protected final Map<String, Map<String, Boolean>> pendingIndexModifications = new ConcurrentHashMap<>();
     protected final IndexConfigurationManager indexConfigurationManager;
 
     @Autowired
@@ -71,6 +75,54 @@ public class IndexStateRegistry {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Gets name of the new generation of the index that is being filled during rebuild of the index.
+     * Such index receives copies of all document modifications of the entity.
+     *
+     * @param entityName entity name
+     * @return name of the pending index or null if index of entity isn't being rebuilt
+     */
+    @Nullable
+    public String getPendingIndexName(String entityName) {
+        return pendingIndexes.get(entityName);
+    }
+
+    public void setPendingIndexName(String entityName, String indexName) {
+        if (!indexConfigurationManager.isDirectlyIndexed(entityName)) {
+            throw new IllegalArgumentException(String.format("Entity '%s' is not indexed", entityName));
+        }
+        pendingIndexModifications.put(entityName, new ConcurrentHashMap<>());
+        pendingIndexes.put(entityName, indexName);
+    }
+
+    /**
+     * Clears name of the pending index of entity.
+     *
+     * @param entityName entity name
+     * @return documents modified while the pending index was filled, see {@link #registerPendingIndexModifications(String, Collection, boolean)}
+     */
+    public Map<String, Boolean> clearPendingIndexName(String entityName) {
+        pendingIndexes.remove(entityName);
+        Map<String, Boolean> modifications = pendingIndexModifications.remove(entityName);
+        return modifications == null ? Collections.emptyMap() : modifications;
+    }
+
+    /**
+     * Registers documents modified by regular indexing while the pending index of entity is being filled.
+     * Such documents can be overwritten in the pending index by older state loaded by the rebuild
+     * and have to be reindexed after the rebuild. Does nothing if index of entity isn't being rebuilt.
+     *
+     * @param entityName entity name
+     * @param indexIds   ids of documents
+     * @param deleted    whether documents have been deleted
+     */
+    public void registerPendingIndexModifications(String entityName, Collection<String> indexIds, boolean deleted) {
+        pendingIndexModifications.computeIfPresent(entityName, (name, modifications) -> {
+            indexIds.forEach(indexId -> modifications.put(indexId, deleted));
+            return modifications;
+        });
+    }
+
     protected void setRegistryValue(String entityName, boolean value) {
         if (indexConfigurationManager.isDirectlyIndexed(entityName)) {
             registry.put(entityName, value);
@@ -31,6 +31,7 @@ public class IndexingLocker {
     protected final ReentrantLock indexingQueueProcessingLock = new ReentrantLock();
     protected final ReentrantLock reindexingLock = new ReentrantLock();
     protected final Map<String, ReentrantLock> enqueueAllLocks;
+    protected final Map<String, ReentrantLock> indexAllLocks = new ConcurrentHashMap<>();
 
     protected final IndexConfigurationManager indexConfigurationManager;
 
@@ -90,6 +91,26 @@ public class IndexingLocker {
         }
     }
 
+    public boolean isEntityLockedForEnqueueIndexAll(String entityName) {
+        checkEntityInIndexingScope(entityName);
+        ReentrantLock lock = enqueueAllLocks.get(entityName);
+        return lock != null && lock.isLocked();
+    }
+
+    public boolean tryLockEntityForIndexAll(String entityName) {
+        checkEntityInIndexingScope(entityName);
+        ReentrantLock lock = indexAllLocks.computeIfAbsent(entityName, key -> new ReentrantLock());
+        return lock.tryLock();
+    }
+
+    public void unlockEntityForIndexAll(String entityName) {
+        checkEntityInIndexingScope(entityName);
+        ReentrantLock lock = indexAllLocks.get(entityName);
+        if (lock != null) {
+            lock.unlock();
+        }
+    }
+
     protected void checkEntityInIndexingScope(String entityName) {
         if (!indexConfigurationManager.isDirectlyIndexed(entityName)) {
             throw new IllegalArgumentException(String.format("Entity '%s' is not configured for indexing", entityName));
@@ -30,8 +30,9 @@ import javax.annotation.PostConstruct;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -51,7 +52,7 @@ public class StartupIndexSynchronizer {
     @Autowired
     protected IndexStateRegistry indexStateRegistry;
 
-    protected final ExecutorService executorService = Executors.newSingleThreadExecutor();
+    protected final ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
 
     @PostConstruct
     protected void postConstruct() {
@@ -85,6 +86,11 @@ public class StartupIndexSynchronizer {
             available.forEach(config -> indexStateRegistry.markIndexAsAvailable(config.getEntityName()));
             unavailable.forEach(config -> indexStateRegistry.markIndexAsUnavailable(config.getEntityName()));
 
+            restoreInterruptedBulkIndexingSessions();
+            // sessions of crashed instances are considered active until their lease expires
+            executorService.schedule(this::restoreInterruptedBulkIndexingSessions,
+                    searchProperties.getBulkIndexingSessionLeaseTimeout(), TimeUnit.MILLISECONDS);
+
             if (searchProperties.isEnqueueIndexAllOnStartupIndexRecreationEnabled()) {
                 List<IndexConfiguration> indexConfigurationsToEnqueueAll = enqueueAllCandidates.stream()
                         .filter(config -> {
@@ -101,6 +107,15 @@ public class StartupIndexSynchronizer {
         }
     }
 
+    protected void restoreInterruptedBulkIndexingSessions() {
+        try {
+            esIndexManager.restoreInterruptedBulkIndexingSessions().forEach(config ->
+                    log.info("Settings of index '{}' left by interrupted bulk indexing session have been restored", config.getIndexName()));
+        } catch (RuntimeException e) {
+            log.error("Failed to restore settings of indexes left by interrupted bulk indexing sessions", e);
+        }
+    }
+
     protected void enqueueEntity(String entityName) {
         log.info("Start initial enqueueing instances of entity '{}'", entityName);
         indexingQueueManager.enqueueIndexAll(entityName);
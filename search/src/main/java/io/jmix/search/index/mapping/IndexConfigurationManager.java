@@ -17,6 +17,7 @@
 package io.jmix.search.index.mapping;
 
 import io.jmix.core.InstanceNameProvider;
+import io.jmix.core.MetadataTools;
 import io.jmix.core.impl.scanning.JmixModulesClasspathScanner;
 import io.jmix.core.metamodel.model.MetaClass;
 import io.jmix.core.metamodel.model.MetaProperty;
@@ -32,7 +33,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Nullable;
+import javax.persistence.ManyToMany;
+import javax.persistence.OneToMany;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -42,12 +46,23 @@ public class IndexConfigurationManager {
     private static final Logger log = LoggerFactory.getLogger(IndexConfigurationManager.class);
 
     protected final Registry registry;
+    protected final MetadataTools metadataTools;
+
+    /**
+     * JPQL queries loading ids of dependent entities by back-reference property paths.
+     * Empty if dependent entities can't be loaded by such query.
+     */
+    protected final Map<MetaPropertyPath, Optional<String>> dependentEntityIdsQueries = new ConcurrentHashMap<>();
+    protected final Map<MetaPropertyPath, Optional<String>> dependentEntityIdsFirstPageQueries = new ConcurrentHashMap<>();
+    protected final Map<MetaPropertyPath, Optional<String>> dependentEntityIdsPageQueries = new ConcurrentHashMap<>();
 
     @Autowired
     public IndexConfigurationManager(JmixModulesClasspathScanner classpathScanner,
                                      AnnotatedIndexDefinitionProcessor indexDefinitionProcessor,
                                      InstanceNameProvider instanceNameProvider,
-                                     IndexDefinitionDetector indexDefinitionDetector) {
+                                     IndexDefinitionDetector indexDefinitionDetector,
+                                     MetadataTools metadataTools) {
+        this.metadataTools = metadataTools;
         Class<? extends IndexDefinitionDetector> detectorClass = indexDefinitionDetector.getClass();
         Set<String> classNames = classpathScanner.getClassNames(detectorClass);
         log.debug("Create Index Configurations");
@@ -55,10 +70,24 @@ public class IndexConfigurationManager {
         Registry registry = new Registry(instanceNameProvider);
         classNames.stream()
                 .map(indexDefinitionProcessor::createIndexConfiguration)
+                .map(IndexConfigurationManager::compileDocumentPlan)
                 .forEach(registry::registerIndexConfiguration);
         this.registry = registry;
     }
 
+    protected static IndexConfiguration compileDocumentPlan(IndexConfiguration indexConfiguration) {
+        log.debug("Compile document plan for index '{}'", indexConfiguration.getIndexName());
+        IndexDocumentPlan documentPlan = IndexDocumentPlan.compile(indexConfiguration.getMapping());
+        return new IndexConfiguration(
+                indexConfiguration.getEntityName(),
+                indexConfiguration.getEntityClass(),
+                indexConfiguration.getIndexName(),
+                indexConfiguration.getMapping(),
+                indexConfiguration.getAffectedEntityClasses(),
+                documentPlan
+        );
+    }
+
     /**
      * Gets all {@link IndexConfiguration} registered in application
      *
@@ -142,6 +171,29 @@ public class IndexConfigurationManager {
         return registry.isEntityClassRegistered(entityClass);
     }
 
+    /**
+     * Gets names of local properties of directly indexed entity which influence its index document:
+     * root properties of mapped fields and instance name related properties.
+     *
+     * @param entityName entity name
+     * @return names of properties or empty set if entity is not indexed directly
+     */
+    public Set<String> getIndexedProperties(String entityName) {
+        return registry.getIndexedProperties(entityName);
+    }
+
+    /**
+     * Checks if any of changed properties of directly indexed entity influences its index document.
+     *
+     * @param entityName        entity name
+     * @param changedProperties names of changed properties
+     * @return true if index document should be updated, false otherwise
+     */
+    public boolean isIndexedPropertyChanged(String entityName, Set<String> changedProperties) {
+        Set<String> indexedProperties = getIndexedProperties(entityName);
+        return changedProperties.stream().anyMatch(indexedProperties::contains);
+    }
+
     /**
      * Gets metadata of entities dependent on updated main entity and its changed properties.
      *
@@ -197,6 +249,122 @@ public class IndexConfigurationManager {
         return result;
     }
 
+    /**
+     * Gets JPQL query loading primary keys of entities which refer to the changed entities via provided property path.
+     * Query has single collection parameter 'refs' containing primary keys of changed entities
+     * or references to them (see {@link #isDependentEntityIdsQueryByReferences(MetaPropertyPath)}).
+     * Queries are compiled on the first request, once for every back-reference property path.
+     *
+     * @param backRefPropertyPath property path from dependent entity to the changed one
+     * @return JPQL query or null if dependent entities can't be loaded by query (e.g. entity doesn't have primary key)
+     */
+    @Nullable
+    public String getDependentEntityIdsQuery(MetaPropertyPath backRefPropertyPath) {
+        return dependentEntityIdsQueries.computeIfAbsent(backRefPropertyPath, this::compileDependentEntityIdsQuery)
+                .orElse(null);
+    }
+
+    /**
+     * Checks whether parameter 'refs' of dependent entity ids queries of provided property path contains
+     * references to the changed entities instead of their primary keys. It's required if referenced entity
+     * has composite primary key: such keys can't be compared by 'in' expression.
+     *
+     * @param backRefPropertyPath property path from dependent entity to the changed one
+     * @return true if parameter contains entity references, false if it contains primary keys
+     */
+    public boolean isDependentEntityIdsQueryByReferences(MetaPropertyPath backRefPropertyPath) {
+        return metadataTools.hasCompositePrimaryKey(backRefPropertyPath.getRange().asClass());
+    }
+
+    /**
+     * Gets JPQL query loading page of primary keys of entities which refer to the changed entities
+     * via provided property path. Keys are sorted ascending, so pages are loaded by keyset pagination.
+     * Query has collection parameter 'refs' containing primary keys of changed entities and,
+     * if it's not the first page, parameter 'lastId' containing the last key of the previous page.
+     *
+     * @param backRefPropertyPath property path from dependent entity to the changed one
+     * @param firstPage           whether query loads the first page
+     * @return JPQL query or null if dependent entities can't be loaded by pages
+     * (e.g. entity has composite primary key, use {@link #getDependentEntityIdsQuery(MetaPropertyPath)} instead)
+     */
+    @Nullable
+    public String getDependentEntityIdsPageQuery(MetaPropertyPath backRefPropertyPath, boolean firstPage) {
+        Map<MetaPropertyPath, Optional<String>> queries = firstPage ? dependentEntityIdsFirstPageQueries : dependentEntityIdsPageQueries;
+        return queries.computeIfAbsent(backRefPropertyPath, propertyPath -> {
+            String query = getDependentEntityIdsQuery(propertyPath);
+            if (query == null || metadataTools.hasCompositePrimaryKey(propertyPath.getMetaClass())) {
+                return Optional.empty();
+            }
+            String primaryKeyName = metadataTools.getPrimaryKeyName(propertyPath.getMetaClass());
+            if (!firstPage) {
+                query += " and e1." + primaryKeyName + " > :lastId";
+            }
+            return Optional.of(query + " order by e1." + primaryKeyName);
+        }).orElse(null);
+    }
+
+    /**
+     * Gets JPQL query loading primary keys of entities which refer to the changed entities via provided property path
+     * sorted ascending, so pages are loaded by offset pagination. It's intended for entities with composite
+     * primary key, which don't support keyset pagination.
+     * Query has single collection parameter 'refs', see {@link #getDependentEntityIdsQuery(MetaPropertyPath)}.
+     *
+     * @param backRefPropertyPath property path from dependent entity to the changed one
+     * @return JPQL query or null if dependent entities can't be loaded by query
+     */
+    @Nullable
+    public String getDependentEntityIdsOffsetPageQuery(MetaPropertyPath backRefPropertyPath) {
+        String query = getDependentEntityIdsQuery(backRefPropertyPath);
+        if (query == null) {
+            return null;
+        }
+        return query + " order by e1." + metadataTools.getPrimaryKeyName(backRefPropertyPath.getMetaClass());
+    }
+
+    /**
+     * Compiles query selecting primary keys of dependent entities. Collection properties of the path are joined,
+     * including the last one, so the dependent entity is selected if any element of the collection is referenced.
+     * Query is distinct if there are joined collections.
+     */
+    protected Optional<String> compileDependentEntityIdsQuery(MetaPropertyPath propertyPath) {
+        MetaClass metaClass = propertyPath.getMetaClass();
+        MetaProperty[] metaProperties = propertyPath.getMetaProperties();
+        MetaClass refMetaClass = propertyPath.getRange().asClass();
+        String primaryKeyName = metadataTools.getPrimaryKeyName(metaClass);
+        String refPrimaryKeyName = metadataTools.getPrimaryKeyName(refMetaClass);
+        if (primaryKeyName == null || refPrimaryKeyName == null) {
+            log.warn("Entities '{}' dependent via property '{}' can't be resolved: {} doesn't have primary key",
+                    metaClass.getName(), propertyPath, primaryKeyName == null ? metaClass.getName() : refMetaClass.getName());
+            return Optional.empty();
+        }
+
+        int currentEntityIndex = 1;
+        String currentEntityAlias = "e1";
+        StringBuilder currentPropertyPathSb = new StringBuilder(currentEntityAlias);
+        StringBuilder joinsSb = new StringBuilder();
+        for (MetaProperty property : metaProperties) {
+            currentPropertyPathSb.append('.').append(property.getName());
+            boolean oneToMany = property.getAnnotatedElement().isAnnotationPresent(OneToMany.class);
+            boolean manyToMany = property.getAnnotatedElement().isAnnotationPresent(ManyToMany.class);
+            if (oneToMany || manyToMany) {
+                currentEntityIndex++;
+                currentEntityAlias = "e" + currentEntityIndex;
+                joinsSb.append(" join ").append(currentPropertyPathSb).append(' ').append(currentEntityAlias);
+                currentPropertyPathSb = new StringBuilder(currentEntityAlias);
+            }
+        }
+        if (!isDependentEntityIdsQueryByReferences(propertyPath)) {
+            currentPropertyPathSb.append('.').append(refPrimaryKeyName);
+        }
+
+        String query = "select " + (currentEntityIndex > 1 ? "distinct " : "") + "e1." + primaryKeyName
+                + " from " + metaClass.getName() + " e1"
+                + joinsSb
+                + " where " + currentPropertyPathSb + " in :refs";
+        log.debug("Dependent entity ids query for property '{}': {}", propertyPath, query);
+        return Optional.of(query);
+    }
+
     protected static class PropertyTrackingInfo {
 
         protected final Class<?> trackedClassUpdate; //todo change both tracked class to their entity names?
@@ -278,6 +446,7 @@ public class IndexConfigurationManager {
 
         private final Map<String, IndexConfiguration> indexConfigurationsByEntityName = new HashMap<>();
         private final Map<String, IndexConfiguration> indexConfigurationsByIndexName = new HashMap<>();
+        private final Map<String, Set<String>> indexedPropertiesByEntityName = new HashMap<>();
         private final Map<Class<?>, Map<String, Set<MetaPropertyPath>>> referentiallyAffectedPropertiesForUpdate = new HashMap<>();
         private final Map<Class<?>, Set<MetaPropertyPath>> referentiallyAffectedPropertiesForDelete = new HashMap<>();
         private final Set<Class<?>> registeredEntityClasses = new HashSet<>();
@@ -302,6 +471,8 @@ public class IndexConfigurationManager {
                     .getDisplayedNameDescriptor()
                     .getInstanceNameRelatedProperties()
                     .forEach(this::processProperty);
+
+            registerIndexedProperties(indexConfiguration);
         }
 
         @Nullable
@@ -328,6 +499,10 @@ public class IndexConfigurationManager {
             return referentiallyAffectedPropertiesForDelete.get(entityClass);
         }
 
+        Set<String> getIndexedProperties(String entityName) {
+            return indexedPropertiesByEntityName.getOrDefault(entityName, Collections.emptySet());
+        }
+
         Collection<String> getAllIndexedEntities() {
             return indexConfigurationsByEntityName.keySet();
         }
@@ -351,6 +526,21 @@ public class IndexConfigurationManager {
             }
         }
 
+        private void registerIndexedProperties(IndexConfiguration indexConfiguration) {
+            IndexMappingConfiguration mappingConfiguration = indexConfiguration.getMapping();
+            Set<String> indexedProperties = new HashSet<>();
+            mappingConfiguration.getFields().values().stream()
+                    .filter(f -> !f.isStandalone())
+                    .flatMap(f -> f.getInstanceNameRelatedProperties() == null
+                            ? Stream.of(f.getMetaPropertyPath())
+                            : Stream.concat(Stream.of(f.getMetaPropertyPath()), f.getInstanceNameRelatedProperties().stream()))
+                    .forEach(propertyPath -> indexedProperties.add(propertyPath.getMetaProperties()[0].getName()));
+            mappingConfiguration.getDisplayedNameDescriptor().getInstanceNameRelatedProperties()
+                    .forEach(propertyPath -> indexedProperties.add(propertyPath.getMetaProperties()[0].getName()));
+            log.debug("Indexed properties of entity '{}': {}", indexConfiguration.getEntityName(), indexedProperties);
+            indexedPropertiesByEntityName.putIfAbsent(indexConfiguration.getEntityName(), Collections.unmodifiableSet(indexedProperties));
+        }
+
         private void processProperty(MetaPropertyPath propertyPath) {
             List<MetaPropertyPath> effectiveProperties;
             if (propertyPath.getRange().isClass()) {
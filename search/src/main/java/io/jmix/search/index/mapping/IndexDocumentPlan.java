@@ -0,0 +1,395 @@
+/*
+ * Copyright 2021 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jmix.search.index.mapping;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.jmix.core.metamodel.model.MetaPropertyPath;
+import io.jmix.search.index.mapping.strategy.PropertyValueExtractor;
+
+import javax.annotation.Nullable;
+import java.util.*;
+
+/**
+ * Immutable plan of building index documents for single index.
+ * <p>
+ * Contains flat ordered array of field accessors (with resolved property paths, value extractors and parameters)
+ * and the tree of target JSON objects. Every accessor has its own slot:
+ * values extracted from entity instance are stored in array by slots and then written by traversing the tree.
+ * <p>
+ * Plan is compiled once per index by {@link IndexConfigurationManager}.
+ */
+public class IndexDocumentPlan {
+
+    protected final FieldAccessor[] fieldAccessors;
+
+    protected final DocumentNode root;
+
+    protected final DisplayedNameDescriptor displayedNameDescriptor;
+
+    protected IndexDocumentPlan(FieldAccessor[] fieldAccessors, DocumentNode root, DisplayedNameDescriptor displayedNameDescriptor) {
+        this.fieldAccessors = fieldAccessors;
+        this.root = root;
+        this.displayedNameDescriptor = displayedNameDescriptor;
+    }
+
+    /**
+     * Compiles document plan for provided mapping. Standalone fields are skipped.
+     *
+     * @param mappingConfiguration index mapping
+     * @return {@link IndexDocumentPlan}
+     */
+    public static IndexDocumentPlan compile(IndexMappingConfiguration mappingConfiguration) {
+        List<FieldAccessor> accessors = new ArrayList<>();
+        DocumentNodeBuilder rootBuilder = new DocumentNodeBuilder(null);
+        for (MappingFieldDescriptor field : mappingConfiguration.getFields().values()) {
+            if (field.isStandalone()) {
+                continue;
+            }
+            String[] pathSegments = field.getIndexPropertyFullName().split("\\.");
+            DocumentNodeBuilder current = rootBuilder;
+            for (String segment : pathSegments) {
+                current = current.children.computeIfAbsent(segment, DocumentNodeBuilder::new);
+            }
+            current.fieldSlots.add(accessors.size());
+            accessors.add(new FieldAccessor(field, pathSegments));
+        }
+        return new IndexDocumentPlan(
+                accessors.toArray(new FieldAccessor[0]),
+                rootBuilder.build(),
+                mappingConfiguration.getDisplayedNameDescriptor()
+        );
+    }
+
+    /**
+     * Extracts values of all planned fields from provided instance.
+     *
+     * @param instance entity instance
+     * @return values by field slots. Null values are presented as nulls.
+     */
+    public JsonNode[] extractValues(Object instance) {
+        JsonNode[] values = new JsonNode[fieldAccessors.length];
+        for (int i = 0; i < fieldAccessors.length; i++) {
+            JsonNode value = fieldAccessors[i].getValue(instance);
+            values[i] = value.isNull() ? null : value;
+        }
+        return values;
+    }
+
+    /**
+     * Extracts values of provided field slots only.
+     *
+     * @param instance entity instance
+     * @param slots    field slots to extract
+     * @return values by field slots. Values of other slots are nulls.
+     */
+    public JsonNode[] extractValues(Object instance, int[] slots) {
+        JsonNode[] values = new JsonNode[fieldAccessors.length];
+        for (int slot : slots) {
+            JsonNode value = fieldAccessors[slot].getValue(instance);
+            values[slot] = value.isNull() ? null : value;
+        }
+        return values;
+    }
+
+    /**
+     * Creates plan of partial document containing fields whose values are taken from the entity
+     * referenced by provided property path (the property itself, nested properties and instance name related ones).
+     * <p>
+     * Partial document consists of entire top-level fields, so it can be merged into the existing document
+     * without leaving stale values. If any top-level field mixes affected and not affected fields
+     * the partial document can't be created.
+     *
+     * @param entityPropertyPath property path from the indexed entity to the referenced one
+     * @return {@link PartialDocumentPlan} or null if documents can't be updated partially
+     */
+    @Nullable
+    public PartialDocumentPlan createPartialPlan(String entityPropertyPath) {
+        Set<Integer> affectedSlots = new TreeSet<>();
+        for (int i = 0; i < fieldAccessors.length; i++) {
+            if (isAffectedField(fieldAccessors[i].getDescriptor(), entityPropertyPath)) {
+                affectedSlots.add(i);
+            }
+        }
+
+        List<DocumentNode> nodes = new ArrayList<>();
+        for (DocumentNode node : root.children) {
+            int affectedCount = 0;
+            for (int slot : node.subtreeFieldSlots) {
+                if (affectedSlots.contains(slot)) {
+                    affectedCount++;
+                }
+            }
+            if (affectedCount == 0) {
+                continue;
+            }
+            if (affectedCount < node.subtreeFieldSlots.length) {
+                return null;
+            }
+            nodes.add(node);
+        }
+
+        boolean displayedNameAffected = displayedNameDescriptor.getInstanceNameRelatedProperties().stream()
+                .anyMatch(propertyPath -> isAffectedPath(propertyPath.toPathString(), entityPropertyPath));
+
+        Set<String> fetchedProperties = new LinkedHashSet<>();
+        for (int slot : affectedSlots) {
+            MappingFieldDescriptor descriptor = fieldAccessors[slot].getDescriptor();
+            fetchedProperties.add(descriptor.getEntityPropertyFullName());
+            descriptor.getInstanceNameRelatedProperties().forEach(propertyPath -> fetchedProperties.add(propertyPath.toPathString()));
+        }
+        if (displayedNameAffected) {
+            displayedNameDescriptor.getInstanceNameRelatedProperties()
+                    .forEach(propertyPath -> fetchedProperties.add(propertyPath.toPathString()));
+        }
+
+        return new PartialDocumentPlan(
+                affectedSlots.stream().mapToInt(Integer::intValue).toArray(),
+                nodes.toArray(new DocumentNode[0]),
+                displayedNameAffected,
+                new ArrayList<>(fetchedProperties)
+        );
+    }
+
+    protected static boolean isAffectedField(MappingFieldDescriptor descriptor, String entityPropertyPath) {
+        if (isAffectedPath(descriptor.getEntityPropertyFullName(), entityPropertyPath)) {
+            return true;
+        }
+        return descriptor.getInstanceNameRelatedProperties().stream()
+                .anyMatch(propertyPath -> isAffectedPath(propertyPath.toPathString(), entityPropertyPath));
+    }
+
+    protected static boolean isAffectedPath(String propertyPath, String entityPropertyPath) {
+        return propertyPath.equals(entityPropertyPath) || propertyPath.startsWith(entityPropertyPath + ".");
+    }
+
+    public int getFieldsCount() {
+        return fieldAccessors.length;
+    }
+
+    public FieldAccessor getFieldAccessor(int slot) {
+        return fieldAccessors[slot];
+    }
+
+    /**
+     * Gets root of the document tree. Root has no name and contains top-level fields as children.
+     *
+     * @return root {@link DocumentNode}
+     */
+    public DocumentNode getRoot() {
+        return root;
+    }
+
+    public DisplayedNameDescriptor getDisplayedNameDescriptor() {
+        return displayedNameDescriptor;
+    }
+
+    /**
+     * Resolved accessor of single mapped field.
+     */
+    public static class FieldAccessor {
+
+        protected final MappingFieldDescriptor descriptor;
+        protected final MetaPropertyPath metaPropertyPath;
+        protected final PropertyValueExtractor propertyValueExtractor;
+        protected final Map<String, Object> parameters;
+        protected final String[] pathSegments;
+
+        protected FieldAccessor(MappingFieldDescriptor descriptor, String[] pathSegments) {
+            this.descriptor = descriptor;
+            this.metaPropertyPath = descriptor.getMetaPropertyPath();
+            this.propertyValueExtractor = descriptor.getPropertyValueExtractor();
+            this.parameters = descriptor.getParameters();
+            this.pathSegments = pathSegments;
+        }
+
+        public JsonNode getValue(Object instance) {
+            return propertyValueExtractor.getValue(instance, metaPropertyPath, parameters);
+        }
+
+        public MappingFieldDescriptor getDescriptor() {
+            return descriptor;
+        }
+
+        public MetaPropertyPath getMetaPropertyPath() {
+            return metaPropertyPath;
+        }
+
+        /**
+         * @return segments of the full index property name
+         */
+        public List<String> getPathSegments() {
+            return Collections.unmodifiableList(Arrays.asList(pathSegments));
+        }
+    }
+
+    /**
+     * Plan of partial document: subset of top-level fields of the document plan.
+     */
+    public static class PartialDocumentPlan {
+
+        protected final int[] fieldSlots;
+        protected final DocumentNode[] nodes;
+        protected final boolean displayedNameIncluded;
+        protected final List<String> fetchedProperties;
+
+        protected PartialDocumentPlan(int[] fieldSlots, DocumentNode[] nodes, boolean displayedNameIncluded, List<String> fetchedProperties) {
+            this.fieldSlots = fieldSlots;
+            this.nodes = nodes;
+            this.displayedNameIncluded = displayedNameIncluded;
+            this.fetchedProperties = Collections.unmodifiableList(fetchedProperties);
+        }
+
+        /**
+         * @return slots of fields included into the partial document. Returned array must not be modified
+         */
+        public int[] getFieldSlots() {
+            return fieldSlots;
+        }
+
+        public int getNodesCount() {
+            return nodes.length;
+        }
+
+        /**
+         * @return top-level node of the partial document
+         */
+        public DocumentNode getNode(int index) {
+            return nodes[index];
+        }
+
+        public boolean isDisplayedNameIncluded() {
+            return displayedNameIncluded;
+        }
+
+        /**
+         * @return properties of indexed entity required to build the partial document
+         */
+        public List<String> getFetchedProperties() {
+            return fetchedProperties;
+        }
+
+        /**
+         * @return true if provided reference doesn't affect the document
+         */
+        public boolean isEmpty() {
+            return nodes.length == 0 && !displayedNameIncluded;
+        }
+    }
+
+    /**
+     * Single JSON object field of the document.
+     */
+    public static class DocumentNode {
+
+        protected final String name;
+        protected final int[] fieldSlots;
+        protected final int[] subtreeFieldSlots;
+        protected final DocumentNode[] children;
+        protected final Set<String> childNames;
+
+        protected DocumentNode(@Nullable String name, int[] fieldSlots, int[] subtreeFieldSlots, DocumentNode[] children) {
+            this.name = name;
+            this.fieldSlots = fieldSlots;
+            this.subtreeFieldSlots = subtreeFieldSlots;
+            this.children = children;
+            Set<String> names = new HashSet<>();
+            for (DocumentNode child : children) {
+                names.add(child.name);
+            }
+            this.childNames = Collections.unmodifiableSet(names);
+        }
+
+        /**
+         * @return name of the field within parent object. Null for root
+         */
+        @Nullable
+        public String getName() {
+            return name;
+        }
+
+        public int getChildrenCount() {
+            return children.length;
+        }
+
+        public DocumentNode getChild(int index) {
+            return children[index];
+        }
+
+        public boolean hasChild(String name) {
+            return childNames.contains(name);
+        }
+
+        /**
+         * Checks if this node or any nested node has non-null value.
+         *
+         * @param values values by field slots
+         * @return true if node should be present in the document
+         */
+        public boolean hasValues(JsonNode[] values) {
+            for (int slot : subtreeFieldSlots) {
+                if (values[slot] != null) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Gets value of fields that are targeted exactly to this node.
+         * If there are several such fields the last non-null value is used.
+         *
+         * @param values values by field slots
+         * @return value or null
+         */
+        @Nullable
+        public JsonNode getOwnValue(JsonNode[] values) {
+            JsonNode result = null;
+            for (int slot : fieldSlots) {
+                if (values[slot] != null) {
+                    result = values[slot];
+                }
+            }
+            return result;
+        }
+    }
+
+    protected static class DocumentNodeBuilder {
+
+        protected final String name;
+        protected final List<Integer> fieldSlots = new ArrayList<>();
+        protected final Map<String, DocumentNodeBuilder> children = new LinkedHashMap<>();
+
+        protected DocumentNodeBuilder(@Nullable String name) {
+            this.name = name;
+        }
+
+        protected DocumentNode build() {
+            DocumentNode[] childNodes = children.values().stream()
+                    .map(DocumentNodeBuilder::build)
+                    .toArray(DocumentNode[]::new);
+            int[] ownSlots = fieldSlots.stream().mapToInt(Integer::intValue).toArray();
+
+            List<Integer> subtreeSlots = new ArrayList<>(fieldSlots);
+            for (DocumentNode childNode : childNodes) {
+                for (int slot : childNode.subtreeFieldSlots) {
+                    subtreeSlots.add(slot);
+                }
+            }
+            return new DocumentNode(name, ownSlots, subtreeSlots.stream().mapToInt(Integer::intValue).toArray(), childNodes);
+        }
+    }
+}
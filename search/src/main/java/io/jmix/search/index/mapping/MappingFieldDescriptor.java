@@ -147,6 +147,15 @@ public class MappingFieldDescriptor {
         return propertyValueExtractor.getValue(entity, metaPropertyPath, getParameters());
     }
 
+    /**
+     * Gets extractor of field value
+     *
+     * @return {@link PropertyValueExtractor}
+     */
+    public PropertyValueExtractor getPropertyValueExtractor() {
+        return propertyValueExtractor;
+    }
+
     public void setPropertyValueExtractor(PropertyValueExtractor propertyValueExtractor) {
         this.propertyValueExtractor = propertyValueExtractor;
     }
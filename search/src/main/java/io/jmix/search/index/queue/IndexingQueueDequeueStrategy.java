@@ -0,0 +1,75 @@
+/*
+ * Copyright 2021 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.jmix.search.index.queue;
+
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Defines the way queue items are claimed for processing.
+ */
+public enum IndexingQueueDequeueStrategy {
+
+    /**
+     * Loads the oldest items. Concurrent processing is prevented only within the current application instance.
+     */
+    LOCAL("local"),
+    /**
+     * Locks the oldest items with {@code SELECT ... FOR UPDATE SKIP LOCKED} and claims them in a short transaction,
+     * so every application instance of cluster processes its own batch without holding row locks during processing.
+     * Falls back to {@link #LEASE} for databases without such locking clause.
+     */
+    SKIP_LOCKED("skip-locked"),
+    /**
+     * Claims the oldest unclaimed items for the current application instance with a time-limited lease.
+     * Items of crashed instances are claimed again after lease expiration, items exceeding
+     * the max amount of attempts are moved to the dead letter queue. Supported by all databases.
+     */
+    LEASE("lease");
+
+    private final String key;
+
+    private static final Map<String, IndexingQueueDequeueStrategy> ENUM_MAP;
+
+    static {
+        Map<String, IndexingQueueDequeueStrategy> map = new HashMap<>();
+        for (IndexingQueueDequeueStrategy strategy : IndexingQueueDequeueStrategy.values()) {
+            map.put(strategy.key, strategy);
+        }
+        ENUM_MAP = Collections.unmodifiableMap(map);
+    }
+
+    IndexingQueueDequeueStrategy(String key) {
+        this.key = key;
+    }
+
+    public static IndexingQueueDequeueStrategy getByKey(String key) {
+        IndexingQueueDequeueStrategy strategy = getByKeyOrNull(key);
+        if (strategy == null) {
+            throw new RuntimeException("Indexing Queue Dequeue Strategy '" + key + "' not found");
+        }
+        return strategy;
+    }
+
+    @Nullable
+    public static IndexingQueueDequeueStrategy getByKeyOrNull(String key) {
+        return ENUM_MAP.get(key.toLowerCase());
+    }
+}
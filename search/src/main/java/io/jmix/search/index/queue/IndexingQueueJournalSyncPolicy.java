@@ -0,0 +1,76 @@
+/*
+ * Copyright 2021 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.jmix.search.index.queue;
+
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Defines when records of the indexing queue journal are forced to the storage device.
+ */
+public enum IndexingQueueJournalSyncPolicy {
+
+    /**
+     * Journal is forced after every appended group of records. The most durable and the slowest option.
+     */
+    ALWAYS("always"),
+    /**
+     * Journal is forced by the queue processing thread not more often than once per configured interval.
+     * Records appended during the last interval may be lost on power failure, but not on process crash.
+     */
+    INTERVAL("interval"),
+    /**
+     * Journal is never forced explicitly, the operating system decides when to write pages.
+     */
+    NONE("none");
+
+    private final String key;
+
+    private static final Map<String, IndexingQueueJournalSyncPolicy> ENUM_MAP;
+
+    static {
+        Map<String, IndexingQueueJournalSyncPolicy> map = new HashMap<>();
+        for (IndexingQueueJournalSyncPolicy policy : IndexingQueueJournalSyncPolicy.values()) {
+            map.put(policy.key, policy);
+        }
+        ENUM_MAP = Collections.unmodifiableMap(map);
+    }
+
+    IndexingQueueJournalSyncPolicy(String key) {
+        this.key = key;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public static IndexingQueueJournalSyncPolicy getByKey(String key) {
+        IndexingQueueJournalSyncPolicy policy = getByKeyOrNull(key);
+        if (policy == null) {
+            throw new RuntimeException("Indexing Queue Journal Sync Policy '" + key + "' not found");
+        }
+        return policy;
+    }
+
+    @Nullable
+    public static IndexingQueueJournalSyncPolicy getByKeyOrNull(String key) {
+        return ENUM_MAP.get(key.toLowerCase());
+    }
+}
@@ -17,6 +17,7 @@
 package io.jmix.search.index.queue;
 
 import io.jmix.core.Id;
+import io.jmix.core.metamodel.model.MetaPropertyPath;
 
 import java.util.Collection;
 
@@ -79,6 +80,21 @@ public interface IndexingQueueManager {
      */
     int enqueueIndexAll(String entityName);
 
+    /**
+     * Continues interrupted 'enqueue all' processes of all entities starting after the last enqueued instances.
+     *
+     * @return amount of enqueued instances
+     */
+    int resumeEnqueueIndexAll();
+
+    /**
+     * Continues interrupted 'enqueue all' process of provided entity starting after the last enqueued instance.
+     *
+     * @param entityName entity name
+     * @return amount of enqueued instances
+     */
+    int resumeEnqueueIndexAll(String entityName);
+
     /**
      * Sends provided entity instance to indexing queue in order to delete it from index.
      *
@@ -111,6 +127,16 @@ public interface IndexingQueueManager {
      */
     int enqueueDeleteCollectionByEntityIds(Collection<Id<?>> entityIds);
 
+    /**
+     * Sends entity instances to indexing queue by provided IDs in order to reindex entities referring to them
+     * via provided property path. Dependent entities are resolved and enqueued during queue processing.
+     *
+     * @param entityIds           IDs of changed entity instances
+     * @param backRefPropertyPath property path from dependent entity to the changed one
+     * @return amount of enqueued instances
+     */
+    int enqueueCascadeCollectionByEntityIds(Collection<Id<?>> entityIds, MetaPropertyPath backRefPropertyPath);
+
     /**
      * Retrieves next batch of items from indexing queue and processes them - store/remove related documents in index.
      *
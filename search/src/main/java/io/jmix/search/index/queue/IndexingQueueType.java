@@ -0,0 +1,79 @@
+/*
+ * Copyright 2021 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.jmix.search.index.queue;
+
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Defines the storage of indexing queue.
+ */
+public enum IndexingQueueType {
+
+    /**
+     * Queue is stored in the database table. Queue items survive application restart
+     * and can be processed by any application instance.
+     */
+    JPA("jpa"),
+    /**
+     * Queue is stored in bounded in-memory buffer of the current application instance.
+     * Items are enqueued after commit of transaction and processed by dedicated thread.
+     * Items are lost on application restart, so indexes should be re-synchronized after it.
+     */
+    IN_MEMORY("in-memory"),
+    /**
+     * Queue items are appended to the segmented memory-mapped journal on local disk and dispatched through
+     * the in-memory buffer. Items which weren't processed before application restart are restored from the journal.
+     */
+    JOURNAL("journal");
+
+    private final String key;
+
+    private static final Map<String, IndexingQueueType> ENUM_MAP;
+
+    static {
+        Map<String, IndexingQueueType> map = new HashMap<>();
+        for (IndexingQueueType type : IndexingQueueType.values()) {
+            map.put(type.key, type);
+        }
+        ENUM_MAP = Collections.unmodifiableMap(map);
+    }
+
+    IndexingQueueType(String key) {
+        this.key = key;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public static IndexingQueueType getByKey(String key) {
+        IndexingQueueType type = getByKeyOrNull(key);
+        if (type == null) {
+            throw new RuntimeException("Indexing Queue Type '" + key + "' not found");
+        }
+        return type;
+    }
+
+    @Nullable
+    public static IndexingQueueType getByKeyOrNull(String key) {
+        return ENUM_MAP.get(key.toLowerCase());
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2021 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.jmix.search.index.queue.entity;
+
+import io.jmix.core.entity.annotation.JmixGeneratedValue;
+import io.jmix.core.metamodel.annotation.DependsOnProperties;
+import io.jmix.core.metamodel.annotation.InstanceName;
+import io.jmix.core.metamodel.annotation.JmixEntity;
+import io.jmix.search.index.queue.impl.IndexingOperation;
+import org.springframework.data.annotation.CreatedBy;
+import org.springframework.data.annotation.CreatedDate;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Queue item that has not been processed successfully within the max amount of attempts.
+ * Such items are not processed automatically anymore and can be analyzed and re-enqueued manually.
+ */
+@JmixEntity
+@Table(name = "SEARCH_DEAD_LETTER_QUEUE", indexes = {
+        @Index(name = "IDX_SEARCH_DEAD_LETTER_E_NAME", columnList = "ENTITY_NAME")
+})
+@Entity(name = "search_DeadLetterQueueItem")
+public class DeadLetterQueueItem {
+
+    @JmixGeneratedValue
+    @Id
+    @Column(name = "ID", nullable = false)
+    private UUID id;
+
+    @NotNull
+    @Column(name = "OPERATION", nullable = false)
+    private String operation;
+
+    @NotNull
+    @Column(name = "ENTITY_ID", nullable = false, length = 1000)
+    private String entityId;
+
+    @Column(name = "ENTITY_NAME", length = 1000)
+    private String entityName;
+
+    @Column(name = "ATTEMPT_COUNT")
+    private Integer attemptCount;
+
+    @Column(name = "PROPERTY_PATH", length = 1000)
+    private String propertyPath;
+
+    @Column(name = "LAST_CLAIMED_BY")
+    private String lastClaimedBy;
+
+    @Column(name = "ENQUEUED_DATE")
+    private Date enqueuedDate;
+
+    @CreatedBy
+    @Column(name = "CREATED_BY")
+    private String createdBy;
+
+    @CreatedDate
+    @Column(name = "CREATED_DATE")
+    private Date createdDate;
+
+    public UUID getId() {
+        return id;
+    }
+
+    public void setId(UUID id) {
+        this.id = id;
+    }
+
+    public IndexingOperation getOperation() {
+        return IndexingOperation.fromId(operation);
+    }
+
+    public void setOperation(IndexingOperation operation) {
+        this.operation = operation.getId();
+    }
+
+    public String getEntityId() {
+        return entityId;
+    }
+
+    public void setEntityId(String entityId) {
+        this.entityId = entityId;
+    }
+
+    public String getEntityName() {
+        return entityName;
+    }
+
+    public void setEntityName(String entityName) {
+        this.entityName = entityName;
+    }
+
+    public Integer getAttemptCount() {
+        return attemptCount;
+    }
+
+    public void setAttemptCount(Integer attemptCount) {
+        this.attemptCount = attemptCount;
+    }
+
+    public String getPropertyPath() {
+        return propertyPath;
+    }
+
+    public void setPropertyPath(String propertyPath) {
+        this.propertyPath = propertyPath;
+    }
+
+    public String getLastClaimedBy() {
+        return lastClaimedBy;
+    }
+
+    public void setLastClaimedBy(String lastClaimedBy) {
+        this.lastClaimedBy = lastClaimedBy;
+    }
+
+    public Date getEnqueuedDate() {
+        return enqueuedDate;
+    }
+
+    public void setEnqueuedDate(Date enqueuedDate) {
+        this.enqueuedDate = enqueuedDate;
+    }
+
+    public String getCreatedBy() {
+        return createdBy;
+    }
+
+    public void setCreatedBy(String createdBy) {
+        this.createdBy = createdBy;
+    }
+
+    public Date getCreatedDate() {
+        return createdDate;
+    }
+
+    public void setCreatedDate(Date createdDate) {
+        this.createdDate = createdDate;
+    }
+
+    @InstanceName
+    @DependsOnProperties({"entityId", "entityName"})
+    public String getInstanceName() {
+        return String.format("Dead Letter Queue Item[%s : %s]", entityName, entityId);
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2021 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jmix.search.index.queue.entity;
+
+import io.jmix.core.entity.annotation.JmixGeneratedValue;
+import io.jmix.core.metamodel.annotation.DependsOnProperties;
+import io.jmix.core.metamodel.annotation.InstanceName;
+import io.jmix.core.metamodel.annotation.JmixEntity;
+import org.springframework.data.annotation.CreatedBy;
+import org.springframework.data.annotation.CreatedDate;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * State of the active 'enqueue index all' process of single entity.
+ * Stores the last enqueued primary key in order to resume enqueueing after interruption.
+ */
+@JmixEntity
+@Table(name = "SEARCH_ENQUEUEING_SESSION", uniqueConstraints = {
+        @UniqueConstraint(name = "IDX_SEARCH_ENQ_SESSION_ENTITY", columnNames = "ENTITY_NAME")
+})
+@Entity(name = "search_EnqueueingSession")
+public class EnqueueingSession {
+
+    @JmixGeneratedValue
+    @Id
+    @Column(name = "ID", nullable = false)
+    private UUID id;
+
+    @NotNull
+    @Column(name = "ENTITY_NAME", nullable = false)
+    private String entityName;
+
+    @Column(name = "LAST_ENQUEUED_ID", length = 1000)
+    private String lastEnqueuedId;
+
+    @Column(name = "ENQUEUED_COUNT")
+    private Long enqueuedCount;
+
+    @CreatedBy
+    @Column(name = "CREATED_BY")
+    private String createdBy;
+
+    @CreatedDate
+    @Column(name = "CREATED_DATE")
+    private Date createdDate;
+
+    public UUID getId() {
+        return id;
+    }
+
+    public void setId(UUID id) {
+        this.id = id;
+    }
+
+    public String getEntityName() {
+        return entityName;
+    }
+
+    public void setEntityName(String entityName) {
+        this.entityName = entityName;
+    }
+
+    /**
+     * @return serialized primary key of the last enqueued instance or null if nothing has been enqueued yet
+     */
+    public String getLastEnqueuedId() {
+        return lastEnqueuedId;
+    }
+
+    public void setLastEnqueuedId(String lastEnqueuedId) {
+        this.lastEnqueuedId = lastEnqueuedId;
+    }
+
+    public Long getEnqueuedCount() {
+        return enqueuedCount;
+    }
+
+    public void setEnqueuedCount(Long enqueuedCount) {
+        this.enqueuedCount = enqueuedCount;
+    }
+
+    public String getCreatedBy() {
+        return createdBy;
+    }
+
+    public void setCreatedBy(String createdBy) {
+        this.createdBy = createdBy;
+    }
+
+    public Date getCreatedDate() {
+        return createdDate;
+    }
+
+    public void setCreatedDate(Date createdDate) {
+        this.createdDate = createdDate;
+    }
+
+    @InstanceName
+    @DependsOnProperties({"entityName", "lastEnqueuedId"})
+    public String getInstanceName() {
+        return String.format("Enqueueing Session[%s : %s]", entityName, lastEnqueuedId);
+    }
+}
@@ -31,7 +31,9 @@ import java.util.UUID;
 
 @JmixEntity
 @Table(name = "SEARCH_INDEXING_QUEUE", indexes = {
-        @Index(name = "IDX_SEARCH_IDXNG_QUEUE_E_NAME", columnList = "ENTITY_NAME")
+        @Index(name = "IDX_SEARCH_IDXNG_QUEUE_E_N_CR", columnList = "ENTITY_NAME, CREATED_DATE"),
+        @Index(name = "IDX_SEARCH_IDXNG_QUEUE_CR_DATE", columnList = "CREATED_DATE"),
+        @Index(name = "IDX_SEARCH_IDXNG_QUEUE_E_ID", columnList = "ENTITY_ID")
 })
 @Entity(name = "search_IndexingQueue")
 public class IndexingQueueItem {
@@ -60,6 +62,18 @@ public class IndexingQueueItem {
     @Column(name = "CREATED_DATE")
     private Date createdDate;
 
+    @Column(name = "CLAIMED_BY")
+    private String claimedBy;
+
+    @Column(name = "CLAIMED_DATE")
+    private Date claimedDate;
+
+    @Column(name = "ATTEMPT_COUNT")
+    private Integer attemptCount;
+
+    @Column(name = "PROPERTY_PATH", length = 1000)
+    private String propertyPath;
+
     public String getEntityName() {
         return entityName;
     }
@@ -100,6 +114,42 @@ public class IndexingQueueItem {
         this.createdBy = createdBy;
     }
 
+    public String getClaimedBy() {
+        return claimedBy;
+    }
+
+    public void setClaimedBy(String claimedBy) {
+        this.claimedBy = claimedBy;
+    }
+
+    public Date getClaimedDate() {
+        return claimedDate;
+    }
+
+    public void setClaimedDate(Date claimedDate) {
+        this.claimedDate = claimedDate;
+    }
+
+    public Integer getAttemptCount() {
+        return attemptCount;
+    }
+
+    public void setAttemptCount(Integer attemptCount) {
+        this.attemptCount = attemptCount;
+    }
+
+    /**
+     * @return back-reference property path of cascade item in format 'dependentEntityName:propertyPath',
+     * null for other operations
+     */
+    public String getPropertyPath() {
+        return propertyPath;
+    }
+
+    public void setPropertyPath(String propertyPath) {
+        this.propertyPath = propertyPath;
+    }
+
     public UUID getId() {
         return id;
     }
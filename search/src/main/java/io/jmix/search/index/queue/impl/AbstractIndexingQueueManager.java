@@ -0,0 +1,652 @@
+/*
+ * Copyright 2021 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.jmix.search.index.queue.impl;
+
+import io.jmix.core.*;
+import io.jmix.core.common.util.Preconditions;
+import io.jmix.core.metamodel.model.MetaClass;
+import io.jmix.core.metamodel.model.MetaPropertyPath;
+import io.jmix.core.security.SystemAuthenticator;
+import io.jmix.data.PersistenceHints;
+import io.jmix.data.StoreAwareLocator;
+import io.jmix.search.SearchProperties;
+import io.jmix.search.index.EntityIndexer;
+import io.jmix.search.index.IndexConfiguration;
+import io.jmix.search.index.IndexResult;
+import io.jmix.search.index.impl.IndexStateRegistry;
+import io.jmix.search.index.impl.IndexingLocker;
+import io.jmix.search.index.mapping.IndexConfigurationManager;
+import io.jmix.search.index.queue.IndexingQueueManager;
+import io.jmix.search.index.queue.entity.IndexingQueueItem;
+import org.apache.commons.collections4.MapUtils;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.Nullable;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static java.lang.String.format;
+
+/**
+ * Base implementation of {@link IndexingQueueManager} independent of the queue storage:
+ * creates queue items for entity instances and processes dequeued items.
+ */
+public abstract class AbstractIndexingQueueManager implements IndexingQueueManager {
+
+    protected static final String CASCADE_PROPERTY_PATH_SEPARATOR = ":";
+    protected static final int PROCESSING_PIPELINE_DEPTH = 2;
+
+    private static final Logger log = LoggerFactory.getLogger(AbstractIndexingQueueManager.class);
+
+    @Autowired
+    protected Metadata metadata;
+    @Autowired
+    protected MetadataTools metadataTools;
+    @Autowired
+    protected EntityIndexer entityIndexer;
+    @Autowired
+    protected StoreAwareLocator storeAwareLocator;
+    @Autowired
+    protected IndexConfigurationManager indexConfigurationManager;
+    @Autowired
+    protected IdSerialization idSerialization;
+    @Autowired
+    protected SystemAuthenticator authenticator;
+    @Autowired
+    protected IndexingLocker locker;
+    @Autowired
+    protected SearchProperties searchProperties;
+    @Autowired
+    protected IndexStateRegistry indexStateRegistry;
+
+    protected ExecutorService queueProcessingExecutor;
+
+    @PostConstruct
+    protected void postConstruct() {
+        int threadsCount = searchProperties.getProcessQueueThreadsCount();
+        if (threadsCount > 1) {
+            log.debug("Queue items will be processed by {} worker threads", threadsCount);
+            queueProcessingExecutor = Executors.newFixedThreadPool(
+                    threadsCount,
+                    new BasicThreadFactory.Builder()
+                            .namingPattern("search-queue-processing-%d")
+                            .daemon(true)
+                            .build()
+            );
+        }
+    }
+
+    @PreDestroy
+    protected void preDestroy() {
+        if (queueProcessingExecutor != null) {
+            queueProcessingExecutor.shutdownNow();
+        }
+    }
+
+    @Override
+    public int enqueueIndex(Object entityInstance) {
+        Preconditions.checkNotNullArgument(entityInstance);
+        return enqueueIndexCollection(Collections.singletonList(entityInstance));
+    }
+
+    @Override
+    public int enqueueIndexCollection(Collection<Object> entityInstances) {
+        Preconditions.checkNotNullArgument(entityInstances);
+        return enqueue(entityInstances, IndexingOperation.INDEX);
+    }
+
+    @Override
+    public int enqueueIndexByEntityId(Id<?> entityId) {
+        Preconditions.checkNotNullArgument(entityId);
+        return enqueueIndexCollectionByEntityIds(Collections.singletonList(entityId));
+    }
+
+    @Override
+    public int enqueueIndexCollectionByEntityIds(Collection<Id<?>> entityIds) {
+        Preconditions.checkNotNullArgument(entityIds);
+        return enqueueByIds(entityIds, IndexingOperation.INDEX);
+    }
+
+    @Override
+    public int enqueueIndexAll() {
+        return indexConfigurationManager.getAllIndexConfigurations().stream()
+                .map(IndexConfiguration::getEntityName)
+                .map(this::enqueueIndexAll)
+                .reduce(Integer::sum)
+                .orElse(0);
+    }
+
+    @Override
+    public int enqueueDelete(Object entityInstance) {
+        Preconditions.checkNotNullArgument(entityInstance);
+        return enqueueDeleteCollection(Collections.singletonList(entityInstance));
+    }
+
+    @Override
+    public int enqueueDeleteCollection(Collection<Object> entityInstances) {
+        Preconditions.checkNotNullArgument(entityInstances);
+        return enqueue(entityInstances, IndexingOperation.DELETE);
+    }
+
+    @Override
+    public int enqueueDeleteByEntityId(Id<?> entityId) {
+        Preconditions.checkNotNullArgument(entityId);
+        return enqueueDeleteCollectionByEntityIds(Collections.singletonList(entityId));
+    }
+
+    @Override
+    public int enqueueDeleteCollectionByEntityIds(Collection<Id<?>> entityIds) {
+        Preconditions.checkNotNullArgument(entityIds);
+        return enqueueByIds(entityIds, IndexingOperation.DELETE);
+    }
+
+    @Override
+    public int enqueueCascadeCollectionByEntityIds(Collection<Id<?>> entityIds, MetaPropertyPath backRefPropertyPath) {
+        Preconditions.checkNotNullArgument(entityIds);
+        Preconditions.checkNotNullArgument(backRefPropertyPath);
+        String propertyPath = backRefPropertyPath.getMetaClass().getName() + CASCADE_PROPERTY_PATH_SEPARATOR + backRefPropertyPath.toPathString();
+        List<IndexingQueueItem> queueItems = entityIds.stream()
+                .map(id -> {
+                    IndexingQueueItem queueItem = createQueueItem(
+                            metadata.getClass(id.getEntityClass()), idSerialization.idToString(id), IndexingOperation.CASCADE);
+                    queueItem.setPropertyPath(propertyPath);
+                    return queueItem;
+                })
+                .collect(Collectors.toList());
+        return enqueue(queueItems);
+    }
+
+    @Override
+    public int processNextBatch() {
+        return processNextBatch(searchProperties.getProcessQueueBatchSize());
+    }
+
+    @Override
+    public int processNextBatch(int batchSize) {
+        return processQueue(batchSize, batchSize);
+    }
+
+    @Override
+    public int processEntireQueue() {
+        return processQueue(searchProperties.getProcessQueueBatchSize(), -1);
+    }
+
+    protected String getPrimaryKeyName(MetaClass metaClass) {
+        String entityName = metaClass.getName();
+        String primaryKeyName = metadataTools.getPrimaryKeyName(metaClass);
+        log.debug("Primary key of entity '{}': '{}'", entityName, primaryKeyName);
+        if (primaryKeyName == null) {
+            throw new IllegalArgumentException(String.format("Unable to enqueue instances of entity '%s' - entity doesn't have primary key", entityName));
+        }
+        return primaryKeyName;
+    }
+
+    protected List<?> loadRawIdsPage(MetaClass metaClass, String primaryKeyName, @Nullable Object lastRawId, int pageSize) {
+        String entityName = metaClass.getName();
+        TransactionTemplate transactionTemplate = storeAwareLocator.getTransactionTemplate(metaClass.getStore().getName());
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRED);
+        List<?> rawIds = transactionTemplate.execute(status -> {
+            EntityManager em = storeAwareLocator.getEntityManager(metaClass.getStore().getName());
+            Query query;
+            if (lastRawId == null) {
+                query = em.createQuery(format("select e.%s from %s e order by e.%s", primaryKeyName, entityName, primaryKeyName));
+            } else {
+                query = em.createQuery(format("select e.%s from %s e where e.%s > :lastId order by e.%s",
+                        primaryKeyName, entityName, primaryKeyName, primaryKeyName));
+                query.setParameter("lastId", lastRawId);
+            }
+            query.setMaxResults(pageSize);
+            return query.getResultList();
+        });
+        return rawIds == null ? Collections.emptyList() : rawIds;
+    }
+
+    /**
+     * Loads page of primary keys by offset pagination. It's used for entities with composite primary key,
+     * which don't support keyset pagination.
+     */
+    protected List<?> loadRawIdsPageByOffset(MetaClass metaClass, String primaryKeyName, int offset, int pageSize) {
+        String entityName = metaClass.getName();
+        TransactionTemplate transactionTemplate = storeAwareLocator.getTransactionTemplate(metaClass.getStore().getName());
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRED);
+        List<?> rawIds = transactionTemplate.execute(status -> {
+            EntityManager em = storeAwareLocator.getEntityManager(metaClass.getStore().getName());
+            Query query = em.createQuery(format("select e.%s from %s e order by e.%s", primaryKeyName, entityName, primaryKeyName));
+            query.setFirstResult(offset);
+            query.setMaxResults(pageSize);
+            return query.getResultList();
+        });
+        return rawIds == null ? Collections.emptyList() : rawIds;
+    }
+
+    /**
+     * Enqueues all instances of entity with composite primary key. Keys are loaded by offset pagination, every page
+     * is enqueued separately, so memory consumption doesn't depend on amount of instances. Instances deleted
+     * concurrently can shift pages, but changes of instances made during enqueueing are tracked anyway.
+     *
+     * @return amount of enqueued instances
+     */
+    protected int enqueueRawIdsByOffsetPages(MetaClass metaClass, String primaryKeyName, int batchSize) {
+        Class<Object> entityClass = metaClass.getJavaClass();
+        String entityName = metaClass.getName();
+        int totalEnqueued = 0;
+        int offset = 0;
+        List<?> rawIds;
+        do {
+            rawIds = loadRawIdsPageByOffset(metaClass, primaryKeyName, offset, batchSize);
+            log.trace("Loaded {} raw ids of entity '{}' from offset {}", rawIds.size(), entityName, offset);
+            if (!rawIds.isEmpty()) {
+                List<IndexingQueueItem> queueItems = rawIds.stream()
+                        .map(id -> idSerialization.idToString(Id.of(id, entityClass)))
+                        .map(id -> createQueueItem(entityName, id, IndexingOperation.INDEX))
+                        .collect(Collectors.toList());
+                int enqueued = enqueue(queueItems);
+                totalEnqueued += enqueued;
+                offset += rawIds.size();
+                log.debug("Enqueued next {} instances of entity '{}': Total enqueued = {}", enqueued, entityName, totalEnqueued);
+            }
+        } while (rawIds.size() == batchSize);
+
+        return totalEnqueued;
+    }
+
+    protected List<IndexingQueueItem> processDequeuedItems(List<IndexingQueueItem> queueItems, int partitionsCount) {
+        if (partitionsCount > 1) {
+            return processQueueItemsInParallel(queueItems, partitionsCount);
+        } else {
+            return processQueueItems(queueItems);
+        }
+    }
+
+    /**
+     * Splits dequeued items into partitions by entity and processes every partition
+     * (entity reload, document building and bulk submission) on the queue processing worker pool.
+     * <p>
+     * All items related to the same entity instance fall into the same partition,
+     * so operations for single document are never applied concurrently.
+     * <p>
+     * Items are split into {@link #PROCESSING_PIPELINE_DEPTH} partitions per worker. Worker doesn't wait for
+     * responses of bulk requests of the partition and takes the next one: reload of entities and building of
+     * documents overlap with execution of the previous requests by Elasticsearch. Amount of requests in flight
+     * is limited by {@link io.jmix.search.SearchProperties#getMaxInFlightBulkRequests()}.
+     *
+     * @param queueItems      dequeued items
+     * @param partitionsCount amount of workers
+     * @return successfully processed queue items
+     */
+    protected List<IndexingQueueItem> processQueueItemsInParallel(List<IndexingQueueItem> queueItems, int partitionsCount) {
+        List<List<IndexingQueueItem>> partitions = partitionQueueItems(queueItems, partitionsCount * PROCESSING_PIPELINE_DEPTH);
+
+        List<Future<CompletableFuture<List<IndexingQueueItem>>>> futures = new ArrayList<>(partitions.size());
+        for (List<IndexingQueueItem> partition : partitions) {
+            if (!partition.isEmpty()) {
+                futures.add(queueProcessingExecutor.submit(() -> authenticator.withSystem(() -> processQueueItemsAsync(partition))));
+            }
+        }
+
+        List<IndexingQueueItem> successfullyProcessedQueueItems = new ArrayList<>(queueItems.size());
+        for (Future<CompletableFuture<List<IndexingQueueItem>>> future : futures) {
+            CompletableFuture<List<IndexingQueueItem>> partitionResult = getPartitionProcessingResult(future);
+            if (partitionResult != null) {
+                successfullyProcessedQueueItems.addAll(partitionResult.join());
+            }
+        }
+        return successfullyProcessedQueueItems;
+    }
+
+    protected List<List<IndexingQueueItem>> partitionQueueItems(List<IndexingQueueItem> queueItems, int partitionsCount) {
+        List<List<IndexingQueueItem>> partitions = new ArrayList<>(partitionsCount);
+        for (int i = 0; i < partitionsCount; i++) {
+            partitions.add(new ArrayList<>());
+        }
+        queueItems.forEach(item -> {
+            int partitionIndex = Math.floorMod(Objects.hash(item.getEntityName(), item.getEntityId()), partitionsCount);
+            partitions.get(partitionIndex).add(item);
+        });
+        return partitions;
+    }
+
+    @Nullable
+    protected CompletableFuture<List<IndexingQueueItem>> getPartitionProcessingResult(Future<CompletableFuture<List<IndexingQueueItem>>> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while waiting for processing of queue items partition");
+            return null;
+        } catch (ExecutionException e) {
+            log.error("Unable to process partition of queue items", e.getCause());
+            return null;
+        }
+    }
+
+    protected List<IndexingQueueItem> processQueueItems(List<IndexingQueueItem> queueItems) {
+        return processQueueItemsAsync(queueItems).join();
+    }
+
+    /**
+     * Expands cascade items, reloads entities, builds documents and submits bulk requests.
+     * Returned future is completed when responses of all requests are handled, the calling thread
+     * doesn't wait for them. Failures of groups are logged, items of such groups are not returned as processed.
+     *
+     * @param queueItems queue items
+     * @return future of successfully processed queue items
+     */
+    protected CompletableFuture<List<IndexingQueueItem>> processQueueItemsAsync(List<IndexingQueueItem> queueItems) {
+        List<IndexingQueueItem> successfullyProcessedQueueItems = new ArrayList<>(queueItems.size());
+        List<IndexingQueueItem> cascadeQueueItems = queueItems.stream()
+                .filter(item -> item.getOperation() == IndexingOperation.CASCADE)
+                .collect(Collectors.toList());
+        if (!cascadeQueueItems.isEmpty()) {
+            successfullyProcessedQueueItems.addAll(processCascadeQueueItems(cascadeQueueItems));
+            queueItems = queueItems.stream()
+                    .filter(item -> item.getOperation() != IndexingOperation.CASCADE)
+                    .collect(Collectors.toList());
+        }
+
+        Map<IndexingOperation, Map<Id<?>, List<IndexingQueueItem>>> groupedQueueItems = groupQueueItems(queueItems);
+
+        Map<Id<?>, List<IndexingQueueItem>> itemsForIndex = groupedQueueItems.get(IndexingOperation.INDEX);
+        Map<Id<?>, List<IndexingQueueItem>> itemsForDelete = groupedQueueItems.get(IndexingOperation.DELETE);
+        //todo check case update after delete (restore entity?)
+
+        List<CompletableFuture<List<IndexingQueueItem>>> groupFutures = new ArrayList<>(2);
+        if (MapUtils.isNotEmpty(itemsForIndex)) {
+            groupFutures.add(processQueueItemsGroup(itemsForIndex, entityIndexer::indexCollectionByEntityIdsAsync));
+        }
+        if (MapUtils.isNotEmpty(itemsForDelete)) {
+            groupFutures.add(processQueueItemsGroup(itemsForDelete, entityIndexer::deleteCollectionByEntityIdsAsync));
+        }
+
+        List<CompletableFuture<List<IndexingQueueItem>>> handledGroupFutures = groupFutures.stream()
+                .map(groupFuture -> groupFuture.exceptionally(e -> {
+                    log.error("Unable to process group of queue items", e instanceof CompletionException ? e.getCause() : e);
+                    return Collections.emptyList();
+                }))
+                .collect(Collectors.toList());
+        return CompletableFuture.allOf(handledGroupFutures.toArray(new CompletableFuture[0]))
+                .thenApply(v -> {
+                    handledGroupFutures.forEach(groupFuture -> successfullyProcessedQueueItems.addAll(groupFuture.join()));
+                    return successfullyProcessedQueueItems;
+                });
+    }
+
+    /**
+     * Expands cascade items: loads ids of dependent entities by pages and enqueues them for indexing.
+     * Every page is enqueued separately, so memory consumption doesn't depend on amount of dependent entities.
+     * Keys of dependent entities with composite primary key are loaded by offset pagination.
+     *
+     * @param queueItems cascade items
+     * @return successfully expanded items
+     */
+    protected List<IndexingQueueItem> processCascadeQueueItems(List<IndexingQueueItem> queueItems) {
+        List<IndexingQueueItem> successfullyProcessedQueueItems = new ArrayList<>(queueItems.size());
+        for (IndexingQueueItem queueItem : queueItems) {
+            try {
+                int count = expandCascadeQueueItem(queueItem);
+                log.debug("Cascade item {} has been expanded into {} dependent entities", queueItem, count);
+                successfullyProcessedQueueItems.add(queueItem);
+            } catch (Exception e) {
+                log.error("Unable to expand cascade item {}", queueItem, e);
+            }
+        }
+        return successfullyProcessedQueueItems;
+    }
+
+    protected int expandCascadeQueueItem(IndexingQueueItem queueItem) {
+        MetaPropertyPath backRefPropertyPath = resolveCascadePropertyPath(queueItem.getPropertyPath());
+        if (backRefPropertyPath == null) {
+            log.warn("Cascade item {} is skipped: unknown property path '{}'", queueItem, queueItem.getPropertyPath());
+            return 0;
+        }
+        MetaClass metaClass = backRefPropertyPath.getMetaClass();
+        Class<Object> entityClass = metaClass.getJavaClass();
+        Object refId = idSerialization.stringToId(queueItem.getEntityId()).getValue();
+        int pageSize = searchProperties.getReindexEntityEnqueueBatchSize();
+
+        // keyset pagination requires single primary key
+        boolean keysetPagination = !metadataTools.hasCompositePrimaryKey(metaClass);
+        int count = 0;
+        int offset = 0;
+        Object lastRawId = null;
+        List<?> rawIds;
+        do {
+            rawIds = keysetPagination
+                    ? loadDependentRawIdsPage(backRefPropertyPath, refId, lastRawId, pageSize)
+                    : loadDependentRawIdsPageByOffset(backRefPropertyPath, refId, offset, pageSize);
+            if (!rawIds.isEmpty()) {
+                List<Id<?>> ids = rawIds.stream()
+                        .map(rawId -> Id.of(rawId, entityClass))
+                        .collect(Collectors.toList());
+                count += searchProperties.isIndexingQueuePartialUpdateEnabled()
+                        ? indexReferenceFields(ids, backRefPropertyPath)
+                        : enqueueIndexCollectionByEntityIds(ids);
+                lastRawId = rawIds.get(rawIds.size() - 1);
+                offset += rawIds.size();
+            }
+        } while (rawIds.size() == pageSize);
+        return count;
+    }
+
+    /**
+     * Updates fields of dependent documents taken from the changed entity directly.
+     * Instances that failed to be updated are enqueued for entire indexing.
+     */
+    protected int indexReferenceFields(List<Id<?>> ids, MetaPropertyPath backRefPropertyPath) {
+        if (!indexStateRegistry.isIndexAvailable(backRefPropertyPath.getMetaClass().getName())) {
+            return enqueueIndexCollectionByEntityIds(ids);
+        }
+        IndexResult indexResult = entityIndexer.indexReferenceFieldsByEntityIds(ids, backRefPropertyPath);
+        if (indexResult.hasFailures()) {
+            List<Id<?>> failedIds = indexResult.getFailedIndexIds().stream()
+                    .distinct()
+                    .<Id<?>>map(idSerialization::stringToId)
+                    .collect(Collectors.toList());
+            log.debug("{} dependent documents failed to be updated partially. Enqueue them for indexing", failedIds.size());
+            enqueueIndexCollectionByEntityIds(failedIds);
+        }
+        return ids.size();
+    }
+
+    /**
+     * Loads page of primary keys of dependent entities by keyset pagination.
+     */
+    protected List<?> loadDependentRawIdsPage(MetaPropertyPath backRefPropertyPath, Object refId, @Nullable Object lastRawId, int pageSize) {
+        String queryString = indexConfigurationManager.getDependentEntityIdsPageQuery(backRefPropertyPath, lastRawId == null);
+        return loadDependentRawIds(backRefPropertyPath, queryString, refId, lastRawId, 0, pageSize);
+    }
+
+    /**
+     * Loads page of primary keys of dependent entities by offset pagination (for entities with composite primary key).
+     */
+    protected List<?> loadDependentRawIdsPageByOffset(MetaPropertyPath backRefPropertyPath, Object refId, int offset, int pageSize) {
+        String queryString = indexConfigurationManager.getDependentEntityIdsOffsetPageQuery(backRefPropertyPath);
+        return loadDependentRawIds(backRefPropertyPath, queryString, refId, null, offset, pageSize);
+    }
+
+    protected List<?> loadDependentRawIds(MetaPropertyPath backRefPropertyPath, @Nullable String queryString, Object refId,
+                                          @Nullable Object lastRawId, int offset, int pageSize) {
+        String storeName = backRefPropertyPath.getMetaClass().getStore().getName();
+        if (queryString == null) {
+            log.warn("Dependent entities via property '{}' can't be loaded", backRefPropertyPath);
+            return Collections.emptyList();
+        }
+        TransactionTemplate transactionTemplate = storeAwareLocator.getTransactionTemplate(storeName);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRED);
+        List<?> rawIds = transactionTemplate.execute(status -> {
+            EntityManager entityManager = storeAwareLocator.getEntityManager(storeName);
+            Query query = entityManager.createQuery(queryString);
+            Object ref = indexConfigurationManager.isDependentEntityIdsQueryByReferences(backRefPropertyPath)
+                    ? entityManager.getReference(backRefPropertyPath.getRangeJavaClass(), refId)
+                    : refId;
+            query.setParameter("refs", Collections.singletonList(ref));
+            if (lastRawId != null) {
+                query.setParameter("lastId", lastRawId);
+            }
+            query.setHint(PersistenceHints.SOFT_DELETION, false);
+            query.setFirstResult(offset);
+            query.setMaxResults(pageSize);
+            return query.getResultList();
+        });
+        return rawIds == null ? Collections.emptyList() : rawIds;
+    }
+
+    @Nullable
+    protected MetaPropertyPath resolveCascadePropertyPath(@Nullable String propertyPath) {
+        if (propertyPath == null) {
+            return null;
+        }
+        int separatorIndex = propertyPath.indexOf(CASCADE_PROPERTY_PATH_SEPARATOR);
+        if (separatorIndex < 0) {
+            return null;
+        }
+        MetaClass metaClass = metadata.findClass(propertyPath.substring(0, separatorIndex));
+        return metaClass == null ? null : metaClass.getPropertyPath(propertyPath.substring(separatorIndex + 1));
+    }
+
+    /**
+     * Returns name of the entity which index is modified by processing of the queue item:
+     * dependent entity for cascade items and entity of the item for other operations.
+     */
+    protected String getIndexedEntityName(IndexingQueueItem queueItem) {
+        String propertyPath = queueItem.getPropertyPath();
+        if (queueItem.getOperation() == IndexingOperation.CASCADE && propertyPath != null) {
+            int separatorIndex = propertyPath.indexOf(CASCADE_PROPERTY_PATH_SEPARATOR);
+            if (separatorIndex > 0) {
+                return propertyPath.substring(0, separatorIndex);
+            }
+        }
+        return queueItem.getEntityName();
+    }
+
+    protected CompletableFuture<List<IndexingQueueItem>> processQueueItemsGroup(Map<Id<?>, List<IndexingQueueItem>> itemsGroup,
+                                                                                Function<Collection<Id<?>>, CompletableFuture<IndexResult>> processingFunction) {
+        Set<Id<?>> entityIds = itemsGroup.keySet();
+        return processingFunction.apply(entityIds).thenApply(indexResult -> handleIndexResult(indexResult, itemsGroup));
+    }
+
+    protected List<IndexingQueueItem> handleIndexResult(IndexResult indexResult, Map<Id<?>, List<IndexingQueueItem>> itemsGroup) {
+        List<Id<?>> failedIds = Collections.emptyList();
+        if (indexResult.hasRetryableFailures()) {
+            log.info("{} items were rejected by Elasticsearch and will stay in queue until the next processing",
+                    indexResult.getRetryableFailures().size());
+            List<IndexingQueueItem> rejectedQueueItems = indexResult.getRetryableFailures().stream()
+                    .map(failure -> itemsGroup.get(idSerialization.stringToId(failure.getId())))
+                    .filter(Objects::nonNull)
+                    .flatMap(Collection::stream)
+                    .collect(Collectors.toList());
+            onQueueItemsRejected(rejectedQueueItems);
+        }
+        if (indexResult.hasFailures()) {
+            failedIds = indexResult.getFailedIndexIds().stream()
+                    .map(idSerialization::stringToId)
+                    .collect(Collectors.toList());
+        }
+        failedIds.forEach(itemsGroup.keySet()::remove);
+        return itemsGroup.values().stream().flatMap(Collection::stream).collect(Collectors.toList());
+    }
+
+    /**
+     * Invoked when items haven't been processed because of the temporary rejection by Elasticsearch
+     * (e.g. because of full write thread pool). Such items stay in queue.
+     *
+     * @param queueItems rejected queue items
+     */
+    protected void onQueueItemsRejected(Collection<IndexingQueueItem> queueItems) {
+    }
+
+    protected Map<IndexingOperation, Map<Id<?>, List<IndexingQueueItem>>> groupQueueItems(Collection<IndexingQueueItem> queueItems) {
+        Map<IndexingOperation, Map<Id<?>, List<IndexingQueueItem>>> result = new HashMap<>();
+        queueItems.forEach(item -> {
+            IndexingOperation operation = item.getOperation();
+            Id<?> id = idSerialization.stringToId(item.getEntityId());
+            Map<Id<?>, List<IndexingQueueItem>> itemsForOperation = result.computeIfAbsent(operation, k -> new HashMap<>());
+            List<IndexingQueueItem> itemsForInstanceId = itemsForOperation.computeIfAbsent(id, k -> new ArrayList<>());
+            itemsForInstanceId.add(item);
+        });
+
+        return result;
+    }
+
+    protected int enqueue(Collection<Object> entityInstances, IndexingOperation operation) {
+        List<Id<?>> ids = entityInstances.stream().map(Id::of).collect(Collectors.toList());
+        return enqueueByIds(ids, operation);
+    }
+
+    protected int enqueueByIds(Collection<Id<?>> entityIds, IndexingOperation operation) {
+        List<IndexingQueueItem> queueItems = entityIds.stream()
+                .map(id -> {
+                    MetaClass metaClass = metadata.getClass(id.getEntityClass());
+                    Optional<IndexConfiguration> indexConfigurationOpt = indexConfigurationManager.getIndexConfigurationByEntityNameOpt(metaClass.getName());
+                    if (indexConfigurationOpt.isPresent()) {
+                        String serializedEntityId = idSerialization.idToString(id);
+                        return createQueueItem(metaClass, serializedEntityId, operation);
+                    } else {
+                        return null;
+                    }
+                })
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        return enqueue(queueItems);
+    }
+
+    protected IndexingQueueItem createQueueItem(MetaClass metaClass, String entityId, IndexingOperation operation) {
+        return createQueueItem(metaClass.getName(), entityId, operation);
+    }
+
+    protected IndexingQueueItem createQueueItem(String entityName, String entityId, IndexingOperation operation) {
+        IndexingQueueItem queueItem = metadata.create(IndexingQueueItem.class);
+        queueItem.setOperation(operation);
+        queueItem.setEntityId(entityId);
+        queueItem.setEntityName(entityName);
+        return queueItem;
+    }
+
+    /**
+     * Stores queue items.
+     *
+     * @param queueItems items to enqueue
+     * @return amount of enqueued items
+     */
+    protected abstract int enqueue(Collection<IndexingQueueItem> queueItems);
+
+    /**
+     * Processes queue items in batches.
+     *
+     * @param batchSize                amount of items processed by single worker at once
+     * @param maxProcessedPerExecution max amount of processed items, non-positive value means the entire queue
+     * @return amount of successfully processed items
+     */
+    protected abstract int processQueue(int batchSize, int maxProcessedPerExecution);
+}
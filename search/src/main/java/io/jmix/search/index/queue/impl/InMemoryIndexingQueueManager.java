@@ -0,0 +1,413 @@
+/*
+ * Copyright 2021 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.jmix.search.index.queue.impl;
+
+import io.jmix.core.Id;
+import io.jmix.core.common.util.Preconditions;
+import io.jmix.core.metamodel.model.MetaClass;
+import io.jmix.search.index.queue.entity.IndexingQueueItem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+
+/**
+ * Indexing queue manager that stores queue items in bounded in-memory {@link IndexingQueueRingBuffer}.
+ * <p>
+ * Items are added to the buffer after commit of the current transaction (immediately if there is no transaction)
+ * and processed by the dedicated drain thread without any database round trips.
+ * If the buffer is full producer waits for {@link #OFFER_TIMEOUT_MS} per enqueued collection, after that items
+ * are dropped. The processing thread never waits for space: items enqueued by it (retries, expansion of cascade items)
+ * are deferred until the next processing round if the buffer is full.
+ * Items of unavailable indexes are deferred until indexes become available.
+ * Failed items are returned to the buffer until the max amount of attempts is reached.
+ * <p>
+ * Items are not persisted, so they are lost on application restart.
+ * <p>
+ * Used if 'jmix.search.indexing-queue-type' property is 'in-memory'.
+ */
+@Component("search_InMemoryIndexingQueueManager")
+@Conditional(IndexingQueueTypeCondition.InMemory.class)
+public class InMemoryIndexingQueueManager extends AbstractIndexingQueueManager {
+
+    private static final Logger log = LoggerFactory.getLogger(InMemoryIndexingQueueManager.class);
+
+    protected static final long OFFER_TIMEOUT_MS = 1000;
+    protected static final long OFFER_RETRY_INTERVAL_MS = 1;
+    protected static final long DRAIN_IDLE_INTERVAL_MS = 500;
+
+    protected IndexingQueueRingBuffer<IndexingQueueItem> buffer;
+
+    /**
+     * Items of entities with unavailable indexes.
+     */
+    protected final Queue<IndexingQueueItem> deferredItems = new ConcurrentLinkedQueue<>();
+
+    protected final AtomicLong droppedItemsCount = new AtomicLong();
+
+    protected volatile boolean running;
+    protected Thread drainThread;
+    /**
+     * Marks threads processing the queue: the thread holding the queue processing lock and processing workers.
+     */
+    protected final ThreadLocal<Boolean> processingThreadMarker = new ThreadLocal<>();
+
+    @Override
+    @PostConstruct
+    protected void postConstruct() {
+        super.postConstruct();
+        buffer = new IndexingQueueRingBuffer<>(searchProperties.getInMemoryIndexingQueueCapacity());
+        running = true;
+        drainThread = new Thread(this::drainQueue, "search-indexing-queue-drain");
+        drainThread.setDaemon(true);
+        drainThread.start();
+    }
+
+    @Override
+    protected void preDestroy() {
+        running = false;
+        if (drainThread != null) {
+            drainThread.interrupt();
+        }
+        super.preDestroy();
+    }
+
+    @Override
+    public void emptyQueue(String entityName) {
+        Preconditions.checkNotEmptyString(entityName);
+        log.debug("Empty queue for entity '{}'", entityName);
+        List<IndexingQueueItem> queueItems = new ArrayList<>();
+        buffer.drainTo(queueItems, Integer.MAX_VALUE);
+        List<IndexingQueueItem> deletedItems = new ArrayList<>();
+        for (IndexingQueueItem queueItem : queueItems) {
+            if (entityName.equals(queueItem.getEntityName())) {
+                deletedItems.add(queueItem);
+            } else {
+                offerOrDefer(queueItem);
+            }
+        }
+        deferredItems.removeIf(queueItem -> {
+            if (entityName.equals(queueItem.getEntityName())) {
+                deletedItems.add(queueItem);
+                return true;
+            }
+            return false;
+        });
+        onQueueItemsCompleted(deletedItems);
+        log.debug("{} records for entity '{}' have been deleted from queue", deletedItems.size(), entityName);
+    }
+
+    @Override
+    public int enqueueIndexAll(String entityName) {
+        Preconditions.checkNotEmptyString(entityName);
+        int batchSize = searchProperties.getReindexEntityEnqueueBatchSize();
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Size of enqueuing batch during reindex entity must be positive");
+        }
+
+        if (!indexConfigurationManager.isDirectlyIndexed(entityName)) {
+            throw new IllegalArgumentException(String.format("Unable to enqueue instances of entity '%s' - entity is not configured for indexing", entityName));
+        }
+
+        if (!locker.tryLockEntityForEnqueueIndexAll(entityName)) {
+            log.info("Unable to enqueue all instances of entity '{}' for indexing: 'Enqueue all' process is active", entityName);
+            return 0;
+        }
+
+        try {
+            MetaClass metaClass = metadata.getClass(entityName);
+            String primaryKeyName = getPrimaryKeyName(metaClass);
+            if (metadataTools.hasCompositePrimaryKey(metaClass)) {
+                return enqueueRawIdsByOffsetPages(metaClass, primaryKeyName, batchSize);
+            }
+
+            Class<Object> entityClass = metaClass.getJavaClass();
+            int enqueued = 0;
+            Object lastRawId = null;
+            List<?> rawIds;
+            do {
+                rawIds = loadRawIdsPage(metaClass, primaryKeyName, lastRawId, batchSize);
+                if (!rawIds.isEmpty()) {
+                    List<IndexingQueueItem> queueItems = rawIds.stream()
+                            .map(id -> idSerialization.idToString(Id.of(id, entityClass)))
+                            .map(id -> createQueueItem(entityName, id, IndexingOperation.INDEX))
+                            .collect(Collectors.toList());
+                    enqueued += offerAll(queueItems, true);
+                    lastRawId = rawIds.get(rawIds.size() - 1);
+                    log.debug("Enqueued next {} instances of entity '{}': Total enqueued = {}", rawIds.size(), entityName, enqueued);
+                }
+            } while (rawIds.size() == batchSize);
+            return enqueued;
+        } finally {
+            locker.unlockEntityForEnqueueIndexAll(entityName);
+        }
+    }
+
+    @Override
+    public int resumeEnqueueIndexAll() {
+        log.info("Unable to resume enqueueing: in-memory indexing queue doesn't keep enqueueing sessions");
+        return 0;
+    }
+
+    @Override
+    public int resumeEnqueueIndexAll(String entityName) {
+        Preconditions.checkNotEmptyString(entityName);
+        log.info("Unable to resume enqueueing of entity '{}': in-memory indexing queue doesn't keep enqueueing sessions", entityName);
+        return 0;
+    }
+
+    /**
+     * @return approximate amount of items in the queue
+     */
+    public int getQueueSize() {
+        return buffer.size() + deferredItems.size();
+    }
+
+    /**
+     * @return amount of items dropped because of the full buffer or exhausted attempts
+     */
+    public long getDroppedItemsCount() {
+        return droppedItemsCount.get();
+    }
+
+    @Override
+    protected int enqueue(Collection<IndexingQueueItem> queueItems) {
+        if (queueItems.isEmpty()) {
+            return 0;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            List<IndexingQueueItem> pendingItems = new ArrayList<>(queueItems);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    offerAll(pendingItems, false);
+                }
+            });
+            return pendingItems.size();
+        }
+        return offerAll(queueItems, false);
+    }
+
+    @Override
+    protected int processQueue(int batchSize, int maxProcessedPerExecution) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Size of queue processing batch must be positive");
+        }
+
+        int count = 0;
+        boolean locked = locker.tryLockQueueProcessing();
+        if (!locked) {
+            log.debug("Unable to process queue: queue is being processed at the moment");
+            return count;
+        }
+
+        log.debug("Start processing queue");
+        processingThreadMarker.set(true);
+        try {
+            authenticator.begin();
+
+            int partitionsCount = queueProcessingExecutor == null ? 1 : searchProperties.getProcessQueueThreadsCount();
+            int dequeueSize = batchSize * partitionsCount;
+            int deferredCount = deferredItems.size();
+            int dequeued;
+            do {
+                Set<String> unavailableEntities = new HashSet<>(indexStateRegistry.getAllUnavailableIndexedEntities());
+                List<IndexingQueueItem> queueItems = new ArrayList<>(dequeueSize);
+                while (deferredCount > 0 && queueItems.size() < dequeueSize) {
+                    IndexingQueueItem deferredItem = deferredItems.poll();
+                    if (deferredItem == null) {
+                        break;
+                    }
+                    deferredCount--;
+                    queueItems.add(deferredItem);
+                }
+                buffer.drainTo(queueItems, dequeueSize - queueItems.size());
+                dequeued = queueItems.size();
+                if (dequeued == 0) {
+                    break;
+                }
+
+                List<IndexingQueueItem> availableItems = new ArrayList<>(dequeued);
+                for (IndexingQueueItem queueItem : queueItems) {
+                    if (unavailableEntities.contains(getIndexedEntityName(queueItem))) {
+                        deferredItems.add(queueItem);
+                    } else {
+                        availableItems.add(queueItem);
+                    }
+                }
+                log.debug("Dequeued {} items: {}", availableItems.size(), availableItems);
+                if (availableItems.isEmpty()) {
+                    continue;
+                }
+
+                List<IndexingQueueItem> successfullyProcessedQueueItems = processDequeuedItems(availableItems, partitionsCount);
+                onQueueItemsCompleted(successfullyProcessedQueueItems);
+                retryFailedItems(availableItems, successfullyProcessedQueueItems);
+                count += successfullyProcessedQueueItems.size();
+            } while (dequeued == dequeueSize && (maxProcessedPerExecution <= 0 || count < maxProcessedPerExecution));
+        } finally {
+            processingThreadMarker.remove();
+            locker.unlockQueueProcessing();
+            authenticator.end();
+        }
+
+        log.debug("{} queue items have been successfully processed", count);
+        return count;
+    }
+
+    @Override
+    protected CompletableFuture<List<IndexingQueueItem>> processQueueItemsAsync(List<IndexingQueueItem> queueItems) {
+        if (isProcessingThread()) {
+            return super.processQueueItemsAsync(queueItems);
+        }
+        processingThreadMarker.set(true);
+        try {
+            return super.processQueueItemsAsync(queueItems);
+        } finally {
+            processingThreadMarker.remove();
+        }
+    }
+
+    protected boolean isProcessingThread() {
+        return Boolean.TRUE.equals(processingThreadMarker.get());
+    }
+
+    protected void retryFailedItems(List<IndexingQueueItem> queueItems, List<IndexingQueueItem> successfullyProcessedQueueItems) {
+        if (queueItems.size() == successfullyProcessedQueueItems.size()) {
+            return;
+        }
+        Set<IndexingQueueItem> processed = Collections.newSetFromMap(new IdentityHashMap<>());
+        processed.addAll(successfullyProcessedQueueItems);
+        int maxAttempts = searchProperties.getIndexingQueueMaxAttempts();
+        for (IndexingQueueItem queueItem : queueItems) {
+            if (processed.contains(queueItem)) {
+                continue;
+            }
+            int attemptCount = (queueItem.getAttemptCount() == null ? 0 : queueItem.getAttemptCount()) + 1;
+            if (attemptCount >= maxAttempts) {
+                droppedItemsCount.incrementAndGet();
+                onQueueItemsCompleted(Collections.singletonList(queueItem));
+                log.error("Queue item {} has been dropped: failed {} attempts to process", queueItem, attemptCount);
+            } else {
+                queueItem.setAttemptCount(attemptCount);
+                offerOrDefer(queueItem);
+            }
+        }
+    }
+
+    /**
+     * Adds items to the buffer. If the buffer is full waits for {@link #OFFER_TIMEOUT_MS} in total
+     * for all items (or until space is available if {@code waitForSpace} is true). Items offered
+     * by the processing thread are deferred instead of waiting: only this thread frees space in the buffer.
+     *
+     * @param queueItems   items
+     * @param waitForSpace whether to wait until space is available without timeout
+     * @return amount of added items
+     */
+    protected int offerAll(Collection<IndexingQueueItem> queueItems, boolean waitForSpace) {
+        if (isProcessingThread()) {
+            queueItems.forEach(this::offerOrDefer);
+            return queueItems.size();
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(OFFER_TIMEOUT_MS);
+        int offered = 0;
+        for (IndexingQueueItem queueItem : queueItems) {
+            if (offer(queueItem, waitForSpace, deadline)) {
+                offered++;
+            }
+        }
+        LockSupport.unpark(drainThread);
+        return offered;
+    }
+
+    /**
+     * Adds item to the buffer. If the buffer is full waits until the deadline
+     * (or until space is available if {@code waitForSpace} is true).
+     *
+     * @param queueItem    item
+     * @param waitForSpace whether to wait until space is available without timeout
+     * @param deadline     {@link System#nanoTime()} value after which item is dropped
+     * @return true if item has been added, false if it has been dropped
+     */
+    protected boolean offer(IndexingQueueItem queueItem, boolean waitForSpace, long deadline) {
+        while (!buffer.offer(queueItem)) {
+            if (!running || (!waitForSpace && System.nanoTime() > deadline)) {
+                droppedItemsCount.incrementAndGet();
+                onQueueItemsDropped(Collections.singletonList(queueItem));
+                log.warn("Queue item {} has been dropped: in-memory indexing queue is full", queueItem);
+                return false;
+            }
+            LockSupport.unpark(drainThread);
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(OFFER_RETRY_INTERVAL_MS));
+        }
+        return true;
+    }
+
+    /**
+     * Adds item to the buffer without waiting. If the buffer is full item is deferred until the next processing round.
+     *
+     * @param queueItem item
+     */
+    protected void offerOrDefer(IndexingQueueItem queueItem) {
+        if (!buffer.offer(queueItem)) {
+            deferredItems.add(queueItem);
+        }
+    }
+
+    /**
+     * Invoked when queue items leave the queue: after successful processing, deletion or exhaustion of attempts.
+     *
+     * @param queueItems completed items
+     */
+    protected void onQueueItemsCompleted(Collection<IndexingQueueItem> queueItems) {
+    }
+
+    /**
+     * Invoked when queue items are dropped without processing because the buffer is full.
+     *
+     * @param queueItems dropped items
+     */
+    protected void onQueueItemsDropped(Collection<IndexingQueueItem> queueItems) {
+    }
+
+    protected void drainQueue() {
+        while (running) {
+            try {
+                int processed = processEntireQueue();
+                if (processed == 0) {
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(DRAIN_IDLE_INTERVAL_MS));
+                }
+            } catch (Exception e) {
+                log.error("Failed to process in-memory indexing queue", e);
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(DRAIN_IDLE_INTERVAL_MS));
+            }
+        }
+    }
+}
@@ -24,7 +24,12 @@ import javax.annotation.Nullable;
 public enum IndexingOperation implements EnumClass<String> {
 
     INDEX("index"),
-    DELETE("delete");
+    DELETE("delete"),
+    /**
+     * Reindex of entities referring to the changed entity via property path. Dependent entities are resolved
+     * and enqueued for indexing during queue processing.
+     */
+    CASCADE("cascade");
 
     private final String id;
 
@@ -0,0 +1,473 @@
+/*
+ * Copyright 2021 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.jmix.search.index.queue.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of indexing queue records stored in segmented memory-mapped files.
+ * <p>
+ * Every segment file has fixed size and is named by the journal position of its first byte.
+ * Record format: payload length (int), CRC32 of payload (int), payload. Zero length marks the end of written data,
+ * negative length marks the end of segment. Payload consists of operation id, entity name and entity id,
+ * every value is written as length (int) and UTF-8 bytes.
+ * <p>
+ * Checkpoint file contains the position of the first record which may be unprocessed. Records before it
+ * are skipped on {@link #open()}, segments entirely before it are deleted on {@link #checkpoint(long)}.
+ * <p>
+ * Not thread-safe: callers must synchronize access.
+ */
+public class IndexingQueueJournal implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexingQueueJournal.class);
+
+    protected static final String SEGMENT_FILE_SUFFIX = ".segment";
+    protected static final String CHECKPOINT_FILE_NAME = "checkpoint";
+    protected static final String CHECKPOINT_TEMP_FILE_NAME = "checkpoint.tmp";
+    protected static final int RECORD_HEADER_SIZE = 8;
+    protected static final int LENGTH_SIZE = 4;
+    protected static final int END_OF_SEGMENT = -1;
+
+    protected final Path directory;
+    protected final int segmentSize;
+    protected final NavigableSet<Long> segmentPositions = new TreeSet<>();
+
+    protected FileChannel writeChannel;
+    protected MappedByteBuffer writeBuffer;
+    protected long writeSegmentPosition;
+    protected int writeOffset;
+    protected long checkpointPosition;
+
+    public IndexingQueueJournal(Path directory, int segmentSize) {
+        if (segmentSize < 1024) {
+            throw new IllegalArgumentException("Size of indexing queue journal segment must be at least 1024 bytes");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Opens journal: reads checkpoint, reads records after it and prepares the end of journal for appending.
+     * Records after corrupted (partially written) record are discarded.
+     *
+     * @return records after checkpoint
+     */
+    public List<JournalRecord> open() throws IOException {
+        Files.createDirectories(directory);
+        segmentPositions.addAll(findSegmentPositions());
+        checkpointPosition = readCheckpoint();
+
+        List<JournalRecord> records = new ArrayList<>();
+        if (segmentPositions.isEmpty()) {
+            checkpointPosition = 0;
+            openWriteSegment(0, 0);
+            return records;
+        }
+        if (checkpointPosition < segmentPositions.first()) {
+            checkpointPosition = segmentPositions.first();
+        }
+
+        Long segmentPosition = segmentPositions.floor(checkpointPosition);
+        int offset = (int) (checkpointPosition - segmentPosition);
+        while (true) {
+            int endOffset = readSegment(segmentPosition, offset, records);
+            Long nextSegmentPosition = segmentPositions.higher(segmentPosition);
+            if (endOffset >= 0 || nextSegmentPosition == null) {
+                int writeOffset = endOffset >= 0 ? endOffset : segmentSize;
+                discardSegmentsAfter(segmentPosition);
+                if (writeOffset + LENGTH_SIZE > segmentSize) {
+                    openWriteSegment(segmentPosition + segmentSize, 0);
+                } else {
+                    openWriteSegment(segmentPosition, writeOffset);
+                }
+                break;
+            }
+            segmentPosition = nextSegmentPosition;
+            offset = 0;
+        }
+        log.debug("Indexing queue journal '{}' is opened: checkpoint = {}, write position = {}, {} records to restore",
+                directory, checkpointPosition, getWritePosition(), records.size());
+        return records;
+    }
+
+    /**
+     * Appends record to the end of journal.
+     *
+     * @return position of the record
+     */
+    public long append(IndexingOperation operation, String entityName, String entityId) throws IOException {
+        return append(operation, entityName, entityId, null);
+    }
+
+    /**
+     * Appends record with optional property path of cascade operation to the end of journal.
+     *
+     * @return position of the record
+     */
+    public long append(IndexingOperation operation, String entityName, String entityId,
+                       @Nullable String propertyPath) throws IOException {
+        byte[] payload = encodePayload(operation, entityName, entityId, propertyPath);
+        int recordSize = RECORD_HEADER_SIZE + payload.length;
+        if (recordSize + LENGTH_SIZE > segmentSize) {
+            throw new IllegalArgumentException(String.format(
+                    "Record of entity '%s' with id '%s' exceeds the size of indexing queue journal segment", entityName, entityId));
+        }
+        if (writeOffset + recordSize + LENGTH_SIZE > segmentSize) {
+            writeBuffer.putInt(writeOffset, END_OF_SEGMENT);
+            writeBuffer.force();
+            closeWriteSegment();
+            openWriteSegment(writeSegmentPosition + segmentSize, 0);
+        }
+
+        long position = getWritePosition();
+        writeBuffer.putInt(writeOffset + LENGTH_SIZE, calculateChecksum(payload));
+        ByteBuffer payloadBuffer = writeBuffer.duplicate();
+        payloadBuffer.position(writeOffset + RECORD_HEADER_SIZE);
+        payloadBuffer.put(payload);
+        writeBuffer.putInt(writeOffset + recordSize, 0);
+        writeBuffer.putInt(writeOffset, payload.length);
+        writeOffset += recordSize;
+        return position;
+    }
+
+    /**
+     * Reads records appended within the current run of the journal, e.g. to process them once again.
+     *
+     * @param fromPosition position of the first record to read
+     * @param toPosition   position after the last record to read
+     * @param maxRecords   max amount of records to read
+     * @param records      collection to add read records to
+     * @return position of the record following the last read one, {@code toPosition} if there are no more records
+     */
+    public long read(long fromPosition, long toPosition, int maxRecords, List<JournalRecord> records) throws IOException {
+        long position = fromPosition;
+        int readCount = 0;
+        while (position < toPosition && readCount < maxRecords) {
+            Long segmentPosition = segmentPositions.floor(position);
+            if (segmentPosition == null) {
+                return toPosition;
+            }
+            try (FileChannel channel = FileChannel.open(getSegmentFile(segmentPosition), StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, segmentSize);
+                int offset = (int) (position - segmentPosition);
+                while (position < toPosition && readCount < maxRecords) {
+                    int length = offset + LENGTH_SIZE > segmentSize ? END_OF_SEGMENT : buffer.getInt(offset);
+                    if (length == END_OF_SEGMENT) {
+                        position = segmentPosition + segmentSize;
+                        break;
+                    }
+                    if (length <= 0) {
+                        return toPosition;
+                    }
+                    byte[] payload = new byte[length];
+                    ByteBuffer payloadBuffer = buffer.duplicate();
+                    payloadBuffer.position(offset + RECORD_HEADER_SIZE);
+                    payloadBuffer.get(payload);
+                    JournalRecord record = decodePayload(position, payload);
+                    if (record != null) {
+                        records.add(record);
+                    }
+                    readCount++;
+                    offset += RECORD_HEADER_SIZE + length;
+                    position = segmentPosition + offset;
+                }
+            }
+        }
+        return Math.min(position, toPosition);
+    }
+
+    /**
+     * Forces appended records to the storage device.
+     */
+    public void sync() {
+        if (writeBuffer != null) {
+            writeBuffer.force();
+        }
+    }
+
+    /**
+     * Stores checkpoint and deletes segments which contain only records before it.
+     *
+     * @param position position of the first record which may be unprocessed
+     */
+    public void checkpoint(long position) throws IOException {
+        if (position <= checkpointPosition) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(12);
+        buffer.putLong(0, position);
+        buffer.putInt(8, calculateChecksum(Arrays.copyOf(buffer.array(), 8)));
+        Path tempFile = directory.resolve(CHECKPOINT_TEMP_FILE_NAME);
+        try (FileChannel channel = FileChannel.open(tempFile,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(buffer);
+            channel.force(true);
+        }
+        Files.move(tempFile, directory.resolve(CHECKPOINT_FILE_NAME),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        checkpointPosition = position;
+
+        Iterator<Long> iterator = segmentPositions.iterator();
+        while (iterator.hasNext()) {
+            long segmentPosition = iterator.next();
+            if (segmentPosition + segmentSize > position || segmentPosition == writeSegmentPosition) {
+                break;
+            }
+            try {
+                Files.deleteIfExists(getSegmentFile(segmentPosition));
+                iterator.remove();
+                log.debug("Consumed segment {} of indexing queue journal has been deleted", segmentPosition);
+            } catch (IOException e) {
+                log.warn("Unable to delete consumed segment {} of indexing queue journal", segmentPosition, e);
+                break;
+            }
+        }
+    }
+
+    /**
+     * @return position of the next appended record
+     */
+    public long getWritePosition() {
+        return writeSegmentPosition + writeOffset;
+    }
+
+    public long getCheckpointPosition() {
+        return checkpointPosition;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (writeBuffer != null) {
+            writeBuffer.force();
+        }
+        closeWriteSegment();
+    }
+
+    /**
+     * Reads records of segment starting from the offset.
+     *
+     * @return offset of the end of written data or -1 if segment is completed
+     */
+    protected int readSegment(long segmentPosition, int offset, List<JournalRecord> records) throws IOException {
+        try (FileChannel channel = FileChannel.open(getSegmentFile(segmentPosition), StandardOpenOption.READ)) {
+            if (channel.size() < segmentSize) {
+                log.warn("Segment {} of indexing queue journal is truncated", segmentPosition);
+                return offset;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, segmentSize);
+            while (offset + LENGTH_SIZE <= segmentSize) {
+                int length = buffer.getInt(offset);
+                if (length == 0) {
+                    return offset;
+                }
+                if (length == END_OF_SEGMENT) {
+                    return -1;
+                }
+                if (length < 0 || offset + RECORD_HEADER_SIZE + length + LENGTH_SIZE > segmentSize) {
+                    log.warn("Corrupted record at position {} of indexing queue journal", segmentPosition + offset);
+                    return offset;
+                }
+                int checksum = buffer.getInt(offset + LENGTH_SIZE);
+                byte[] payload = new byte[length];
+                ByteBuffer payloadBuffer = buffer.duplicate();
+                payloadBuffer.position(offset + RECORD_HEADER_SIZE);
+                payloadBuffer.get(payload);
+                if (checksum != calculateChecksum(payload)) {
+                    log.warn("Corrupted record at position {} of indexing queue journal", segmentPosition + offset);
+                    return offset;
+                }
+                JournalRecord record = decodePayload(segmentPosition + offset, payload);
+                if (record != null) {
+                    records.add(record);
+                }
+                offset += RECORD_HEADER_SIZE + length;
+            }
+            return -1;
+        }
+    }
+
+    protected void openWriteSegment(long segmentPosition, int offset) throws IOException {
+        writeChannel = FileChannel.open(getSegmentFile(segmentPosition),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        writeBuffer = writeChannel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        writeSegmentPosition = segmentPosition;
+        writeOffset = offset;
+        writeBuffer.putInt(writeOffset, 0);
+        segmentPositions.add(segmentPosition);
+    }
+
+    protected void closeWriteSegment() throws IOException {
+        writeBuffer = null;
+        if (writeChannel != null) {
+            writeChannel.close();
+            writeChannel = null;
+        }
+    }
+
+    protected void discardSegmentsAfter(long segmentPosition) throws IOException {
+        NavigableSet<Long> discarded = segmentPositions.tailSet(segmentPosition, false);
+        for (Long discardedPosition : discarded) {
+            log.warn("Segment {} of indexing queue journal follows corrupted data and is discarded", discardedPosition);
+            Files.deleteIfExists(getSegmentFile(discardedPosition));
+        }
+        discarded.clear();
+    }
+
+    protected List<Long> findSegmentPositions() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Long> positions = new ArrayList<>();
+            files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(SEGMENT_FILE_SUFFIX))
+                    .forEach(name -> {
+                        try {
+                            positions.add(Long.parseLong(name.substring(0, name.length() - SEGMENT_FILE_SUFFIX.length())));
+                        } catch (NumberFormatException e) {
+                            log.warn("Unexpected file '{}' in indexing queue journal directory", name);
+                        }
+                    });
+            return positions;
+        }
+    }
+
+    protected long readCheckpoint() throws IOException {
+        Path checkpointFile = directory.resolve(CHECKPOINT_FILE_NAME);
+        if (!Files.exists(checkpointFile)) {
+            return 0;
+        }
+        byte[] content = Files.readAllBytes(checkpointFile);
+        if (content.length != 12) {
+            log.warn("Checkpoint of indexing queue journal is corrupted, journal is read from the beginning");
+            return 0;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(content);
+        if (buffer.getInt(8) != calculateChecksum(Arrays.copyOf(content, 8))) {
+            log.warn("Checkpoint of indexing queue journal is corrupted, journal is read from the beginning");
+            return 0;
+        }
+        return buffer.getLong(0);
+    }
+
+    protected Path getSegmentFile(long segmentPosition) {
+        return directory.resolve(String.format("%020d%s", segmentPosition, SEGMENT_FILE_SUFFIX));
+    }
+
+    /**
+     * Property path is written only if present, so records without it keep the original format.
+     */
+    protected byte[] encodePayload(IndexingOperation operation, String entityName, String entityId,
+                                   @Nullable String propertyPath) {
+        byte[] operationBytes = operation.getId().getBytes(StandardCharsets.UTF_8);
+        byte[] entityNameBytes = entityName.getBytes(StandardCharsets.UTF_8);
+        byte[] entityIdBytes = entityId.getBytes(StandardCharsets.UTF_8);
+        byte[] propertyPathBytes = propertyPath == null ? null : propertyPath.getBytes(StandardCharsets.UTF_8);
+        int size = 3 * LENGTH_SIZE + operationBytes.length + entityNameBytes.length + entityIdBytes.length;
+        if (propertyPathBytes != null) {
+            size += LENGTH_SIZE + propertyPathBytes.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(operationBytes.length).put(operationBytes);
+        buffer.putInt(entityNameBytes.length).put(entityNameBytes);
+        buffer.putInt(entityIdBytes.length).put(entityIdBytes);
+        if (propertyPathBytes != null) {
+            buffer.putInt(propertyPathBytes.length).put(propertyPathBytes);
+        }
+        return buffer.array();
+    }
+
+    @Nullable
+    protected JournalRecord decodePayload(long position, byte[] payload) {
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        String operationId = readString(buffer);
+        String entityName = readString(buffer);
+        String entityId = readString(buffer);
+        String propertyPath = buffer.hasRemaining() ? readString(buffer) : null;
+        IndexingOperation operation = IndexingOperation.fromId(operationId);
+        if (operation == null) {
+            log.warn("Unknown operation '{}' in record at position {} of indexing queue journal", operationId, position);
+            return null;
+        }
+        return new JournalRecord(position, operation, entityName, entityId, propertyPath);
+    }
+
+    protected String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    protected int calculateChecksum(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        return (int) crc.getValue();
+    }
+
+    public static class JournalRecord {
+        protected final long position;
+        protected final IndexingOperation operation;
+        protected final String entityName;
+        protected final String entityId;
+        protected final String propertyPath;
+
+        public JournalRecord(long position, IndexingOperation operation, String entityName, String entityId) {
+            this(position, operation, entityName, entityId, null);
+        }
+
+        public JournalRecord(long position, IndexingOperation operation, String entityName, String entityId,
+                             @Nullable String propertyPath) {
+            this.position = position;
+            this.operation = operation;
+            this.entityName = entityName;
+            this.entityId = entityId;
+            this.propertyPath = propertyPath;
+        }
+
+        public long getPosition() {
+            return position;
+        }
+
+        public IndexingOperation getOperation() {
+            return operation;
+        }
+
+        public String getEntityName() {
+            return entityName;
+        }
+
+        public String getEntityId() {
+            return entityId;
+        }
+
+        @Nullable
+        public String getPropertyPath() {
+            return propertyPath;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2021 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.jmix.search.index.queue.impl;
+
+import io.jmix.search.index.queue.IndexingQueueType;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Condition;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+
+/**
+ * Matches if the configured {@link IndexingQueueType} ('jmix.search.indexing-queue-type' property)
+ * equals to the type supported by condition.
+ */
+public abstract class IndexingQueueTypeCondition implements Condition {
+
+    protected static final String INDEXING_QUEUE_TYPE_PROPERTY = "jmix.search.indexing-queue-type";
+
+    @Override
+    public boolean matches(ConditionContext context, AnnotatedTypeMetadata metadata) {
+        String key = Binder.get(context.getEnvironment())
+                .bind(INDEXING_QUEUE_TYPE_PROPERTY, String.class)
+                .orElse(IndexingQueueType.JPA.getKey());
+        return IndexingQueueType.getByKey(key) == getQueueType();
+    }
+
+    protected abstract IndexingQueueType getQueueType();
+
+    public static class Jpa extends IndexingQueueTypeCondition {
+        @Override
+        protected IndexingQueueType getQueueType() {
+            return IndexingQueueType.JPA;
+        }
+    }
+
+    public static class InMemory extends IndexingQueueTypeCondition {
+        @Override
+        protected IndexingQueueType getQueueType() {
+            return IndexingQueueType.IN_MEMORY;
+        }
+    }
+
+    public static class Journal extends IndexingQueueTypeCondition {
+        @Override
+        protected IndexingQueueType getQueueType() {
+            return IndexingQueueType.JOURNAL;
+        }
+    }
+}
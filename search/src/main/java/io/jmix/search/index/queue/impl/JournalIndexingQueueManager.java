@@ -0,0 +1,280 @@
+/*
+ * Copyright 2021 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.jmix.search.index.queue.impl;
+
+import io.jmix.core.CoreProperties;
+import io.jmix.search.index.queue.IndexingQueueJournalSyncPolicy;
+import io.jmix.search.index.queue.entity.IndexingQueueItem;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Collectors;
+
+/**
+ * Indexing queue manager that appends queue items to {@link IndexingQueueJournal} on local disk
+ * before dispatching them through the in-memory buffer.
+ * <p>
+ * Journal position of every item is tracked until the item leaves the queue. The smallest position of remaining
+ * items is periodically stored as journal checkpoint, so items which weren't processed before application restart
+ * are restored from the journal on startup. Items may be processed more than once after restart.
+ * <p>
+ * Items dropped because of the full buffer aren't kept in memory: the range of journal positions containing them
+ * is re-read from the journal and offered to the buffer again as soon as it has space. Items of the range
+ * that haven't been dropped may be processed twice. Checkpoint doesn't advance past the range until it's re-read.
+ * <p>
+ * Items are appended to the journal after commit of the enqueueing transaction. Items of transactions committed
+ * right before the application crash may be not appended yet, such changes are lost for the index until
+ * entities are changed again or reindexed.
+ * <p>
+ * Used if 'jmix.search.indexing-queue-type' property is 'journal'.
+ */
+@Component("search_JournalIndexingQueueManager")
+@Conditional(IndexingQueueTypeCondition.Journal.class)
+public class JournalIndexingQueueManager extends InMemoryIndexingQueueManager {
+
+    private static final Logger log = LoggerFactory.getLogger(JournalIndexingQueueManager.class);
+
+    @Autowired
+    protected CoreProperties coreProperties;
+
+    protected IndexingQueueJournal journal;
+
+    /**
+     * Journal positions of items in the queue by item ids.
+     */
+    protected final Map<Object, Long> journalPositions = new ConcurrentHashMap<>();
+    protected final ConcurrentSkipListSet<Long> pendingJournalPositions = new ConcurrentSkipListSet<>();
+
+    /**
+     * Range of journal positions [from, to) containing items dropped because of the full buffer, -1 if there are no such items.
+     * Guarded by the monitor of the journal.
+     */
+    protected long replayFromPosition = -1;
+    protected long replayToPosition = -1;
+
+    protected long lastSyncTime;
+    protected long lastCheckpointTime;
+
+    @Override
+    @PostConstruct
+    protected void postConstruct() {
+        Path directory = getJournalDirectory();
+        journal = new IndexingQueueJournal(directory, searchProperties.getIndexingQueueJournalSegmentSize());
+        List<IndexingQueueJournal.JournalRecord> records;
+        try {
+            records = journal.open();
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to open indexing queue journal in " + directory, e);
+        }
+
+        super.postConstruct();
+
+        if (!records.isEmpty()) {
+            List<IndexingQueueItem> queueItems = records.stream()
+                    .map(record -> {
+                        IndexingQueueItem queueItem = createQueueItem(record.getEntityName(), record.getEntityId(), record.getOperation());
+                        queueItem.setPropertyPath(record.getPropertyPath());
+                        addJournalPosition(queueItem, record.getPosition());
+                        return queueItem;
+                    })
+                    .collect(Collectors.toList());
+            int restored = super.offerAll(queueItems, true);
+            log.info("{} indexing queue items have been restored from journal", restored);
+        }
+    }
+
+    @Override
+    protected void preDestroy() {
+        super.preDestroy();
+        synchronized (journal) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                log.error("Unable to close indexing queue journal", e);
+            }
+        }
+    }
+
+    @Override
+    protected int offerAll(Collection<IndexingQueueItem> queueItems, boolean waitForSpace) {
+        appendToJournal(queueItems);
+        return super.offerAll(queueItems, waitForSpace);
+    }
+
+    @Override
+    protected int processQueue(int batchSize, int maxProcessedPerExecution) {
+        int count = super.processQueue(batchSize, maxProcessedPerExecution);
+        replayDroppedItems();
+        maintainJournal();
+        return count;
+    }
+
+    @Override
+    protected void onQueueItemsCompleted(Collection<IndexingQueueItem> queueItems) {
+        if (!running) {
+            // Items dropped during shutdown stay in the journal to be restored on startup
+            return;
+        }
+        for (IndexingQueueItem queueItem : queueItems) {
+            Long position = journalPositions.remove(queueItem.getId());
+            if (position != null) {
+                pendingJournalPositions.remove(position);
+            }
+        }
+    }
+
+    @Override
+    protected void onQueueItemsDropped(Collection<IndexingQueueItem> queueItems) {
+        if (!running) {
+            // Items dropped during shutdown stay in the journal to be restored on startup
+            return;
+        }
+        synchronized (journal) {
+            for (IndexingQueueItem queueItem : queueItems) {
+                Long position = journalPositions.remove(queueItem.getId());
+                if (position == null) {
+                    continue;
+                }
+                pendingJournalPositions.remove(position);
+                replayFromPosition = replayFromPosition < 0 ? position : Math.min(replayFromPosition, position);
+                replayToPosition = Math.max(replayToPosition, position + 1);
+            }
+        }
+        log.debug("{} dropped items will be re-read from journal when the queue has space", queueItems.size());
+    }
+
+    /**
+     * Re-reads items dropped because of the full buffer from the journal and offers them to the buffer
+     * without waiting: not more items than the buffer has space for. Items that don't fit are dropped again
+     * and stay in the range to re-read.
+     */
+    protected void replayDroppedItems() {
+        List<IndexingQueueItem> queueItems = new ArrayList<>();
+        synchronized (journal) {
+            int freeSpace = buffer.getCapacity() - buffer.size();
+            if (replayFromPosition < 0 || freeSpace <= 0) {
+                return;
+            }
+            List<IndexingQueueJournal.JournalRecord> records = new ArrayList<>();
+            long nextPosition;
+            try {
+                nextPosition = journal.read(replayFromPosition, replayToPosition, freeSpace, records);
+            } catch (IOException e) {
+                log.error("Unable to read dropped items from indexing queue journal", e);
+                return;
+            }
+            for (IndexingQueueJournal.JournalRecord record : records) {
+                IndexingQueueItem queueItem = createQueueItem(record.getEntityName(), record.getEntityId(), record.getOperation());
+                queueItem.setPropertyPath(record.getPropertyPath());
+                addJournalPosition(queueItem, record.getPosition());
+                queueItems.add(queueItem);
+            }
+            if (nextPosition >= replayToPosition) {
+                replayFromPosition = -1;
+                replayToPosition = -1;
+            } else {
+                replayFromPosition = nextPosition;
+            }
+        }
+
+        int offered = 0;
+        for (IndexingQueueItem queueItem : queueItems) {
+            if (buffer.offer(queueItem)) {
+                offered++;
+            } else {
+                onQueueItemsDropped(Collections.singletonList(queueItem));
+            }
+        }
+        log.debug("{} dropped items have been re-read from journal and offered to the queue", offered);
+    }
+
+    protected void appendToJournal(Collection<IndexingQueueItem> queueItems) {
+        synchronized (journal) {
+            try {
+                for (IndexingQueueItem queueItem : queueItems) {
+                    long position = journal.append(queueItem.getOperation(), queueItem.getEntityName(),
+                            queueItem.getEntityId(), queueItem.getPropertyPath());
+                    addJournalPosition(queueItem, position);
+                }
+                if (searchProperties.getIndexingQueueJournalSyncPolicy() == IndexingQueueJournalSyncPolicy.ALWAYS) {
+                    journal.sync();
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to append items to indexing queue journal", e);
+            }
+        }
+    }
+
+    protected void addJournalPosition(IndexingQueueItem queueItem, long position) {
+        journalPositions.put(queueItem.getId(), position);
+        pendingJournalPositions.add(position);
+    }
+
+    /**
+     * Forces journal (for 'interval' sync policy) and stores checkpoint not more often than once per sync interval.
+     * Checkpoint is the smallest position of items remaining in the queue or dropped items to re-read,
+     * or the end of journal if there are no such items.
+     */
+    protected void maintainJournal() {
+        long interval = searchProperties.getIndexingQueueJournalSyncInterval();
+        long now = System.currentTimeMillis();
+        synchronized (journal) {
+            if (searchProperties.getIndexingQueueJournalSyncPolicy() == IndexingQueueJournalSyncPolicy.INTERVAL
+                    && now - lastSyncTime >= interval) {
+                journal.sync();
+                lastSyncTime = now;
+            }
+            if (now - lastCheckpointTime >= interval) {
+                Long firstPendingPosition = pendingJournalPositions.ceiling(Long.MIN_VALUE);
+                long checkpointPosition = firstPendingPosition == null ? journal.getWritePosition() : firstPendingPosition;
+                if (replayFromPosition >= 0) {
+                    checkpointPosition = Math.min(checkpointPosition, replayFromPosition);
+                }
+                try {
+                    journal.checkpoint(checkpointPosition);
+                } catch (IOException e) {
+                    log.error("Unable to store checkpoint of indexing queue journal", e);
+                }
+                lastCheckpointTime = now;
+            }
+        }
+    }
+
+    protected Path getJournalDirectory() {
+        String directory = searchProperties.getIndexingQueueJournalDirectory();
+        if (StringUtils.isBlank(directory)) {
+            return Paths.get(coreProperties.getWorkDir(), "search", "indexing-queue-journal");
+        }
+        return Paths.get(directory);
+    }
+}
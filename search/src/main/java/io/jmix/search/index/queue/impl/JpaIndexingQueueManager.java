@@ -16,64 +16,84 @@
 
 package io.jmix.search.index.queue.impl;
 
+import com.google.common.collect.Iterables;
 import io.jmix.core.*;
 import io.jmix.core.common.util.Preconditions;
-import io.jmix.core.entity.EntityValues;
 import io.jmix.core.metamodel.model.MetaClass;
-import io.jmix.core.security.SystemAuthenticator;
-import io.jmix.data.StoreAwareLocator;
-import io.jmix.search.SearchProperties;
-import io.jmix.search.index.EntityIndexer;
+import io.jmix.core.security.CurrentAuthentication;
+import io.jmix.data.persistence.DbTypeConverter;
+import io.jmix.data.persistence.DbmsSpecifics;
+import io.jmix.data.persistence.DbmsType;
+import io.jmix.search.index.ESIndexManager;
 import io.jmix.search.index.IndexConfiguration;
-import io.jmix.search.index.IndexResult;
-import io.jmix.search.index.impl.IndexStateRegistry;
-import io.jmix.search.index.impl.IndexingLocker;
-import io.jmix.search.index.mapping.IndexConfigurationManager;
-import io.jmix.search.index.queue.IndexingQueueManager;
+import io.jmix.search.index.queue.IndexingQueueDequeueStrategy;
+import io.jmix.search.index.queue.entity.DeadLetterQueueItem;
+import io.jmix.search.index.queue.entity.EnqueueingSession;
 import io.jmix.search.index.queue.entity.IndexingQueueItem;
-import org.apache.commons.collections4.MapUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.annotation.Nullable;
+import javax.annotation.PostConstruct;
 import javax.persistence.EntityManager;
 import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+import java.lang.management.ManagementFactory;
+import java.sql.Timestamp;
 import java.util.*;
-import java.util.function.Function;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 
-import static java.lang.String.format;
-
 @Component("search_JpaIndexingQueueManager")
-public class JpaIndexingQueueManager implements IndexingQueueManager {
+@Conditional(IndexingQueueTypeCondition.Jpa.class)
+public class JpaIndexingQueueManager extends AbstractIndexingQueueManager {
 
     private static final Logger log = LoggerFactory.getLogger(JpaIndexingQueueManager.class);
 
+    /**
+     * Max amount of values in 'in' clause of queries, some databases (e.g. Oracle) limit it by 1000.
+     */
+    protected static final int MAX_IN_CLAUSE_PARAMETERS = 500;
+    protected static final int ENQUEUE_JDBC_BATCH_SIZE = 1000;
+
     @Autowired
     protected UnconstrainedDataManager dataManager;
     @Autowired
-    protected Metadata metadata;
-    @Autowired
-    protected MetadataTools metadataTools;
-    @Autowired
-    protected EntityIndexer entityIndexer;
-    @Autowired
-    protected StoreAwareLocator storeAwareLocator;
+    protected ESIndexManager esIndexManager;
     @Autowired
-    protected IndexConfigurationManager indexConfigurationManager;
+    protected DbmsSpecifics dbmsSpecifics;
     @Autowired
-    protected IdSerialization idSerialization;
+    protected DbmsType dbmsType;
     @Autowired
-    protected SystemAuthenticator authenticator;
+    protected TimeSource timeSource;
     @Autowired
-    protected IndexingLocker locker;
-    @Autowired
-    protected SearchProperties searchProperties;
-    @Autowired
-    protected IndexStateRegistry indexStateRegistry;
+    protected CurrentAuthentication currentAuthentication;
+
+    protected volatile IndexingQueueDequeueStrategy dequeueStrategy;
+
+    /**
+     * Identifier of the current application instance stored in claimed queue items.
+     */
+    protected String nodeId;
+
+    /**
+     * Entities with bulk indexing session started by 'enqueue all'. Sessions are finished after the queue is drained.
+     */
+    protected final Set<String> bulkIndexingSessionEntities = ConcurrentHashMap.newKeySet();
+
+    @Override
+    @PostConstruct
+    protected void postConstruct() {
+        super.postConstruct();
+        nodeId = ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID().toString().substring(0, 8);
+    }
 
     @Override
     public void emptyQueue(String entityName) {
@@ -90,39 +110,6 @@ public class JpaIndexingQueueManager implements IndexingQueueManager {
         });
     }
 
-    @Override
-    public int enqueueIndex(Object entityInstance) {
-        Preconditions.checkNotNullArgument(entityInstance);
-        return enqueueIndexCollection(Collections.singletonList(entityInstance));
-    }
-
-    @Override
-    public int enqueueIndexCollection(Collection<Object> entityInstances) {
-        Preconditions.checkNotNullArgument(entityInstances);
-        return enqueue(entityInstances, IndexingOperation.INDEX);
-    }
-
-    @Override
-    public int enqueueIndexByEntityId(Id<?> entityId) {
-        Preconditions.checkNotNullArgument(entityId);
-        return enqueueIndexCollectionByEntityIds(Collections.singletonList(entityId));
-    }
-
-    @Override
-    public int enqueueIndexCollectionByEntityIds(Collection<Id<?>> entityIds) {
-        Preconditions.checkNotNullArgument(entityIds);
-        return enqueueByIds(entityIds, IndexingOperation.INDEX);
-    }
-
-    @Override
-    public int enqueueIndexAll() {
-        return indexConfigurationManager.getAllIndexConfigurations().stream()
-                .map(IndexConfiguration::getEntityName)
-                .map(this::enqueueIndexAll)
-                .reduce(Integer::sum)
-                .orElse(0);
-    }
-
     @Override
     public int enqueueIndexAll(String entityName) {
         Preconditions.checkNotEmptyString(entityName);
@@ -130,45 +117,39 @@ public class JpaIndexingQueueManager implements IndexingQueueManager {
     }
 
     @Override
-    public int enqueueDelete(Object entityInstance) {
-        Preconditions.checkNotNullArgument(entityInstance);
-        return enqueueDeleteCollection(Collections.singletonList(entityInstance));
-    }
-
-    @Override
-    public int enqueueDeleteCollection(Collection<Object> entityInstances) {
-        Preconditions.checkNotNullArgument(entityInstances);
-        return enqueue(entityInstances, IndexingOperation.DELETE);
-    }
-
-    @Override
-    public int enqueueDeleteByEntityId(Id<?> entityId) {
-        Preconditions.checkNotNullArgument(entityId);
-        return enqueueDeleteCollectionByEntityIds(Collections.singletonList(entityId));
-    }
-
-    @Override
-    public int enqueueDeleteCollectionByEntityIds(Collection<Id<?>> entityIds) {
-        Preconditions.checkNotNullArgument(entityIds);
-        return enqueueByIds(entityIds, IndexingOperation.DELETE);
-    }
-
-    @Override
-    public int processNextBatch() {
-        return processNextBatch(searchProperties.getProcessQueueBatchSize());
+    public int resumeEnqueueIndexAll() {
+        return loadEnqueueingSessionEntityNames().stream()
+                .filter(indexConfigurationManager::isDirectlyIndexed)
+                .map(this::resumeEnqueueIndexAll)
+                .reduce(Integer::sum)
+                .orElse(0);
     }
 
     @Override
-    public int processNextBatch(int batchSize) {
-        return processQueue(batchSize, batchSize);
+    public int resumeEnqueueIndexAll(String entityName) {
+        Preconditions.checkNotEmptyString(entityName);
+        return enqueueIndexAll(entityName, searchProperties.getReindexEntityEnqueueBatchSize(), true);
     }
 
-    @Override
-    public int processEntireQueue() {
-        return processQueue(searchProperties.getProcessQueueBatchSize(), -1);
+    protected int enqueueIndexAll(String entityName, int batchSize) {
+        return enqueueIndexAll(entityName, batchSize, false);
     }
 
-    protected int enqueueIndexAll(String entityName, int batchSize) {
+    /**
+     * Enqueues all instances of entity. Primary keys are loaded by pages using keyset pagination
+     * ({@code where pk > :lastId order by pk}), every page is enqueued in separate transaction together with
+     * update of {@link EnqueueingSession}, so memory consumption doesn't depend on amount of instances and
+     * the process can be continued from the last enqueued key after interruption.
+     * <p>
+     * Entities with composite primary key don't support keyset pagination: their keys are loaded by offset pagination
+     * and enqueueing of such entities can't be resumed.
+     *
+     * @param entityName entity name
+     * @param batchSize  amount of instances enqueued in single transaction
+     * @param resume     whether to continue the existing session instead of starting the new one
+     * @return amount of enqueued instances
+     */
+    protected int enqueueIndexAll(String entityName, int batchSize, boolean resume) {
         if (batchSize <= 0) {
             throw new IllegalArgumentException("Size of enqueuing batch during reindex entity must be positive");
         }
@@ -182,72 +163,204 @@ public class JpaIndexingQueueManager implements IndexingQueueManager {
             return 0;
         }
 
+        boolean bulkIndexingSessionStarted = startBulkIndexingSession(entityName);
+        int enqueued = 0;
         try {
-            MetaClass metaClass = metadata.getClass(entityName);
-            List<?> rawIds = loadRawIds(metaClass);
-            return processRawIds(rawIds, metaClass, batchSize);
+            enqueued = enqueueAllRawIds(entityName, batchSize, resume);
+            return enqueued;
         } finally {
+            if (bulkIndexingSessionStarted && enqueued == 0) {
+                finishBulkIndexingSession(entityName);
+            }
             locker.unlockEntityForEnqueueIndexAll(entityName);
         }
     }
 
-    protected List<?> loadRawIds(MetaClass metaClass) {
-        String entityName = metaClass.getName();
-        String primaryKeyName = metadataTools.getPrimaryKeyName(metaClass);
-        log.debug("Primary key of entity '{}': '{}'", entityName, primaryKeyName);
-        if (primaryKeyName == null) {
-            throw new IllegalArgumentException(String.format("Unable to enqueue instances of entity '%s' - entity doesn't have primary key", entityName));
+    protected int enqueueAllRawIds(String entityName, int batchSize, boolean resume) {
+        MetaClass metaClass = metadata.getClass(entityName);
+        String primaryKeyName = getPrimaryKeyName(metaClass);
+        if (metadataTools.hasCompositePrimaryKey(metaClass)) {
+            if (resume) {
+                log.info("Unable to resume enqueueing of entity '{}': entity has composite primary key", entityName);
+                return 0;
+            }
+            return enqueueRawIdsByOffsetPages(metaClass, primaryKeyName, batchSize);
         }
 
-        List<?> rawIds;
-        TransactionTemplate transactionTemplate = storeAwareLocator.getTransactionTemplate(metaClass.getStore().getName());
-        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRED);
-        rawIds = transactionTemplate.execute(status -> {
-            EntityManager em = storeAwareLocator.getEntityManager(metaClass.getStore().getName());
-            Query query = em.createQuery(format("select e.%s from %s e", primaryKeyName, entityName));
-            return query.getResultList();
-        });
-        if (rawIds == null) {
-            rawIds = Collections.emptyList();
+        EnqueueingSession session = resume ? loadEnqueueingSession(entityName) : startEnqueueingSession(entityName);
+        if (session == null) {
+            log.info("There is no interrupted enqueueing of entity '{}'", entityName);
+            return 0;
+        }
+        return enqueueRawIdsByPages(metaClass, primaryKeyName, session, batchSize);
+    }
+
+    /**
+     * Starts bulk indexing session for index of entity if it's enabled and not started yet.
+     * Session lasts until all enqueued items are processed.
+     *
+     * @param entityName entity name
+     * @return true if new session has been started, false otherwise
+     */
+    protected boolean startBulkIndexingSession(String entityName) {
+        if (!searchProperties.isBulkIndexingSessionEnabled() || bulkIndexingSessionEntities.contains(entityName)) {
+            return false;
+        }
+
+        IndexConfiguration indexConfiguration = indexConfigurationManager.getIndexConfigurationByEntityName(entityName);
+        try {
+            if (esIndexManager.startBulkIndexingSession(indexConfiguration)) {
+                bulkIndexingSessionEntities.add(entityName);
+                return true;
+            }
+        } catch (RuntimeException e) {
+            log.warn("Unable to start bulk indexing session of entity '{}'", entityName, e);
+        }
+        return false;
+    }
+
+    protected void finishBulkIndexingSession(String entityName) {
+        if (bulkIndexingSessionEntities.remove(entityName)) {
+            IndexConfiguration indexConfiguration = indexConfigurationManager.getIndexConfigurationByEntityName(entityName);
+            esIndexManager.finishBulkIndexingSession(indexConfiguration);
+        }
+    }
+
+    /**
+     * Finishes bulk indexing sessions of entities which are not being enqueued at the moment.
+     * Should be invoked when the queue is drained.
+     */
+    protected void finishDrainedBulkIndexingSessions() {
+        for (String entityName : new ArrayList<>(bulkIndexingSessionEntities)) {
+            if (!locker.isEntityLockedForEnqueueIndexAll(entityName)) {
+                finishBulkIndexingSession(entityName);
+            }
         }
-        return rawIds;
     }
 
-    protected int processRawIds(List<?> rawIds, MetaClass metaClass, int batchSize) {
+    protected void renewBulkIndexingSessions() {
+        try {
+            esIndexManager.renewBulkIndexingSessions();
+        } catch (RuntimeException e) {
+            log.warn("Unable to renew bulk indexing sessions", e);
+        }
+    }
+
+    protected int enqueueRawIdsByPages(MetaClass metaClass, String primaryKeyName, EnqueueingSession session, int batchSize) {
         Class<Object> entityClass = metaClass.getJavaClass();
         String entityName = metaClass.getName();
-        int totalSize = rawIds.size();
-        int processedBatchSize = 0;
-        int totalEnqueued = 0;
-        int start = 0;
-        int end = batchSize;
+        Object lastRawId = session.getLastEnqueuedId() == null
+                ? null
+                : idSerialization.stringToId(session.getLastEnqueuedId()).getValue();
+        if (lastRawId != null) {
+            log.info("Resume enqueueing of entity '{}' after instance with id '{}'", entityName, lastRawId);
+        }
+
+        long totalEnqueued = session.getEnqueuedCount() == null ? 0 : session.getEnqueuedCount();
+        int enqueued = 0;
+        List<?> rawIdsPage;
         do {
-            end = Math.min(end, totalSize);
-            List<?> rawIdsBatch = rawIds.subList(start, end);
-            log.trace("Start process raw ids sublist [{}:{}) of entity '{}'", start, end, entityName);
+            rawIdsPage = loadRawIdsPage(metaClass, primaryKeyName, lastRawId, batchSize);
+            if (rawIdsPage.isEmpty()) {
+                break;
+            }
+            lastRawId = rawIdsPage.get(rawIdsPage.size() - 1);
 
-            if (rawIdsBatch.isEmpty()) {
-                processedBatchSize = 0;
-            } else {
-                List<IndexingQueueItem> queueItems = rawIdsBatch.stream()
-                        .map(id -> idSerialization.idToString(Id.of(id, entityClass)))
-                        .map(id -> createQueueItem(entityName, id, IndexingOperation.INDEX))
-                        .collect(Collectors.toList());
+            List<IndexingQueueItem> queueItems = rawIdsPage.stream()
+                    .map(id -> idSerialization.idToString(Id.of(id, entityClass)))
+                    .map(id -> createQueueItem(entityName, id, IndexingOperation.INDEX))
+                    .collect(Collectors.toList());
+            String lastEnqueuedId = idSerialization.idToString(Id.of(lastRawId, entityClass));
+            int enqueuedInPage = enqueueAndUpdateSession(queueItems, session, lastEnqueuedId);
+            enqueued += enqueuedInPage;
+            totalEnqueued += enqueuedInPage;
 
-                int enqueued = enqueue(queueItems);
-                totalEnqueued += enqueued;
+            log.debug("Enqueued next {} instances of entity '{}': Total enqueued = {}", enqueuedInPage, entityName, totalEnqueued);
+        } while (rawIdsPage.size() == batchSize);
 
-                log.debug("Enqueued next {} instances of entity '{}': Total enqueued = {}/{}", enqueued, entityName, totalEnqueued, totalSize);
+        finishEnqueueingSession(session);
+        return enqueued;
+    }
 
-                processedBatchSize = rawIdsBatch.size();
-                start += processedBatchSize;
-                end += processedBatchSize;
-            }
-        } while (processedBatchSize == batchSize);
+    protected int enqueueAndUpdateSession(Collection<IndexingQueueItem> queueItems, EnqueueingSession session, String lastEnqueuedId) {
+        TransactionTemplate transactionTemplate = storeAwareLocator.getTransactionTemplate(Stores.MAIN);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        Integer enqueued = transactionTemplate.execute(status -> {
+            int enqueuedItems = enqueue(queueItems);
+            EntityManager entityManager = storeAwareLocator.getEntityManager(Stores.MAIN);
+            Query query = entityManager.createQuery("update search_EnqueueingSession s " +
+                    "set s.lastEnqueuedId = :lastEnqueuedId, s.enqueuedCount = s.enqueuedCount + :enqueued " +
+                    "where s.id = :id");
+            query.setParameter("lastEnqueuedId", lastEnqueuedId);
+            query.setParameter("enqueued", (long) enqueuedItems);
+            query.setParameter("id", session.getId());
+            query.executeUpdate();
+            return enqueuedItems;
+        });
+        return enqueued == null ? 0 : enqueued;
+    }
+
+    /**
+     * Starts new enqueueing session of provided entity. Previous session of the entity is discarded.
+     *
+     * @param entityName entity name
+     * @return created session
+     */
+    protected EnqueueingSession startEnqueueingSession(String entityName) {
+        TransactionTemplate transactionTemplate = storeAwareLocator.getTransactionTemplate(Stores.MAIN);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return transactionTemplate.execute(status -> {
+            EntityManager entityManager = storeAwareLocator.getEntityManager(Stores.MAIN);
+            Query query = entityManager.createQuery("delete from search_EnqueueingSession s where s.entityName = :entityName");
+            query.setParameter("entityName", entityName);
+            query.executeUpdate();
 
-        return totalEnqueued;
+            EnqueueingSession session = metadata.create(EnqueueingSession.class);
+            session.setEntityName(entityName);
+            session.setEnqueuedCount(0L);
+            entityManager.persist(session);
+            return session;
+        });
     }
 
+    @Nullable
+    protected EnqueueingSession loadEnqueueingSession(String entityName) {
+        TransactionTemplate transactionTemplate = storeAwareLocator.getTransactionTemplate(Stores.MAIN);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return transactionTemplate.execute(status -> {
+            EntityManager entityManager = storeAwareLocator.getEntityManager(Stores.MAIN);
+            List<EnqueueingSession> sessions = entityManager
+                    .createQuery("select s from search_EnqueueingSession s where s.entityName = :entityName", EnqueueingSession.class)
+                    .setParameter("entityName", entityName)
+                    .getResultList();
+            return sessions.isEmpty() ? null : sessions.get(0);
+        });
+    }
+
+    protected List<String> loadEnqueueingSessionEntityNames() {
+        TransactionTemplate transactionTemplate = storeAwareLocator.getTransactionTemplate(Stores.MAIN);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        List<String> entityNames = transactionTemplate.execute(status -> {
+            EntityManager entityManager = storeAwareLocator.getEntityManager(Stores.MAIN);
+            return entityManager
+                    .createQuery("select s.entityName from search_EnqueueingSession s", String.class)
+                    .getResultList();
+        });
+        return entityNames == null ? Collections.emptyList() : entityNames;
+    }
+
+    protected void finishEnqueueingSession(EnqueueingSession session) {
+        TransactionTemplate transactionTemplate = storeAwareLocator.getTransactionTemplate(Stores.MAIN);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        transactionTemplate.executeWithoutResult(status -> {
+            EntityManager entityManager = storeAwareLocator.getEntityManager(Stores.MAIN);
+            Query query = entityManager.createQuery("delete from search_EnqueueingSession s where s.id = :id");
+            query.setParameter("id", session.getId());
+            query.executeUpdate();
+        });
+    }
+
+    @Override
     protected int processQueue(int batchSize, int maxProcessedPerExecution) {
         if (batchSize <= 0) {
             throw new IllegalArgumentException("Size of queue processing batch must be positive");
@@ -264,25 +377,35 @@ public class JpaIndexingQueueManager implements IndexingQueueManager {
         try {
             authenticator.begin();
 
-            List<IndexingQueueItem> queueItems;
+            int partitionsCount = queueProcessingExecutor == null ? 1 : searchProperties.getProcessQueueThreadsCount();
+            int dequeueSize = batchSize * partitionsCount;
+            IndexingQueueDequeueStrategy dequeueStrategy = getDequeueStrategy();
+            int dequeued;
+            boolean drained;
             do {
                 List<String> unavailableEntities = indexStateRegistry.getAllUnavailableIndexedEntities();
-                LoadContext<IndexingQueueItem> loadContext = createDequeueLoadContext(unavailableEntities, batchSize);
-                log.trace("Dequeue items by load context: {}", loadContext);
-                queueItems = dataManager.loadList(loadContext);
-                log.debug("Dequeued {} items: {}", queueItems.size(), queueItems);
-
-                if (queueItems.isEmpty()) {
-                    break;
+                QueueBatchResult batchResult;
+                switch (dequeueStrategy) {
+                    case SKIP_LOCKED:
+                        batchResult = processQueueBatchWithRowLocks(unavailableEntities, dequeueSize, partitionsCount);
+                        break;
+                    case LEASE:
+                        batchResult = processQueueBatchWithLease(unavailableEntities, dequeueSize, partitionsCount);
+                        break;
+                    default:
+                        batchResult = processQueueBatch(unavailableEntities, dequeueSize, partitionsCount);
                 }
-                List<IndexingQueueItem> successfullyProcessedQueueItems = processQueueItems(queueItems);
-
-                SaveContext saveContext = new SaveContext();
-                saveContext.removing(successfullyProcessedQueueItems);
-                dataManager.save(saveContext);
+                dequeued = batchResult.dequeued;
+                count += batchResult.processed;
+                drained = dequeued < dequeueSize;
+            } while (dequeued == dequeueSize && (maxProcessedPerExecution <= 0 || dequeued <= maxProcessedPerExecution));
 
-                count += successfullyProcessedQueueItems.size();
-            } while (queueItems.size() == batchSize && (maxProcessedPerExecution <= 0 || queueItems.size() <= maxProcessedPerExecution));
+            if (drained && !bulkIndexingSessionEntities.isEmpty()) {
+                finishDrainedBulkIndexingSessions();
+            }
+            if (!bulkIndexingSessionEntities.isEmpty()) {
+                renewBulkIndexingSessions();
+            }
         } finally {
             locker.unlockQueueProcessing();
             authenticator.end();
@@ -292,115 +415,629 @@ public class JpaIndexingQueueManager implements IndexingQueueManager {
         return count;
     }
 
-    protected LoadContext<IndexingQueueItem> createDequeueLoadContext(List<String> unavailableEntities, int batchSize) {
-        LoadContext.Query query = new LoadContext.Query("");
-        StringBuilder sb = new StringBuilder("select q from search_IndexingQueue q");
-        if (!unavailableEntities.isEmpty()) {
-            sb.append(" where q.entityName not in :unavailableEntities");
-            query.setParameter("unavailableEntities", unavailableEntities);
+    protected QueueBatchResult processQueueBatch(List<String> unavailableEntities, int dequeueSize, int partitionsCount) {
+        List<IndexingQueueItem> queueItems = dequeueQueueItems(unavailableEntities, dequeueSize);
+        log.debug("Dequeued {} items: {}", queueItems.size(), queueItems);
+        if (queueItems.isEmpty()) {
+            return new QueueBatchResult(0, 0);
         }
-        sb.append(" order by q.createdDate asc");
-        query.setQueryString(sb.toString());
-        query.setMaxResults(batchSize);
 
-        return new LoadContext<IndexingQueueItem>(metadata.getClass(IndexingQueueItem.class)).setQuery(query);
+        List<IndexingQueueItem> successfullyProcessedQueueItems = processDequeuedItems(queueItems, partitionsCount);
+        deleteQueueItems(successfullyProcessedQueueItems);
+        return new QueueBatchResult(queueItems.size(), successfullyProcessedQueueItems.size());
+    }
+
+    /**
+     * Locks the oldest unclaimed queue items with {@code FOR UPDATE SKIP LOCKED} (items locked by other application
+     * instances are skipped) and claims them for the current application instance. The claim is committed before
+     * processing, so neither row locks nor database connection are held during bulk requests and concurrent
+     * enqueueing isn't blocked. Processed items are deleted, claims of failed items are released.
+     * Items claimed by crashed instances are locked again after lease expiration. Items exceeding the max amount
+     * of attempts are moved to the dead letter queue.
+     */
+    protected QueueBatchResult processQueueBatchWithRowLocks(List<String> unavailableEntities, int dequeueSize, int partitionsCount) {
+        List<IndexingQueueItem> claimedItems = claimLockedQueueItems(unavailableEntities, dequeueSize);
+        if (claimedItems.isEmpty()) {
+            return new QueueBatchResult(0, 0);
+        }
+
+        List<IndexingQueueItem> queueItems = moveExhaustedItemsToDeadLetterQueue(claimedItems);
+        List<IndexingQueueItem> successfullyProcessedQueueItems = queueItems.isEmpty()
+                ? Collections.emptyList()
+                : processDequeuedItems(queueItems, partitionsCount);
+        deleteQueueItems(successfullyProcessedQueueItems);
+        Set<UUID> processedIds = successfullyProcessedQueueItems.stream()
+                .map(IndexingQueueItem::getId)
+                .collect(Collectors.toSet());
+        List<IndexingQueueItem> failedQueueItems = queueItems.stream()
+                .filter(queueItem -> !processedIds.contains(queueItem.getId()))
+                .collect(Collectors.toList());
+        releaseQueueItemClaims(failedQueueItems);
+        return new QueueBatchResult(claimedItems.size(), successfullyProcessedQueueItems.size());
     }
 
-    protected List<IndexingQueueItem> processQueueItems(List<IndexingQueueItem> queueItems) {
-        Map<IndexingOperation, Map<Id<?>, List<IndexingQueueItem>>> groupedQueueItems = groupQueueItems(queueItems);
+    /**
+     * Locks the oldest unclaimed items (or items with expired lease) skipping rows locked by other transactions
+     * and sets claim of the current application instance on them within a separate short transaction.
+     * Attempt counters of claimed items are incremented.
+     *
+     * @param unavailableEntities entities which items should not be claimed
+     * @param batchSize           max amount of claimed items
+     * @return claimed items
+     */
+    protected List<IndexingQueueItem> claimLockedQueueItems(List<String> unavailableEntities, int batchSize) {
+        TransactionTemplate transactionTemplate = storeAwareLocator.getTransactionTemplate(Stores.MAIN);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        List<IndexingQueueItem> claimedItems = transactionTemplate.execute(status -> {
+            EntityManager entityManager = storeAwareLocator.getEntityManager(Stores.MAIN);
+            Date claimedDate = timeSource.currentTimestamp();
+            Date leaseExpirationDate = new Date(claimedDate.getTime() - searchProperties.getIndexingQueueLeaseTimeout());
+            List<UUID> lockedIds = lockQueueItemIds(entityManager, unavailableEntities, leaseExpirationDate, batchSize);
+            if (lockedIds.isEmpty()) {
+                return Collections.<IndexingQueueItem>emptyList();
+            }
+
+            entityManager.createQuery("update search_IndexingQueue q " +
+                            "set q.claimedBy = :claimedBy, q.claimedDate = :claimedDate, q.attemptCount = coalesce(q.attemptCount, 0) + 1 " +
+                            "where q.id in :ids")
+                    .setParameter("claimedBy", nodeId)
+                    .setParameter("claimedDate", claimedDate)
+                    .setParameter("ids", lockedIds)
+                    .executeUpdate();
 
-        Map<Id<?>, List<IndexingQueueItem>> itemsForIndex = groupedQueueItems.get(IndexingOperation.INDEX);
-        Map<Id<?>, List<IndexingQueueItem>> itemsForDelete = groupedQueueItems.get(IndexingOperation.DELETE);
-        //todo check case update after delete (restore entity?)
+            return entityManager
+                    .createQuery("select q from search_IndexingQueue q where q.id in :ids order by q.createdDate asc", IndexingQueueItem.class)
+                    .setParameter("ids", lockedIds)
+                    .getResultList();
+        });
+        log.debug("Dequeued {} locked items: {}", claimedItems == null ? 0 : claimedItems.size(), claimedItems);
+        return claimedItems == null ? Collections.emptyList() : claimedItems;
+    }
 
-        List<IndexingQueueItem> successfullyProcessedQueueItems = new ArrayList<>(queueItems.size());
-        if (MapUtils.isNotEmpty(itemsForIndex)) {
-            successfullyProcessedQueueItems.addAll(
-                    processQueueItemsGroup(itemsForIndex, entityIndexer::indexCollectionByEntityIds)
-            );
+    /**
+     * Releases claims of items rejected by Elasticsearch while processing with the 'lease' strategy,
+     * so they are claimed again by the next processing instead of waiting for lease expiration,
+     * which is intended for items of crashed instances. Claims of all failed items are released anyway
+     * with the 'skip-locked' strategy.
+     */
+    @Override
+    protected void onQueueItemsRejected(Collection<IndexingQueueItem> queueItems) {
+        if (getDequeueStrategy() != IndexingQueueDequeueStrategy.LEASE || queueItems.isEmpty()) {
+            return;
         }
-        if (MapUtils.isNotEmpty(itemsForDelete)) {
-            successfullyProcessedQueueItems.addAll(
-                    processQueueItemsGroup(itemsForDelete, entityIndexer::deleteCollectionByEntityIds)
-            );
+        try {
+            releaseQueueItemClaims(queueItems);
+        } catch (RuntimeException e) {
+            log.warn("Unable to release claims of {} rejected queue items, they will be claimed again after lease expiration",
+                    queueItems.size(), e);
+        }
+    }
+
+    /**
+     * Releases claims of items that failed to be processed, so they are dequeued again by the next processing.
+     *
+     * @param queueItems claimed queue items
+     */
+    protected void releaseQueueItemClaims(Collection<IndexingQueueItem> queueItems) {
+        if (queueItems.isEmpty()) {
+            return;
         }
 
-        return successfullyProcessedQueueItems;
+        List<UUID> ids = queueItems.stream().map(IndexingQueueItem::getId).collect(Collectors.toList());
+        TransactionTemplate transactionTemplate = storeAwareLocator.getTransactionTemplate(Stores.MAIN);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        transactionTemplate.executeWithoutResult(status -> {
+            EntityManager entityManager = storeAwareLocator.getEntityManager(Stores.MAIN);
+            for (List<UUID> idsChunk : Iterables.partition(ids, MAX_IN_CLAUSE_PARAMETERS)) {
+                entityManager.createQuery("update search_IndexingQueue q " +
+                                "set q.claimedBy = null, q.claimedDate = null where q.id in :ids and q.claimedBy = :claimedBy")
+                        .setParameter("ids", idsChunk)
+                        .setParameter("claimedBy", nodeId)
+                        .executeUpdate();
+            }
+        });
+        log.trace("Claims of {} failed queue items have been released", ids.size());
     }
 
-    protected List<IndexingQueueItem> processQueueItemsGroup(Map<Id<?>, List<IndexingQueueItem>> itemsGroup,
-                                                             Function<Collection<Id<?>>, IndexResult> processingFunction) {
-        Set<Id<?>> entityIds = itemsGroup.keySet();
-        IndexResult indexResult = processingFunction.apply(entityIds);
-        return handleIndexResult(indexResult, itemsGroup);
+    protected List<UUID> lockQueueItemIds(EntityManager entityManager, List<String> unavailableEntities,
+                                          Date leaseExpirationDate, int batchSize) {
+        String sql = createSkipLockedDequeueSql(getDbmsType(), unavailableEntities.size(), batchSize);
+        if (sql == null) {
+            throw new IllegalStateException("Dequeueing with skipping of locked rows is not supported by database");
+        }
+        Query query = entityManager.createNativeQuery(sql);
+        query.setParameter(1, new Timestamp(leaseExpirationDate.getTime()));
+        int unavailableEntitiesCount = unavailableEntities.size();
+        for (int i = 0; i < unavailableEntitiesCount; i++) {
+            query.setParameter(i + 2, unavailableEntities.get(i));
+            query.setParameter(unavailableEntitiesCount + i + 2, createDependentEntityNamePattern(unavailableEntities.get(i)));
+        }
+        List<?> rawIds = query.getResultList();
+        return rawIds.stream()
+                .map(rawId -> rawId instanceof UUID ? (UUID) rawId : UuidProvider.fromString(rawId.toString()))
+                .collect(Collectors.toList());
     }
 
-    protected List<IndexingQueueItem> handleIndexResult(IndexResult indexResult, Map<Id<?>, List<IndexingQueueItem>> itemsGroup) {
-        List<Id<?>> failedIds = Collections.emptyList();
-        if (indexResult.hasFailures()) {
-            failedIds = indexResult.getFailedIndexIds().stream()
-                    .map(idSerialization::stringToId)
-                    .collect(Collectors.toList());
+    /**
+     * Creates native query selecting and locking identifiers of the oldest queue items
+     * skipping rows locked by other transactions.
+     *
+     * The first positional parameter is the lease expiration date: items claimed before it are selected again.
+     *
+     * @param dbmsType                 type of the main data store
+     * @param unavailableEntitiesCount amount of positional parameters with names of entities to be excluded
+     *                                 (following the lease expiration date), they are followed by the same amount
+     *                                 of parameters with patterns of property paths of cascade items to be excluded
+     * @param batchSize                max amount of selected rows
+     * @return SQL or null if database doesn't support skipping of locked rows
+     */
+    @Nullable
+    protected String createSkipLockedDequeueSql(String dbmsType, int unavailableEntitiesCount, int batchSize) {
+        String tableName = metadataTools.getDatabaseTable(metadata.getClass(IndexingQueueItem.class));
+        StringBuilder condition = new StringBuilder(" where (CLAIMED_DATE is null or CLAIMED_DATE < ?1)");
+        if (unavailableEntitiesCount > 0) {
+            String cascade = IndexingOperation.CASCADE.getId();
+            condition.append(" and (OPERATION <> '").append(cascade).append("' and ENTITY_NAME not in (");
+            for (int i = 1; i <= unavailableEntitiesCount; i++) {
+                condition.append(i > 1 ? ", " : "").append("?").append(i + 1);
+            }
+            condition.append(") or OPERATION = '").append(cascade).append("'");
+            for (int i = 1; i <= unavailableEntitiesCount; i++) {
+                condition.append(" and PROPERTY_PATH not like ?").append(unavailableEntitiesCount + i + 1).append(" escape '!'");
+            }
+            condition.append(")");
+        }
+
+        switch (dbmsType) {
+            case "postgres":
+            case "mysql":
+            case "mariadb":
+                return "select ID from " + tableName + condition +
+                        " order by CREATED_DATE limit " + batchSize + " for update skip locked";
+            case "mssql":
+                return "select top " + batchSize + " ID from " + tableName + " with (updlock, readpast, rowlock)" + condition +
+                        " order by CREATED_DATE";
+            default:
+                return null;
         }
-        failedIds.forEach(itemsGroup.keySet()::remove);
-        return itemsGroup.values().stream().flatMap(Collection::stream).collect(Collectors.toList());
     }
 
-    protected Map<IndexingOperation, Map<Id<?>, List<IndexingQueueItem>>> groupQueueItems(Collection<IndexingQueueItem> queueItems) {
-        Map<IndexingOperation, Map<Id<?>, List<IndexingQueueItem>>> result = new HashMap<>();
-        queueItems.forEach(item -> {
-            IndexingOperation operation = item.getOperation();
-            Id<?> id = idSerialization.stringToId(item.getEntityId());
-            Map<Id<?>, List<IndexingQueueItem>> itemsForOperation = result.computeIfAbsent(operation, k -> new HashMap<>());
-            List<IndexingQueueItem> itemsForInstanceId = itemsForOperation.computeIfAbsent(id, k -> new ArrayList<>());
-            itemsForInstanceId.add(item);
+    /**
+     * Claims the oldest unclaimed items (or items with expired lease) for the current application instance,
+     * processes them and deletes processed ones. Items that failed stay claimed until lease expiration
+     * and are claimed again after that. Claims of items temporarily rejected by Elasticsearch are released
+     * at once, see {@link #onQueueItemsRejected(Collection)}.
+     */
+    protected QueueBatchResult processQueueBatchWithLease(List<String> unavailableEntities, int dequeueSize, int partitionsCount) {
+        List<IndexingQueueItem> claimedItems = claimQueueItems(unavailableEntities, dequeueSize);
+        if (claimedItems.isEmpty()) {
+            return new QueueBatchResult(0, 0);
+        }
+
+        List<IndexingQueueItem> queueItems = moveExhaustedItemsToDeadLetterQueue(claimedItems);
+        List<IndexingQueueItem> successfullyProcessedQueueItems = queueItems.isEmpty()
+                ? Collections.emptyList()
+                : processDequeuedItems(queueItems, partitionsCount);
+        deleteQueueItems(successfullyProcessedQueueItems);
+        return new QueueBatchResult(claimedItems.size(), successfullyProcessedQueueItems.size());
+    }
+
+    /**
+     * Sets lease of the current application instance on the oldest available items and increments their attempt counters.
+     * Claiming is conditional, so items claimed concurrently by other instances are skipped.
+     *
+     * @param unavailableEntities entities which items should not be claimed
+     * @param batchSize           max amount of claimed items
+     * @return claimed items
+     */
+    protected List<IndexingQueueItem> claimQueueItems(List<String> unavailableEntities, int batchSize) {
+        TransactionTemplate transactionTemplate = storeAwareLocator.getTransactionTemplate(Stores.MAIN);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        List<IndexingQueueItem> claimedItems = transactionTemplate.execute(status -> {
+            EntityManager entityManager = storeAwareLocator.getEntityManager(Stores.MAIN);
+            Date claimedDate = timeSource.currentTimestamp();
+            Date leaseExpirationDate = new Date(claimedDate.getTime() - searchProperties.getIndexingQueueLeaseTimeout());
+
+            StringBuilder sb = new StringBuilder("select q.id from search_IndexingQueue q " +
+                    "where (q.claimedDate is null or q.claimedDate < :leaseExpirationDate)");
+            if (!unavailableEntities.isEmpty()) {
+                sb.append(" and ").append(createAvailableItemsCondition(unavailableEntities.size()));
+            }
+            sb.append(" order by q.createdDate asc");
+            TypedQuery<UUID> candidatesQuery = entityManager.createQuery(sb.toString(), UUID.class)
+                    .setParameter("leaseExpirationDate", leaseExpirationDate)
+                    .setMaxResults(batchSize);
+            if (!unavailableEntities.isEmpty()) {
+                setAvailableItemsConditionParameters(candidatesQuery::setParameter, unavailableEntities);
+            }
+            List<UUID> candidateIds = candidatesQuery.getResultList();
+            if (candidateIds.isEmpty()) {
+                return Collections.<IndexingQueueItem>emptyList();
+            }
+
+            entityManager.createQuery("update search_IndexingQueue q " +
+                            "set q.claimedBy = :claimedBy, q.claimedDate = :claimedDate, q.attemptCount = coalesce(q.attemptCount, 0) + 1 " +
+                            "where q.id in :ids and (q.claimedDate is null or q.claimedDate < :leaseExpirationDate)")
+                    .setParameter("claimedBy", nodeId)
+                    .setParameter("claimedDate", claimedDate)
+                    .setParameter("ids", candidateIds)
+                    .setParameter("leaseExpirationDate", leaseExpirationDate)
+                    .executeUpdate();
+
+            return entityManager.createQuery("select q from search_IndexingQueue q " +
+                            "where q.id in :ids and q.claimedBy = :claimedBy order by q.createdDate asc", IndexingQueueItem.class)
+                    .setParameter("ids", candidateIds)
+                    .setParameter("claimedBy", nodeId)
+                    .getResultList();
         });
+        log.debug("Claimed {} items: {}", claimedItems == null ? 0 : claimedItems.size(), claimedItems);
+        return claimedItems == null ? Collections.emptyList() : claimedItems;
+    }
 
+    /**
+     * Moves items exceeding the max amount of processing attempts to the dead letter queue.
+     *
+     * @param queueItems claimed items
+     * @return items to be processed
+     */
+    protected List<IndexingQueueItem> moveExhaustedItemsToDeadLetterQueue(List<IndexingQueueItem> queueItems) {
+        int maxAttempts = searchProperties.getIndexingQueueMaxAttempts();
+        List<IndexingQueueItem> exhaustedItems = new ArrayList<>();
+        List<IndexingQueueItem> result = new ArrayList<>(queueItems.size());
+        for (IndexingQueueItem queueItem : queueItems) {
+            Integer attemptCount = queueItem.getAttemptCount();
+            if (attemptCount != null && attemptCount > maxAttempts) {
+                exhaustedItems.add(queueItem);
+            } else {
+                result.add(queueItem);
+            }
+        }
+        if (exhaustedItems.isEmpty()) {
+            return result;
+        }
+
+        log.warn("{} queue items haven't been processed within {} attempts and will be moved to the dead letter queue: {}",
+                exhaustedItems.size(), maxAttempts, exhaustedItems);
+        TransactionTemplate transactionTemplate = storeAwareLocator.getTransactionTemplate(Stores.MAIN);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        transactionTemplate.executeWithoutResult(status -> {
+            EntityManager entityManager = storeAwareLocator.getEntityManager(Stores.MAIN);
+            exhaustedItems.stream().map(this::createDeadLetterQueueItem).forEach(entityManager::persist);
+            deleteQueueItems(exhaustedItems);
+        });
         return result;
     }
 
-    protected int enqueue(Collection<Object> entityInstances, IndexingOperation operation) {
-        List<Id<?>> ids = entityInstances.stream().map(Id::of).collect(Collectors.toList());
-        return enqueueByIds(ids, operation);
-    }
-
-    protected int enqueueByIds(Collection<Id<?>> entityIds, IndexingOperation operation) {
-        List<IndexingQueueItem> queueItems = entityIds.stream()
-                .map(id -> {
-                    MetaClass metaClass = metadata.getClass(id.getEntityClass());
-                    Optional<IndexConfiguration> indexConfigurationOpt = indexConfigurationManager.getIndexConfigurationByEntityNameOpt(metaClass.getName());
-                    if (indexConfigurationOpt.isPresent()) {
-                        String serializedEntityId = idSerialization.idToString(id);
-                        return createQueueItem(metaClass, serializedEntityId, operation);
-                    } else {
-                        return null;
-                    }
-                })
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList());
-        return enqueue(queueItems);
+    protected DeadLetterQueueItem createDeadLetterQueueItem(IndexingQueueItem queueItem) {
+        DeadLetterQueueItem deadLetterQueueItem = metadata.create(DeadLetterQueueItem.class);
+        deadLetterQueueItem.setOperation(queueItem.getOperation());
+        deadLetterQueueItem.setEntityId(queueItem.getEntityId());
+        deadLetterQueueItem.setEntityName(queueItem.getEntityName());
+        deadLetterQueueItem.setPropertyPath(queueItem.getPropertyPath());
+        deadLetterQueueItem.setAttemptCount(queueItem.getAttemptCount());
+        deadLetterQueueItem.setLastClaimedBy(queueItem.getClaimedBy());
+        deadLetterQueueItem.setEnqueuedDate(queueItem.getCreatedDate());
+        return deadLetterQueueItem;
+    }
+
+    /**
+     * Resolves dequeue strategy once. Strategy {@link IndexingQueueDequeueStrategy#SKIP_LOCKED}
+     * is replaced by {@link IndexingQueueDequeueStrategy#LEASE} if it's not supported by database.
+     */
+    protected IndexingQueueDequeueStrategy getDequeueStrategy() {
+        if (dequeueStrategy == null) {
+            IndexingQueueDequeueStrategy strategy = searchProperties.getIndexingQueueDequeueStrategy();
+            if (strategy == IndexingQueueDequeueStrategy.SKIP_LOCKED && createSkipLockedDequeueSql(getDbmsType(), 0, 1) == null) {
+                log.warn("Dequeue strategy '{}' is not supported by database '{}'. Queue will be processed with '{}' strategy",
+                        IndexingQueueDequeueStrategy.SKIP_LOCKED, getDbmsType(), IndexingQueueDequeueStrategy.LEASE);
+                strategy = IndexingQueueDequeueStrategy.LEASE;
+            }
+            dequeueStrategy = strategy;
+        }
+        return dequeueStrategy;
+    }
+
+    protected String getDbmsType() {
+        return dbmsType.getType(Stores.MAIN);
+    }
+
+    /**
+     * Deletes processed queue items by identifiers with bulk statements, bypassing entity lifecycle.
+     *
+     * @param queueItems processed queue items
+     * @return amount of deleted rows
+     */
+    protected int deleteQueueItems(Collection<IndexingQueueItem> queueItems) {
+        if (queueItems.isEmpty()) {
+            return 0;
+        }
+
+        List<UUID> ids = queueItems.stream().map(IndexingQueueItem::getId).collect(Collectors.toList());
+        TransactionTemplate transactionTemplate = storeAwareLocator.getTransactionTemplate(Stores.MAIN);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRED);
+        Integer deleted = transactionTemplate.execute(status -> {
+            EntityManager entityManager = storeAwareLocator.getEntityManager(Stores.MAIN);
+            int count = 0;
+            for (List<UUID> idsChunk : Iterables.partition(ids, MAX_IN_CLAUSE_PARAMETERS)) {
+                count += entityManager.createQuery("delete from search_IndexingQueue q where q.id in :ids")
+                        .setParameter("ids", idsChunk)
+                        .executeUpdate();
+            }
+            return count;
+        });
+        log.trace("{} processed queue items have been deleted", deleted);
+        return deleted == null ? 0 : deleted;
+    }
+
+    /**
+     * Loads the oldest queue items. If all indexes are available, items are loaded by single query ordered
+     * by creation date (range scan of the index on CREATED_DATE). Otherwise items are loaded per every available
+     * entity (range scan of the index on ENTITY_NAME, CREATED_DATE) and merged, since excluding
+     * of unavailable entities by 'not in' condition prevents ordered index scan. Cascade items are stored with names
+     * of referenced entities (which may be not indexed) and are loaded by one additional query, excluding items
+     * of dependent entities with unavailable indexes. Other items of not indexed entities are loaded by one more query.
+     *
+     * @param unavailableEntities entities which items should not be loaded
+     * @param batchSize           max amount of loaded items
+     * @return the oldest items ordered by creation date
+     */
+    protected List<IndexingQueueItem> dequeueQueueItems(List<String> unavailableEntities, int batchSize) {
+        if (unavailableEntities.isEmpty()) {
+            LoadContext<IndexingQueueItem> loadContext = createDequeueLoadContext(Collections.emptyList(), batchSize);
+            log.trace("Dequeue items by load context: {}", loadContext);
+            return dataManager.loadList(loadContext);
+        }
+
+        List<IndexingQueueItem> queueItems = new ArrayList<>();
+        Collection<String> indexedEntities = indexConfigurationManager.getAllIndexedEntities();
+        for (String entityName : indexedEntities) {
+            if (!unavailableEntities.contains(entityName)) {
+                LoadContext<IndexingQueueItem> loadContext = createEntityDequeueLoadContext(entityName, batchSize);
+                log.trace("Dequeue items of entity '{}' by load context: {}", entityName, loadContext);
+                queueItems.addAll(dataManager.loadList(loadContext));
+            }
+        }
+        LoadContext<IndexingQueueItem> notIndexedEntitiesLoadContext = createNotIndexedEntitiesDequeueLoadContext(indexedEntities, batchSize);
+        log.trace("Dequeue items of not indexed entities by load context: {}", notIndexedEntitiesLoadContext);
+        queueItems.addAll(dataManager.loadList(notIndexedEntitiesLoadContext));
+        LoadContext<IndexingQueueItem> cascadeLoadContext = createCascadeDequeueLoadContext(unavailableEntities, batchSize);
+        log.trace("Dequeue cascade items by load context: {}", cascadeLoadContext);
+        queueItems.addAll(dataManager.loadList(cascadeLoadContext));
+        queueItems.sort(Comparator.comparing(IndexingQueueItem::getCreatedDate, Comparator.nullsFirst(Comparator.naturalOrder())));
+        return queueItems.size() > batchSize ? new ArrayList<>(queueItems.subList(0, batchSize)) : queueItems;
+    }
+
+    protected LoadContext<IndexingQueueItem> createEntityDequeueLoadContext(String entityName, int batchSize) {
+        LoadContext.Query query = new LoadContext.Query("select q from search_IndexingQueue q " +
+                "where q.entityName = :entityName and q.operation <> :cascade order by q.createdDate asc");
+        query.setParameter("entityName", entityName);
+        query.setParameter("cascade", IndexingOperation.CASCADE.getId());
+        query.setMaxResults(batchSize);
+
+        return new LoadContext<IndexingQueueItem>(metadata.getClass(IndexingQueueItem.class)).setQuery(query);
+    }
+
+    protected LoadContext<IndexingQueueItem> createNotIndexedEntitiesDequeueLoadContext(Collection<String> indexedEntities, int batchSize) {
+        LoadContext.Query query = new LoadContext.Query("");
+        StringBuilder sb = new StringBuilder("select q from search_IndexingQueue q where q.operation <> :cascade");
+        query.setParameter("cascade", IndexingOperation.CASCADE.getId());
+        if (!indexedEntities.isEmpty()) {
+            sb.append(" and q.entityName not in :indexedEntities");
+            query.setParameter("indexedEntities", indexedEntities);
+        }
+        sb.append(" order by q.createdDate asc");
+        query.setQueryString(sb.toString());
+        query.setMaxResults(batchSize);
+
+        return new LoadContext<IndexingQueueItem>(metadata.getClass(IndexingQueueItem.class)).setQuery(query);
+    }
+
+    protected LoadContext<IndexingQueueItem> createCascadeDequeueLoadContext(List<String> unavailableEntities, int batchSize) {
+        LoadContext.Query query = new LoadContext.Query("");
+        StringBuilder sb = new StringBuilder("select q from search_IndexingQueue q where q.operation = :cascade");
+        query.setParameter("cascade", IndexingOperation.CASCADE.getId());
+        for (int i = 0; i < unavailableEntities.size(); i++) {
+            sb.append(" and q.propertyPath not like :unavailableDependent").append(i).append(" escape '!'");
+            query.setParameter("unavailableDependent" + i, createDependentEntityNamePattern(unavailableEntities.get(i)));
+        }
+        sb.append(" order by q.createdDate asc");
+        query.setQueryString(sb.toString());
+        query.setMaxResults(batchSize);
+
+        return new LoadContext<IndexingQueueItem>(metadata.getClass(IndexingQueueItem.class)).setQuery(query);
     }
 
+    protected LoadContext<IndexingQueueItem> createDequeueLoadContext(List<String> unavailableEntities, int batchSize) {
+        LoadContext.Query query = new LoadContext.Query("");
+        StringBuilder sb = new StringBuilder("select q from search_IndexingQueue q");
+        if (!unavailableEntities.isEmpty()) {
+            sb.append(" where ").append(createAvailableItemsCondition(unavailableEntities.size()));
+            setAvailableItemsConditionParameters(query::setParameter, unavailableEntities);
+        }
+        sb.append(" order by q.createdDate asc");
+        query.setQueryString(sb.toString());
+        query.setMaxResults(batchSize);
+
+        return new LoadContext<IndexingQueueItem>(metadata.getClass(IndexingQueueItem.class)).setQuery(query);
+    }
+
+    /**
+     * Creates JPQL condition excluding items of entities with unavailable indexes. Cascade items modify index
+     * of the dependent entity, so they are excluded by the dependent entity name stored in the property path.
+     *
+     * @param unavailableEntitiesCount amount of entities with unavailable indexes
+     * @return condition for 'q' alias of queue item
+     * @see #setAvailableItemsConditionParameters(BiConsumer, List)
+     */
+    protected String createAvailableItemsCondition(int unavailableEntitiesCount) {
+        StringBuilder sb = new StringBuilder("(q.operation <> :cascade and q.entityName not in :unavailableEntities " +
+                "or q.operation = :cascade");
+        for (int i = 0; i < unavailableEntitiesCount; i++) {
+            sb.append(" and q.propertyPath not like :unavailableDependent").append(i).append(" escape '!'");
+        }
+        return sb.append(")").toString();
+    }
+
+    protected void setAvailableItemsConditionParameters(BiConsumer<String, Object> parameterSetter, List<String> unavailableEntities) {
+        parameterSetter.accept("cascade", IndexingOperation.CASCADE.getId());
+        parameterSetter.accept("unavailableEntities", unavailableEntities);
+        for (int i = 0; i < unavailableEntities.size(); i++) {
+            parameterSetter.accept("unavailableDependent" + i, createDependentEntityNamePattern(unavailableEntities.get(i)));
+        }
+    }
+
+    /**
+     * Creates 'like' pattern (with '!' escape character) matching property paths of cascade items
+     * of the given dependent entity.
+     */
+    protected String createDependentEntityNamePattern(String entityName) {
+        String escapedEntityName = entityName
+                .replace("!", "!!")
+                .replace("_", "!_")
+                .replace("%", "!%");
+        return escapedEntityName + CASCADE_PROPERTY_PATH_SEPARATOR + "%";
+    }
+
+    @Override
     protected int enqueue(Collection<IndexingQueueItem> queueItems) {
         log.trace("Enqueue items: {}", queueItems);
+        boolean coalescingEnabled = searchProperties.isIndexingQueueCoalescingEnabled();
+        Collection<IndexingQueueItem> itemsToPersist = coalescingEnabled ? coalesceQueueItems(queueItems) : queueItems;
         TransactionTemplate transactionTemplate = storeAwareLocator.getTransactionTemplate(Stores.MAIN);
         transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRED);
         transactionTemplate.executeWithoutResult(status -> {
             EntityManager entityManager = storeAwareLocator.getEntityManager(Stores.MAIN);
-            queueItems.forEach(entityManager::persist);
+            if (coalescingEnabled) {
+                deleteSupersededQueueItems(entityManager, itemsToPersist);
+            }
+            if (searchProperties.isIndexingQueueJdbcInsertEnabled()) {
+                insertQueueItems(itemsToPersist);
+            } else {
+                itemsToPersist.forEach(entityManager::persist);
+            }
         });
-        return queueItems.size();
+        return itemsToPersist.size();
     }
 
-    protected IndexingQueueItem createQueueItem(MetaClass metaClass, String entityId, IndexingOperation operation) {
-        return createQueueItem(metaClass.getName(), entityId, operation);
+    /**
+     * Inserts queue items by batched JDBC statements bypassing entity lifecycle (auditing, entity events).
+     * Only columns ID, OPERATION, ENTITY_ID, ENTITY_NAME, PROPERTY_PATH and audit columns CREATED_BY, CREATED_DATE
+     * are filled, claim columns and attempt counter stay empty. Must be invoked within transaction of the main store,
+     * JDBC statements are executed on the connection bound to it.
+     *
+     * @param queueItems items to insert
+     */
+    protected void insertQueueItems(Collection<IndexingQueueItem> queueItems) {
+        if (queueItems.isEmpty()) {
+            return;
+        }
+
+        Date createdDate = timeSource.currentTimestamp();
+        String createdBy = currentAuthentication.isSet() ? currentAuthentication.getUser().getUsername() : null;
+        DbTypeConverter typeConverter = dbmsSpecifics.getDbTypeConverter(Stores.MAIN);
+        String sql = "insert into " + metadataTools.getDatabaseTable(metadata.getClass(IndexingQueueItem.class)) +
+                " (ID, OPERATION, ENTITY_ID, ENTITY_NAME, CREATED_BY, CREATED_DATE, PROPERTY_PATH) values (?, ?, ?, ?, ?, ?, ?)";
+
+        JdbcTemplate jdbcTemplate = storeAwareLocator.getJdbcTemplate(Stores.MAIN);
+        jdbcTemplate.batchUpdate(sql, queueItems, ENQUEUE_JDBC_BATCH_SIZE, (statement, queueItem) -> {
+            if (queueItem.getId() == null) {
+                queueItem.setId(UuidProvider.createUuid());
+            }
+            queueItem.setCreatedDate(createdDate);
+            queueItem.setCreatedBy(createdBy);
+            statement.setObject(1, typeConverter.getSqlObject(queueItem.getId()));
+            statement.setString(2, queueItem.getOperation().getId());
+            statement.setString(3, queueItem.getEntityId());
+            statement.setString(4, queueItem.getEntityName());
+            statement.setString(5, createdBy);
+            statement.setObject(6, typeConverter.getSqlObject(createdDate));
+            statement.setString(7, queueItem.getPropertyPath());
+        });
     }
 
-    protected IndexingQueueItem createQueueItem(String entityName, String entityId, IndexingOperation operation) {
-        IndexingQueueItem queueItem = metadata.create(IndexingQueueItem.class);
-        queueItem.setOperation(operation);
-        queueItem.setEntityId(entityId);
-        queueItem.setEntityName(entityName);
-        return queueItem;
+    /**
+     * Leaves the last item per entity instance: the latest operation defines the state of document to be reached.
+     * Cascade items are coalesced separately per back-reference property path as they don't affect
+     * the document of the entity instance itself.
+     *
+     * @param queueItems items in order of enqueueing
+     * @return items with distinct entity instances
+     */
+    protected Collection<IndexingQueueItem> coalesceQueueItems(Collection<IndexingQueueItem> queueItems) {
+        Map<String, Map<String, IndexingQueueItem>> lastItems = new LinkedHashMap<>();
+        for (IndexingQueueItem queueItem : queueItems) {
+            Map<String, IndexingQueueItem> entityItems = lastItems.computeIfAbsent(queueItem.getEntityName(), k -> new LinkedHashMap<>());
+            String key = getCoalescingKey(queueItem);
+            entityItems.remove(key);
+            entityItems.put(key, queueItem);
+        }
+        List<IndexingQueueItem> result = new ArrayList<>(queueItems.size());
+        lastItems.values().forEach(entityItems -> result.addAll(entityItems.values()));
+        if (log.isTraceEnabled() && result.size() < queueItems.size()) {
+            log.trace("{} enqueued items have been coalesced into {}", queueItems.size(), result.size());
+        }
+        return result;
+    }
+
+    protected String getCoalescingKey(IndexingQueueItem queueItem) {
+        return queueItem.getOperation() == IndexingOperation.CASCADE
+                ? queueItem.getEntityId() + "|" + queueItem.getPropertyPath()
+                : queueItem.getEntityId();
+    }
+
+    /**
+     * Deletes pending items of the same entity instances as the provided ones.
+     * Pending cascade items are superseded only by cascade items with the same property path.
+     * Must be invoked within transaction.
+     */
+    protected void deleteSupersededQueueItems(EntityManager entityManager, Collection<IndexingQueueItem> queueItems) {
+        Map<String, List<String>> entityIdsByEntityName = queueItems.stream()
+                .filter(queueItem -> queueItem.getOperation() != IndexingOperation.CASCADE)
+                .collect(Collectors.groupingBy(IndexingQueueItem::getEntityName,
+                        Collectors.mapping(IndexingQueueItem::getEntityId, Collectors.toList())));
+        entityIdsByEntityName.forEach((entityName, entityIds) -> {
+            for (List<String> entityIdsChunk : Iterables.partition(entityIds, MAX_IN_CLAUSE_PARAMETERS)) {
+                int deleted = entityManager.createQuery("delete from search_IndexingQueue q " +
+                                "where q.entityName = :entityName and q.operation <> :cascade and q.entityId in :entityIds")
+                        .setParameter("entityName", entityName)
+                        .setParameter("cascade", IndexingOperation.CASCADE.getId())
+                        .setParameter("entityIds", entityIdsChunk)
+                        .executeUpdate();
+                if (deleted > 0) {
+                    log.trace("{} pending items of entity '{}' have been superseded", deleted, entityName);
+                }
+            }
+        });
+
+        Map<String, Map<String, List<String>>> cascadeEntityIds = queueItems.stream()
+                .filter(queueItem -> queueItem.getOperation() == IndexingOperation.CASCADE)
+                .collect(Collectors.groupingBy(IndexingQueueItem::getEntityName,
+                        Collectors.groupingBy(IndexingQueueItem::getPropertyPath,
+                                Collectors.mapping(IndexingQueueItem::getEntityId, Collectors.toList()))));
+        cascadeEntityIds.forEach((entityName, entityIdsByPropertyPath) -> entityIdsByPropertyPath.forEach((propertyPath, entityIds) -> {
+            for (List<String> entityIdsChunk : Iterables.partition(entityIds, MAX_IN_CLAUSE_PARAMETERS)) {
+                int deleted = entityManager.createQuery("delete from search_IndexingQueue q " +
+                                "where q.entityName = :entityName and q.operation = :cascade " +
+                                "and q.propertyPath = :propertyPath and q.entityId in :entityIds")
+                        .setParameter("entityName", entityName)
+                        .setParameter("cascade", IndexingOperation.CASCADE.getId())
+                        .setParameter("propertyPath", propertyPath)
+                        .setParameter("entityIds", entityIdsChunk)
+                        .executeUpdate();
+                if (deleted > 0) {
+                    log.trace("{} pending cascade items of entity '{}' by '{}' have been superseded", deleted, entityName, propertyPath);
+                }
+            }
+        }));
+    }
+
+    protected static class QueueBatchResult {
+        protected final int dequeued;
+        protected final int processed;
+
+        protected QueueBatchResult(int dequeued, int processed) {
+            this.dequeued = dequeued;
+            this.processed = processed;
+        }
     }
 }
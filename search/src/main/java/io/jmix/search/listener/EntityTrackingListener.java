@@ -16,13 +16,12 @@
 
 package io.jmix.search.listener;
 
+import com.google.common.collect.Lists;
 import io.jmix.core.Id;
 import io.jmix.core.Metadata;
-import io.jmix.core.UnconstrainedDataManager;
-import io.jmix.core.event.AttributeChanges;
+import io.jmix.core.Stores;
 import io.jmix.core.event.EntityChangedEvent;
 import io.jmix.core.metamodel.model.MetaClass;
-import io.jmix.core.metamodel.model.MetaProperty;
 import io.jmix.core.metamodel.model.MetaPropertyPath;
 import io.jmix.data.PersistenceHints;
 import io.jmix.data.StoreAwareLocator;
@@ -35,9 +34,13 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import javax.persistence.ManyToMany;
-import javax.persistence.OneToMany;
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -46,13 +49,16 @@ public class EntityTrackingListener {
 
     private static final Logger log = LoggerFactory.getLogger(EntityTrackingListener.class);
 
+    /**
+     * Max amount of values in 'in' clause of queries, some databases (e.g. Oracle) limit it by 1000.
+     */
+    protected static final int MAX_IN_CLAUSE_PARAMETERS = 500;
+
     @Autowired
     protected Metadata metadata;
     @Autowired
     protected IndexConfigurationManager indexConfigurationManager;
     @Autowired
-    protected UnconstrainedDataManager dataManager;
-    @Autowired
     protected IndexingQueueManager indexingQueueManager;
     @Autowired
     protected StoreAwareLocator storeAwareLocator;
@@ -69,46 +75,220 @@ public class EntityTrackingListener {
         try {
             if (isProcessingRequired(event)) {
                 log.trace("Process event: {}", event);
-                processEvent(event);
+                if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                    getTransactionChanges().add(event);
+                } else {
+                    EntityChanges changes = new EntityChanges();
+                    changes.add(event);
+                    processChanges(changes);
+                }
             }
         } catch (Exception e) {
             log.error("Failed to process event {}", event, e);
         }
     }
 
-    protected void processEvent(EntityChangedEvent<?> event) {
-        Id<?> entityId = event.getEntityId();
-        Class<?> entityClass = entityId.getEntityClass();
-        MetaClass metaClass = metadata.getClass(entityClass);
-        EntityChangedEvent.Type eventType = event.getType();
-        String entityName = metaClass.getName();
+    /**
+     * Returns changes collected in the current transaction. Changes are processed within the transaction,
+     * so they are enqueued atomically with the changed data.
+     * <p>
+     * Entity changed events are mostly published during before-commit phase of transaction, and synchronization
+     * registered by the first event of this phase doesn't receive 'beforeCommit' callback. Such changes are processed
+     * by 'beforeCompletion' callback which is invoked before the actual commit while the transaction is still active.
+     * Changes of transactions marked as rollback-only are discarded without any queries or enqueueing.
+     */
+    protected EntityChanges getTransactionChanges() {
+        EntityChanges changes = (EntityChanges) TransactionSynchronizationManager.getResource(this);
+        if (changes == null) {
+            EntityChanges transactionChanges = new EntityChanges();
+            TransactionSynchronizationManager.bindResource(this, transactionChanges);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    flushTransactionChanges(transactionChanges);
+                }
 
-        if (indexConfigurationManager.isDirectlyIndexed(entityName)) { //todo check dirty fields
-            log.debug("{} is directly indexed", entityId);
+                @Override
+                public void beforeCompletion() {
+                    flushChangesBeforeCompletion(transactionChanges);
+                }
 
-            switch (eventType) {
-                case CREATED:
-                case UPDATED:
-                    indexingQueueManager.enqueueIndexByEntityId(entityId);
-                    break;
-                case DELETED:
-                    indexingQueueManager.enqueueDeleteByEntityId(entityId);
-                    break;
-            }
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(EntityTrackingListener.this);
+                    if (status == STATUS_COMMITTED) {
+                        flushCommittedChanges(transactionChanges);
+                    } else if (!transactionChanges.isEmpty()) {
+                        log.trace("Transaction is rolled back, changes are discarded: {}", transactionChanges);
+                        transactionChanges.clear();
+                    }
+                }
+            });
+            changes = transactionChanges;
+        }
+        return changes;
+    }
+
+    /**
+     * Processes changes collected after 'beforeCommit' callback within the completing transaction.
+     * If the transaction is rolled back afterwards, enqueued items are rolled back together with it.
+     */
+    protected void flushChangesBeforeCompletion(EntityChanges changes) {
+        if (changes.isEmpty() || !TransactionSynchronizationManager.isActualTransactionActive()) {
+            return;
+        }
+        TransactionTemplate transactionTemplate = storeAwareLocator.getTransactionTemplate(Stores.MAIN);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRED);
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (status.isRollbackOnly()) {
+                    log.trace("Transaction is marked as rollback-only, changes are discarded: {}", changes);
+                    changes.clear();
+                } else {
+                    flushTransactionChanges(changes);
+                }
+            });
+        } catch (Exception e) {
+            log.error("Failed to process entity changes {}", changes, e);
         }
+    }
 
-        Object entityInstance = dataManager.load(entityId)
-                .hint(PersistenceHints.SOFT_DELETION, false)
-                .one();
+    /**
+     * Processes changes published after completion of the transaction has been started, which is not expected
+     * normally. Resources of the completed transaction are still bound to the thread, so changes are processed
+     * in a new transaction and aren't atomic with the changed data.
+     */
+    protected void flushCommittedChanges(EntityChanges changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        log.warn("Entity changes have been published after completion of transaction started: {}", changes);
+        TransactionTemplate transactionTemplate = storeAwareLocator.getTransactionTemplate(Stores.MAIN);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        try {
+            transactionTemplate.executeWithoutResult(status -> flushTransactionChanges(changes));
+        } catch (Exception e) {
+            log.error("Failed to process entity changes {}", changes, e);
+        }
+    }
 
-        AttributeChanges changes = event.getChanges();
-        Set<Id<?>> dependentEntityIds = getDependentEntityIds(entityInstance, entityClass, changes, eventType);
+    protected void flushTransactionChanges(EntityChanges changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        try {
+            processChanges(changes);
+        } catch (Exception e) {
+            log.error("Failed to process entity changes {}", changes, e);
+        } finally {
+            changes.clear();
+        }
+    }
+
+    /**
+     * Enqueues changed entities and their dependent entities. Changes of every entity are deduplicated,
+     * indexed and deleted entities are enqueued by single call each, dependent entities are loaded
+     * by a query per dependency property for all changed instances of the same class.
+     */
+    protected void processChanges(EntityChanges changes) {
+        List<Id<?>> indexIds = new ArrayList<>();
+        List<Id<?>> deleteIds = new ArrayList<>();
+        for (EntityChange change : changes.getAll()) {
+            String entityName = metadata.getClass(change.getEntityId().getEntityClass()).getName();
+            if (indexConfigurationManager.isDirectlyIndexed(entityName)) {
+                log.debug("{} is directly indexed", change.getEntityId());
+                switch (change.getType()) {
+                    case CREATED:
+                        indexIds.add(change.getEntityId());
+                        break;
+                    case UPDATED:
+                        if (indexConfigurationManager.isIndexedPropertyChanged(entityName, change.getChangedAttributes())) {
+                            indexIds.add(change.getEntityId());
+                        } else {
+                            log.debug("Indexed properties of {} are not changed: {}", change.getEntityId(), change.getChangedAttributes());
+                        }
+                        break;
+                    case DELETED:
+                        deleteIds.add(change.getEntityId());
+                        break;
+                }
+            }
+        }
+        if (!indexIds.isEmpty()) {
+            indexingQueueManager.enqueueIndexCollectionByEntityIds(indexIds);
+        }
+        if (!deleteIds.isEmpty()) {
+            indexingQueueManager.enqueueDeleteCollectionByEntityIds(deleteIds);
+        }
+
+        Set<Id<?>> dependentEntityIds = new HashSet<>();
+        Map<Class<?>, List<EntityChange>> changesByClass = changes.getAll().stream()
+                .collect(Collectors.groupingBy(change -> change.getEntityId().getEntityClass(), LinkedHashMap::new, Collectors.toList()));
+        for (Map.Entry<Class<?>, List<EntityChange>> entry : changesByClass.entrySet()) {
+            dependentEntityIds.addAll(getDependentEntityIds(entry.getKey(), entry.getValue()));
+        }
+        dependentEntityIds.removeAll(indexIds);
+        dependentEntityIds.removeAll(deleteIds);
 
         if (!dependentEntityIds.isEmpty()) {
             indexingQueueManager.enqueueIndexCollectionByEntityIds(dependentEntityIds);
         }
     }
 
+    /**
+     * Loads ids of entities dependent on the changed instances of the given class. Dependency metadata is resolved
+     * from the changes, instances without dependents are skipped. Changed instances are not reloaded:
+     * dependency queries compare back-references with primary keys of changed instances.
+     * <p>
+     * If cascade items are enabled, dependents of updated instances are resolved later during queue processing.
+     * Dependents of deleted instances are always resolved here: references may not exist when the queue is processed.
+     */
+    protected Set<Id<?>> getDependentEntityIds(Class<?> entityClass, List<EntityChange> changes) {
+        Map<DependencyGroupKey, List<Object>> idsByDependencies = new LinkedHashMap<>();
+        for (EntityChange change : changes) {
+            DependencyGroupKey key;
+            if (change.getType() == EntityChangedEvent.Type.DELETED) {
+                key = new DependencyGroupKey(indexConfigurationManager.getDependenciesMetaDataForDelete(entityClass), CheckState.OLD);
+            } else {
+                key = new DependencyGroupKey(
+                        indexConfigurationManager.getDependenciesMetaDataForUpdate(entityClass, change.getChangedAttributes()),
+                        CheckState.NEW);
+            }
+            if (key.hasDependencies()) {
+                idsByDependencies.computeIfAbsent(key, k -> new ArrayList<>()).add(change.getEntityId().getValue());
+            }
+        }
+        if (idsByDependencies.isEmpty()) {
+            log.trace("There are no dependencies for changed instances of {}", entityClass);
+            return Collections.emptySet();
+        }
+
+        Set<Id<?>> result = new HashSet<>();
+        for (Map.Entry<DependencyGroupKey, List<Object>> entry : idsByDependencies.entrySet()) {
+            DependencyGroupKey key = entry.getKey();
+            if (key.checkState == CheckState.NEW && searchProperties.isIndexingQueueCascadeEnabled()) {
+                enqueueCascade(entityClass, entry.getValue(), key.dependencyMetaData);
+            } else {
+                result.addAll(loadDependentEntityIds(entry.getValue(), key.dependencyMetaData, key.checkState));
+            }
+        }
+        return result;
+    }
+
+    protected void enqueueCascade(Class<?> entityClass, List<Object> targetIds, Map<MetaClass, Set<MetaPropertyPath>> dependencyMetaData) {
+        @SuppressWarnings("unchecked")
+        Class<Object> targetClass = (Class<Object>) entityClass;
+        List<Id<?>> ids = targetIds.stream()
+                .map(rawId -> Id.of(rawId, targetClass))
+                .collect(Collectors.toList());
+        for (Set<MetaPropertyPath> propertyPaths : dependencyMetaData.values()) {
+            for (MetaPropertyPath propertyPath : propertyPaths) {
+                log.debug("Enqueue cascade items for {} dependent via property '{}'", ids, propertyPath);
+                indexingQueueManager.enqueueCascadeCollectionByEntityIds(ids, propertyPath);
+            }
+        }
+    }
+
     protected boolean isProcessingRequired(EntityChangedEvent<?> event) {
         if (!searchProperties.isChangedEntitiesIndexingEnabled()) {
             return false;
@@ -118,78 +298,30 @@ public class EntityTrackingListener {
         return !IndexingQueueItem.class.equals(entityClass) && indexConfigurationManager.isAffectedEntityClass(entityClass);
     }
 
-    protected Set<Id<?>> getDependentEntityIds(Object entity, Class<?> entityClass, AttributeChanges changes, EntityChangedEvent.Type eventType) {
-        Set<Id<?>> dependentEntityIds;
-        Map<MetaClass, Set<MetaPropertyPath>> dependenciesMetaData;
-        switch (eventType) {
-            case CREATED:
-            case UPDATED:
-                dependenciesMetaData = indexConfigurationManager.getDependenciesMetaDataForUpdate(entityClass, changes.getAttributes());
-                return loadDependentEntityIds(entity, dependenciesMetaData, CheckState.NEW);
-            case DELETED:
-                dependenciesMetaData = indexConfigurationManager.getDependenciesMetaDataForDelete(entityClass);
-                return loadDependentEntityIds(entity, dependenciesMetaData, CheckState.OLD);
-            default:
-                dependentEntityIds = Collections.emptySet();
-                break;
-        }
-
-        return dependentEntityIds;
-    }
-
-    protected Set<Id<?>> loadDependentEntityIds(Object targetInstance, Map<MetaClass, Set<MetaPropertyPath>> dependencyMetaData, CheckState checkState) {
-        log.debug("Load dependent entity pks for entity {}: {}", targetInstance, dependencyMetaData);
+    protected Set<Id<?>> loadDependentEntityIds(List<Object> targetIds, Map<MetaClass, Set<MetaPropertyPath>> dependencyMetaData, CheckState checkState) {
+        log.debug("Load dependent entity pks for entities {}: {}", targetIds, dependencyMetaData);
 
         Set<Id<?>> result = new HashSet<>();
         for (Map.Entry<MetaClass, Set<MetaPropertyPath>> entry : dependencyMetaData.entrySet()) {
-            Set<MetaPropertyPath> properties = entry.getValue();
-            if (properties.isEmpty()) {
-                continue;
-            }
-            String entityName = entry.getKey().getName();
-            for (MetaPropertyPath propertyPath : properties) {
-                log.debug("Load entities '{}' dependent via property '{}'", entityName, propertyPath);
-                MetaProperty[] metaProperties = propertyPath.getMetaProperties();
-                int currentEntityIndex = 1;
-                String currentEntityAlias = "e1";
-                StringBuilder currentPropertyPathSb = new StringBuilder(currentEntityAlias);
-                StringBuilder querySb = new StringBuilder("select ")
-                        .append(currentEntityAlias)
-                        .append(" from ")
-                        .append(entityName)
-                        .append(' ')
-                        .append(currentEntityAlias);
-                for (int i = 0; i < metaProperties.length; i++) {
-                    MetaProperty property = metaProperties[i];
-                    currentPropertyPathSb.append('.').append(property.getName());
-                    if (i == metaProperties.length - 1) {
-                        querySb.append(" where ").append(currentPropertyPathSb).append(" = :ref");
-                    } else {
-                        boolean oneToMany = property.getAnnotatedElement().isAnnotationPresent(OneToMany.class);
-                        boolean manyToMany = property.getAnnotatedElement().isAnnotationPresent(ManyToMany.class);
-                        if (oneToMany || manyToMany) {
-                            currentEntityIndex++;
-                            currentEntityAlias = "e" + currentEntityIndex;
-                            querySb.append(" join ").append(currentPropertyPathSb).append(' ').append(currentEntityAlias);
-                            currentPropertyPathSb = new StringBuilder(currentEntityAlias);
-                        }
-                    }
+            MetaClass metaClass = entry.getKey();
+            for (MetaPropertyPath propertyPath : entry.getValue()) {
+                log.debug("Load entities '{}' dependent via property '{}'", metaClass.getName(), propertyPath);
+                String queryString = indexConfigurationManager.getDependentEntityIdsQuery(propertyPath);
+                if (queryString == null) {
+                    continue;
                 }
-                String queryString = querySb.toString();
                 log.debug("Query String: {}", queryString);
 
-                MetaClass metaClass = entry.getKey();
-
-                List<Id<?>> refObjectIds;
-                switch (checkState) {
-                    case OLD:
-                        refObjectIds = loadDependentEntityIds(metaClass, queryString, targetInstance, false);
-                        break;
-                    case NEW:
-                        refObjectIds = loadDependentEntityIds(metaClass, queryString, targetInstance, true);
-                        break;
-                    default:
-                        refObjectIds = Collections.emptyList();
+                List<Id<?>> refObjectIds = new ArrayList<>();
+                for (List<Object> targetIdsChunk : Lists.partition(targetIds, MAX_IN_CLAUSE_PARAMETERS)) {
+                    switch (checkState) {
+                        case OLD:
+                            refObjectIds.addAll(loadDependentEntityIds(propertyPath, queryString, targetIdsChunk, false));
+                            break;
+                        case NEW:
+                            refObjectIds.addAll(loadDependentEntityIds(propertyPath, queryString, targetIdsChunk, true));
+                            break;
+                    }
                 }
 
                 log.debug("Loaded primary keys of dependent references ({}): {}", refObjectIds.size(), refObjectIds);
@@ -199,15 +331,141 @@ public class EntityTrackingListener {
         return result;
     }
 
-    protected List<Id<?>> loadDependentEntityIds(MetaClass loadedEntity, String queryString, Object targetInstance, boolean joinTransaction) {
-        return dataManager.load(loadedEntity.getJavaClass())
-                .query(queryString)
-                .parameter("ref", targetInstance)
-                .hint(PersistenceHints.SOFT_DELETION, false)
-                .joinTransaction(joinTransaction)
-                .list()
-                .stream()
-                .map(Id::of)
+    /**
+     * Executes dependency query selecting primary keys only. Query is executed in the current transaction
+     * to see the new state of references or in the separate transaction to see the old (committed) one.
+     */
+    protected List<Id<?>> loadDependentEntityIds(MetaPropertyPath backRefPropertyPath, String queryString, List<Object> targetIds, boolean joinTransaction) {
+        MetaClass loadedEntity = backRefPropertyPath.getMetaClass();
+        String storeName = loadedEntity.getStore().getName();
+        TransactionTemplate transactionTemplate = storeAwareLocator.getTransactionTemplate(storeName);
+        transactionTemplate.setPropagationBehavior(joinTransaction
+                ? TransactionDefinition.PROPAGATION_REQUIRED
+                : TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        List<?> rawIds = transactionTemplate.execute(status -> {
+            EntityManager entityManager = storeAwareLocator.getEntityManager(storeName);
+            Query query = entityManager.createQuery(queryString);
+            query.setParameter("refs", createDependentEntityIdsQueryRefs(entityManager, backRefPropertyPath, targetIds));
+            query.setHint(PersistenceHints.SOFT_DELETION, false);
+            return query.getResultList();
+        });
+        if (rawIds == null) {
+            return Collections.emptyList();
+        }
+        Class<Object> entityClass = loadedEntity.getJavaClass();
+        return rawIds.stream()
+                .map(rawId -> Id.of(rawId, entityClass))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Creates value of 'refs' parameter of dependent entity ids query: references to the changed entities
+     * if their primary key is composite, primary keys otherwise.
+     */
+    protected List<Object> createDependentEntityIdsQueryRefs(EntityManager entityManager,
+                                                             MetaPropertyPath backRefPropertyPath,
+                                                             List<Object> targetIds) {
+        if (!indexConfigurationManager.isDependentEntityIdsQueryByReferences(backRefPropertyPath)) {
+            return targetIds;
+        }
+        Class<?> refClass = backRefPropertyPath.getRangeJavaClass();
+        return targetIds.stream()
+                .<Object>map(targetId -> entityManager.getReference(refClass, targetId))
                 .collect(Collectors.toList());
     }
+
+    /**
+     * Changes of entities collected in the transaction, one change per entity.
+     */
+    protected static class EntityChanges {
+
+        protected final Map<Id<?>, EntityChange> changes = new LinkedHashMap<>();
+
+        public void add(EntityChangedEvent<?> event) {
+            changes.computeIfAbsent(event.getEntityId(), EntityChange::new).merge(event);
+        }
+
+        public Collection<EntityChange> getAll() {
+            return changes.values();
+        }
+
+        public boolean isEmpty() {
+            return changes.isEmpty();
+        }
+
+        public void clear() {
+            changes.clear();
+        }
+
+        @Override
+        public String toString() {
+            return changes.values().toString();
+        }
+    }
+
+    protected static class EntityChange {
+
+        protected final Id<?> entityId;
+        protected EntityChangedEvent.Type type;
+        protected final Set<String> changedAttributes = new HashSet<>();
+
+        public EntityChange(Id<?> entityId) {
+            this.entityId = entityId;
+        }
+
+        /**
+         * Deletion overrides any previous change, creation followed by updates stays creation.
+         */
+        public void merge(EntityChangedEvent<?> event) {
+            if (type == null || event.getType() == EntityChangedEvent.Type.DELETED) {
+                type = event.getType();
+            }
+            changedAttributes.addAll(event.getChanges().getAttributes());
+        }
+
+        public Id<?> getEntityId() {
+            return entityId;
+        }
+
+        public EntityChangedEvent.Type getType() {
+            return type;
+        }
+
+        public Set<String> getChangedAttributes() {
+            return changedAttributes;
+        }
+
+        @Override
+        public String toString() {
+            return type + " " + entityId;
+        }
+    }
+
+    protected static class DependencyGroupKey {
+
+        protected final Map<MetaClass, Set<MetaPropertyPath>> dependencyMetaData;
+        protected final CheckState checkState;
+
+        public DependencyGroupKey(Map<MetaClass, Set<MetaPropertyPath>> dependencyMetaData, CheckState checkState) {
+            this.dependencyMetaData = dependencyMetaData;
+            this.checkState = checkState;
+        }
+
+        public boolean hasDependencies() {
+            return dependencyMetaData.values().stream().anyMatch(properties -> !properties.isEmpty());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            DependencyGroupKey that = (DependencyGroupKey) o;
+            return dependencyMetaData.equals(that.dependencyMetaData) && checkState == that.checkState;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(dependencyMetaData, checkState);
+        }
+    }
 }
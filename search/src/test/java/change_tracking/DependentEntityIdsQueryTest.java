@@ -0,0 +1,190 @@
+/*
+ * Copyright 2021 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package change_tracking;
+
+import io.jmix.core.Id;
+import io.jmix.core.Metadata;
+import io.jmix.core.Stores;
+import io.jmix.core.UnconstrainedDataManager;
+import io.jmix.core.entity.EntityValues;
+import io.jmix.core.metamodel.model.MetaProperty;
+import io.jmix.core.metamodel.model.MetaPropertyPath;
+import io.jmix.data.StoreAwareLocator;
+import io.jmix.search.index.mapping.IndexConfigurationManager;
+import org.junit.Assert;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.support.TransactionTemplate;
+import test_support.EntityChangeTrackingTestConfiguration;
+import test_support.TestEntityWrapperManager;
+import test_support.entity.TestReferenceEntity;
+import test_support.entity.TestRootEntity;
+import test_support.entity.TestSubReferenceEntity;
+
+import javax.persistence.EntityManager;
+import javax.persistence.ManyToMany;
+import javax.persistence.OneToMany;
+import javax.persistence.Query;
+import java.util.*;
+import java.util.stream.Collectors;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(
+        classes = {EntityChangeTrackingTestConfiguration.class}
+)
+public class DependentEntityIdsQueryTest {
+
+    @Autowired
+    TestEntityWrapperManager ewm;
+    @Autowired
+    IndexConfigurationManager indexConfigurationManager;
+    @Autowired
+    Metadata metadata;
+    @Autowired
+    UnconstrainedDataManager dataManager;
+    @Autowired
+    StoreAwareLocator storeAwareLocator;
+
+    TestSubReferenceEntity firstSubReference;
+    TestSubReferenceEntity secondSubReference;
+    TestSubReferenceEntity thirdSubReference;
+    TestReferenceEntity firstReference;
+    TestReferenceEntity secondReference;
+    TestReferenceEntity notDependentReference;
+    TestRootEntity oneToOneRoot;
+    TestRootEntity oneToManyRoot;
+
+    @BeforeEach
+    public void setUp() {
+        firstSubReference = ewm.createTestSubReferenceEntity().save();
+        secondSubReference = ewm.createTestSubReferenceEntity().save();
+        thirdSubReference = ewm.createTestSubReferenceEntity().save();
+        firstReference = ewm.createTestReferenceEntity()
+                .setOneToOneAssociation(firstSubReference)
+                .setOneToManyAssociation(secondSubReference, thirdSubReference)
+                .save();
+        secondReference = ewm.createTestReferenceEntity().save();
+        notDependentReference = ewm.createTestReferenceEntity().save();
+        oneToOneRoot = ewm.createTestRootEntity().setOneToOneAssociation(firstReference).save();
+        oneToManyRoot = ewm.createTestRootEntity().setOneToManyAssociation(firstReference, secondReference).save();
+        ewm.createTestRootEntity().setOneToOneAssociation(notDependentReference).save();
+    }
+
+    @Test
+    @DisplayName("Dependent entities via to-one property are the same as loaded by entity query")
+    public void toOneProperty() {
+        checkDependentEntityIds("oneToOneAssociation", Arrays.asList(firstReference, secondReference), oneToOneRoot);
+    }
+
+    @Test
+    @DisplayName("Dependent entities via to-many property are the same as loaded by entity query")
+    public void toManyProperty() {
+        checkDependentEntityIds("oneToManyAssociation", Arrays.asList(firstReference, secondReference), oneToManyRoot);
+    }
+
+    @Test
+    @DisplayName("Dependent entities via to-one property of to-one reference are the same as loaded by entity query")
+    public void toOnePropertyOfToOneReference() {
+        checkDependentEntityIds("oneToOneAssociation.oneToOneAssociation",
+                Collections.singletonList(firstSubReference), oneToOneRoot);
+    }
+
+    @Test
+    @DisplayName("Dependent entities via to-one property of to-many reference are the same as loaded by entity query")
+    public void toOnePropertyOfToManyReference() {
+        checkDependentEntityIds("oneToManyAssociation.oneToOneAssociation",
+                Collections.singletonList(firstSubReference), oneToManyRoot);
+    }
+
+    @Test
+    @DisplayName("Dependent entities via to-many property of to-many reference are the same as loaded by entity query")
+    public void toManyPropertyOfToManyReference() {
+        checkDependentEntityIds("oneToManyAssociation.oneToManyAssociation",
+                Arrays.asList(secondSubReference, thirdSubReference), oneToManyRoot);
+    }
+
+    protected void checkDependentEntityIds(String property, List<?> references, TestRootEntity expectedDependent) {
+        MetaPropertyPath propertyPath = metadata.getClass(TestRootEntity.class).getPropertyPath(property);
+        Assert.assertNotNull(propertyPath);
+
+        Set<Id<?>> expected = loadDependentEntityIdsByEntityQuery(propertyPath, references);
+        Set<Id<?>> actual = loadDependentEntityIds(propertyPath, references);
+        Assert.assertEquals(expected, actual);
+        Assert.assertTrue(actual.contains(Id.of(expectedDependent)));
+    }
+
+    /**
+     * Loads dependent entities the way it was done before introduction of id-only queries:
+     * instances are selected and the last property of the path is compared with changed instances.
+     */
+    protected Set<Id<?>> loadDependentEntityIdsByEntityQuery(MetaPropertyPath propertyPath, List<?> references) {
+        MetaProperty[] metaProperties = propertyPath.getMetaProperties();
+        int currentEntityIndex = 1;
+        String currentEntityAlias = "e1";
+        StringBuilder currentPropertyPathSb = new StringBuilder(currentEntityAlias);
+        StringBuilder querySb = new StringBuilder("select e1 from ")
+                .append(propertyPath.getMetaClass().getName())
+                .append(" e1");
+        for (int i = 0; i < metaProperties.length; i++) {
+            MetaProperty property = metaProperties[i];
+            currentPropertyPathSb.append('.').append(property.getName());
+            if (i == metaProperties.length - 1) {
+                querySb.append(" where ").append(currentPropertyPathSb).append(" in :refs");
+            } else if (property.getAnnotatedElement().isAnnotationPresent(OneToMany.class)
+                    || property.getAnnotatedElement().isAnnotationPresent(ManyToMany.class)) {
+                currentEntityIndex++;
+                currentEntityAlias = "e" + currentEntityIndex;
+                querySb.append(" join ").append(currentPropertyPathSb).append(' ').append(currentEntityAlias);
+                currentPropertyPathSb = new StringBuilder(currentEntityAlias);
+            }
+        }
+
+        return dataManager.load(TestRootEntity.class)
+                .query(querySb.toString())
+                .parameter("refs", references)
+                .list()
+                .stream()
+                .<Id<?>>map(Id::of)
+                .collect(Collectors.toSet());
+    }
+
+    protected Set<Id<?>> loadDependentEntityIds(MetaPropertyPath propertyPath, List<?> references) {
+        String queryString = indexConfigurationManager.getDependentEntityIdsQuery(propertyPath);
+        Assert.assertNotNull(queryString);
+        List<Object> referenceIds = references.stream()
+                .map(EntityValues::getId)
+                .collect(Collectors.toList());
+
+        TransactionTemplate transactionTemplate = storeAwareLocator.getTransactionTemplate(Stores.MAIN);
+        List<?> rawIds = transactionTemplate.execute(status -> {
+            EntityManager entityManager = storeAwareLocator.getEntityManager(Stores.MAIN);
+            Query query = entityManager.createQuery(queryString);
+            query.setParameter("refs", referenceIds);
+            return query.getResultList();
+        });
+        Assert.assertNotNull(rawIds);
+        return rawIds.stream()
+                .<Id<?>>map(rawId -> Id.of(rawId, TestRootEntity.class))
+                .collect(Collectors.toSet());
+    }
+}
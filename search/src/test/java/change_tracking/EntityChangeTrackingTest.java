@@ -17,15 +17,22 @@
 package change_tracking;
 
 import io.jmix.search.index.queue.impl.IndexingOperation;
+import io.jmix.core.metamodel.model.MetaPropertyPath;
 import org.junit.Assert;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import test_support.EntityChangeTrackingTestConfiguration;
+import test_support.TestEntityTrackingListener;
 import test_support.TestEntityWrapperManager;
 import test_support.TestIndexingQueueItemsTracker;
 import test_support.entity.TestReferenceEntity;
@@ -33,6 +40,12 @@ import test_support.entity.TestRootEntity;
 import test_support.entity.TestSubReferenceEntity;
 
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 
 @ExtendWith(SpringExtension.class)
 @ContextConfiguration(
@@ -44,10 +57,15 @@ public class EntityChangeTrackingTest {
     TestIndexingQueueItemsTracker indexingQueueItemsTracker;
     @Autowired
     TestEntityWrapperManager ewm;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+    @Autowired
+    TestEntityTrackingListener entityTrackingListener;
 
     @BeforeEach
     public void setUp() {
         indexingQueueItemsTracker.clear();
+        entityTrackingListener.clear();
     }
 
     @Test
@@ -63,10 +81,24 @@ public class EntityChangeTrackingTest {
     public void updateLocalPropertyOfIndexedEntity() {
         TestRootEntity entity = ewm.createTestRootEntity().save();
         indexingQueueItemsTracker.clear();
+        entityTrackingListener.clear();
 
         ewm.wrap(entity).setTextValue("Some text value").save();
         boolean enqueued = indexingQueueItemsTracker.containsQueueItemsForEntityAndOperation(entity, IndexingOperation.INDEX, 1);
         Assert.assertTrue(enqueued);
+        // indexed entity isn't referenced by other indexed entities
+        Assert.assertTrue(entityTrackingListener.getDependencyQueries().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Update of not-indexed property of indexed entity doesn't lead to queue item enqueueing")
+    public void updateNotIndexedLocalPropertyOfIndexedEntity() {
+        TestRootEntity entity = ewm.createTestRootEntity().save();
+        indexingQueueItemsTracker.clear();
+
+        ewm.wrap(entity).setIntValue(42).save();
+        boolean enqueued = indexingQueueItemsTracker.containsQueueItemsForEntityAndOperation(entity, IndexingOperation.INDEX, 0);
+        Assert.assertTrue(enqueued);
     }
 
     @Test
@@ -420,4 +452,171 @@ public class EntityChangeTrackingTest {
         boolean enqueued = indexingQueueItemsTracker.containsQueueItemsForEntityAndOperation(rootEntity, IndexingOperation.INDEX, 0);
         Assert.assertTrue(enqueued);
     }
+
+    @Test
+    @DisplayName("Several changes of indexed entity within one transaction lead to single queue item enqueueing")
+    public void updateIndexedEntitySeveralTimesWithinTransaction() {
+        TestRootEntity entity = ewm.createTestRootEntity().save();
+        indexingQueueItemsTracker.clear();
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            ewm.wrap(entity).setTextValue("First text value").save();
+            ewm.wrap(entity).setTextValue("Second text value").save();
+        });
+        boolean enqueued = indexingQueueItemsTracker.containsQueueItemsForEntityAndOperation(entity, IndexingOperation.INDEX, 1);
+        Assert.assertTrue(enqueued);
+    }
+
+    @Test
+    @DisplayName("Update of several one-to-one references within one transaction leads to queue item enqueueing of every dependent entity")
+    public void updateSeveralOneToOneReferencesWithinTransaction() {
+        TestReferenceEntity firstReference = ewm.createTestReferenceEntity().save();
+        TestReferenceEntity secondReference = ewm.createTestReferenceEntity().save();
+        TestRootEntity firstRootEntity = ewm.createTestRootEntity().setOneToOneAssociation(firstReference).save();
+        TestRootEntity secondRootEntity = ewm.createTestRootEntity().setOneToOneAssociation(secondReference).save();
+        indexingQueueItemsTracker.clear();
+        entityTrackingListener.clear();
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            ewm.wrap(firstReference).setTextValue("First text value").save();
+            ewm.wrap(secondReference).setTextValue("Second text value").save();
+        });
+        Assert.assertTrue(indexingQueueItemsTracker.containsQueueItemsForEntityAndOperation(firstRootEntity, IndexingOperation.INDEX, 1));
+        Assert.assertTrue(indexingQueueItemsTracker.containsQueueItemsForEntityAndOperation(secondRootEntity, IndexingOperation.INDEX, 1));
+        assertDependencyQueriesAreGrouped(firstReference.getId(), secondReference.getId());
+    }
+
+    @Test
+    @DisplayName("Update of several one-to-many references of the same entity within one transaction leads to single queue item enqueueing")
+    public void updateSeveralOneToManyReferencesWithinTransaction() {
+        TestReferenceEntity firstReference = ewm.createTestReferenceEntity().save();
+        TestReferenceEntity secondReference = ewm.createTestReferenceEntity().save();
+        TestRootEntity rootEntity = ewm.createTestRootEntity().setOneToManyAssociation(firstReference, secondReference).save();
+        indexingQueueItemsTracker.clear();
+        entityTrackingListener.clear();
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            ewm.wrap(firstReference).setTextValue("First text value").save();
+            ewm.wrap(secondReference).setTextValue("Second text value").save();
+        });
+        boolean enqueued = indexingQueueItemsTracker.containsQueueItemsForEntityAndOperation(rootEntity, IndexingOperation.INDEX, 1);
+        Assert.assertTrue(enqueued);
+        assertDependencyQueriesAreGrouped(firstReference.getId(), secondReference.getId());
+    }
+
+    @Test
+    @DisplayName("Update of several one-to-one sub-references within one transaction leads to queue item enqueueing of every dependent entity")
+    public void updateSeveralOneToOneSubReferencesWithinTransaction() {
+        TestSubReferenceEntity firstSubReference = ewm.createTestSubReferenceEntity().save();
+        TestSubReferenceEntity secondSubReference = ewm.createTestSubReferenceEntity().save();
+        TestReferenceEntity firstReference = ewm.createTestReferenceEntity().setOneToOneAssociation(firstSubReference).save();
+        TestReferenceEntity secondReference = ewm.createTestReferenceEntity().setOneToOneAssociation(secondSubReference).save();
+        TestRootEntity firstRootEntity = ewm.createTestRootEntity().setOneToOneAssociation(firstReference).save();
+        TestRootEntity secondRootEntity = ewm.createTestRootEntity().setOneToOneAssociation(secondReference).save();
+        indexingQueueItemsTracker.clear();
+        entityTrackingListener.clear();
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            ewm.wrap(firstSubReference).setTextValue("First text value").save();
+            ewm.wrap(secondSubReference).setTextValue("Second text value").save();
+        });
+        Assert.assertTrue(indexingQueueItemsTracker.containsQueueItemsForEntityAndOperation(firstRootEntity, IndexingOperation.INDEX, 1));
+        Assert.assertTrue(indexingQueueItemsTracker.containsQueueItemsForEntityAndOperation(secondRootEntity, IndexingOperation.INDEX, 1));
+        assertDependencyQueriesAreGrouped(firstSubReference.getId(), secondSubReference.getId());
+    }
+
+    @Test
+    @DisplayName("Update and deletion of one-to-one references within one transaction lead to queue item enqueueing of every dependent entity")
+    public void updateAndDeleteOneToOneReferencesWithinTransaction() {
+        TestReferenceEntity updatedReference = ewm.createTestReferenceEntity().save();
+        TestReferenceEntity deletedReference = ewm.createTestReferenceEntity().save();
+        TestRootEntity firstRootEntity = ewm.createTestRootEntity().setOneToOneAssociation(updatedReference).save();
+        TestRootEntity secondRootEntity = ewm.createTestRootEntity().setOneToOneAssociation(deletedReference).save();
+        indexingQueueItemsTracker.clear();
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            ewm.wrap(updatedReference).setTextValue("Some text value").save();
+            ewm.remove(deletedReference);
+        });
+        Assert.assertTrue(indexingQueueItemsTracker.containsQueueItemsForEntityAndOperation(firstRootEntity, IndexingOperation.INDEX, 1));
+        Assert.assertTrue(indexingQueueItemsTracker.containsQueueItemsForEntityAndOperation(secondRootEntity, IndexingOperation.INDEX, 1));
+    }
+
+    @Test
+    @DisplayName("Update of not-indexed local property of several references within one transaction doesn't lead to queue item enqueueing")
+    public void updateNotIndexedLocalPropertyOfSeveralReferencesWithinTransaction() {
+        TestReferenceEntity firstReference = ewm.createTestReferenceEntity().save();
+        TestReferenceEntity secondReference = ewm.createTestReferenceEntity().save();
+        TestRootEntity rootEntity = ewm.createTestRootEntity().setOneToManyAssociation(firstReference, secondReference).save();
+        indexingQueueItemsTracker.clear();
+        entityTrackingListener.clear();
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            ewm.wrap(firstReference).setName("First name").save();
+            ewm.wrap(secondReference).setName("Second name").save();
+        });
+        boolean enqueued = indexingQueueItemsTracker.containsAnyQueueItemsForEntityAndOperation(rootEntity, IndexingOperation.INDEX);
+        Assert.assertFalse(enqueued);
+        Assert.assertTrue(entityTrackingListener.getDependencyQueries().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Changes of indexed entity within rolled back transaction don't lead to queue item enqueueing")
+    public void updateIndexedEntityWithinRolledBackTransaction() {
+        TestRootEntity entity = ewm.createTestRootEntity().save();
+        indexingQueueItemsTracker.clear();
+
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public int getOrder() {
+                        return Ordered.LOWEST_PRECEDENCE;
+                    }
+
+                    @Override
+                    public void beforeCommit(boolean readOnly) {
+                        throw new IllegalStateException("Commit failure");
+                    }
+                });
+                ewm.wrap(entity).setTextValue("Some text value").save();
+            });
+            Assert.fail("Transaction should be rolled back");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        boolean enqueued = indexingQueueItemsTracker.containsAnyQueueItemsForEntityAndOperation(entity, IndexingOperation.INDEX);
+        Assert.assertFalse(enqueued);
+    }
+
+    @Test
+    @DisplayName("Deletion of one-to-one reference leads to queue item enqueueing within the same transaction")
+    public void deleteOneToOneReferenceWithinSameTransaction() {
+        TestReferenceEntity reference = ewm.createTestReferenceEntity().save();
+        TestRootEntity rootEntity = ewm.createTestRootEntity().setOneToOneAssociation(reference).save();
+        indexingQueueItemsTracker.clear();
+
+        AtomicReference<Map<Object, Object>> transactionResources = new AtomicReference<>();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            ewm.remove(reference);
+            transactionResources.set(new HashMap<>(TransactionSynchronizationManager.getResourceMap()));
+        });
+        Assert.assertTrue(indexingQueueItemsTracker.containsQueueItemsForEntityAndOperation(rootEntity, IndexingOperation.INDEX, 1));
+        Assert.assertFalse(transactionResources.get().isEmpty());
+        Assert.assertTrue(indexingQueueItemsTracker.getLastTransactionResources().entrySet()
+                .containsAll(transactionResources.get().entrySet()));
+    }
+
+    /**
+     * Checks that dependents of all changed instances are loaded by single query per dependency property.
+     */
+    protected void assertDependencyQueriesAreGrouped(Object... changedIds) {
+        List<TestEntityTrackingListener.DependencyQuery> queries = entityTrackingListener.getDependencyQueries();
+        Assert.assertFalse(queries.isEmpty());
+        Set<MetaPropertyPath> propertyPaths = new HashSet<>();
+        for (TestEntityTrackingListener.DependencyQuery query : queries) {
+            Assert.assertTrue(query.toString(), propertyPaths.add(query.getPropertyPath()));
+            Assert.assertEquals(query.toString(), new HashSet<>(Arrays.asList(changedIds)), new HashSet<>(query.getTargetIds()));
+        }
+    }
 }
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2021 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package indexing;
+
+import io.jmix.search.index.IndexConfiguration;
+import io.jmix.search.index.mapping.IndexConfigurationManager;
+import org.elasticsearch.common.settings.Settings;
+import org.junit.Assert;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import test_support.IndexingTestConfiguration;
+import test_support.TestESIndexManager;
+
+import java.util.Collection;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(
+        classes = {IndexingTestConfiguration.class}
+)
+@TestPropertySource(properties = {
+        "jmix.search.bulkIndexingSessionLeaseTimeout=60000"
+})
+public class BulkIndexingSessionTest {
+
+    private static final String ENTITY_NAME = "test_LongPkEntity";
+    private static final String REFRESH_INTERVAL_SETTING = "index.refresh_interval";
+    private static final String NUMBER_OF_REPLICAS_SETTING = "index.number_of_replicas";
+    private static final String TRANSLOG_DURABILITY_SETTING = "index.translog.durability";
+
+    @Autowired
+    TestESIndexManager indexManager;
+    @Autowired
+    IndexConfigurationManager indexConfigurationManager;
+
+    IndexConfiguration indexConfiguration;
+    String indexName;
+
+    @BeforeEach
+    public void setUp() {
+        indexConfiguration = indexConfigurationManager.getIndexConfigurationByEntityName(ENTITY_NAME);
+        indexManager.clear();
+        indexManager.createIndex(indexConfiguration);
+        indexName = indexConfiguration.getIndexName() + "_v1";
+        indexManager.setSettings(indexName, Settings.builder()
+                .put(REFRESH_INTERVAL_SETTING, "5s")
+                .put(NUMBER_OF_REPLICAS_SETTING, 2)
+                .build());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        indexManager.clear();
+    }
+
+    @Test
+    @DisplayName("Bulk indexing settings are applied on start of session and previous settings are restored by the last participant")
+    public void startAndFinishSession() {
+        Assert.assertTrue(indexManager.startBulkIndexingSession(indexConfiguration));
+        Assert.assertTrue(indexManager.startBulkIndexingSession(indexConfiguration));
+
+        Assert.assertTrue(indexManager.isBulkIndexingSessionActive(indexConfiguration));
+        assertBulkIndexingSettings(indexManager.getSettings(indexName));
+        Settings storedSettings = indexManager.getStoredPreviousSettings(indexName);
+        Assert.assertNotNull(storedSettings);
+        Assert.assertEquals("5s", storedSettings.get(REFRESH_INTERVAL_SETTING));
+        Assert.assertEquals("2", storedSettings.get(NUMBER_OF_REPLICAS_SETTING));
+        Assert.assertNull(storedSettings.get(TRANSLOG_DURABILITY_SETTING));
+
+        Assert.assertFalse(indexManager.finishBulkIndexingSession(indexConfiguration));
+        Assert.assertTrue(indexManager.isBulkIndexingSessionActive(indexConfiguration));
+        assertBulkIndexingSettings(indexManager.getSettings(indexName));
+
+        Assert.assertTrue(indexManager.finishBulkIndexingSession(indexConfiguration));
+        Assert.assertFalse(indexManager.isBulkIndexingSessionActive(indexConfiguration));
+        Settings settings = indexManager.getSettings(indexName);
+        Assert.assertEquals("5s", settings.get(REFRESH_INTERVAL_SETTING));
+        Assert.assertEquals("2", settings.get(NUMBER_OF_REPLICAS_SETTING));
+        Assert.assertNull(settings.get(TRANSLOG_DURABILITY_SETTING));
+        Assert.assertNull(indexManager.getStoredPreviousSettings(indexName));
+        Assert.assertFalse(indexManager.finishBulkIndexingSession(indexConfiguration));
+    }
+
+    @Test
+    @DisplayName("Session isn't started if index doesn't exist")
+    public void startSessionWithoutIndex() {
+        indexManager.clear();
+
+        Assert.assertFalse(indexManager.startBulkIndexingSession(indexConfiguration));
+        Assert.assertFalse(indexManager.isBulkIndexingSessionActive(indexConfiguration));
+    }
+
+    @Test
+    @DisplayName("Settings stored by interrupted session are restored")
+    public void restoreInterruptedSession() {
+        indexManager.startForeignBulkIndexingSession(indexName, indexManager.getSettings(indexName),
+                System.currentTimeMillis() - 120000);
+
+        Collection<IndexConfiguration> restored = indexManager.restoreInterruptedBulkIndexingSessions();
+
+        Assert.assertTrue(restored.contains(indexConfiguration));
+        Settings settings = indexManager.getSettings(indexName);
+        Assert.assertEquals("5s", settings.get(REFRESH_INTERVAL_SETTING));
+        Assert.assertEquals("2", settings.get(NUMBER_OF_REPLICAS_SETTING));
+        Assert.assertNull(indexManager.getStoredPreviousSettings(indexName));
+    }
+
+    @Test
+    @DisplayName("Default settings are restored if interrupted session hasn't stored previous settings")
+    public void restoreInterruptedSessionWithoutStoredSettings() {
+        indexManager.setSettings(indexName, Settings.builder()
+                .put(REFRESH_INTERVAL_SETTING, "-1")
+                .put(TRANSLOG_DURABILITY_SETTING, "async")
+                .build());
+
+        Collection<IndexConfiguration> restored = indexManager.restoreInterruptedBulkIndexingSessions();
+
+        Assert.assertTrue(restored.contains(indexConfiguration));
+        Settings settings = indexManager.getSettings(indexName);
+        Assert.assertNull(settings.get(REFRESH_INTERVAL_SETTING));
+        Assert.assertNull(settings.get(TRANSLOG_DURABILITY_SETTING));
+    }
+
+    @Test
+    @DisplayName("Session renewed by another application instance within lease timeout isn't restored")
+    public void skipSessionOfAnotherInstance() {
+        indexManager.startForeignBulkIndexingSession(indexName, indexManager.getSettings(indexName),
+                System.currentTimeMillis());
+
+        Collection<IndexConfiguration> restored = indexManager.restoreInterruptedBulkIndexingSessions();
+
+        Assert.assertTrue(restored.isEmpty());
+        assertBulkIndexingSettings(indexManager.getSettings(indexName));
+        Assert.assertNotNull(indexManager.getStoredPreviousSettings(indexName));
+    }
+
+    @Test
+    @DisplayName("Active session of the current application instance isn't restored and isn't renewed before renewal interval")
+    public void keepActiveSession() {
+        Assert.assertTrue(indexManager.startBulkIndexingSession(indexConfiguration));
+        Long startedTime = indexManager.getStoredSessionRenewedTime(indexName);
+
+        Assert.assertTrue(indexManager.restoreInterruptedBulkIndexingSessions().isEmpty());
+        indexManager.renewBulkIndexingSessions();
+        Assert.assertEquals(startedTime, indexManager.getStoredSessionRenewedTime(indexName));
+
+        assertBulkIndexingSettings(indexManager.getSettings(indexName));
+        indexManager.finishBulkIndexingSession(indexConfiguration);
+    }
+
+    protected void assertBulkIndexingSettings(Settings settings) {
+        Assert.assertEquals("-1", settings.get(REFRESH_INTERVAL_SETTING));
+        Assert.assertEquals("0", settings.get(NUMBER_OF_REPLICAS_SETTING));
+        Assert.assertEquals("async", settings.get(TRANSLOG_DURABILITY_SETTING));
+    }
+}
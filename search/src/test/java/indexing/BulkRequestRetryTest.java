@@ -0,0 +1,230 @@
+/*
+ * Copyright 2021 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package indexing;
+
+import io.jmix.core.DataManager;
+import io.jmix.core.Id;
+import io.jmix.core.IdSerialization;
+import io.jmix.core.Metadata;
+import io.jmix.core.security.SystemAuthenticator;
+import io.jmix.search.SearchProperties;
+import io.jmix.search.index.IndexResult;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.rest.RestStatus;
+import org.junit.Assert;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import test_support.IndexingTestConfiguration;
+import test_support.TestBulkRequestsTracker;
+import test_support.TestBulkResponses;
+import test_support.TestEntityIndexer;
+import test_support.entity.indexing.TestUuidPkEntity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(
+        classes = {IndexingTestConfiguration.class}
+)
+public class BulkRequestRetryTest {
+
+    @Autowired
+    TestEntityIndexer entityIndexer;
+    @Autowired
+    TestBulkRequestsTracker bulkRequestsTracker;
+    @Autowired
+    SearchProperties searchProperties;
+    @Autowired
+    DataManager dataManager;
+    @Autowired
+    Metadata metadata;
+    @Autowired
+    IdSerialization idSerialization;
+    @Autowired
+    SystemAuthenticator authenticator;
+
+    @BeforeEach
+    public void setUp() {
+        bulkRequestsTracker.clear();
+        entityIndexer.resetTracking();
+        authenticator.begin();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        entityIndexer.resetBulkResponseProvider();
+        entityIndexer.resetTracking();
+        authenticator.end();
+    }
+
+    @Test
+    @DisplayName("Items rejected with status 429 are sent again")
+    public void retryRejectedItems() {
+        List<Object> entities = createEntities(3);
+        AtomicInteger attempts = new AtomicInteger();
+        entityIndexer.setBulkResponseProvider(request -> attempts.getAndIncrement() == 0
+                ? TestBulkResponses.failure(request, RestStatus.TOO_MANY_REQUESTS)
+                : TestBulkResponses.success(request));
+
+        IndexResult result = entityIndexer.indexCollection(entities);
+
+        Assert.assertEquals(2, attempts.get());
+        Assert.assertEquals(3, result.getTotalSize());
+        Assert.assertFalse(result.hasFailures());
+    }
+
+    @Test
+    @DisplayName("Only rejected items are sent again, other failures are returned as is")
+    public void retryOnlyRejectedItems() {
+        List<Object> entities = createEntities(3);
+        String rejectedId = getIndexId(entities.get(1));
+        String invalidId = getIndexId(entities.get(2));
+        AtomicInteger attempts = new AtomicInteger();
+        entityIndexer.setBulkResponseProvider(request -> {
+            if (attempts.getAndIncrement() > 0) {
+                return TestBulkResponses.success(request);
+            }
+            return TestBulkResponses.create(request, action -> {
+                if (rejectedId.equals(action.id())) {
+                    return RestStatus.TOO_MANY_REQUESTS;
+                }
+                return invalidId.equals(action.id()) ? RestStatus.BAD_REQUEST : null;
+            });
+        });
+
+        IndexResult result = entityIndexer.indexCollection(entities);
+
+        List<BulkRequest> requests = getRequestsBySize();
+        Assert.assertEquals(2, requests.size());
+        Assert.assertEquals(Collections.singletonList(rejectedId), getDocumentIds(requests.get(0)));
+        Assert.assertEquals(3, result.getTotalSize());
+        Assert.assertEquals(Collections.singletonList(invalidId), result.getFailedIndexIds());
+        Assert.assertFalse(result.hasRetryableFailures());
+    }
+
+    @Test
+    @DisplayName("Items still rejected after all retries are returned as retryable failures")
+    public void exhaustRetries() {
+        List<Object> entities = createEntities(2);
+        entityIndexer.setBulkResponseProvider(request -> TestBulkResponses.failure(request, RestStatus.TOO_MANY_REQUESTS));
+
+        IndexResult result = entityIndexer.indexCollection(entities);
+
+        Assert.assertEquals(searchProperties.getMaxBulkRequestRetries() + 1, bulkRequestsTracker.getBulkRequests().size());
+        Assert.assertEquals(2, result.getTotalSize());
+        Assert.assertEquals(2, result.getRetryableFailures().size());
+    }
+
+    @Test
+    @DisplayName("Delays between retries grow exponentially and are randomized within the upper half of backoff delay")
+    public void retryDelays() {
+        List<Object> entities = createEntities(2);
+        entityIndexer.setBulkResponseProvider(request -> TestBulkResponses.failure(request, RestStatus.TOO_MANY_REQUESTS));
+
+        entityIndexer.indexCollection(entities);
+
+        // exponential backoff of Elasticsearch client with initial delay of 50 ms
+        Assert.assertEquals(Arrays.asList(50L, 60L, 80L), entityIndexer.getBackoffDelays());
+        assertDelaysAreJittered(entityIndexer.getBackoffDelays(), entityIndexer.getRetryDelays());
+    }
+
+    @Test
+    @DisplayName("Rejected items of asynchronous request are sent again by the retry scheduler after backoff delay")
+    public void retryDelaysAsync() {
+        List<Object> entities = createEntities(2);
+        AtomicInteger attempts = new AtomicInteger();
+        entityIndexer.setBulkResponseProvider(request -> attempts.getAndIncrement() < 2
+                ? TestBulkResponses.failure(request, RestStatus.TOO_MANY_REQUESTS)
+                : TestBulkResponses.success(request));
+
+        entityIndexer.indexCollectionAsync(entities).join();
+
+        Assert.assertEquals(Arrays.asList(50L, 60L), entityIndexer.getBackoffDelays());
+        assertDelaysAreJittered(entityIndexer.getBackoffDelays(), entityIndexer.getRetryDelays());
+        // the first request is sent by the caller, retries don't block it
+        Set<String> threadNames = entityIndexer.getBulkRequestThreadNames();
+        Assert.assertTrue(threadNames.contains(Thread.currentThread().getName()));
+        Assert.assertTrue(threadNames.stream().anyMatch(name -> name.startsWith("search-bulk-request-retry-")));
+    }
+
+    @Test
+    @DisplayName("Rejected items of asynchronous request are sent again")
+    public void retryRejectedItemsAsync() {
+        List<Object> entities = createEntities(2);
+        AtomicInteger attempts = new AtomicInteger();
+        entityIndexer.setBulkResponseProvider(request -> attempts.getAndIncrement() < 2
+                ? TestBulkResponses.failure(request, RestStatus.TOO_MANY_REQUESTS)
+                : TestBulkResponses.success(request));
+
+        IndexResult result = entityIndexer.indexCollectionAsync(entities).join();
+
+        Assert.assertEquals(3, attempts.get());
+        Assert.assertEquals(2, result.getTotalSize());
+        Assert.assertFalse(result.hasFailures());
+    }
+
+    protected void assertDelaysAreJittered(List<Long> backoffDelays, List<Long> retryDelays) {
+        Assert.assertEquals(backoffDelays.size(), retryDelays.size());
+        for (int i = 0; i < backoffDelays.size(); i++) {
+            long backoffDelay = backoffDelays.get(i);
+            long retryDelay = retryDelays.get(i);
+            Assert.assertTrue(retryDelay >= backoffDelay / 2);
+            Assert.assertTrue(retryDelay <= backoffDelay);
+        }
+    }
+
+    protected List<Object> createEntities(int amount) {
+        List<Object> entities = new ArrayList<>(amount);
+        for (int i = 0; i < amount; i++) {
+            TestUuidPkEntity entity = metadata.create(TestUuidPkEntity.class);
+            entity.setName("Entity " + i);
+            entities.add(dataManager.save(entity));
+        }
+        return entities;
+    }
+
+    protected String getIndexId(Object entity) {
+        return idSerialization.idToString(Id.of(entity));
+    }
+
+    protected List<BulkRequest> getRequestsBySize() {
+        return bulkRequestsTracker.getBulkRequests().stream()
+                .sorted(Comparator.comparingInt(BulkRequest::numberOfActions))
+                .collect(Collectors.toList());
+    }
+
+    protected List<String> getDocumentIds(BulkRequest request) {
+        return request.requests().stream()
+                .map(DocWriteRequest::id)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2021 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package indexing;
+
+import io.jmix.core.DataManager;
+import io.jmix.core.Metadata;
+import io.jmix.core.security.SystemAuthenticator;
+import io.jmix.search.index.EntityIndexer;
+import io.jmix.search.index.IndexResult;
+import org.apache.commons.lang3.StringUtils;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.junit.Assert;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import test_support.IndexingTestConfiguration;
+import test_support.TestBulkRequestsTracker;
+import test_support.entity.indexing.TestUuidPkEntity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(
+        classes = {IndexingTestConfiguration.class}
+)
+@TestPropertySource(properties = {
+        "jmix.search.maxBulkRequestActions=3",
+        "jmix.search.maxBulkRequestSizeInBytes=1024"
+})
+public class BulkRequestSplittingTest {
+
+    private static final int MAX_BULK_REQUEST_SIZE_IN_BYTES = 1024;
+
+    @Autowired
+    EntityIndexer entityIndexer;
+    @Autowired
+    TestBulkRequestsTracker bulkRequestsTracker;
+    @Autowired
+    DataManager dataManager;
+    @Autowired
+    Metadata metadata;
+    @Autowired
+    SystemAuthenticator authenticator;
+
+    @BeforeEach
+    public void setUp() {
+        bulkRequestsTracker.clear();
+        authenticator.begin();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        authenticator.end();
+    }
+
+    @Test
+    @DisplayName("Bulk request is split when it reaches max amount of actions")
+    public void splitByActionsCount() {
+        List<Object> entities = createEntities(7, "Small entity");
+
+        IndexResult result = entityIndexer.indexCollection(entities);
+
+        Assert.assertEquals(Arrays.asList(1, 3, 3), getSortedRequestSizes());
+        Assert.assertFalse(result.hasFailures());
+    }
+
+    @Test
+    @DisplayName("Bulk request is split when it reaches max size in bytes")
+    public void splitBySize() {
+        // Document of every entity takes more than half of the limit: two documents exceed it
+        List<Object> entities = createEntities(5, StringUtils.repeat('a', 250));
+
+        entityIndexer.indexCollection(entities);
+
+        Assert.assertEquals(Arrays.asList(1, 2, 2), getSortedRequestSizes());
+        for (BulkRequest request : bulkRequestsTracker.getBulkRequests()) {
+            Assert.assertTrue(request.numberOfActions() < 3);
+            // the limit is reached only by the last action of the request
+            Assert.assertTrue(getSizeWithoutLastAction(request) < MAX_BULK_REQUEST_SIZE_IN_BYTES);
+        }
+        long fullRequestsCount = bulkRequestsTracker.getBulkRequests().stream()
+                .filter(request -> request.estimatedSizeInBytes() >= MAX_BULK_REQUEST_SIZE_IN_BYTES)
+                .count();
+        Assert.assertEquals(2, fullRequestsCount);
+    }
+
+    @Test
+    @DisplayName("Document exceeding max size in bytes is sent in separate bulk request")
+    public void documentExceedingSizeLimit() {
+        List<Object> entities = createEntities(3, StringUtils.repeat('a', 2 * MAX_BULK_REQUEST_SIZE_IN_BYTES));
+
+        IndexResult result = entityIndexer.indexCollection(entities);
+
+        Assert.assertEquals(Arrays.asList(1, 1, 1), getSortedRequestSizes());
+        for (BulkRequest request : bulkRequestsTracker.getBulkRequests()) {
+            Assert.assertTrue(request.estimatedSizeInBytes() > MAX_BULK_REQUEST_SIZE_IN_BYTES);
+        }
+        Assert.assertFalse(result.hasFailures());
+    }
+
+    @Test
+    @DisplayName("Deletion of several instances is split into several bulk requests")
+    public void splitDeletion() {
+        List<Object> entities = createEntities(4, "Deleted entity");
+
+        entityIndexer.deleteCollection(entities);
+
+        Assert.assertEquals(Arrays.asList(1, 3), getSortedRequestSizes());
+    }
+
+    protected List<Object> createEntities(int amount, String name) {
+        List<Object> entities = new ArrayList<>(amount);
+        for (int i = 0; i < amount; i++) {
+            TestUuidPkEntity entity = metadata.create(TestUuidPkEntity.class);
+            entity.setName(name);
+            entities.add(dataManager.save(entity));
+        }
+        return entities;
+    }
+
+    protected long getSizeWithoutLastAction(BulkRequest request) {
+        List<DocWriteRequest<?>> actions = request.requests();
+        return new BulkRequest()
+                .add(actions.subList(0, actions.size() - 1))
+                .estimatedSizeInBytes();
+    }
+
+    protected List<Integer> getSortedRequestSizes() {
+        return bulkRequestsTracker.getBulkRequests().stream()
+                .map(BulkRequest::numberOfActions)
+                .sorted()
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright 2021 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package indexing;
+
+import io.jmix.core.DataManager;
+import io.jmix.core.Id;
+import io.jmix.core.IdSerialization;
+import io.jmix.core.Metadata;
+import io.jmix.core.security.SystemAuthenticator;
+import io.jmix.search.index.IndexResult;
+import io.jmix.search.index.entity.ReindexSession;
+import io.jmix.search.index.queue.impl.IndexingOperation;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.rest.RestStatus;
+import org.junit.Assert;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import test_support.IndexingTestConfiguration;
+import test_support.TestBulkRequestsTracker;
+import test_support.TestBulkResponses;
+import test_support.TestEntityIndexer;
+import test_support.entity.indexing.TestLongPkEntity;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(
+        classes = {IndexingTestConfiguration.class}
+)
+@TestPropertySource(properties = {
+        "jmix.search.reindexEntityBatchSize=2"
+})
+public class DirectReindexTest {
+
+    private static final String ENTITY_NAME = "test_LongPkEntity";
+
+    @Autowired
+    TestEntityIndexer entityIndexer;
+    @Autowired
+    TestBulkRequestsTracker bulkRequestsTracker;
+    @Autowired
+    DataManager dataManager;
+    @Autowired
+    Metadata metadata;
+    @Autowired
+    IdSerialization idSerialization;
+    @Autowired
+    SystemAuthenticator authenticator;
+    @Autowired
+    DataSource dataSource;
+
+    protected JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    public void setUp() {
+        authenticator.begin();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.update("delete from SEARCH_INDEXING_QUEUE");
+        for (int i = 0; i < 5; i++) {
+            TestLongPkEntity entity = metadata.create(TestLongPkEntity.class);
+            entity.setName("Reindexed entity " + i);
+            dataManager.save(entity);
+        }
+        dataManager.load(ReindexSession.class).all().list().forEach(dataManager::remove);
+        bulkRequestsTracker.clear();
+        entityIndexer.setBulkResponseProvider(TestBulkResponses::success);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        entityIndexer.resetBulkResponseProvider();
+        authenticator.end();
+    }
+
+    @Test
+    @DisplayName("All instances are indexed by pages and the session is removed")
+    public void indexAll() {
+        List<String> allIds = loadSortedIndexIds();
+
+        IndexResult result = entityIndexer.indexAll(ENTITY_NAME);
+
+        Assert.assertEquals(allIds.size(), result.getTotalSize());
+        Assert.assertFalse(result.hasFailures());
+        Assert.assertEquals((allIds.size() + 1) / 2, bulkRequestsTracker.getBulkRequests().size());
+        Assert.assertEquals(new HashSet<>(allIds), getSentDocumentIds());
+        Assert.assertNull(loadSession());
+        Assert.assertEquals(0, getQueueSize());
+    }
+
+    @Test
+    @DisplayName("Documents are built from instances loaded with fetch plan of the index")
+    public void indexAllDocuments() {
+        entityIndexer.indexAll(ENTITY_NAME);
+
+        for (BulkRequest request : bulkRequestsTracker.getBulkRequests()) {
+            for (DocWriteRequest<?> action : request.requests()) {
+                Assert.assertTrue(action instanceof IndexRequest);
+                Map<String, Object> document = ((IndexRequest) action).sourceAsMap();
+                Assert.assertTrue(String.valueOf(document.get("name")).startsWith("Reindexed entity "));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Progress of reindex is stored after every completed page")
+    public void storeProgress() {
+        List<String> allIds = loadSortedIndexIds();
+        List<Long> indexedCounts = new ArrayList<>();
+        entityIndexer.setBulkResponseProvider(request -> {
+            ReindexSession session = loadSession();
+            Assert.assertNotNull(session);
+            Assert.assertEquals(Long.valueOf(allIds.size()), session.getTotalCount());
+            indexedCounts.add(session.getIndexedCount());
+            return TestBulkResponses.success(request);
+        });
+
+        entityIndexer.indexAll(ENTITY_NAME);
+
+        List<Long> expectedCounts = new ArrayList<>();
+        for (long indexed = 0; indexed < allIds.size(); indexed += 2) {
+            expectedCounts.add(indexed);
+        }
+        Assert.assertEquals(expectedCounts, indexedCounts);
+    }
+
+    @Test
+    @DisplayName("Next page is sent while requests of previous pages are in flight")
+    public void sendPagesInParallel() throws InterruptedException {
+        List<String> allIds = loadSortedIndexIds();
+        CountDownLatch responsesReleased = new CountDownLatch(1);
+        ExecutorService responseExecutor = Executors.newCachedThreadPool();
+        entityIndexer.resetTracking();
+        entityIndexer.setBulkResponseExecutor(response -> responseExecutor.execute(() -> {
+            try {
+                responsesReleased.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            response.run();
+        }));
+        Thread releaser = new Thread(() -> {
+            long deadline = System.currentTimeMillis() + 10000;
+            while (entityIndexer.getInFlightBulkRequests() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.yield();
+            }
+            responsesReleased.countDown();
+        });
+        releaser.start();
+        IndexResult result;
+        try {
+            result = entityIndexer.indexAll(ENTITY_NAME);
+        } finally {
+            responsesReleased.countDown();
+            releaser.join();
+            responseExecutor.shutdownNow();
+            entityIndexer.resetTracking();
+        }
+
+        Assert.assertTrue(entityIndexer.getMaxInFlightBulkRequests() > 1);
+        Assert.assertEquals(allIds.size(), result.getTotalSize());
+        Assert.assertNull(loadSession());
+    }
+
+    @Test
+    @DisplayName("Entity with composite primary key can't be reindexed directly")
+    public void rejectCompositePk() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> entityIndexer.indexAll("test_CompositePkEntity"));
+    }
+
+    @Test
+    @DisplayName("Interrupted reindex keeps the session and is resumed after the last indexed instance")
+    public void resumeInterruptedIndexAll() {
+        List<String> allIds = loadSortedIndexIds();
+        AtomicInteger requests = new AtomicInteger();
+        entityIndexer.setBulkResponseProvider(request -> {
+            if (requests.incrementAndGet() > 1) {
+                throw new RuntimeException("Elasticsearch is unavailable");
+            }
+            return TestBulkResponses.success(request);
+        });
+
+        Assertions.assertThrows(RuntimeException.class, () -> entityIndexer.indexAll(ENTITY_NAME));
+
+        ReindexSession session = loadSession();
+        Assert.assertNotNull(session);
+        Assert.assertEquals(allIds.get(1), session.getLastIndexedId());
+        Assert.assertEquals(Long.valueOf(2), session.getIndexedCount());
+
+        bulkRequestsTracker.clear();
+        entityIndexer.setBulkResponseProvider(TestBulkResponses::success);
+        IndexResult result = entityIndexer.resumeIndexAll(ENTITY_NAME);
+
+        Assert.assertEquals(allIds.size() - 2, result.getTotalSize());
+        Assert.assertEquals(new HashSet<>(allIds.subList(2, allIds.size())), getSentDocumentIds());
+        Assert.assertNull(loadSession());
+    }
+
+    @Test
+    @DisplayName("Reindex is resumed after the last indexed instance of stored session")
+    public void resumeIndexAll() {
+        List<String> allIds = loadSortedIndexIds();
+        ReindexSession session = metadata.create(ReindexSession.class);
+        session.setEntityName(ENTITY_NAME);
+        session.setLastIndexedId(allIds.get(2));
+        session.setTotalCount((long) allIds.size());
+        session.setIndexedCount(3L);
+        session.setFailedCount(0L);
+        session.setUpdatedDate(new Date());
+        dataManager.save(session);
+
+        IndexResult result = entityIndexer.resumeIndexAll(ENTITY_NAME);
+
+        Assert.assertEquals(allIds.size() - 3, result.getTotalSize());
+        Assert.assertEquals(new HashSet<>(allIds.subList(3, allIds.size())), getSentDocumentIds());
+        Assert.assertNull(loadSession());
+    }
+
+    @Test
+    @DisplayName("Instances failed to be indexed are enqueued to be indexed again")
+    public void enqueueFailedInstances() {
+        List<String> allIds = loadSortedIndexIds();
+        Set<String> failedIds = new HashSet<>(allIds.subList(1, 3));
+        entityIndexer.setBulkResponseProvider(request -> TestBulkResponses.create(request,
+                action -> failedIds.contains(action.id()) ? RestStatus.BAD_REQUEST : null));
+
+        IndexResult result = entityIndexer.indexAll(ENTITY_NAME);
+
+        Assert.assertEquals(allIds.size(), result.getTotalSize());
+        Assert.assertEquals(failedIds.size(), result.getFailuresSize());
+        Assert.assertNull(loadSession());
+        List<String> enqueuedIds = jdbcTemplate.queryForList(
+                "select ENTITY_ID from SEARCH_INDEXING_QUEUE where ENTITY_NAME = ? and OPERATION = ?",
+                String.class, ENTITY_NAME, IndexingOperation.INDEX.getId());
+        Assert.assertEquals(failedIds.size(), enqueuedIds.size());
+        Assert.assertEquals(failedIds, new HashSet<>(enqueuedIds));
+    }
+
+    @Test
+    @DisplayName("Nothing is indexed on resume if there is no interrupted session")
+    public void resumeWithoutSession() {
+        IndexResult result = entityIndexer.resumeIndexAll(ENTITY_NAME);
+
+        Assert.assertEquals(0, result.getTotalSize());
+        Assert.assertTrue(bulkRequestsTracker.getBulkRequests().isEmpty());
+    }
+
+    protected List<String> loadSortedIndexIds() {
+        return dataManager.loadValue("select e.id from test_LongPkEntity e order by e.id", Long.class)
+                .list()
+                .stream()
+                .map(id -> idSerialization.idToString(Id.of(id, TestLongPkEntity.class)))
+                .collect(Collectors.toList());
+    }
+
+    protected int getQueueSize() {
+        Integer count = jdbcTemplate.queryForObject(
+                "select count(*) from SEARCH_INDEXING_QUEUE where ENTITY_NAME = ?", Integer.class, ENTITY_NAME);
+        return count == null ? 0 : count;
+    }
+
+    protected ReindexSession loadSession() {
+        return dataManager.load(ReindexSession.class)
+                .query("select s from search_ReindexSession s where s.entityName = :entityName")
+                .parameter("entityName", ENTITY_NAME)
+                .optional()
+                .orElse(null);
+    }
+
+    protected Set<String> getSentDocumentIds() {
+        return bulkRequestsTracker.getBulkRequests().stream()
+                .flatMap(request -> request.requests().stream())
+                .map(DocWriteRequest::id)
+                .collect(Collectors.toSet());
+    }
+}
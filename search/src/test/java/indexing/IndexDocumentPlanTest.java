@@ -0,0 +1,97 @@
+/*
+ * Copyright 2021 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package indexing;
+
+import io.jmix.search.index.IndexConfiguration;
+import io.jmix.search.index.mapping.IndexConfigurationManager;
+import io.jmix.search.index.mapping.IndexDocumentPlan;
+import io.jmix.search.index.mapping.IndexDocumentPlan.FieldAccessor;
+import io.jmix.search.index.mapping.MappingFieldDescriptor;
+import org.junit.Assert;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import test_support.IndexingTestConfiguration;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(
+        classes = {IndexingTestConfiguration.class}
+)
+public class IndexDocumentPlanTest {
+
+    @Autowired
+    IndexConfigurationManager indexConfigurationManager;
+
+    @Test
+    @DisplayName("Document plans are compiled once for all index configurations")
+    public void plansAreCompiledOnce() {
+        for (IndexConfiguration indexConfiguration : indexConfigurationManager.getAllIndexConfigurations()) {
+            IndexDocumentPlan documentPlan = indexConfiguration.getDocumentPlan();
+            Assert.assertNotNull(documentPlan);
+            Assert.assertSame(documentPlan, indexConfiguration.getDocumentPlan());
+        }
+    }
+
+    @Test
+    @DisplayName("Field accessors of the plan are resolved from non-standalone mapping fields")
+    public void fieldAccessorsAreResolved() {
+        IndexConfiguration indexConfiguration = indexConfigurationManager.getIndexConfigurationByEntityName("test_TextRootEntity");
+        IndexDocumentPlan documentPlan = indexConfiguration.getDocumentPlan();
+
+        List<MappingFieldDescriptor> fields = indexConfiguration.getMapping().getFields().values().stream()
+                .filter(field -> !field.isStandalone())
+                .collect(Collectors.toList());
+        Assert.assertEquals(fields.size(), documentPlan.getFieldsCount());
+        for (int i = 0; i < documentPlan.getFieldsCount(); i++) {
+            FieldAccessor accessor = documentPlan.getFieldAccessor(i);
+            MappingFieldDescriptor field = accessor.getDescriptor();
+            Assert.assertSame(fields.get(i), field);
+            Assert.assertEquals(field.getMetaPropertyPath(), accessor.getMetaPropertyPath());
+            Assert.assertEquals(Arrays.asList(field.getIndexPropertyFullName().split("\\.")), accessor.getPathSegments());
+        }
+    }
+
+    @Test
+    @DisplayName("Document tree of the plan combines fields with common path")
+    public void documentTreeIsBuilt() {
+        IndexDocumentPlan documentPlan = indexConfigurationManager
+                .getIndexConfigurationByEntityName("test_TextRootEntity")
+                .getDocumentPlan();
+
+        IndexDocumentPlan.DocumentNode root = documentPlan.getRoot();
+        Assert.assertEquals(3, root.getChildrenCount());
+        Assert.assertTrue(root.hasChild("name"));
+        Assert.assertTrue(root.hasChild("oneToOneRef"));
+        Assert.assertTrue(root.hasChild("oneToManyRef"));
+        for (int i = 0; i < root.getChildrenCount(); i++) {
+            IndexDocumentPlan.DocumentNode child = root.getChild(i);
+            if (!"name".equals(child.getName())) {
+                Assert.assertTrue(child.hasChild("name"));
+                Assert.assertTrue(child.hasChild("oneToOneRef"));
+                Assert.assertTrue(child.hasChild("oneToManyRef"));
+            }
+        }
+    }
+}
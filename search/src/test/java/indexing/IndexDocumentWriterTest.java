@@ -0,0 +1,109 @@
+/*
+ * Copyright 2021 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package indexing;
+
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jmix.core.Metadata;
+import io.jmix.search.index.IndexConfiguration;
+import io.jmix.search.index.impl.IndexDocumentWriter;
+import io.jmix.search.index.mapping.IndexConfigurationManager;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Assert;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import test_support.IndexingTestConfiguration;
+import test_support.TestJsonUtils;
+import test_support.entity.indexing.TestUuidPkEntity;
+
+import java.io.IOException;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(
+        classes = {IndexingTestConfiguration.class}
+)
+public class IndexDocumentWriterTest {
+
+    @Autowired
+    IndexConfigurationManager indexConfigurationManager;
+    @Autowired
+    Metadata metadata;
+
+    protected final ObjectMapper objectMapper = new ObjectMapper();
+
+    protected TestIndexDocumentWriter documentWriter;
+    protected IndexConfiguration indexConfiguration;
+
+    @BeforeEach
+    public void setUp() {
+        documentWriter = new TestIndexDocumentWriter();
+        indexConfiguration = indexConfigurationManager.getIndexConfigurationByEntityName("test_UuidPkEntity");
+    }
+
+    @Test
+    @DisplayName("Document is written according to the index definition")
+    public void writeDocument() throws IOException {
+        byte[] document = documentWriter.writeDocument(indexConfiguration, createEntity("UUID PK entity"));
+
+        JsonNode expected = TestJsonUtils.readJsonFromFile("indexing/test_content_uuid_pk");
+        Assert.assertEquals(expected, objectMapper.readTree(document));
+    }
+
+    @Test
+    @DisplayName("Thread buffer is reused between documents and doesn't leak content of the previous document")
+    public void reuseBuffer() throws IOException {
+        ByteArrayBuilder buffer = documentWriter.getThreadBuffer();
+
+        documentWriter.writeDocument(indexConfiguration, createEntity(StringUtils.repeat('a', 1000)));
+        byte[] document = documentWriter.writeDocument(indexConfiguration, createEntity("Small"));
+
+        Assert.assertSame(buffer, documentWriter.getThreadBuffer());
+        Assert.assertEquals("Small", objectMapper.readTree(document).get("name").asText());
+    }
+
+    @Test
+    @DisplayName("Thread buffer grown by the large document is released")
+    public void releaseGrownBuffer() throws IOException {
+        ByteArrayBuilder buffer = documentWriter.getThreadBuffer();
+        String largeName = StringUtils.repeat('a', 64 * 1024);
+
+        byte[] document = documentWriter.writeDocument(indexConfiguration, createEntity(largeName));
+
+        Assert.assertNotSame(buffer, documentWriter.getThreadBuffer());
+        Assert.assertEquals(largeName, objectMapper.readTree(document).get("name").asText());
+    }
+
+    protected TestUuidPkEntity createEntity(String name) {
+        TestUuidPkEntity entity = metadata.create(TestUuidPkEntity.class);
+        entity.setName(name);
+        return entity;
+    }
+
+    protected static class TestIndexDocumentWriter extends IndexDocumentWriter {
+
+        protected ByteArrayBuilder getThreadBuffer() {
+            return buffers.get();
+        }
+    }
+}
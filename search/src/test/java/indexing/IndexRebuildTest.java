@@ -0,0 +1,117 @@
+/*
+ * Copyright 2021 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package indexing;
+
+import io.jmix.core.DataManager;
+import io.jmix.core.Metadata;
+import io.jmix.core.security.SystemAuthenticator;
+import io.jmix.search.index.IndexConfiguration;
+import io.jmix.search.index.IndexResult;
+import io.jmix.search.index.mapping.IndexConfigurationManager;
+import org.elasticsearch.rest.RestStatus;
+import org.junit.Assert;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import test_support.IndexingTestConfiguration;
+import test_support.TestBulkResponses;
+import test_support.TestESIndexManager;
+import test_support.TestEntityIndexer;
+import test_support.entity.indexing.TestLongPkEntity;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(
+        classes = {IndexingTestConfiguration.class}
+)
+public class IndexRebuildTest {
+
+    private static final String ENTITY_NAME = "test_LongPkEntity";
+
+    @Autowired
+    TestESIndexManager indexManager;
+    @Autowired
+    TestEntityIndexer entityIndexer;
+    @Autowired
+    IndexConfigurationManager indexConfigurationManager;
+    @Autowired
+    DataManager dataManager;
+    @Autowired
+    Metadata metadata;
+    @Autowired
+    SystemAuthenticator authenticator;
+
+    IndexConfiguration indexConfiguration;
+
+    @BeforeEach
+    public void setUp() {
+        authenticator.begin();
+        for (int i = 0; i < 3; i++) {
+            TestLongPkEntity entity = metadata.create(TestLongPkEntity.class);
+            entity.setName("Rebuilt entity " + i);
+            dataManager.save(entity);
+        }
+        indexConfiguration = indexConfigurationManager.getIndexConfigurationByEntityName(ENTITY_NAME);
+        indexManager.clear();
+        indexManager.createIndex(indexConfiguration);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        entityIndexer.resetBulkResponseProvider();
+        indexManager.clear();
+        authenticator.end();
+    }
+
+    @Test
+    @DisplayName("Alias is switched to the new generation and old generation is deleted after successful rebuild")
+    public void rebuild() {
+        String aliasName = indexConfiguration.getIndexName();
+        entityIndexer.setBulkResponseProvider(TestBulkResponses::success);
+
+        IndexResult result = indexManager.indexAllIntoNewGeneration(indexConfiguration);
+
+        Assert.assertNotNull(result);
+        Assert.assertFalse(result.hasFailures());
+        Assert.assertEquals(Collections.singleton(aliasName + "_v2"), indexManager.getIndexNames());
+        Assert.assertEquals(Collections.singleton(aliasName), indexManager.getAliases(aliasName + "_v2"));
+    }
+
+    @Test
+    @DisplayName("Alias isn't switched and new generation is deleted if some documents haven't been indexed")
+    public void rebuildWithFailedDocument() {
+        String aliasName = indexConfiguration.getIndexName();
+        AtomicBoolean failed = new AtomicBoolean();
+        entityIndexer.setBulkResponseProvider(request -> TestBulkResponses.create(request,
+                action -> failed.compareAndSet(false, true) ? RestStatus.BAD_REQUEST : null));
+
+        IndexResult result = indexManager.indexAllIntoNewGeneration(indexConfiguration);
+
+        Assert.assertNull(result);
+        Assert.assertTrue(failed.get());
+        Assert.assertEquals(Collections.singleton(aliasName + "_v1"), indexManager.getIndexNames());
+        Assert.assertEquals(Collections.singleton(aliasName), indexManager.getAliases(aliasName + "_v1"));
+    }
+}
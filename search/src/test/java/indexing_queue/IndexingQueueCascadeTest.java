@@ -0,0 +1,118 @@
+/*
+ * Copyright 2021 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package indexing_queue;
+
+import io.jmix.search.index.impl.IndexStateRegistry;
+import io.jmix.search.index.queue.IndexingQueueManager;
+import io.jmix.search.index.queue.impl.IndexingOperation;
+import org.junit.Assert;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import test_support.IndexingQueueTestConfiguration;
+import test_support.TestEntityWrapperManager;
+import test_support.TestIndexingQueueItemsTracker;
+import test_support.entity.TestReferenceEntity;
+import test_support.entity.TestRootEntity;
+
+import javax.sql.DataSource;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(
+        classes = {IndexingQueueTestConfiguration.class}
+)
+public class IndexingQueueCascadeTest {
+
+    @Autowired
+    TestIndexingQueueItemsTracker indexingQueueItemsTracker;
+    @Autowired
+    TestEntityWrapperManager ewm;
+    @Autowired
+    IndexingQueueManager indexingQueueManager;
+    @Autowired
+    IndexStateRegistry indexStateRegistry;
+    @Autowired
+    DataSource dataSource;
+
+    @BeforeEach
+    public void setUp() {
+        new JdbcTemplate(dataSource).update("delete from SEARCH_INDEXING_QUEUE");
+        indexStateRegistry.markIndexAsAvailable("test_RootEntity");
+        indexingQueueItemsTracker.clear();
+    }
+
+    @Test
+    @DisplayName("Update of indexed property of reference leads to cascade item enqueueing instead of dependents")
+    public void updateIndexedPropertyOfReference() {
+        TestReferenceEntity reference = ewm.createTestReferenceEntity().save();
+        TestRootEntity rootEntity = ewm.createTestRootEntity().setOneToOneAssociation(reference).save();
+        indexingQueueItemsTracker.clear();
+
+        ewm.wrap(reference).setTextValue("Some text value").save();
+        Assert.assertTrue(indexingQueueItemsTracker.containsAnyQueueItemsForEntityAndOperation(reference, IndexingOperation.CASCADE));
+        Assert.assertTrue(indexingQueueItemsTracker.containsQueueItemsForEntityAndOperation(rootEntity, IndexingOperation.INDEX, 0));
+    }
+
+    @Test
+    @DisplayName("Processing of cascade item leads to enqueueing of all dependent entities")
+    public void processCascadeItem() {
+        TestReferenceEntity reference = ewm.createTestReferenceEntity().save();
+        TestRootEntity firstRootEntity = ewm.createTestRootEntity().setOneToOneAssociation(reference).save();
+        TestRootEntity secondRootEntity = ewm.createTestRootEntity().setOneToManyAssociation(reference).save();
+        TestRootEntity notDependentRootEntity = ewm.createTestRootEntity().save();
+        indexingQueueManager.processEntireQueue();
+        ewm.wrap(reference).setTextValue("Some text value").save();
+        indexingQueueItemsTracker.clear();
+
+        indexingQueueManager.processEntireQueue();
+        Assert.assertTrue(indexingQueueItemsTracker.containsQueueItemsForEntityAndOperation(firstRootEntity, IndexingOperation.INDEX, 1));
+        Assert.assertTrue(indexingQueueItemsTracker.containsQueueItemsForEntityAndOperation(secondRootEntity, IndexingOperation.INDEX, 1));
+        Assert.assertTrue(indexingQueueItemsTracker.containsQueueItemsForEntityAndOperation(notDependentRootEntity, IndexingOperation.INDEX, 0));
+        Assert.assertEquals(0, countQueueItems(IndexingOperation.CASCADE));
+    }
+
+    @Test
+    @DisplayName("Cascade item stays in queue while index of dependent entity is unavailable")
+    public void processCascadeItemWithUnavailableDependentIndex() {
+        TestReferenceEntity reference = ewm.createTestReferenceEntity().save();
+        TestRootEntity rootEntity = ewm.createTestRootEntity().setOneToOneAssociation(reference).save();
+        ewm.wrap(reference).setTextValue("Some text value").save();
+        indexingQueueItemsTracker.clear();
+        indexStateRegistry.markIndexAsUnavailable("test_RootEntity");
+
+        indexingQueueManager.processEntireQueue();
+        Assert.assertTrue(indexingQueueItemsTracker.containsQueueItemsForEntityAndOperation(rootEntity, IndexingOperation.INDEX, 0));
+        Assert.assertTrue(countQueueItems(IndexingOperation.CASCADE) > 0);
+
+        indexStateRegistry.markIndexAsAvailable("test_RootEntity");
+        indexingQueueManager.processEntireQueue();
+        Assert.assertTrue(indexingQueueItemsTracker.containsQueueItemsForEntityAndOperation(rootEntity, IndexingOperation.INDEX, 1));
+        Assert.assertEquals(0, countQueueItems(IndexingOperation.CASCADE));
+    }
+
+    protected int countQueueItems(IndexingOperation operation) {
+        Integer count = new JdbcTemplate(dataSource).queryForObject(
+                "select count(*) from SEARCH_INDEXING_QUEUE where OPERATION = ?", Integer.class, operation.getId());
+        return count == null ? 0 : count;
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2021 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package indexing_queue;
+
+import io.jmix.core.Id;
+import io.jmix.core.UuidProvider;
+import io.jmix.search.index.impl.IndexStateRegistry;
+import io.jmix.search.index.queue.impl.IndexingOperation;
+import org.elasticsearch.action.DocWriteRequest;
+import org.junit.Assert;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import test_support.IndexingQueueTestConfiguration;
+import test_support.TestBulkRequestsTracker;
+import test_support.TestJpaIndexingQueueManager;
+import test_support.entity.TestRootEntity;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Amount of items exceeds the max size of 'in' list of statements deleting queue items.
+ */
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(
+        classes = {IndexingQueueTestConfiguration.class}
+)
+@TestPropertySource(properties = {
+        "jmix.search.processQueueBatchSize=2000"
+})
+public class IndexingQueueChunkedDeleteTest {
+
+    private static final int ITEMS_COUNT = 1203;
+
+    @Autowired
+    TestJpaIndexingQueueManager indexingQueueManager;
+    @Autowired
+    IndexStateRegistry indexStateRegistry;
+    @Autowired
+    TestBulkRequestsTracker bulkRequestsTracker;
+    @Autowired
+    DataSource dataSource;
+
+    @BeforeEach
+    public void setUp() {
+        new JdbcTemplate(dataSource).update("delete from SEARCH_INDEXING_QUEUE");
+        indexStateRegistry.markIndexAsAvailable("test_RootEntity");
+        bulkRequestsTracker.clear();
+        indexingQueueManager.clearDequeueTracking();
+    }
+
+    @Test
+    @DisplayName("All processed items are deleted from queue in single batch")
+    public void deleteProcessedItems() {
+        indexingQueueManager.enqueueDeleteCollectionByEntityIds(createEntityIds());
+        Assert.assertEquals(ITEMS_COUNT, getQueueSize(IndexingOperation.DELETE));
+
+        int processed = indexingQueueManager.processEntireQueue();
+
+        Assert.assertEquals(ITEMS_COUNT, processed);
+        Assert.assertEquals(0, getQueueSize());
+        long deleteActions = bulkRequestsTracker.getBulkRequests().stream()
+                .flatMap(request -> request.requests().stream())
+                .map(DocWriteRequest::opType)
+                .filter(opType -> opType == DocWriteRequest.OpType.DELETE)
+                .count();
+        Assert.assertEquals(ITEMS_COUNT, deleteActions);
+        // rows of the whole batch are deleted by set-based statements of single invocation
+        Assert.assertEquals(Collections.singletonList(ITEMS_COUNT), indexingQueueManager.getDeletedItemsCounts());
+    }
+
+    @Test
+    @DisplayName("All pending items superseded by enqueued items are deleted")
+    public void deleteSupersededItems() {
+        List<Id<?>> entityIds = createEntityIds();
+        indexingQueueManager.enqueueDeleteCollectionByEntityIds(entityIds);
+
+        indexingQueueManager.enqueueIndexCollectionByEntityIds(entityIds);
+
+        Assert.assertEquals(0, getQueueSize(IndexingOperation.DELETE));
+        Assert.assertEquals(ITEMS_COUNT, getQueueSize(IndexingOperation.INDEX));
+    }
+
+    protected List<Id<?>> createEntityIds() {
+        List<Id<?>> entityIds = new ArrayList<>(ITEMS_COUNT);
+        for (int i = 0; i < ITEMS_COUNT; i++) {
+            entityIds.add(Id.of(UuidProvider.createUuid(), TestRootEntity.class));
+        }
+        return entityIds;
+    }
+
+    protected int getQueueSize() {
+        Integer count = new JdbcTemplate(dataSource).queryForObject(
+                "select count(*) from SEARCH_INDEXING_QUEUE", Integer.class);
+        return count == null ? 0 : count;
+    }
+
+    protected int getQueueSize(IndexingOperation operation) {
+        Integer count = new JdbcTemplate(dataSource).queryForObject(
+                "select count(*) from SEARCH_INDEXING_QUEUE where OPERATION = ?", Integer.class, operation.getId());
+        return count == null ? 0 : count;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2021 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package indexing_queue;
+
+import io.jmix.core.Id;
+import io.jmix.core.IdSerialization;
+import io.jmix.search.index.impl.IndexStateRegistry;
+import io.jmix.search.index.queue.IndexingQueueManager;
+import io.jmix.search.index.queue.impl.IndexingOperation;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.junit.Assert;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import test_support.IndexingQueueTestConfiguration;
+import test_support.TestBulkRequestsTracker;
+import test_support.TestEntityWrapperManager;
+import test_support.entity.TestRootEntity;
+
+import javax.sql.DataSource;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(
+        classes = {IndexingQueueTestConfiguration.class}
+)
+@TestPropertySource(properties = {
+        "jmix.search.indexingQueueCoalescingEnabled=true"
+})
+public class IndexingQueueCoalescingTest {
+
+    @Autowired
+    TestEntityWrapperManager ewm;
+    @Autowired
+    IndexingQueueManager indexingQueueManager;
+    @Autowired
+    IndexStateRegistry indexStateRegistry;
+    @Autowired
+    TestBulkRequestsTracker bulkRequestsTracker;
+    @Autowired
+    IdSerialization idSerialization;
+    @Autowired
+    DataSource dataSource;
+
+    @BeforeEach
+    public void setUp() {
+        new JdbcTemplate(dataSource).update("delete from SEARCH_INDEXING_QUEUE");
+        indexStateRegistry.markIndexAsAvailable("test_RootEntity");
+        bulkRequestsTracker.clear();
+    }
+
+    @Test
+    @DisplayName("Queue contains single item of entity instance updated several times")
+    public void updateEntitySeveralTimes() {
+        TestRootEntity entity = ewm.createTestRootEntity().save();
+        for (int i = 0; i < 5; i++) {
+            ewm.wrap(entity).setTextValue("Text value " + i).save();
+        }
+
+        Assert.assertEquals(1, getQueueOperations(entity).size());
+    }
+
+    @Test
+    @DisplayName("Queue contains single item of entity instance enqueued several times")
+    public void enqueueEntitySeveralTimes() {
+        TestRootEntity entity = ewm.createTestRootEntity().save();
+        TestRootEntity otherEntity = ewm.createTestRootEntity().save();
+        for (int i = 0; i < 5; i++) {
+            indexingQueueManager.enqueueIndex(entity);
+            indexingQueueManager.enqueueIndex(otherEntity);
+        }
+
+        Assert.assertEquals(1, getQueueOperations(entity).size());
+        Assert.assertEquals(1, getQueueOperations(otherEntity).size());
+    }
+
+    @Test
+    @DisplayName("Index item enqueued after delete item of the same instance supersedes it")
+    public void enqueueIndexAfterDelete() {
+        TestRootEntity entity = ewm.createTestRootEntity().save();
+        indexingQueueManager.enqueueDelete(entity);
+        Assert.assertEquals(Collections.singletonList(IndexingOperation.DELETE.getId()), getQueueOperations(entity));
+
+        indexingQueueManager.enqueueIndex(entity);
+        Assert.assertEquals(Collections.singletonList(IndexingOperation.INDEX.getId()), getQueueOperations(entity));
+
+        indexingQueueManager.processEntireQueue();
+        List<DocWriteRequest<?>> requests = getDocumentRequests(entity);
+        Assert.assertTrue(requests.stream().anyMatch(request -> request instanceof IndexRequest));
+        Assert.assertTrue(requests.stream().noneMatch(request -> request instanceof DeleteRequest));
+        Assert.assertTrue(getQueueOperations(entity).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Delete item enqueued after index item of the same instance supersedes it")
+    public void enqueueDeleteAfterIndex() {
+        TestRootEntity entity = ewm.createTestRootEntity().save();
+        indexingQueueManager.enqueueIndex(entity);
+        indexingQueueManager.enqueueDelete(entity);
+        Assert.assertEquals(Collections.singletonList(IndexingOperation.DELETE.getId()), getQueueOperations(entity));
+
+        indexingQueueManager.processEntireQueue();
+        List<DocWriteRequest<?>> requests = getDocumentRequests(entity);
+        Assert.assertTrue(requests.stream().anyMatch(request -> request instanceof DeleteRequest));
+        Assert.assertTrue(requests.stream().noneMatch(request -> request instanceof IndexRequest));
+    }
+
+    protected List<String> getQueueOperations(TestRootEntity entity) {
+        return new JdbcTemplate(dataSource).queryForList(
+                "select OPERATION from SEARCH_INDEXING_QUEUE where ENTITY_ID = ?",
+                String.class, idSerialization.idToString(Id.of(entity)));
+    }
+
+    protected List<DocWriteRequest<?>> getDocumentRequests(TestRootEntity entity) {
+        String indexId = idSerialization.idToString(Id.of(entity));
+        return bulkRequestsTracker.getBulkRequests().stream()
+                .flatMap(bulkRequest -> bulkRequest.requests().stream())
+                .filter(request -> indexId.equals(request.id()))
+                .collect(Collectors.toList());
+    }
+}
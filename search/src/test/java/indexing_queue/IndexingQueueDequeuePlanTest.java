@@ -0,0 +1,159 @@
+/*
+ * Copyright 2021 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package indexing_queue;
+
+import io.jmix.core.DataManager;
+import io.jmix.core.LoadContext;
+import io.jmix.search.index.impl.IndexStateRegistry;
+import io.jmix.search.index.queue.entity.IndexingQueueItem;
+import io.jmix.search.index.queue.impl.IndexingOperation;
+import org.eclipse.persistence.internal.sessions.AbstractSession;
+import org.eclipse.persistence.jpa.JpaEntityManager;
+import org.eclipse.persistence.jpa.JpaQuery;
+import org.eclipse.persistence.queries.DatabaseQuery;
+import org.eclipse.persistence.sessions.DatabaseRecord;
+import org.junit.Assert;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import test_support.IndexingQueueTestConfiguration;
+import test_support.TestJpaIndexingQueueManager;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Checks plans of the SQL statements generated from load contexts which are actually used for dequeueing.
+ */
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(
+        classes = {IndexingQueueTestConfiguration.class}
+)
+public class IndexingQueueDequeuePlanTest {
+
+    private static final String NOT_INDEXED_ENTITY = "test_ReferenceEntity";
+    private static final String UNAVAILABLE_ENTITY = "test_UnavailableEntity";
+
+    @Autowired
+    TestJpaIndexingQueueManager indexingQueueManager;
+    @Autowired
+    IndexStateRegistry indexStateRegistry;
+    @Autowired
+    DataManager dataManager;
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+    @Autowired
+    DataSource dataSource;
+
+    @BeforeEach
+    public void setUp() {
+        new JdbcTemplate(dataSource).update("delete from SEARCH_INDEXING_QUEUE");
+        indexStateRegistry.markIndexAsAvailable("test_RootEntity");
+        indexingQueueManager.clearDequeueTracking();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        indexStateRegistry.markIndexAsAvailable(UNAVAILABLE_ENTITY);
+    }
+
+    @Test
+    @DisplayName("Dequeue of all entities is performed by index on creation date")
+    public void dequeueAllEntitiesUsesCreatedDateIndex() {
+        indexingQueueManager.processEntireQueue();
+
+        List<LoadContext<IndexingQueueItem>> loadContexts = indexingQueueManager.getDequeueLoadContexts();
+        Assert.assertEquals(1, loadContexts.size());
+        String plan = explain(loadContexts.get(0));
+        Assert.assertTrue(plan, plan.contains("IDX_SEARCH_IDXNG_QUEUE_CR_DATE"));
+    }
+
+    @Test
+    @DisplayName("Dequeue while some index is unavailable is split per entity, each performed by index on entity name and creation date")
+    public void dequeueWithUnavailableIndexUsesEntityNameCreatedDateIndex() {
+        indexStateRegistry.markIndexAsUnavailable(UNAVAILABLE_ENTITY);
+
+        indexingQueueManager.processEntireQueue();
+
+        List<LoadContext<IndexingQueueItem>> entityLoadContexts = indexingQueueManager.getDequeueLoadContexts().stream()
+                .filter(loadContext -> Objects.requireNonNull(loadContext.getQuery()).getParameters().containsKey("entityName"))
+                .collect(Collectors.toList());
+        Assert.assertEquals(1, entityLoadContexts.size());
+        LoadContext<IndexingQueueItem> loadContext = entityLoadContexts.get(0);
+        Assert.assertEquals("test_RootEntity", Objects.requireNonNull(loadContext.getQuery()).getParameters().get("entityName"));
+
+        String sql = translateToSql(loadContext);
+        Assert.assertTrue(sql, sql.contains("OPERATION <> "));
+        String plan = explain(loadContext);
+        Assert.assertTrue(plan, plan.contains("IDX_SEARCH_IDXNG_QUEUE_E_N_CR"));
+    }
+
+    @Test
+    @DisplayName("Items of not indexed entities are dequeued while some index is unavailable")
+    public void dequeueNotIndexedEntityItemsWithUnavailableIndex() {
+        IndexingQueueItem queueItem = dataManager.create(IndexingQueueItem.class);
+        queueItem.setEntityName(NOT_INDEXED_ENTITY);
+        queueItem.setEntityId("1");
+        queueItem.setOperation(IndexingOperation.INDEX);
+        dataManager.save(queueItem);
+        indexStateRegistry.markIndexAsUnavailable(UNAVAILABLE_ENTITY);
+
+        indexingQueueManager.processEntireQueue();
+
+        List<String> dequeuedEntityNames = indexingQueueManager.getDequeuedItems().stream()
+                .map(IndexingQueueItem::getEntityName)
+                .collect(Collectors.toList());
+        Assert.assertTrue(dequeuedEntityNames.toString(), dequeuedEntityNames.contains(NOT_INDEXED_ENTITY));
+    }
+
+    protected String explain(LoadContext<IndexingQueueItem> loadContext) {
+        String sql = translateToSql(loadContext) + " limit " + Objects.requireNonNull(loadContext.getQuery()).getMaxResults();
+        List<String> planLines = new JdbcTemplate(dataSource).queryForList("explain plan for " + sql, String.class);
+        return String.join("\n", planLines);
+    }
+
+    /**
+     * Translates JPQL query of the load context with its parameter values into SQL the same way EclipseLink does.
+     */
+    protected String translateToSql(LoadContext<IndexingQueueItem> loadContext) {
+        LoadContext.Query query = Objects.requireNonNull(loadContext.getQuery());
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            JpaEntityManager jpaEntityManager = entityManager.unwrap(JpaEntityManager.class);
+            AbstractSession session = (AbstractSession) jpaEntityManager.getActiveSession();
+            DatabaseQuery databaseQuery = ((JpaQuery<?>) jpaEntityManager.createQuery(query.getQueryString())).getDatabaseQuery();
+            databaseQuery.prepareCall(session, new DatabaseRecord());
+            List<Object> arguments = databaseQuery.getArguments().stream()
+                    .map(argument -> query.getParameters().get(argument))
+                    .collect(Collectors.toList());
+            return databaseQuery.getTranslatedSQLString(session, databaseQuery.rowFromArguments(arguments, session));
+        } finally {
+            entityManager.close();
+        }
+    }
+}
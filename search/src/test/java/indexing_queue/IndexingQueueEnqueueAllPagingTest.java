@@ -0,0 +1,164 @@
+/*
+ * Copyright 2021 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package indexing_queue;
+
+import io.jmix.core.DataManager;
+import io.jmix.core.Id;
+import io.jmix.core.IdSerialization;
+import io.jmix.core.Metadata;
+import io.jmix.search.index.queue.IndexingQueueManager;
+import org.junit.Assert;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import test_support.IndexingQueueTestConfiguration;
+import test_support.TestEntityWrapperManager;
+import test_support.entity.TestRootEntity;
+import test_support.entity.indexing.TestCompositeKey;
+import test_support.entity.indexing.TestCompositePkEntity;
+
+import javax.sql.DataSource;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(
+        classes = {IndexingQueueTestConfiguration.class}
+)
+@TestPropertySource(properties = {
+        "jmix.search.reindexEntityEnqueueBatchSize=3"
+})
+public class IndexingQueueEnqueueAllPagingTest {
+
+    private static final String ROOT_ENTITY_NAME = "test_RootEntity";
+    private static final String COMPOSITE_PK_ENTITY_NAME = "test_CompositePkEntity";
+
+    @Autowired
+    TestEntityWrapperManager ewm;
+    @Autowired
+    IndexingQueueManager indexingQueueManager;
+    @Autowired
+    DataManager dataManager;
+    @Autowired
+    Metadata metadata;
+    @Autowired
+    IdSerialization idSerialization;
+    @Autowired
+    DataSource dataSource;
+
+    @BeforeEach
+    public void setUp() {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.update("delete from SEARCH_INDEXING_QUEUE");
+        jdbcTemplate.update("delete from SEARCH_ENQUEUEING_SESSION");
+    }
+
+    @Test
+    @DisplayName("Instances with simple primary key are enqueued by several keyset pages without duplicates")
+    public void enqueueByKeysetPages() {
+        for (int i = 0; i < 10; i++) {
+            ewm.createTestRootEntity().save();
+        }
+        Set<String> allIds = dataManager.loadValue("select e.id from test_RootEntity e", UUID.class)
+                .list()
+                .stream()
+                .map(id -> idSerialization.idToString(Id.of(id, TestRootEntity.class)))
+                .collect(Collectors.toSet());
+        clearQueue();
+
+        int enqueued = indexingQueueManager.enqueueIndexAll(ROOT_ENTITY_NAME);
+
+        Assert.assertEquals(allIds.size(), enqueued);
+        Assert.assertEquals(allIds.size(), getQueueSize(ROOT_ENTITY_NAME));
+        Assert.assertEquals(allIds, getQueueEntityIds(ROOT_ENTITY_NAME));
+    }
+
+    @Test
+    @DisplayName("Instances with composite primary key are enqueued by several offset pages without duplicates")
+    public void enqueueCompositePkByOffsetPages() {
+        String pkName = UUID.randomUUID().toString();
+        for (long version = 1; version <= 7; version++) {
+            createCompositePkEntity(pkName, version);
+        }
+        Set<String> allIds = dataManager.load(TestCompositePkEntity.class)
+                .all()
+                .list()
+                .stream()
+                .map(entity -> idSerialization.idToString(Id.of(entity)))
+                .collect(Collectors.toSet());
+        clearQueue();
+
+        int enqueued = indexingQueueManager.enqueueIndexAll(COMPOSITE_PK_ENTITY_NAME);
+
+        Assert.assertEquals(allIds.size(), enqueued);
+        Assert.assertEquals(allIds.size(), getQueueSize(COMPOSITE_PK_ENTITY_NAME));
+        Assert.assertEquals(allIds, getQueueEntityIds(COMPOSITE_PK_ENTITY_NAME));
+        Assert.assertEquals(0, getSessionsCount());
+    }
+
+    @Test
+    @DisplayName("Enqueueing of entity with composite primary key isn't resumed")
+    public void resumeCompositePk() {
+        createCompositePkEntity(UUID.randomUUID().toString(), 1L);
+        clearQueue();
+
+        int enqueued = indexingQueueManager.resumeEnqueueIndexAll(COMPOSITE_PK_ENTITY_NAME);
+
+        Assert.assertEquals(0, enqueued);
+        Assert.assertEquals(0, getQueueSize(COMPOSITE_PK_ENTITY_NAME));
+    }
+
+    protected void createCompositePkEntity(String pkName, long pkVersion) {
+        TestCompositeKey compositeKey = metadata.create(TestCompositeKey.class);
+        compositeKey.setPkName(pkName);
+        compositeKey.setPkVersion(pkVersion);
+        TestCompositePkEntity entity = metadata.create(TestCompositePkEntity.class);
+        entity.setName("Composite PK entity " + pkVersion);
+        entity.setId(compositeKey);
+        dataManager.save(entity);
+    }
+
+    protected void clearQueue() {
+        new JdbcTemplate(dataSource).update("delete from SEARCH_INDEXING_QUEUE");
+    }
+
+    protected Set<String> getQueueEntityIds(String entityName) {
+        return new HashSet<>(new JdbcTemplate(dataSource).queryForList(
+                "select ENTITY_ID from SEARCH_INDEXING_QUEUE where ENTITY_NAME = ?", String.class, entityName));
+    }
+
+    protected int getQueueSize(String entityName) {
+        Integer count = new JdbcTemplate(dataSource).queryForObject(
+                "select count(*) from SEARCH_INDEXING_QUEUE where ENTITY_NAME = ?", Integer.class, entityName);
+        return count == null ? 0 : count;
+    }
+
+    protected int getSessionsCount() {
+        Integer count = new JdbcTemplate(dataSource).queryForObject(
+                "select count(*) from SEARCH_ENQUEUEING_SESSION", Integer.class);
+        return count == null ? 0 : count;
+    }
+}
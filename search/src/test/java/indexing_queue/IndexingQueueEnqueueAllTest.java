@@ -0,0 +1,152 @@
+/*
+ * Copyright 2021 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package indexing_queue;
+
+import io.jmix.core.DataManager;
+import io.jmix.core.Id;
+import io.jmix.core.IdSerialization;
+import io.jmix.core.Metadata;
+import io.jmix.search.index.queue.IndexingQueueManager;
+import io.jmix.search.index.queue.entity.EnqueueingSession;
+import org.junit.Assert;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import test_support.IndexingQueueTestConfiguration;
+import test_support.TestEntityWrapperManager;
+import test_support.entity.TestRootEntity;
+
+import javax.sql.DataSource;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(
+        classes = {IndexingQueueTestConfiguration.class}
+)
+public class IndexingQueueEnqueueAllTest {
+
+    private static final String ENTITY_NAME = "test_RootEntity";
+
+    @Autowired
+    TestEntityWrapperManager ewm;
+    @Autowired
+    IndexingQueueManager indexingQueueManager;
+    @Autowired
+    DataManager dataManager;
+    @Autowired
+    Metadata metadata;
+    @Autowired
+    IdSerialization idSerialization;
+    @Autowired
+    DataSource dataSource;
+
+    @BeforeEach
+    public void setUp() {
+        for (int i = 0; i < 4; i++) {
+            ewm.createTestRootEntity().save();
+        }
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.update("delete from SEARCH_INDEXING_QUEUE");
+        jdbcTemplate.update("delete from SEARCH_ENQUEUEING_SESSION");
+    }
+
+    @Test
+    @DisplayName("'Enqueue all' enqueues every instance and removes its session")
+    public void enqueueAll() {
+        List<String> allIds = loadSortedIndexIds();
+
+        int enqueued = indexingQueueManager.enqueueIndexAll(ENTITY_NAME);
+
+        Assert.assertEquals(allIds.size(), enqueued);
+        Assert.assertEquals(new HashSet<>(allIds), getQueueEntityIds());
+        Assert.assertEquals(0, getSessionsCount());
+    }
+
+    @Test
+    @DisplayName("Interrupted 'enqueue all' is resumed after the last enqueued instance")
+    public void resumeEnqueueAll() {
+        List<String> allIds = loadSortedIndexIds();
+        int lastEnqueuedSlot = allIds.size() / 2;
+        createSession(allIds.get(lastEnqueuedSlot), lastEnqueuedSlot + 1);
+
+        int enqueued = indexingQueueManager.resumeEnqueueIndexAll(ENTITY_NAME);
+
+        Set<String> expectedIds = new HashSet<>(allIds.subList(lastEnqueuedSlot + 1, allIds.size()));
+        Assert.assertEquals(expectedIds.size(), enqueued);
+        Assert.assertEquals(expectedIds, getQueueEntityIds());
+        Assert.assertEquals(0, getSessionsCount());
+    }
+
+    @Test
+    @DisplayName("Sessions of all entities are resumed")
+    public void resumeEnqueueAllEntities() {
+        List<String> allIds = loadSortedIndexIds();
+        createSession(allIds.get(0), 1);
+
+        int enqueued = indexingQueueManager.resumeEnqueueIndexAll();
+
+        Assert.assertEquals(allIds.size() - 1, enqueued);
+        Assert.assertFalse(getQueueEntityIds().contains(allIds.get(0)));
+        Assert.assertEquals(0, getSessionsCount());
+    }
+
+    @Test
+    @DisplayName("Nothing is enqueued on resume if there is no interrupted session")
+    public void resumeWithoutSession() {
+        int enqueued = indexingQueueManager.resumeEnqueueIndexAll(ENTITY_NAME);
+
+        Assert.assertEquals(0, enqueued);
+        Assert.assertTrue(getQueueEntityIds().isEmpty());
+    }
+
+    protected List<String> loadSortedIndexIds() {
+        return dataManager.loadValue("select e.id from test_RootEntity e order by e.id", UUID.class)
+                .list()
+                .stream()
+                .map(id -> idSerialization.idToString(Id.of(id, TestRootEntity.class)))
+                .collect(Collectors.toList());
+    }
+
+    protected void createSession(String lastEnqueuedId, long enqueuedCount) {
+        EnqueueingSession session = metadata.create(EnqueueingSession.class);
+        session.setEntityName(ENTITY_NAME);
+        session.setLastEnqueuedId(lastEnqueuedId);
+        session.setEnqueuedCount(enqueuedCount);
+        dataManager.save(session);
+    }
+
+    protected Set<String> getQueueEntityIds() {
+        return new HashSet<>(new JdbcTemplate(dataSource).queryForList(
+                "select ENTITY_ID from SEARCH_INDEXING_QUEUE where ENTITY_NAME = ?", String.class, ENTITY_NAME));
+    }
+
+    protected int getSessionsCount() {
+        Integer count = new JdbcTemplate(dataSource).queryForObject(
+                "select count(*) from SEARCH_ENQUEUEING_SESSION", Integer.class);
+        return count == null ? 0 : count;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2021 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package indexing_queue;
+
+import io.jmix.search.index.impl.IndexStateRegistry;
+import io.jmix.search.index.queue.IndexingQueueManager;
+import org.junit.Assert;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import test_support.IndexingQueueTestConfiguration;
+import test_support.TestBulkRequestsTracker;
+import test_support.TestEntityIndexer;
+import test_support.TestEntityWrapperManager;
+
+import javax.sql.DataSource;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(
+        classes = {IndexingQueueTestConfiguration.class}
+)
+@TestPropertySource(properties = {
+        "jmix.search.processQueueThreadsCount=2",
+        "jmix.search.maxInFlightBulkRequests=1"
+})
+public class IndexingQueueInFlightLimitTest {
+
+    private static final int ENTITIES_COUNT = 40;
+
+    @Autowired
+    TestEntityWrapperManager ewm;
+    @Autowired
+    IndexingQueueManager indexingQueueManager;
+    @Autowired
+    IndexStateRegistry indexStateRegistry;
+    @Autowired
+    TestEntityIndexer entityIndexer;
+    @Autowired
+    TestBulkRequestsTracker bulkRequestsTracker;
+    @Autowired
+    DataSource dataSource;
+
+    @BeforeEach
+    public void setUp() {
+        new JdbcTemplate(dataSource).update("delete from SEARCH_INDEXING_QUEUE");
+        indexStateRegistry.markIndexAsAvailable("test_RootEntity");
+        bulkRequestsTracker.clear();
+        entityIndexer.resetTracking();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        entityIndexer.resetTracking();
+    }
+
+    @Test
+    @DisplayName("Amount of bulk requests in flight doesn't exceed the limit while several workers process queue")
+    public void inFlightBulkRequestsAreLimited() {
+        for (int i = 0; i < ENTITIES_COUNT; i++) {
+            ewm.createTestRootEntity().save();
+        }
+
+        ScheduledExecutorService responseExecutor = Executors.newSingleThreadScheduledExecutor();
+        entityIndexer.setBulkResponseExecutor(response -> responseExecutor.schedule(response, 50, TimeUnit.MILLISECONDS));
+        int processed;
+        try {
+            processed = indexingQueueManager.processEntireQueue();
+        } finally {
+            responseExecutor.shutdown();
+        }
+
+        Assert.assertEquals(ENTITIES_COUNT, processed);
+        Assert.assertEquals(1, entityIndexer.getMaxInFlightBulkRequests());
+        Assert.assertEquals(0, entityIndexer.getInFlightBulkRequests());
+        Assert.assertEquals(4, bulkRequestsTracker.getBulkRequests().size());
+        Integer queueSize = new JdbcTemplate(dataSource).queryForObject("select count(*) from SEARCH_INDEXING_QUEUE", Integer.class);
+        Assert.assertEquals(Integer.valueOf(0), queueSize);
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2021 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package indexing_queue;
+
+import io.jmix.core.Id;
+import io.jmix.core.IdSerialization;
+import io.jmix.core.Stores;
+import io.jmix.data.StoreAwareLocator;
+import io.jmix.search.index.impl.IndexStateRegistry;
+import io.jmix.search.index.queue.IndexingQueueManager;
+import org.elasticsearch.action.index.IndexRequest;
+import org.junit.Assert;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.support.TransactionTemplate;
+import test_support.IndexingQueueTestConfiguration;
+import test_support.TestBulkRequestsTracker;
+import test_support.TestEntityWrapperManager;
+import test_support.entity.TestRootEntity;
+
+import javax.sql.DataSource;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(
+        classes = {IndexingQueueTestConfiguration.class}
+)
+public class IndexingQueueJdbcInsertTest {
+
+    @Autowired
+    TestEntityWrapperManager ewm;
+    @Autowired
+    IndexingQueueManager indexingQueueManager;
+    @Autowired
+    IndexStateRegistry indexStateRegistry;
+    @Autowired
+    TestBulkRequestsTracker bulkRequestsTracker;
+    @Autowired
+    StoreAwareLocator storeAwareLocator;
+    @Autowired
+    IdSerialization idSerialization;
+    @Autowired
+    DataSource dataSource;
+
+    TestRootEntity entity;
+
+    @BeforeEach
+    public void setUp() {
+        entity = ewm.createTestRootEntity().save();
+        new JdbcTemplate(dataSource).update("delete from SEARCH_INDEXING_QUEUE");
+        indexStateRegistry.markIndexAsAvailable("test_RootEntity");
+        bulkRequestsTracker.clear();
+    }
+
+    @Test
+    @DisplayName("Items inserted by JDBC are visible within the surrounding transaction")
+    public void insertWithinTransaction() {
+        TransactionTemplate transactionTemplate = storeAwareLocator.getTransactionTemplate(Stores.MAIN);
+        Integer countInTransaction = transactionTemplate.execute(status -> {
+            indexingQueueManager.enqueueIndex(entity);
+            return countQueueItems(storeAwareLocator.getJdbcTemplate(Stores.MAIN));
+        });
+
+        Assert.assertEquals(Integer.valueOf(1), countInTransaction);
+        Assert.assertEquals(1, countQueueItems(new JdbcTemplate(dataSource)));
+    }
+
+    @Test
+    @DisplayName("Items inserted by JDBC are rolled back with the surrounding transaction")
+    public void rollbackSurroundingTransaction() {
+        TransactionTemplate transactionTemplate = storeAwareLocator.getTransactionTemplate(Stores.MAIN);
+        transactionTemplate.executeWithoutResult(status -> {
+            indexingQueueManager.enqueueIndex(entity);
+            status.setRollbackOnly();
+        });
+
+        Assert.assertEquals(0, countQueueItems(new JdbcTemplate(dataSource)));
+    }
+
+    @Test
+    @DisplayName("Items inserted by JDBC are dequeued and processed")
+    public void processInsertedItems() {
+        indexingQueueManager.enqueueIndex(entity);
+        Integer withoutCreatedDate = new JdbcTemplate(dataSource).queryForObject(
+                "select count(*) from SEARCH_INDEXING_QUEUE where CREATED_DATE is null", Integer.class);
+        Assert.assertEquals(Integer.valueOf(0), withoutCreatedDate);
+
+        int processed = indexingQueueManager.processEntireQueue();
+        Assert.assertEquals(1, processed);
+        Assert.assertEquals(0, countQueueItems(new JdbcTemplate(dataSource)));
+
+        String indexId = idSerialization.idToString(Id.of(entity));
+        boolean indexed = bulkRequestsTracker.getBulkRequests().stream()
+                .flatMap(bulkRequest -> bulkRequest.requests().stream())
+                .anyMatch(request -> request instanceof IndexRequest && indexId.equals(request.id()));
+        Assert.assertTrue(indexed);
+    }
+
+    protected int countQueueItems(JdbcTemplate jdbcTemplate) {
+        Integer count = jdbcTemplate.queryForObject(
+                "select count(*) from SEARCH_INDEXING_QUEUE where ENTITY_ID = ?",
+                Integer.class, idSerialization.idToString(Id.of(entity)));
+        return count == null ? 0 : count;
+    }
+}
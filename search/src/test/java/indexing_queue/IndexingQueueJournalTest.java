@@ -0,0 +1,150 @@
+/*
+ * Copyright 2021 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package indexing_queue;
+
+import io.jmix.search.index.queue.impl.IndexingOperation;
+import io.jmix.search.index.queue.impl.IndexingQueueJournal;
+import io.jmix.search.index.queue.impl.IndexingQueueJournal.JournalRecord;
+import org.junit.Assert;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class IndexingQueueJournalTest {
+
+    private static final int SEGMENT_SIZE = 1024;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Records after checkpoint are restored on reopening of journal")
+    public void recordsAfterCheckpointAreRestored() throws IOException {
+        List<Long> positions = new ArrayList<>();
+        try (IndexingQueueJournal journal = openJournal()) {
+            for (int i = 0; i < 100; i++) {
+                positions.add(journal.append(IndexingOperation.INDEX, "test_Entity", "id-" + i));
+            }
+            journal.checkpoint(positions.get(60));
+        }
+
+        try (IndexingQueueJournal journal = new IndexingQueueJournal(directory, SEGMENT_SIZE)) {
+            List<JournalRecord> records = journal.open();
+            Assert.assertEquals(40, records.size());
+            Assert.assertEquals("id-60", records.get(0).getEntityId());
+            Assert.assertEquals("id-99", records.get(39).getEntityId());
+            Assert.assertEquals(positions.get(60).longValue(), records.get(0).getPosition());
+        }
+    }
+
+    @Test
+    @DisplayName("Segments before checkpoint are deleted")
+    public void consumedSegmentsAreDeleted() throws IOException {
+        try (IndexingQueueJournal journal = openJournal()) {
+            for (int i = 0; i < 100; i++) {
+                journal.append(IndexingOperation.INDEX, "test_Entity", "id-" + i);
+            }
+            Assert.assertTrue(getSegmentFiles().size() > 1);
+
+            journal.checkpoint(journal.getWritePosition());
+            Assert.assertEquals(1, getSegmentFiles().size());
+        }
+    }
+
+    @Test
+    @DisplayName("Corrupted record and the following records are discarded, journal continues after the last valid record")
+    public void corruptedTailIsDiscarded() throws IOException {
+        long corruptedPosition;
+        try (IndexingQueueJournal journal = openJournal()) {
+            journal.append(IndexingOperation.INDEX, "test_Entity", "id-1");
+            corruptedPosition = journal.append(IndexingOperation.DELETE, "test_Entity", "id-2");
+            journal.append(IndexingOperation.INDEX, "test_Entity", "id-3");
+        }
+        try (FileChannel channel = FileChannel.open(getSegmentFiles().get(0), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{1, 2, 3}), corruptedPosition + 12);
+        }
+
+        try (IndexingQueueJournal journal = new IndexingQueueJournal(directory, SEGMENT_SIZE)) {
+            List<JournalRecord> records = journal.open();
+            Assert.assertEquals(1, records.size());
+            Assert.assertEquals(corruptedPosition, journal.getWritePosition());
+
+            journal.append(IndexingOperation.DELETE, "test_Entity", "id-4");
+        }
+
+        try (IndexingQueueJournal journal = new IndexingQueueJournal(directory, SEGMENT_SIZE)) {
+            List<String> entityIds = journal.open().stream()
+                    .map(JournalRecord::getEntityId)
+                    .collect(Collectors.toList());
+            Assert.assertEquals(Arrays.asList("id-1", "id-4"), entityIds);
+        }
+    }
+
+    @Test
+    @DisplayName("Records of position range are re-read across segments in portions")
+    public void recordsAreReadInPortions() throws IOException {
+        try (IndexingQueueJournal journal = openJournal()) {
+            List<Long> positions = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                positions.add(journal.append(IndexingOperation.INDEX, "test_Entity", "id-" + i));
+            }
+            Assert.assertTrue(getSegmentFiles().size() > 1);
+
+            long toPosition = positions.get(90) + 1;
+            List<JournalRecord> records = new ArrayList<>();
+            long nextPosition = positions.get(10);
+            int portions = 0;
+            while (nextPosition < toPosition) {
+                nextPosition = journal.read(nextPosition, toPosition, 25, records);
+                portions++;
+            }
+
+            Assert.assertEquals(4, portions);
+            Assert.assertEquals(81, records.size());
+            Assert.assertEquals("id-10", records.get(0).getEntityId());
+            Assert.assertEquals("id-90", records.get(80).getEntityId());
+            Assert.assertEquals(positions.get(50).longValue(), records.get(40).getPosition());
+        }
+    }
+
+    protected IndexingQueueJournal openJournal() throws IOException {
+        IndexingQueueJournal journal = new IndexingQueueJournal(directory, SEGMENT_SIZE);
+        Assert.assertTrue(journal.open().isEmpty());
+        return journal;
+    }
+
+    protected List<Path> getSegmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".segment"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2021 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package indexing_queue;
+
+import io.jmix.search.index.impl.IndexStateRegistry;
+import io.jmix.search.index.queue.IndexingQueueManager;
+import org.junit.Assert;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import test_support.IndexingQueueTestConfiguration;
+import test_support.TestBulkRequestsTracker;
+import test_support.TestEntityIndexer;
+import test_support.TestEntityWrapperManager;
+
+import javax.sql.DataSource;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(
+        classes = {IndexingQueueTestConfiguration.class}
+)
+@TestPropertySource(properties = {
+        "jmix.search.processQueueThreadsCount=2",
+        "jmix.search.maxInFlightBulkRequests=4"
+})
+public class IndexingQueueParallelProcessingTest {
+
+    private static final int ENTITIES_COUNT = 40;
+    /**
+     * Workers count multiplied by the depth of processing pipeline
+     */
+    private static final int PARTITIONS_COUNT = 4;
+
+    @Autowired
+    TestEntityWrapperManager ewm;
+    @Autowired
+    IndexingQueueManager indexingQueueManager;
+    @Autowired
+    IndexStateRegistry indexStateRegistry;
+    @Autowired
+    TestEntityIndexer entityIndexer;
+    @Autowired
+    TestBulkRequestsTracker bulkRequestsTracker;
+    @Autowired
+    DataSource dataSource;
+
+    @BeforeEach
+    public void setUp() {
+        new JdbcTemplate(dataSource).update("delete from SEARCH_INDEXING_QUEUE");
+        indexStateRegistry.markIndexAsAvailable("test_RootEntity");
+        bulkRequestsTracker.clear();
+        entityIndexer.resetTracking();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        entityIndexer.resetTracking();
+    }
+
+    @Test
+    @DisplayName("Partitions are sent by worker threads, every worker takes the next partition without waiting for responses")
+    public void pipelinePartitions() throws InterruptedException {
+        for (int i = 0; i < ENTITIES_COUNT; i++) {
+            ewm.createTestRootEntity().save();
+        }
+
+        CountDownLatch responsesReleased = new CountDownLatch(1);
+        ExecutorService responseExecutor = Executors.newCachedThreadPool();
+        entityIndexer.setBulkResponseExecutor(response -> responseExecutor.execute(() -> {
+            await(responsesReleased);
+            response.run();
+        }));
+        // responses are held until requests of all partitions are in flight or timeout
+        Thread releaser = new Thread(() -> {
+            long deadline = System.currentTimeMillis() + 10000;
+            while (entityIndexer.getInFlightBulkRequests() < PARTITIONS_COUNT && System.currentTimeMillis() < deadline) {
+                sleep(10);
+            }
+            responsesReleased.countDown();
+        });
+        releaser.start();
+        int processed;
+        try {
+            processed = indexingQueueManager.processEntireQueue();
+        } finally {
+            responsesReleased.countDown();
+            releaser.join();
+            responseExecutor.shutdownNow();
+        }
+
+        Assert.assertEquals(ENTITIES_COUNT, processed);
+        Assert.assertEquals(PARTITIONS_COUNT, entityIndexer.getMaxInFlightBulkRequests());
+        Assert.assertEquals(PARTITIONS_COUNT, bulkRequestsTracker.getBulkRequests().size());
+        Assert.assertFalse(entityIndexer.getBulkRequestThreadNames().isEmpty());
+        for (String threadName : entityIndexer.getBulkRequestThreadNames()) {
+            Assert.assertTrue(threadName, threadName.startsWith("search-queue-processing-"));
+        }
+    }
+
+    protected void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    protected void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
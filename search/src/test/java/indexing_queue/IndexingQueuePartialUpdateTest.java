@@ -0,0 +1,186 @@
+/*
+ * Copyright 2021 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package indexing_queue;
+
+import io.jmix.core.Id;
+import io.jmix.core.IdSerialization;
+import io.jmix.search.index.impl.IndexStateRegistry;
+import io.jmix.search.index.queue.IndexingQueueManager;
+import io.jmix.search.index.queue.impl.IndexingOperation;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.rest.RestStatus;
+import org.junit.Assert;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import test_support.*;
+import test_support.entity.TestReferenceEntity;
+import test_support.entity.TestRootEntity;
+
+import javax.sql.DataSource;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(
+        classes = {IndexingQueueTestConfiguration.class}
+)
+@TestPropertySource(properties = {
+        "jmix.search.indexingQueuePartialUpdateEnabled=true"
+})
+public class IndexingQueuePartialUpdateTest {
+
+    @Autowired
+    TestIndexingQueueItemsTracker indexingQueueItemsTracker;
+    @Autowired
+    TestBulkRequestsTracker bulkRequestsTracker;
+    @Autowired
+    TestEntityIndexer entityIndexer;
+    @Autowired
+    TestEntityWrapperManager ewm;
+    @Autowired
+    IndexingQueueManager indexingQueueManager;
+    @Autowired
+    IndexStateRegistry indexStateRegistry;
+    @Autowired
+    IdSerialization idSerialization;
+    @Autowired
+    DataSource dataSource;
+
+    @BeforeEach
+    public void setUp() {
+        new JdbcTemplate(dataSource).update("delete from SEARCH_INDEXING_QUEUE");
+        indexStateRegistry.markIndexAsAvailable("test_RootEntity");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        entityIndexer.resetBulkResponseProvider();
+    }
+
+    @Test
+    @DisplayName("Processing of cascade item updates fields of dependent documents partially")
+    public void updateDependentDocumentsPartially() {
+        TestReferenceEntity reference = ewm.createTestReferenceEntity().save();
+        TestRootEntity firstRootEntity = ewm.createTestRootEntity().setOneToOneAssociation(reference).save();
+        TestRootEntity secondRootEntity = ewm.createTestRootEntity().setOneToManyAssociation(reference).save();
+        prepareCascadeItem(reference);
+        entityIndexer.setBulkResponseProvider(TestBulkResponses::success);
+
+        indexingQueueManager.processEntireQueue();
+
+        for (TestRootEntity rootEntity : new TestRootEntity[]{firstRootEntity, secondRootEntity}) {
+            List<DocWriteRequest<?>> requests = getDocumentRequests(rootEntity);
+            Assert.assertTrue(requests.stream().anyMatch(request -> request instanceof UpdateRequest));
+            Assert.assertTrue(requests.stream().noneMatch(request -> request instanceof IndexRequest));
+            Assert.assertTrue(indexingQueueItemsTracker.containsQueueItemsForEntityAndOperation(rootEntity, IndexingOperation.INDEX, 0));
+        }
+    }
+
+    @Test
+    @DisplayName("Partial document contains only fields affected by the changed reference")
+    public void partialDocumentContent() {
+        TestReferenceEntity reference = ewm.createTestReferenceEntity().save();
+        TestRootEntity firstRootEntity = ewm.createTestRootEntity().setOneToOneAssociation(reference).save();
+        TestRootEntity secondRootEntity = ewm.createTestRootEntity().setOneToManyAssociation(reference).save();
+        prepareCascadeItem(reference);
+        entityIndexer.setBulkResponseProvider(TestBulkResponses::success);
+
+        indexingQueueManager.processEntireQueue();
+
+        Map<String, Object> firstDocument = getPartialDocument(firstRootEntity);
+        Assert.assertEquals(Collections.singleton("oneToOneAssociation"), firstDocument.keySet());
+        Assert.assertTrue(String.valueOf(firstDocument.get("oneToOneAssociation")).contains("Some text value"));
+
+        Map<String, Object> secondDocument = getPartialDocument(secondRootEntity);
+        Assert.assertEquals(Collections.singleton("oneToManyAssociation"), secondDocument.keySet());
+        Assert.assertTrue(String.valueOf(secondDocument.get("oneToManyAssociation")).contains("Some text value"));
+    }
+
+    @Test
+    @DisplayName("Dependent document missing in index is indexed entirely")
+    public void indexMissingDependentDocument() {
+        TestReferenceEntity reference = ewm.createTestReferenceEntity().save();
+        TestRootEntity rootEntity = ewm.createTestRootEntity().setOneToOneAssociation(reference).save();
+        prepareCascadeItem(reference);
+        entityIndexer.setBulkResponseProvider(request -> TestBulkResponses.create(request,
+                action -> action instanceof UpdateRequest ? RestStatus.NOT_FOUND : null));
+
+        indexingQueueManager.processEntireQueue();
+
+        List<DocWriteRequest<?>> requests = getDocumentRequests(rootEntity);
+        Assert.assertTrue(requests.stream().anyMatch(request -> request instanceof UpdateRequest));
+        Assert.assertTrue(requests.stream().anyMatch(request -> request instanceof IndexRequest));
+        Assert.assertTrue(indexingQueueItemsTracker.containsQueueItemsForEntityAndOperation(rootEntity, IndexingOperation.INDEX, 0));
+    }
+
+    @Test
+    @DisplayName("Dependent document failed to be updated partially is enqueued for indexing")
+    public void enqueueFailedDependentDocument() {
+        TestReferenceEntity reference = ewm.createTestReferenceEntity().save();
+        TestRootEntity rootEntity = ewm.createTestRootEntity().setOneToOneAssociation(reference).save();
+        prepareCascadeItem(reference);
+        entityIndexer.setBulkResponseProvider(request -> TestBulkResponses.create(request,
+                action -> action instanceof UpdateRequest ? RestStatus.BAD_REQUEST : null));
+
+        indexingQueueManager.processEntireQueue();
+
+        Assert.assertTrue(indexingQueueItemsTracker.containsQueueItemsForEntityAndOperation(rootEntity, IndexingOperation.INDEX, 1));
+    }
+
+    /**
+     * Processes items of created entities and updates indexed property of the reference.
+     */
+    protected void prepareCascadeItem(TestReferenceEntity reference) {
+        indexingQueueManager.processEntireQueue();
+        ewm.wrap(reference).setTextValue("Some text value").save();
+        Assert.assertTrue(indexingQueueItemsTracker.containsAnyQueueItemsForEntityAndOperation(reference, IndexingOperation.CASCADE));
+        indexingQueueItemsTracker.clear();
+        bulkRequestsTracker.clear();
+    }
+
+    protected Map<String, Object> getPartialDocument(TestRootEntity entity) {
+        List<UpdateRequest> updateRequests = getDocumentRequests(entity).stream()
+                .filter(request -> request instanceof UpdateRequest)
+                .map(request -> (UpdateRequest) request)
+                .collect(Collectors.toList());
+        Assert.assertEquals(1, updateRequests.size());
+        UpdateRequest updateRequest = updateRequests.get(0);
+        Assert.assertFalse(updateRequest.docAsUpsert());
+        return updateRequest.doc().sourceAsMap();
+    }
+
+    protected List<DocWriteRequest<?>> getDocumentRequests(TestRootEntity entity) {
+        String indexId = idSerialization.idToString(Id.of(entity));
+        return bulkRequestsTracker.getBulkRequests().stream()
+                .flatMap(bulkRequest -> bulkRequest.requests().stream())
+                .filter(request -> indexId.equals(request.id()))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2021 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package indexing_queue;
+
+import io.jmix.search.index.queue.impl.IndexingQueueRingBuffer;
+import org.junit.Assert;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class IndexingQueueRingBufferTest {
+
+    @Test
+    @DisplayName("Capacity is rounded up to the power of two")
+    public void capacityIsRoundedUp() {
+        Assert.assertEquals(1, new IndexingQueueRingBuffer<String>(1).getCapacity());
+        Assert.assertEquals(8, new IndexingQueueRingBuffer<String>(5).getCapacity());
+        Assert.assertEquals(8, new IndexingQueueRingBuffer<String>(8).getCapacity());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new IndexingQueueRingBuffer<String>(0));
+    }
+
+    @Test
+    @DisplayName("Elements aren't offered to full buffer until space is released")
+    public void overflow() {
+        IndexingQueueRingBuffer<String> buffer = new IndexingQueueRingBuffer<>(4);
+        for (int i = 0; i < 4; i++) {
+            Assert.assertTrue(buffer.offer("element-" + i));
+        }
+
+        Assert.assertFalse(buffer.offer("overflow"));
+        Assert.assertEquals(4, buffer.size());
+
+        Assert.assertEquals("element-0", buffer.poll());
+        Assert.assertTrue(buffer.offer("element-4"));
+        Assert.assertFalse(buffer.offer("overflow"));
+
+        List<String> elements = new ArrayList<>();
+        Assert.assertEquals(4, buffer.drainTo(elements, 10));
+        Assert.assertEquals(Arrays.asList("element-1", "element-2", "element-3", "element-4"), elements);
+        Assert.assertTrue(buffer.isEmpty());
+        Assert.assertNull(buffer.poll());
+    }
+
+    @Test
+    @DisplayName("Elements are polled in FIFO order after wrapping around the buffer")
+    public void wrapAround() {
+        IndexingQueueRingBuffer<Integer> buffer = new IndexingQueueRingBuffer<>(4);
+        int next = 0;
+        for (int cycle = 0; cycle < 10; cycle++) {
+            for (int i = 0; i < 3; i++) {
+                Assert.assertTrue(buffer.offer(next + i));
+            }
+            for (int i = 0; i < 3; i++) {
+                Assert.assertEquals(Integer.valueOf(next + i), buffer.poll());
+            }
+            next += 3;
+        }
+        Assert.assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    @DisplayName("Amount of drained elements is limited")
+    public void drainLimitedAmount() {
+        IndexingQueueRingBuffer<Integer> buffer = new IndexingQueueRingBuffer<>(8);
+        for (int i = 0; i < 5; i++) {
+            buffer.offer(i);
+        }
+
+        List<Integer> elements = new ArrayList<>();
+        Assert.assertEquals(3, buffer.drainTo(elements, 3));
+
+        Assert.assertEquals(Arrays.asList(0, 1, 2), elements);
+        Assert.assertEquals(2, buffer.size());
+    }
+
+    @Test
+    @DisplayName("Null elements are rejected")
+    public void rejectNull() {
+        IndexingQueueRingBuffer<String> buffer = new IndexingQueueRingBuffer<>(4);
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> buffer.offer(null));
+    }
+
+    @Test
+    @DisplayName("Every element offered by concurrent producers is polled exactly once by concurrent consumers")
+    public void concurrentProducersAndConsumers() throws Exception {
+        int producersCount = 4;
+        int elementsPerProducer = 10000;
+        IndexingQueueRingBuffer<Integer> buffer = new IndexingQueueRingBuffer<>(64);
+        Set<Integer> polledElements = ConcurrentHashMap.newKeySet();
+        AtomicInteger duplicates = new AtomicInteger();
+        AtomicInteger producedCount = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(producersCount + 2);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int p = 0; p < producersCount; p++) {
+                int firstElement = p * elementsPerProducer;
+                futures.add(executor.submit(() -> {
+                    for (int i = firstElement; i < firstElement + elementsPerProducer; i++) {
+                        while (!buffer.offer(i)) {
+                            Thread.yield();
+                        }
+                        producedCount.incrementAndGet();
+                    }
+                }));
+            }
+            for (int c = 0; c < 2; c++) {
+                futures.add(executor.submit(() -> {
+                    while (producedCount.get() < producersCount * elementsPerProducer || !buffer.isEmpty()) {
+                        Integer element = buffer.poll();
+                        if (element == null) {
+                            Thread.yield();
+                        } else if (!polledElements.add(element)) {
+                            duplicates.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Assert.assertEquals(0, duplicates.get());
+        Assert.assertEquals(producersCount * elementsPerProducer, polledElements.size());
+        Assert.assertTrue(buffer.isEmpty());
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2021 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package indexing_queue;
+
+import io.jmix.core.Id;
+import io.jmix.core.IdSerialization;
+import io.jmix.core.UuidProvider;
+import io.jmix.search.index.impl.IndexStateRegistry;
+import io.jmix.search.index.queue.IndexingQueueManager;
+import io.jmix.search.index.queue.impl.IndexingOperation;
+import org.elasticsearch.rest.RestStatus;
+import org.junit.Assert;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import test_support.IndexingQueueSkipLockedTestConfiguration;
+import test_support.TestBulkRequestsTracker;
+import test_support.TestBulkResponses;
+import test_support.TestEntityIndexer;
+import test_support.entity.TestRootEntity;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(
+        classes = {IndexingQueueSkipLockedTestConfiguration.class}
+)
+@TestPropertySource(properties = {
+        "jmix.search.indexingQueueDequeueStrategy=skip-locked",
+        "jmix.search.indexingQueueMaxAttempts=2"
+})
+public class IndexingQueueSkipLockedTest {
+
+    @Autowired
+    IndexingQueueManager indexingQueueManager;
+    @Autowired
+    IndexStateRegistry indexStateRegistry;
+    @Autowired
+    TestEntityIndexer entityIndexer;
+    @Autowired
+    TestBulkRequestsTracker bulkRequestsTracker;
+    @Autowired
+    IdSerialization idSerialization;
+    @Autowired
+    DataSource dataSource;
+
+    protected JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    public void setUp() {
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.update("delete from SEARCH_INDEXING_QUEUE");
+        jdbcTemplate.update("delete from SEARCH_DEAD_LETTER_QUEUE");
+        indexStateRegistry.markIndexAsAvailable("test_RootEntity");
+        bulkRequestsTracker.clear();
+        entityIndexer.setBulkResponseProvider(request -> TestBulkResponses.failure(request, RestStatus.BAD_REQUEST));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        entityIndexer.resetBulkResponseProvider();
+    }
+
+    @Test
+    @DisplayName("Claim of failed item is released and its attempt counter is incremented")
+    public void releaseClaimOfFailedItem() {
+        String entityId = enqueueDelete();
+
+        Assert.assertEquals(0, indexingQueueManager.processEntireQueue());
+        Map<String, Object> queueItem = loadQueueItem(entityId);
+        Assert.assertNull(queueItem.get("CLAIMED_BY"));
+        Assert.assertNull(queueItem.get("CLAIMED_DATE"));
+        Assert.assertEquals(1, ((Number) queueItem.get("ATTEMPT_COUNT")).intValue());
+
+        bulkRequestsTracker.clear();
+        entityIndexer.setBulkResponseProvider(TestBulkResponses::success);
+        Assert.assertEquals(1, indexingQueueManager.processEntireQueue());
+        Assert.assertEquals(1, bulkRequestsTracker.getBulkRequests().size());
+        Assert.assertEquals(0, getCount("SEARCH_INDEXING_QUEUE"));
+        Assert.assertEquals(0, getCount("SEARCH_DEAD_LETTER_QUEUE"));
+    }
+
+    @Test
+    @DisplayName("Item exceeding max amount of attempts is moved to the dead letter queue")
+    public void moveToDeadLetterQueue() {
+        String entityId = enqueueDelete();
+        for (int i = 0; i < 2; i++) {
+            Assert.assertEquals(0, indexingQueueManager.processEntireQueue());
+        }
+
+        bulkRequestsTracker.clear();
+        Assert.assertEquals(0, indexingQueueManager.processEntireQueue());
+
+        Assert.assertTrue(bulkRequestsTracker.getBulkRequests().isEmpty());
+        Assert.assertEquals(0, getCount("SEARCH_INDEXING_QUEUE"));
+        Map<String, Object> deadLetterQueueItem = jdbcTemplate.queryForMap(
+                "select * from SEARCH_DEAD_LETTER_QUEUE where ENTITY_ID = ?", entityId);
+        Assert.assertEquals(IndexingOperation.DELETE.getId(), deadLetterQueueItem.get("OPERATION"));
+        Assert.assertEquals(3, ((Number) deadLetterQueueItem.get("ATTEMPT_COUNT")).intValue());
+        Assert.assertNotNull(deadLetterQueueItem.get("LAST_CLAIMED_BY"));
+    }
+
+    protected String enqueueDelete() {
+        Id<TestRootEntity> id = Id.of(UuidProvider.createUuid(), TestRootEntity.class);
+        indexingQueueManager.enqueueDeleteByEntityId(id);
+        return idSerialization.idToString(id);
+    }
+
+    protected Map<String, Object> loadQueueItem(String entityId) {
+        return jdbcTemplate.queryForMap("select * from SEARCH_INDEXING_QUEUE where ENTITY_ID = ?", entityId);
+    }
+
+    protected int getCount(String tableName) {
+        Integer count = jdbcTemplate.queryForObject("select count(*) from " + tableName, Integer.class);
+        return count == null ? 0 : count;
+    }
+}
@@ -81,6 +81,11 @@ public class EntityChangeTrackingTestConfiguration {
         return beanFactory.createBean(TestJpaIndexingQueueManager.class);
     }
 
+    @Bean("search_EntityTrackingListener")
+    public TestEntityTrackingListener entityTrackingListener() {
+        return beanFactory.createBean(TestEntityTrackingListener.class);
+    }
+
     @Bean
     public TestEntityWrapperManager testEntityWrapperManager(Metadata metadata, DataManager dataManager) {
         return new TestEntityWrapperManager(metadata, dataManager);
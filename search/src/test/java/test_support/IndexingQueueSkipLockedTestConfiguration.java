@@ -0,0 +1,43 @@
+/*
+ * Copyright 2021 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package test_support;
+
+import io.jmix.search.index.queue.IndexingQueueManager;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.Primary;
+
+/**
+ * Replaces queue manager of {@link IndexingQueueTestConfiguration} with one supporting 'skip-locked' strategy on HSQLDB.
+ */
+@Configuration
+@Import({IndexingQueueTestConfiguration.class})
+public class IndexingQueueSkipLockedTestConfiguration {
+
+    @Autowired
+    protected AutowireCapableBeanFactory beanFactory;
+
+    @Bean("search_JpaIndexingQueueManager")
+    @Primary
+    public IndexingQueueManager indexingQueueManager() {
+        return beanFactory.createBean(TestSkipLockedJpaIndexingQueueManager.class);
+    }
+}
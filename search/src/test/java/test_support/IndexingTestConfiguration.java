@@ -24,6 +24,7 @@ import io.jmix.core.annotation.MessageSourceBasenames;
 import io.jmix.core.security.CoreSecurityConfiguration;
 import io.jmix.data.impl.liquibase.JmixLiquibase;
 import io.jmix.data.impl.liquibase.LiquibaseChangeLogProcessor;
+import io.jmix.search.index.ESIndexManager;
 import io.jmix.search.index.EntityIndexer;
 import io.jmix.search.index.impl.IndexStateRegistry;
 import liquibase.integration.spring.SpringLiquibase;
@@ -78,6 +79,12 @@ public class IndexingTestConfiguration extends CoreSecurityConfiguration {
         return beanFactory.createBean(TestEntityIndexer.class);
     }
 
+    @Bean
+    @Primary
+    public ESIndexManager testESIndexManager() {
+        return beanFactory.createBean(TestESIndexManager.class);
+    }
+
     @Bean
     @Primary
     public IndexStateRegistry testIndexStateRegistry() {
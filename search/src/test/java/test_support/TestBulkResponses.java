@@ -0,0 +1,77 @@
+/*
+ * Copyright 2021 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package test_support;
+
+import org.elasticsearch.ElasticsearchStatusException;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.rest.RestStatus;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Builds bulk responses containing item per action of the bulk request as if they were returned by Elasticsearch.
+ */
+public class TestBulkResponses {
+
+    private static final String DOCUMENT_TYPE = "_doc";
+
+    public static BulkResponse empty(BulkRequest request) {
+        return new BulkResponse(new BulkItemResponse[]{}, 0);
+    }
+
+    public static BulkResponse success(BulkRequest request) {
+        return create(request, action -> null);
+    }
+
+    public static BulkResponse failure(BulkRequest request, RestStatus status) {
+        return create(request, action -> status);
+    }
+
+    /**
+     * @param request        bulk request
+     * @param statusProvider provides status of failure of the action or null if the action succeeds
+     * @return bulk response
+     */
+    public static BulkResponse create(BulkRequest request, Function<DocWriteRequest<?>, RestStatus> statusProvider) {
+        List<DocWriteRequest<?>> actions = request.requests();
+        BulkItemResponse[] items = new BulkItemResponse[actions.size()];
+        for (int i = 0; i < actions.size(); i++) {
+            DocWriteRequest<?> action = actions.get(i);
+            items[i] = createItem(i, action, statusProvider.apply(action));
+        }
+        return new BulkResponse(items, 1);
+    }
+
+    private static BulkItemResponse createItem(int slot, DocWriteRequest<?> action, @Nullable RestStatus failureStatus) {
+        if (failureStatus == null) {
+            IndexResponse response = new IndexResponse(new ShardId(action.index(), "_na_", 0),
+                    DOCUMENT_TYPE, action.id(), 1, 1, 1, true);
+            return new BulkItemResponse(slot, action.opType(), response);
+        }
+        ElasticsearchStatusException cause = new ElasticsearchStatusException("Test failure", failureStatus);
+        return new BulkItemResponse(slot, action.opType(),
+                new BulkItemResponse.Failure(action.index(), DOCUMENT_TYPE, action.id(), cause));
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2021 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package test_support;
+
+import io.jmix.search.index.IndexConfiguration;
+import io.jmix.search.index.impl.ESIndexManagerImpl;
+import org.elasticsearch.common.settings.Settings;
+
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps indexes, aliases and settings in memory instead of management via ES client.
+ */
+public class TestESIndexManager extends ESIndexManagerImpl {
+
+    protected final Map<String, Set<String>> indexAliases = new LinkedHashMap<>();
+    protected final Map<String, Settings> indexSettings = new HashMap<>();
+    protected final Map<String, StoredBulkIndexingSession> storedSessions = new HashMap<>();
+
+    @Override
+    protected synchronized boolean createIndex(IndexConfiguration indexConfiguration, String indexName, boolean withAlias, Settings settings) {
+        if (indexAliases.containsKey(indexName)) {
+            return false;
+        }
+        Set<String> aliases = new HashSet<>();
+        if (withAlias) {
+            aliases.add(indexConfiguration.getIndexName());
+        }
+        indexAliases.put(indexName, aliases);
+        indexSettings.put(indexName, settings);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean isIndexExist(String indexName) {
+        return !getConcreteIndexNames(indexName).isEmpty();
+    }
+
+    @Override
+    protected synchronized List<String> getConcreteIndexNames(String indexNameOrPattern) {
+        if (indexNameOrPattern.endsWith("*")) {
+            String prefix = indexNameOrPattern.substring(0, indexNameOrPattern.length() - 1);
+            return indexAliases.keySet().stream()
+                    .filter(indexName -> indexName.startsWith(prefix))
+                    .collect(Collectors.toList());
+        }
+        return indexAliases.entrySet().stream()
+                .filter(entry -> entry.getKey().equals(indexNameOrPattern) || entry.getValue().contains(indexNameOrPattern))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    protected synchronized boolean deleteIndexes(Collection<String> indexNames) {
+        indexNames.forEach(indexName -> {
+            indexAliases.remove(indexName);
+            indexSettings.remove(indexName);
+            storedSessions.remove(indexName);
+        });
+        return true;
+    }
+
+    @Override
+    protected synchronized boolean switchAlias(String aliasName, Collection<String> currentIndexNames, String newIndexName) {
+        for (String currentIndexName : currentIndexNames) {
+            if (currentIndexName.equals(aliasName)) {
+                deleteIndexes(Collections.singletonList(currentIndexName));
+            } else {
+                indexAliases.get(currentIndexName).remove(aliasName);
+            }
+        }
+        indexAliases.get(newIndexName).add(aliasName);
+        return true;
+    }
+
+    @Override
+    protected synchronized void updateIndexSettings(String indexName, Settings settings) {
+        indexSettings.put(indexName, Settings.builder().put(indexSettings.get(indexName)).put(settings).build());
+    }
+
+    @Override
+    protected void refreshIndex(String indexName) {
+    }
+
+    @Override
+    protected synchronized Settings getCurrentIndexSettings(@Nullable String indexName) {
+        if (indexName == null) {
+            return createDefaultIndexingSettings();
+        }
+        Settings.Builder settingsBuilder = Settings.builder();
+        for (String setting : BULK_INDEXING_SETTINGS) {
+            String value = indexSettings.get(indexName).get(setting);
+            if (value == null) {
+                settingsBuilder.putNull(setting);
+            } else {
+                settingsBuilder.put(setting, value);
+            }
+        }
+        return settingsBuilder.build();
+    }
+
+    @Override
+    protected synchronized void storeBulkIndexingSession(String indexName, Settings settings, long renewedTime) {
+        storedSessions.put(indexName, new StoredBulkIndexingSession(settings, nodeId, renewedTime));
+    }
+
+    @Nullable
+    @Override
+    protected synchronized StoredBulkIndexingSession loadStoredBulkIndexingSession(String indexName) {
+        return storedSessions.get(indexName);
+    }
+
+    @Override
+    protected synchronized void clearStoredBulkIndexingSession(String indexName) {
+        storedSessions.remove(indexName);
+    }
+
+    /**
+     * Simulates bulk indexing session started by another application instance.
+     */
+    public synchronized void startForeignBulkIndexingSession(String indexName, Settings previousSettings, long renewedTime) {
+        storedSessions.put(indexName, new StoredBulkIndexingSession(previousSettings, "foreign-node", renewedTime));
+        updateIndexSettings(indexName, createBulkIndexingSettings());
+    }
+
+    public synchronized void setSettings(String indexName, Settings settings) {
+        updateIndexSettings(indexName, settings);
+    }
+
+    @Nullable
+    public synchronized Settings getStoredPreviousSettings(String indexName) {
+        StoredBulkIndexingSession storedSession = storedSessions.get(indexName);
+        return storedSession == null ? null : storedSession.getPreviousSettings();
+    }
+
+    @Nullable
+    public synchronized Long getStoredSessionRenewedTime(String indexName) {
+        StoredBulkIndexingSession storedSession = storedSessions.get(indexName);
+        return storedSession == null ? null : storedSession.getRenewedTime();
+    }
+
+    public synchronized Set<String> getIndexNames() {
+        return new HashSet<>(indexAliases.keySet());
+    }
+
+    public synchronized Set<String> getAliases(String indexName) {
+        return new HashSet<>(indexAliases.getOrDefault(indexName, Collections.emptySet()));
+    }
+
+    public synchronized Settings getSettings(String indexName) {
+        return indexSettings.get(indexName);
+    }
+
+    public synchronized void clear() {
+        indexAliases.clear();
+        indexSettings.clear();
+        storedSessions.clear();
+        bulkIndexingSessions.clear();
+    }
+}
@@ -17,19 +17,40 @@
 package test_support;
 
 import io.jmix.search.index.impl.EntityIndexerImpl;
-import org.elasticsearch.action.bulk.BulkItemResponse;
 import org.elasticsearch.action.bulk.BulkRequest;
 import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.common.unit.TimeValue;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 /**
- * Track incoming bulk requests via provided tracker instead of execution via ES client
+ * Track incoming bulk requests via provided tracker instead of execution via ES client.
+ * Responses are created by the configurable provider, empty responses are returned by default.
+ * Responses of asynchronous requests are completed by the configurable executor, at once by default.
+ * Amount of requests in flight, threads sending requests and delays of retries are tracked too.
  */
 public class TestEntityIndexer extends EntityIndexerImpl {
 
     protected final TestBulkRequestsTracker bulkRequestsTracker;
 
+    protected volatile Function<BulkRequest, BulkResponse> bulkResponseProvider = TestBulkResponses::empty;
+    protected volatile Executor bulkResponseExecutor;
+
+    protected final AtomicInteger inFlightBulkRequests = new AtomicInteger();
+    protected final AtomicInteger maxInFlightBulkRequests = new AtomicInteger();
+    protected final Set<String> bulkRequestThreadNames = ConcurrentHashMap.newKeySet();
+    protected final List<Long> backoffDelays = new ArrayList<>();
+    protected final List<Long> retryDelays = new ArrayList<>();
+
     public TestEntityIndexer(TestBulkRequestsTracker bulkRequestsTracker) {
         this.bulkRequestsTracker = bulkRequestsTracker;
     }
@@ -38,6 +59,98 @@ public class TestEntityIndexer extends EntityIndexerImpl {
     @Nonnull
     protected BulkResponse executeBulkRequest(@Nonnull BulkRequest request) {
         bulkRequestsTracker.accept(request);
-        return new BulkResponse(new BulkItemResponse[]{}, 0);
+        return bulkResponseProvider.apply(request);
+    }
+
+    @Override
+    @Nonnull
+    protected CompletableFuture<BulkResponse> sendBulkRequestAsync(@Nonnull BulkRequest request) {
+        bulkRequestThreadNames.add(Thread.currentThread().getName());
+        maxInFlightBulkRequests.accumulateAndGet(inFlightBulkRequests.incrementAndGet(), Math::max);
+
+        CompletableFuture<BulkResponse> future = new CompletableFuture<>();
+        Runnable response = () -> {
+            inFlightBulkRequests.decrementAndGet();
+            try {
+                future.complete(executeBulkRequest(request));
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        };
+        Executor executor = bulkResponseExecutor;
+        if (executor == null) {
+            response.run();
+        } else {
+            executor.execute(response);
+        }
+        return future;
+    }
+
+    /**
+     * Tracks backoff delays and delays with jitter of retries, but retries rejected items at once.
+     */
+    @Override
+    protected long getJitteredDelay(TimeValue delay) {
+        long jitteredDelay = super.getJitteredDelay(delay);
+        synchronized (retryDelays) {
+            backoffDelays.add(delay.millis());
+            retryDelays.add(jitteredDelay);
+        }
+        return 0;
+    }
+
+    public void setBulkResponseProvider(Function<BulkRequest, BulkResponse> bulkResponseProvider) {
+        this.bulkResponseProvider = bulkResponseProvider;
+    }
+
+    public void resetBulkResponseProvider() {
+        this.bulkResponseProvider = TestBulkResponses::empty;
+    }
+
+    /**
+     * @param bulkResponseExecutor executor completing responses of asynchronous requests, null to complete them at once
+     */
+    public void setBulkResponseExecutor(@Nullable Executor bulkResponseExecutor) {
+        this.bulkResponseExecutor = bulkResponseExecutor;
+    }
+
+    public int getInFlightBulkRequests() {
+        return inFlightBulkRequests.get();
+    }
+
+    public int getMaxInFlightBulkRequests() {
+        return maxInFlightBulkRequests.get();
+    }
+
+    public Set<String> getBulkRequestThreadNames() {
+        return bulkRequestThreadNames;
+    }
+
+    /**
+     * @return delays of retries of rejected items by the backoff policy
+     */
+    public List<Long> getBackoffDelays() {
+        synchronized (retryDelays) {
+            return new ArrayList<>(backoffDelays);
+        }
+    }
+
+    /**
+     * @return delays with jitter the indexer would wait before retries of rejected items
+     */
+    public List<Long> getRetryDelays() {
+        synchronized (retryDelays) {
+            return new ArrayList<>(retryDelays);
+        }
+    }
+
+    public void resetTracking() {
+        bulkResponseExecutor = null;
+        maxInFlightBulkRequests.set(inFlightBulkRequests.get());
+        bulkRequestThreadNames.clear();
+        synchronized (retryDelays) {
+            backoffDelays.clear();
+            retryDelays.clear();
+        }
     }
 }
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2021 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package test_support;
+
+import io.jmix.core.Id;
+import io.jmix.core.metamodel.model.MetaPropertyPath;
+import io.jmix.search.listener.EntityTrackingListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * EntityTrackingListener with additional tracking of executed dependent entity ids queries
+ */
+public class TestEntityTrackingListener extends EntityTrackingListener {
+
+    protected final List<DependencyQuery> dependencyQueries = new CopyOnWriteArrayList<>();
+
+    @Override
+    protected List<Id<?>> loadDependentEntityIds(MetaPropertyPath backRefPropertyPath, String queryString, List<Object> targetIds, boolean joinTransaction) {
+        dependencyQueries.add(new DependencyQuery(backRefPropertyPath, targetIds));
+        return super.loadDependentEntityIds(backRefPropertyPath, queryString, targetIds, joinTransaction);
+    }
+
+    public List<DependencyQuery> getDependencyQueries() {
+        return new ArrayList<>(dependencyQueries);
+    }
+
+    public void clear() {
+        dependencyQueries.clear();
+    }
+
+    public static class DependencyQuery {
+
+        protected final MetaPropertyPath propertyPath;
+        protected final List<Object> targetIds;
+
+        public DependencyQuery(MetaPropertyPath propertyPath, List<Object> targetIds) {
+            this.propertyPath = propertyPath;
+            this.targetIds = new ArrayList<>(targetIds);
+        }
+
+        public MetaPropertyPath getPropertyPath() {
+            return propertyPath;
+        }
+
+        public List<Object> getTargetIds() {
+            return targetIds;
+        }
+
+        @Override
+        public String toString() {
+            return propertyPath + " " + targetIds;
+        }
+    }
+}
@@ -36,6 +36,7 @@ import java.util.function.Consumer;
 public class TestIndexingQueueItemsTracker implements Consumer<Collection<IndexingQueueItem>> {
 
     protected Map<IndexingOperation, Multimap<String, IndexingQueueItem>> registry = new ConcurrentHashMap<>();
+    protected volatile Map<Object, Object> lastTransactionResources = Collections.emptyMap();
 
     protected final IdSerialization idSerialization;
 
@@ -43,6 +44,15 @@ public class TestIndexingQueueItemsTracker implements Consumer<Collection<Indexi
         this.idSerialization = idSerialization;
     }
 
+    /**
+     * @param indexingQueueItems   items enqueued within committed transaction
+     * @param transactionResources resources bound to the transaction (see {@link org.springframework.transaction.support.TransactionSynchronizationManager#getResourceMap()})
+     */
+    public void accept(Collection<IndexingQueueItem> indexingQueueItems, Map<Object, Object> transactionResources) {
+        lastTransactionResources = transactionResources;
+        accept(indexingQueueItems);
+    }
+
     @Override
     public void accept(Collection<IndexingQueueItem> indexingQueueItems) {
         indexingQueueItems.forEach(item -> {
@@ -67,8 +77,13 @@ public class TestIndexingQueueItemsTracker implements Consumer<Collection<Indexi
         return getItemsForEntityAndOperation(entity, operation).size();
     }
 
+    public Map<Object, Object> getLastTransactionResources() {
+        return lastTransactionResources;
+    }
+
     public void clear() {
         registry = new ConcurrentHashMap<>();
+        lastTransactionResources = Collections.emptyMap();
     }
 
     protected Collection<IndexingQueueItem> getItemsForEntityAndOperation(Object entity, IndexingOperation operation) {
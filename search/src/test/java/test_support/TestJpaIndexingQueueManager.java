@@ -16,26 +16,113 @@
 
 package test_support;
 
+import io.jmix.core.LoadContext;
 import io.jmix.search.index.queue.entity.IndexingQueueItem;
 import io.jmix.search.index.queue.impl.JpaIndexingQueueManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
- * JpaIndexingQueueManager with additional test tracker of queue items
+ * JpaIndexingQueueManager with additional test tracker of queue items, of load contexts used for dequeueing
+ * and of deletion of processed items
  */
 public class TestJpaIndexingQueueManager extends JpaIndexingQueueManager {
 
     protected final TestIndexingQueueItemsTracker indexingQueueItemsTracker;
+    protected final List<LoadContext<IndexingQueueItem>> dequeueLoadContexts = new CopyOnWriteArrayList<>();
+    protected final List<IndexingQueueItem> dequeuedItems = new CopyOnWriteArrayList<>();
+    protected final List<Integer> deletedItemsCounts = new CopyOnWriteArrayList<>();
 
     public TestJpaIndexingQueueManager(TestIndexingQueueItemsTracker indexingQueueItemsTracker) {
         this.indexingQueueItemsTracker = indexingQueueItemsTracker;
     }
 
+    /**
+     * Items enqueued within transaction are tracked after its commit only, together with resources of the transaction.
+     */
     @Override
     protected int enqueue(@NotNull Collection<IndexingQueueItem> queueItems) {
-        indexingQueueItemsTracker.accept(queueItems);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            Map<Object, Object> transactionResources = new HashMap<>(TransactionSynchronizationManager.getResourceMap());
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    indexingQueueItemsTracker.accept(queueItems, transactionResources);
+                }
+            });
+        } else {
+            indexingQueueItemsTracker.accept(queueItems);
+        }
         return super.enqueue(queueItems);
     }
+
+    @Override
+    protected List<IndexingQueueItem> dequeueQueueItems(List<String> unavailableEntities, int batchSize) {
+        List<IndexingQueueItem> queueItems = super.dequeueQueueItems(unavailableEntities, batchSize);
+        dequeuedItems.addAll(queueItems);
+        return queueItems;
+    }
+
+    @Override
+    protected int deleteQueueItems(Collection<IndexingQueueItem> queueItems) {
+        int deleted = super.deleteQueueItems(queueItems);
+        if (!queueItems.isEmpty()) {
+            deletedItemsCounts.add(deleted);
+        }
+        return deleted;
+    }
+
+    @Override
+    protected LoadContext<IndexingQueueItem> createEntityDequeueLoadContext(String entityName, int batchSize) {
+        return trackDequeueLoadContext(super.createEntityDequeueLoadContext(entityName, batchSize));
+    }
+
+    @Override
+    protected LoadContext<IndexingQueueItem> createNotIndexedEntitiesDequeueLoadContext(Collection<String> indexedEntities, int batchSize) {
+        return trackDequeueLoadContext(super.createNotIndexedEntitiesDequeueLoadContext(indexedEntities, batchSize));
+    }
+
+    @Override
+    protected LoadContext<IndexingQueueItem> createCascadeDequeueLoadContext(List<String> unavailableEntities, int batchSize) {
+        return trackDequeueLoadContext(super.createCascadeDequeueLoadContext(unavailableEntities, batchSize));
+    }
+
+    @Override
+    protected LoadContext<IndexingQueueItem> createDequeueLoadContext(List<String> unavailableEntities, int batchSize) {
+        return trackDequeueLoadContext(super.createDequeueLoadContext(unavailableEntities, batchSize));
+    }
+
+    protected LoadContext<IndexingQueueItem> trackDequeueLoadContext(LoadContext<IndexingQueueItem> loadContext) {
+        dequeueLoadContexts.add(loadContext);
+        return loadContext;
+    }
+
+    public List<LoadContext<IndexingQueueItem>> getDequeueLoadContexts() {
+        return new ArrayList<>(dequeueLoadContexts);
+    }
+
+    public List<IndexingQueueItem> getDequeuedItems() {
+        return new ArrayList<>(dequeuedItems);
+    }
+
+    /**
+     * @return amounts of rows deleted by every invocation of {@link #deleteQueueItems(Collection)}
+     */
+    public List<Integer> getDeletedItemsCounts() {
+        return new ArrayList<>(deletedItemsCounts);
+    }
+
+    public void clearDequeueTracking() {
+        dequeueLoadContexts.clear();
+        dequeuedItems.clear();
+        deletedItemsCounts.clear();
+    }
 }
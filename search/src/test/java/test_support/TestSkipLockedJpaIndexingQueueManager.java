@@ -0,0 +1,35 @@
+/*
+ * Copyright 2021 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package test_support;
+
+/**
+ * Processes queue with the 'skip-locked' strategy on HSQLDB, which doesn't support skipping of locked rows:
+ * items are selected by the statement generated for PostgreSQL without the locking clause.
+ */
+public class TestSkipLockedJpaIndexingQueueManager extends TestJpaIndexingQueueManager {
+
+    public TestSkipLockedJpaIndexingQueueManager(TestIndexingQueueItemsTracker indexingQueueItemsTracker) {
+        super(indexingQueueItemsTracker);
+    }
+
+    @Override
+    protected String createSkipLockedDequeueSql(String dbmsType, int unavailableEntitiesCount, int batchSize) {
+        String sql = super.createSkipLockedDequeueSql("postgres", unavailableEntitiesCount, batchSize);
+        return sql == null ? null : sql.replace(" for update skip locked", "");
+    }
+}